@@ -0,0 +1,87 @@
+package frc.robot.auto.actions;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+import frc.robot.command_status.DriveCommand;
+import frc.robot.command_status.DriveState;
+import frc.robot.lib.util.DataLogController;
+import frc.robot.loops.CharacterizationLoop;
+import frc.robot.loops.CharacterizationLoop.TestType;
+import frc.robot.loops.DriveLoop;
+import frc.robot.subsystems.Drive;
+
+/**
+ * Runs one drive characterization test: CharacterizationLoop applies the voltage ramp
+ * (quasistatic test) or step (dynamic test) and records voltage, wheel velocity and
+ * acceleration every LoopController cycle.  This action starts and stops the test, and
+ * writes the samples to a CSV in the log directory when it is done.
+ * Fit the results with FeedforwardFitter to get kS, kV and kA.
+ */
+public class CharacterizationAction implements Action{
+    private final String name;
+    private final TestType testType;
+    private final boolean reverse;
+    private final double volts;                             // ramp rate (V/sec) for QUASISTATIC, step (V) for DYNAMIC
+    private final double maxDistanceInches;
+
+    private final CharacterizationLoop loop = CharacterizationLoop.getInstance();
+    private double startDistance;
+
+    public CharacterizationAction(String _name, TestType _testType, boolean _reverse, double _volts, double _maxDistanceInches)
+    {
+        name = _name;
+        testType = _testType;
+        reverse = _reverse;
+        volts = _volts;
+        maxDistanceInches = _maxDistanceInches;
+    }
+
+    @Override
+    public void start() {
+        DriveLoop.getInstance().configOpenLoopRamp(0.0);    // ramp would hide acceleration
+        startDistance = getDistance();
+        loop.startTest(testType, reverse, volts);
+    }
+
+    @Override
+    public void run() {
+        // CharacterizationLoop drives and samples
+    }
+
+    @Override
+    public boolean isFinished() {
+        return (Math.abs(getDistance() - startDistance) >= maxDistanceInches) || loop.isFull();
+    }
+
+    @Override
+    public void done() {
+        loop.stopTest();
+        Drive.getInstance().setOpenLoop(DriveCommand.BRAKE());
+        DriveLoop.getInstance().configOpenLoopRamp(DriveLoop.kDriveOpenLoopRampRate);
+        writeFile();
+    }
+
+    private double getDistance()
+    {
+        return (DriveState.getInstance().getLeftDistanceInches() + DriveState.getInstance().getRightDistanceInches())/2;
+    }
+
+    private void writeFile()
+    {
+        File file = new File(DataLogController.getDirectory(), DataLogController.getTimestampString() + "_characterization_" + name + ".csv");
+        try (PrintWriter pw = new PrintWriter(file))
+        {
+            // conversion so the fitter can report a Talon kF
+            pw.printf("# test=%s\n", testType);
+            pw.printf("# inchesPerSecPerEncoderUnitsPer100ms=%.9f\n", DriveLoop.encoderUnitsPerFrameToInchesPerSecond(1.0));
+            loop.writeSamples(pw);
+            System.out.println("Characterization data written to " + file);
+        }
+        catch (FileNotFoundException e)
+        {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package frc.robot.auto.actions;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.command_status.RobotState;
+import frc.robot.lib.util.DriveTrajectory;
+import frc.robot.lib.util.Kinematics.WheelSpeed;
+import frc.robot.lib.util.Path;
+import frc.robot.lib.util.PathTrackingStats;
+import frc.robot.lib.util.Pose;
+import frc.robot.subsystems.Drive;
+
+/**
+ * Drives a Path by streaming a precomputed DriveTrajectory to the Talon FX motion profile buffers.
+ * The Talons execute the profile at their own rate.  RoboRIO only supervises: it tracks the
+ * distance from the path and, if the robot gets too far off, hands the rest of the path over to
+ * the pure pursuit PathFollower.  Tracking stats can be compared with PathFollowerAction's.
+ * A path that can't be made into a trajectory is followed by the PathFollower from the start.
+ */
+public class MotionProfileAction implements Action{
+    public static double kMaxDistanceFromPathInches = 6.0;  // fall back to path following beyond this
+    public static double kTimeoutMarginSec = 1.0;           // fall back if profile is this late finishing
+
+    private DriveTrajectory trajectory;
+    private Path trackingPath;
+    private PathFollowerAction fallbackAction = null;
+    private PathTrackingStats stats = new PathTrackingStats("MotionProfileAction");
+    private double startTime;
+    private double distanceFromPath;
+
+    public MotionProfileAction(Path _path)
+    {
+        trajectory = DriveTrajectory.fromPath(_path);
+        trackingPath = new Path(_path);
+        if (!trajectory.isValid())
+            System.out.println(trajectory.getError() + ", will use PathFollower");
+    }
+
+    public DriveTrajectory getTrajectory() { return trajectory; }
+    public PathTrackingStats getStats() { return stats; }
+
+    @Override
+    public void start() {
+        startTime = Timer.getFPGATimestamp();
+        if (!trajectory.isValid())
+        {
+            fallbackAction = new PathFollowerAction(trackingPath);
+            fallbackAction.start();
+            return;
+        }
+        Drive.getInstance().setMotionProfile(trajectory);
+    }
+
+    @Override
+    public void run() {
+        if (fallbackAction != null)
+        {
+            fallbackAction.run();
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        Pose pose = RobotState.getInstance().getLatestFieldToVehicle();
+        distanceFromPath = trackingPath.update(pose.getPosition());
+        Drive.getInstance().keepMotionProfileAlive();
+        stats.add(distanceFromPath, System.nanoTime() - startNanos);
+
+        double elapsed = Timer.getFPGATimestamp() - startTime;
+        if (distanceFromPath > kMaxDistanceFromPathInches || elapsed > trajectory.getDuration() + kTimeoutMarginSec)
+        {
+            System.out.println(String.format("MotionProfileAction: %.1f in off path at %.2f sec, switching to PathFollower", distanceFromPath, elapsed));
+            fallbackAction = new PathFollowerAction(trackingPath);
+            fallbackAction.start();
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        if (fallbackAction != null)
+            return fallbackAction.isFinished();
+        return (Timer.getFPGATimestamp() - startTime >= trajectory.getDuration()) && Drive.getInstance().isMotionProfileFinished();
+    }
+
+    @Override
+    public void done() {
+        if (fallbackAction != null)
+        {
+            fallbackAction.done();
+        }
+        else
+        {
+            // hold final speed, as PathFollower does
+            int last = trajectory.size()-1;
+            Drive.getInstance().setVelocitySetpoint(new WheelSpeed(trajectory.lSpeed[last], trajectory.rSpeed[last]));
+        }
+        System.out.println(stats);
+    }
+}
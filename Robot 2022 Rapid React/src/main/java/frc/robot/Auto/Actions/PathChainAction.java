@@ -0,0 +1,75 @@
+package frc.robot.auto.actions;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.lib.util.Path;
+import frc.robot.lib.util.PathChain;
+import frc.robot.lib.util.PathChain.Leg;
+
+/**
+ * Follows a list of Paths back to back, without stopping between paths that can be blended.
+ * See PathChain for how the paths are split into legs.
+ */
+public class PathChainAction implements Action{
+    private PathChain chain;
+    private SeriesAction series = new SeriesAction();
+    private List<PathFollowerAction> pathActions = new ArrayList<PathFollowerAction>();
+    private Map<String, Action> markerActions = new LinkedHashMap<String, Action>();
+    private double startTime;
+
+    public PathChainAction(List<Path> _paths)
+    {
+        chain = new PathChain(_paths);
+        for (Leg leg : chain.getLegs())
+        {
+            if (leg.turnToHeadingDeg.isPresent())
+                series.add(new TurnToAngleAction(leg.turnToHeadingDeg.get()));
+
+            PathFollowerAction pathAction = new PathFollowerAction(leg.path);
+            pathActions.add(pathAction);
+            series.add(pathAction);
+        }
+        System.out.println(chain.toString());
+    }
+
+    public PathChain getPathChain() { return chain; }
+
+    // start _action when any leg of the chain crosses _marker
+    public PathChainAction addMarkerAction(String _marker, Action _action)
+    {
+        markerActions.put(_marker, _action);
+        return this;
+    }
+
+    @Override
+    public void start() {
+        for (PathFollowerAction pathAction : pathActions)
+        {
+            for (Map.Entry<String, Action> entry : markerActions.entrySet())
+                pathAction.addMarkerAction(entry.getKey(), entry.getValue());
+        }
+        series.start();
+        startTime = Timer.getFPGATimestamp();
+    }
+
+    @Override
+    public void run() {
+        series.run();
+    }
+
+    @Override
+    public boolean isFinished() {
+        return series.isFinished();
+    }
+
+    @Override
+    public void done() {
+        series.done();
+        System.out.println(String.format("PathChainAction done in %.2f sec (estimated %.2f sec, %.2f sec with stop-and-turn)",
+                Timer.getFPGATimestamp() - startTime, chain.getChainedTimeEstimate(), chain.getStopAndTurnTimeEstimate()));
+    }
+}
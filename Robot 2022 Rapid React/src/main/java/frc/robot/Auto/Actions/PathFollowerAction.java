@@ -1,47 +1,99 @@
 package frc.robot.auto.actions;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import frc.robot.lib.util.DataLogController;
 import frc.robot.lib.util.Path;
 import frc.robot.lib.util.PathFollower;
 import frc.robot.lib.util.PathFollower.PathVisionState;
+import frc.robot.lib.util.PathTrackingStats;
 
 public class PathFollowerAction implements Action{
     PathFollower driveCtrl;
 	  Path path;
 
-    public PathFollowerAction(Path _path) 
+    // actions started when the path crosses a marker, run alongside path following
+    List<Action> markerActions = new ArrayList<Action>();
+
+    PathTrackingStats stats = new PathTrackingStats("PathFollowerAction");
+
+    public PathFollowerAction(Path _path)
     {
     	driveCtrl = new PathFollower(_path, PathVisionState.PATH_FOLLOWING);
-    	
+
     	path = _path;
     }
 
     public PathFollower getDriveController() { return driveCtrl; }
+    public PathTrackingStats getStats() { return stats; }
+
+    /**
+     * Start _action on the tick the path crosses _marker (see Path.addMarkerListener).
+     * The action is then run every cycle until it finishes, or until the path is done.
+     */
+    public PathFollowerAction addMarkerAction(String _marker, Action _action)
+    {
+      path.addMarkerListener(_marker, () -> {
+        _action.start();
+        markerActions.add(_action);
+      });
+      return this;
+    }
 
     @Override
-    public void start() 
+    public void start()
     {
       driveCtrl.start();
+      DataLogController.getRobotLogController().register(driveCtrl.getLogger());
     }
 
 
     @Override
-    public void run() 
+    public void run()
     {
-    	driveCtrl.update();
-	  }	
-	
-	
+      long startNanos = System.nanoTime();
+    	driveCtrl.update();     // may start marker actions
+      stats.add(driveCtrl.getDistanceFromPath(), System.nanoTime() - startNanos);
+      runMarkerActions();
+	  }
+
+
     @Override
-    public boolean isFinished() 
+    public boolean isFinished()
     {
     	boolean finished = driveCtrl.isFinished();
-      return finished;    	
+      return finished;
     }
 
     @Override
-    public void done() 
+    public void done()
     {
       // cleanup code, if any
       driveCtrl.done();
+      DataLogController.getRobotLogController().deregister(driveCtrl.getLogger());
+      System.out.println(stats);
+
+      // don't hold up the path for marker actions that haven't finished yet
+      for (Action action : markerActions)
+        action.done();
+      markerActions.clear();
+    }
+
+    private void runMarkerActions()
+    {
+      for (int k = markerActions.size() - 1; k >= 0; k--)
+      {
+        Action action = markerActions.get(k);
+        if (action.isFinished())
+        {
+          action.done();
+          markerActions.remove(k);
+        }
+        else
+        {
+          action.run();
+        }
+      }
     }
 }
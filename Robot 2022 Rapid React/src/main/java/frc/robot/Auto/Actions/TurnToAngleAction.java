@@ -8,8 +8,7 @@ public class TurnToAngleAction implements Action{
     private double targetAngleDeg;
 
     private static final double angleErrorThresholdDeg = 1.0;
-    private static final double distanceThresholdInches = 1.0;
-    private static final double wheelVelocityThresholdInchesPerSec = 5.0;
+    private static final double angularRateThresholdDegPerSec = 5.0;
 
     public TurnToAngleAction(double _targetAngleDeg)
     {
@@ -23,17 +22,16 @@ public class TurnToAngleAction implements Action{
 
     @Override
     public void run() {
-        // keep sending same drive commands
-        DriveCommand driveCmd = Drive.getInstance().getCommand();
-        driveCmd.setMotors(driveCmd.getLeftMotor(), driveCmd.getRightMotor());
+        // nothing to do: Drive's velocity loop follows the heading profile
     }
 
     @Override
     public boolean isFinished() {
-        boolean finished = Drive.getInstance().isTurnToHeadingFinished(distanceThresholdInches);
+        boolean finished = Drive.getInstance().isTurnToHeadingFinished(angleErrorThresholdDeg, angularRateThresholdDegPerSec);
         if (finished) {
             //DEBUG
-            System.out.println("Done with TurnToAngleAction");         
+            System.out.println(String.format("Done with TurnToAngleAction: settled in %.2f sec (profile %.2f sec)", 
+                Drive.getInstance().getTurnToHeadingSettleTime(), Drive.getInstance().getTurnToHeadingProfileTime()));
         }
         return finished;
     }
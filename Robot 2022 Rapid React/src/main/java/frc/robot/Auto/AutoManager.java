@@ -8,6 +8,8 @@ import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import frc.robot.auto.modes.ActionTestingAuto;
 import frc.robot.auto.modes.AutoMode;
+import frc.robot.auto.modes.DriveCharacterizationAuto;
+import frc.robot.auto.modes.MotionProfileTestAuto;
 import frc.robot.auto.modes.OneBallAuto;
 import frc.robot.auto.modes.ThreeBallAuto;
 import frc.robot.auto.modes.TrollAuto;
@@ -40,6 +42,8 @@ public class AutoManager {
         AutoModeChooser.addOption("Action Testing Auto", new ActionTestingAuto());
         AutoModeChooser.addOption("Turn Around Auto", new TurnAroundAuto());
         AutoModeChooser.addOption("Wheel Calibration Auto", new WheelDiameterCalibrationAuto());
+        AutoModeChooser.addOption("Motion Profile Test Auto", new MotionProfileTestAuto());
+        AutoModeChooser.addOption("Drive Characterization Auto", new DriveCharacterizationAuto());
     }
 
     public void init()
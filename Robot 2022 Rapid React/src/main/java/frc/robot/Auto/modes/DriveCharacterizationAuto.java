@@ -0,0 +1,30 @@
+package frc.robot.auto.modes;
+
+import frc.robot.auto.AutoModeEndedException;
+import frc.robot.auto.actions.CharacterizationAction;
+import frc.robot.auto.actions.WaitAction;
+import frc.robot.loops.CharacterizationLoop.TestType;
+
+public class DriveCharacterizationAuto extends AutoMode{
+    public DriveCharacterizationAuto(){}
+
+    @Override
+    protected void routine() throws AutoModeEndedException {
+        // needs about 10 feet of clear space in front of and behind the robot
+        double quasistaticVoltsPerSec = 0.25;
+        double dynamicStepVolts = 6.0;
+        double maxDistanceInches = 108;
+        double restTime = 2.0;
+
+        runAction(new CharacterizationAction("quasistatic_forward", TestType.QUASISTATIC, false, quasistaticVoltsPerSec, maxDistanceInches));
+        runAction(new WaitAction(restTime));
+        runAction(new CharacterizationAction("quasistatic_reverse", TestType.QUASISTATIC, true, quasistaticVoltsPerSec, maxDistanceInches));
+        runAction(new WaitAction(restTime));
+        runAction(new CharacterizationAction("dynamic_forward", TestType.DYNAMIC, false, dynamicStepVolts, maxDistanceInches));
+        runAction(new WaitAction(restTime));
+        runAction(new CharacterizationAction("dynamic_reverse", TestType.DYNAMIC, true, dynamicStepVolts, maxDistanceInches));
+
+        // copy the 4 characterization csv files off the robot and run FeedforwardFitter (./gradlew fitFeedforward) on them
+        System.out.println("Drive characterization done.  Run FeedforwardFitter on the characterization csv files");
+    }
+}
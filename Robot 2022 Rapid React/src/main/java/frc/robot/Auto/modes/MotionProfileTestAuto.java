@@ -0,0 +1,49 @@
+package frc.robot.auto.modes;
+
+import frc.robot.auto.AutoModeEndedException;
+import frc.robot.auto.actions.MotionProfileAction;
+import frc.robot.auto.actions.PathFollowerAction;
+import frc.robot.auto.actions.WaitAction;
+import frc.robot.lib.util.Path;
+import frc.robot.lib.util.Path.Waypoint;
+import frc.robot.lib.util.PathSegment.Options;
+import frc.robot.lib.util.Vector2d;
+
+// drives the same out-and-back path with the PathFollower and with a streamed motion profile
+// compare the tracking stats printed at the end of each action
+public class MotionProfileTestAuto extends AutoMode{
+    public MotionProfileTestAuto(){}
+
+    private Path getOutPath(Options driveOptions)
+    {
+        Path path = new Path();
+        path.add(new Waypoint(new Vector2d(0,0), driveOptions));
+        path.add(new Waypoint(new Vector2d(60,0), driveOptions));
+        path.add(new Waypoint(new Vector2d(96,36), driveOptions));
+        return path;
+    }
+
+    private Path getBackPath(Options driveOptions)
+    {
+        Path path = new Path();
+        path.add(new Waypoint(new Vector2d(96,36), driveOptions));
+        path.add(new Waypoint(new Vector2d(60,0), driveOptions));
+        path.add(new Waypoint(new Vector2d(0,0), driveOptions));
+        path.setReverseDirection();
+        return path;
+    }
+
+    @Override
+    protected void routine() throws AutoModeEndedException {
+        Options driveOptions = new Options(48,72,24,false);
+
+        runAction(new PathFollowerAction(getOutPath(driveOptions)));
+        runAction(new WaitAction(0.5));
+        runAction(new PathFollowerAction(getBackPath(driveOptions)));
+        runAction(new WaitAction(0.5));
+
+        runAction(new MotionProfileAction(getOutPath(driveOptions)));
+        runAction(new WaitAction(0.5));
+        runAction(new MotionProfileAction(getBackPath(driveOptions)));
+    }
+}
@@ -8,6 +8,7 @@ import frc.robot.Constants;
 import frc.robot.auto.AutoManager;
 import frc.robot.auto.AutoModeEndedException;
 import frc.robot.auto.actions.ParallelAction;
+import frc.robot.auto.actions.PathChainAction;
 import frc.robot.auto.actions.PathFollowerAction;
 import frc.robot.auto.actions.SetIntakeAction;
 import frc.robot.auto.actions.TurnToAngleAction;
@@ -32,6 +33,9 @@ public class ThreeBallAuto extends AutoMode{
         double lookaheadDist = 24;
         boolean visionEnabled = false;
         Options driveOptions = new Options(maxSpeed, accel, lookaheadDist, visionEnabled);
+        Options deployIntakeOptions = new Options(maxSpeed, accel, lookaheadDist, visionEnabled, "deployIntake");
+        Options stowIntakeOptions = new Options(maxSpeed, accel, lookaheadDist, visionEnabled, "stowIntake");
+        double intakeDeployLeadDist = 24;   // lower intake this far before reaching the ball
 
         double shotTime = 0.3;
 
@@ -45,19 +49,20 @@ public class ThreeBallAuto extends AutoMode{
         // path2: drive to ball 1
         double ball2of3ApproachHeadingRad = FieldDimensions.ball2of3[DriverStation.getAlliance().ordinal()].sub(FieldDimensions.fenderBackupPos).angle();
         Vector2d ourBall2of3IntakePos = FieldDimensions.ball2of3[DriverStation.getAlliance().ordinal()].sub(Vector2d.magnitudeAngle(Constants.kCenterToFrontBumper+6, ball2of3ApproachHeadingRad)); 
+        Vector2d ourBall2of3DeployPos = ourBall2of3IntakePos.sub(Vector2d.magnitudeAngle(intakeDeployLeadDist, ball2of3ApproachHeadingRad));
         Path path2 = new Path();
-        path2.add(new Waypoint(FieldDimensions.fenderBackupPos, driveOptions));
+        path2.add(new Waypoint(FieldDimensions.fenderBackupPos, deployIntakeOptions));
+        path2.add(new Waypoint(ourBall2of3DeployPos, driveOptions));
         path2.add(new Waypoint(ourBall2of3IntakePos, driveOptions));
 
         // path3: drive to ball 2
         double ball3of3ApproachHeadingRad = FieldDimensions.ball3of3[DriverStation.getAlliance().ordinal()].sub(ourBall2of3IntakePos).angle();                   //chocolate fudge
         Vector2d ourBall3of3IntakePos = FieldDimensions.ball3of3[DriverStation.getAlliance().ordinal()].sub(Vector2d.magnitudeAngle(Constants.kCenterToFrontBumper - 12, ball3of3ApproachHeadingRad)); 
         Path path3 = new Path();
-        path3.add(new Waypoint(ourBall2of3IntakePos, driveOptions));
+        path3.add(new Waypoint(ourBall2of3IntakePos, stowIntakeOptions));   // raise intake after reaching ball 3
         path3.add(new Waypoint(ourBall3of3IntakePos, driveOptions));
 
         // path4: go back to the fender and shoot
-        double returnAngleRad = FieldDimensions.fenderApproachPos.sub(ourBall3of3IntakePos).angle();
         Path path4 = new Path();
         path4.add(new Waypoint(ourBall3of3IntakePos, driveOptions));
         path4.add(new Waypoint(FieldDimensions.fenderApproachPos, driveOptions));
@@ -95,15 +100,11 @@ public class ThreeBallAuto extends AutoMode{
         // backup and intake ball 2 of 3
         runAction(new ParallelAction(Arrays.asList(new SetIntakeAction(IntakeState.DEFENSE), new PathFollowerAction(path1))));
         runAction(new TurnToAngleAction(Units.radiansToDegrees(ball2of3ApproachHeadingRad)));
-        runAction(new ParallelAction(Arrays.asList(new SetIntakeAction(IntakeState.INTAKE), new PathFollowerAction(path2))));
-        
-        // turn and intake OurBall2
-        runAction(new TurnToAngleAction(Units.radiansToDegrees(ball3of3ApproachHeadingRad)));
-        runAction(new PathFollowerAction(path3));
-        
-        // return to fender and shoot
-        runAction(new ParallelAction(Arrays.asList(new SetIntakeAction(IntakeState.DEFENSE), new TurnToAngleAction(Units.radiansToDegrees(returnAngleRad)))));
-        runAction(new PathFollowerAction(path4));
+        // intake OurBall2 without stopping at ball 2 of 3, then return to fender and shoot
+        // (PathChain only stops where it has to turn around)
+        runAction(new PathChainAction(Arrays.asList(path2, path3, path4))
+                    .addMarkerAction("deployIntake", new SetIntakeAction(IntakeState.INTAKE))
+                    .addMarkerAction("stowIntake", new SetIntakeAction(IntakeState.DEFENSE)));
         runAction(new SetIntakeAction(IntakeState.OUTTAKE));
         runAction(new WaitAction(shotTime));
         
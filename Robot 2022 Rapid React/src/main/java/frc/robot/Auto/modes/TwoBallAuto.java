@@ -34,6 +34,8 @@ public class TwoBallAuto extends AutoMode{
         double lookaheadDist = 24;
         boolean visionEnabled = false;
         Options driveOptions = new Options(maxSpeed, accel, lookaheadDist, visionEnabled);
+        Options deployIntakeOptions = new Options(maxSpeed, accel, lookaheadDist, visionEnabled, "deployIntake");
+        double intakeDeployLeadDist = 24;   // lower intake this far before reaching the ball
 
         double shotTime = 0.5;
 
@@ -62,8 +64,11 @@ public class TwoBallAuto extends AutoMode{
         // path4: after backing up and turning towards theirBall, intake theirBall, and shoot it into the hangar
         double theirBallHeadingRad = FieldDimensions.theirBall[DriverStation.getAlliance().ordinal()].sub(FieldDimensions.fenderBackupPos).angle();
         Vector2d theirBallIntakePos = FieldDimensions.theirBall[DriverStation.getAlliance().ordinal()].sub(Vector2d.magnitudeAngle(Constants.kCenterToFrontBumper, theirBallHeadingRad));
+        // lower the intake on the way, when the "deployIntake" segment is complete
+        Vector2d theirBallDeployPos = theirBallIntakePos.sub(Vector2d.magnitudeAngle(intakeDeployLeadDist, theirBallHeadingRad));
         Path path4 = new Path();
-        path4.add(new Waypoint(FieldDimensions.fenderBackupPos, driveOptions));
+        path4.add(new Waypoint(FieldDimensions.fenderBackupPos, deployIntakeOptions));
+        path4.add(new Waypoint(theirBallDeployPos, driveOptions));
         path4.add(new Waypoint(theirBallIntakePos, driveOptions));
         
         double hangarShotAngleDeg = Units.radiansToDegrees(FieldDimensions.hangarShotPos.sub(theirBallIntakePos).angle());
@@ -93,7 +98,7 @@ public class TwoBallAuto extends AutoMode{
         // turn and drive  to theirBall, intake
         double theirBallHeadingDeg = Units.radiansToDegrees(FieldDimensions.theirBall[DriverStation.getAlliance().ordinal()].sub(FieldDimensions.fenderBackupPos).angle());
         runAction(new TurnToAngleAction(theirBallHeadingDeg));
-        runAction(new ParallelAction(Arrays.asList(new SetIntakeAction(IntakeState.INTAKE), new PathFollowerAction(path4))));
+        runAction(new PathFollowerAction(path4).addMarkerAction("deployIntake", new SetIntakeAction(IntakeState.INTAKE)));
 
         // turn towards hangar and shoot their ball into it
         runAction(new TurnToAngleAction(hangarShotAngleDeg));
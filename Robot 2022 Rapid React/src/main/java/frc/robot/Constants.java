@@ -30,5 +30,21 @@ public class Constants {
     public static double kCenterToSideBumper = 15.0;
     public static double kCenterToFrontBumper = 19.5;
     public static double kCenterToIntake = 32.0;
+
+    // Vision
+    // Limelight pose relative to the center of the wheelbase (inches, radians; x forward, y left, yaw left positive)
+    public static double kCameraPoseX =         0.0;    // TODO: measure on robot
+    public static double kCameraPoseY =         0.0;
+    public static double kCameraPoseZ =        36.0;    // height of lens above the floor
+    public static double kCameraPoseThetaRad =  0.0;    // camera yaw
+    public static double kCameraPitchRad =     30.0 * Math.PI / 180.0;  // camera tilt, up positive
+    // Upper hub
+    public static double kHubTargetHeightInches = 103.0;    // center of vision tape (8'7" to 8'9")
+    public static double kHubRadiusInches = 26.69;          // vision tape is on the rim, 4'5.38" diameter
+    public static double kAutoAimPredictionTime = 0.1;      // bearing to goal is found from robot pose this far in the future (sec)
+    // Vision-enabled path segments
+    public static double kVisionLookaheadDist = 24.0;
+    public static double kVisionStopDistanceInches = 60.0;  // stop this far from the center of the goal
+    public static double kVisionCompletionTolerance = 1.0;
 }
 
@@ -1,30 +1,110 @@
 package frc.robot.controls;
 
+import java.io.File;
+import java.io.IOException;
+
+import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.Joystick;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.drive.Vector2d;
 import frc.robot.Constants;
 import frc.robot.command_status.DriveCommand;
+import frc.robot.lib.util.DataLogController;
 
 public class Controls {
     private static Controls instance;
     public static Controls getInstance() {if(instance == null){instance = new Controls();}return instance;}
 
+    // record driver input every teleop period (see DriverInputRecorder)
+    public static boolean kRecordDriverInput = true;
+    // in simulation, play back the recording named by this environment variable instead of reading the joysticks
+    public static final String kPlaybackEnv = "DRIVER_INPUT_PLAYBACK";
+
     Joystick thrustmaster, buttonboard;
+    GenericHID[] joysticks;
+
+    // all reads come from this cycle's frame, sampled in update()
+    DriverInputFrame frame;
+    DriverInputRecorder recorder;
+    DriverInputPlayer player;
 
     public Controls()
     {
         thrustmaster =  new Joystick(Constants.kThrustmasterPort);
         buttonboard =   new Joystick(Constants.kButtonboardPort);
+        joysticks = new GenericHID[] {thrustmaster, buttonboard};   // in JoystickEnum order
+        frame = new DriverInputFrame(joysticks.length);
     }
 
     public enum JoystickEnum {THRUSTMASTER, BUTTONBOARD}
-    
+
+    // sample the joysticks (or the next played back frame) once per cycle, before any reads
+    public void update()
+    {
+        if (player != null)
+        {
+            if (!player.next(frame))
+            {
+                System.out.println("Controls: playback of " + player.getFile().getName() + " finished after " + player.getFramesPlayed() + " frames");
+                player = null;
+                frame.clear();
+            }
+        }
+        else
+        {
+            frame.read(joysticks, Timer.getFPGATimestamp());
+        }
+
+        if (recorder != null)
+            recorder.record(frame);
+    }
+
+    // time the current inputs were sampled (relative to start of recording when playing back)
+    public double getInputTimestamp() { return frame.timestamp; }
+
+    public void startRecording()
+    {
+        File directory = DataLogController.getDirectory();
+        if (directory == null)
+            return;
+        startRecording(new File(directory, DataLogController.getTimestampString() + "_driver" + DriverInputRecorder.kExtension));
+    }
+
+    public void startRecording(File _file)
+    {
+        stopRecording();
+        recorder = new DriverInputRecorder(_file, joysticks.length);
+    }
+
+    public void stopRecording()
+    {
+        if (recorder != null)
+            recorder.close();
+        recorder = null;
+    }
+
+    public void startPlayback(File _file) throws IOException
+    {
+        DriverInputPlayer newPlayer = new DriverInputPlayer(_file);
+        if (newPlayer.getNumJoysticks() != joysticks.length)
+            throw new IOException("Controls: " + _file.getName() + " has " + newPlayer.getNumJoysticks() + " joysticks, expected " + joysticks.length);
+        frame.clear();
+        player = newPlayer;
+    }
+
+    public void stopPlayback()
+    {
+        player = null;
+    }
+
+    public boolean isPlayingBack() { return player != null; }
+
     public Vector2d getAxis(JoystickEnum joystick)
     {
         switch(joystick)
         {
-            case THRUSTMASTER:  default:    return new Vector2d(-thrustmaster.getRawAxis(0),    -thrustmaster.getRawAxis(1));
-            case BUTTONBOARD:               return new Vector2d(buttonboard.getRawAxis(0),      buttonboard.getRawAxis(1));
+            case THRUSTMASTER:  default:    return new Vector2d(-frame.getRawAxis(0, 0),    -frame.getRawAxis(0, 1));
+            case BUTTONBOARD:               return new Vector2d(frame.getRawAxis(1, 0),     frame.getRawAxis(1, 1));
         }
     }
 
@@ -32,8 +112,8 @@ public class Controls {
     {
         switch(joystick)
         {
-            case THRUSTMASTER:  default:    return thrustmaster.getPOV();
-            case BUTTONBOARD:               return buttonboard.getPOV();
+            case THRUSTMASTER:  default:    return frame.getPOV(0);
+            case BUTTONBOARD:               return frame.getPOV(1);
         }
     }
 
@@ -44,16 +124,18 @@ public class Controls {
         CLIMBER_PREV_STATE,
         CLIMBER_RESET_STATE
     }
-    
+
+    private boolean getThrustmasterButton(int button) { return frame.getRawButton(0, button); }
+
     public boolean getButton(ButtonControlEnum button)
     {
         switch(button)
         {
-            case INTAKE:                    return thrustmaster.getRawButton(Thrustmaster.kTriggerButton);
-            case OUTTAKE:                   return thrustmaster.getRawButton(Thrustmaster.kBottomThumbButton);
-            case CLIMBER_NEXT_STATE:          return thrustmaster.getRawButton(Thrustmaster.kTopButton3);
-            case CLIMBER_PREV_STATE:          return thrustmaster.getRawButton(Thrustmaster.kTopButton2);
-            case CLIMBER_RESET_STATE:         return thrustmaster.getRawButton(Thrustmaster.kBottomButton1) && thrustmaster.getRawButton(Thrustmaster.kBottomButton2) && thrustmaster.getRawButton(Thrustmaster.kBottomButton3);
+            case INTAKE:                    return getThrustmasterButton(Thrustmaster.kTriggerButton);
+            case OUTTAKE:                   return getThrustmasterButton(Thrustmaster.kBottomThumbButton);
+            case CLIMBER_NEXT_STATE:          return getThrustmasterButton(Thrustmaster.kTopButton3);
+            case CLIMBER_PREV_STATE:          return getThrustmasterButton(Thrustmaster.kTopButton2);
+            case CLIMBER_RESET_STATE:         return getThrustmasterButton(Thrustmaster.kBottomButton1) && getThrustmasterButton(Thrustmaster.kBottomButton2) && getThrustmasterButton(Thrustmaster.kBottomButton3);
             default:                        return false;
         }
     }
@@ -0,0 +1,138 @@
+package frc.robot.controls;
+
+import java.nio.ByteBuffer;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.GenericHID;
+
+/**
+ * Axes, buttons and POV of every joystick, sampled once per teleop cycle.
+ * Controls answers all of a cycle's queries from the same frame, and the frames
+ * are what DriverInputRecorder records and DriverInputPlayer plays back.
+ */
+public class DriverInputFrame
+{
+    public static final int kMaxAxes = 12;     // DriverStation.kMaxJoystickAxes
+
+    public double timestamp;                   // seconds, when the frame was sampled
+    private final int[] axisCount;
+    private final float[][] axes;              // DriverStation reports axes as floats, so this is lossless
+    private final int[] buttons;               // bit (n-1) is button n
+    private final int[] pov;
+
+    public DriverInputFrame(int _numJoysticks)
+    {
+        axisCount = new int[_numJoysticks];
+        axes = new float[_numJoysticks][kMaxAxes];
+        buttons = new int[_numJoysticks];
+        pov = new int[_numJoysticks];
+        clear();
+    }
+
+    public int getNumJoysticks() { return axisCount.length; }
+
+    public double getRawAxis(int _joystick, int _axis) { return (_axis < axisCount[_joystick] ? axes[_joystick][_axis] : 0); }
+    public boolean getRawButton(int _joystick, int _button) { return ((buttons[_joystick] >> (_button-1)) & 1) != 0; }
+    public int getPOV(int _joystick) { return pov[_joystick]; }
+
+    // neutral inputs: no axes, no buttons, POV released
+    public void clear()
+    {
+        for (int j = 0; j < axisCount.length; j++)
+        {
+            axisCount[j] = 0;
+            buttons[j] = 0;
+            pov[j] = -1;
+        }
+    }
+
+    public void read(GenericHID[] _joysticks, double _timestamp)
+    {
+        timestamp = _timestamp;
+        for (int j = 0; j < _joysticks.length; j++)
+        {
+            GenericHID joystick = _joysticks[j];
+            axisCount[j] = Math.min(joystick.getAxisCount(), kMaxAxes);
+            for (int k = 0; k < axisCount[j]; k++)
+                axes[j][k] = (float) joystick.getRawAxis(k);
+            buttons[j] = DriverStation.getStickButtons(joystick.getPort());     // all buttons in one call
+            pov[j] = joystick.getPOV();
+        }
+    }
+
+    public void copyFrom(DriverInputFrame _frame)
+    {
+        timestamp = _frame.timestamp;
+        for (int j = 0; j < axisCount.length; j++)
+            copyJoystick(_frame, j);
+    }
+
+    private void copyJoystick(DriverInputFrame _frame, int _joystick)
+    {
+        axisCount[_joystick] = _frame.axisCount[_joystick];
+        System.arraycopy(_frame.axes[_joystick], 0, axes[_joystick], 0, axisCount[_joystick]);
+        buttons[_joystick] = _frame.buttons[_joystick];
+        pov[_joystick] = _frame.pov[_joystick];
+    }
+
+    private boolean joystickEquals(DriverInputFrame _frame, int _joystick)
+    {
+        if (axisCount[_joystick] != _frame.axisCount[_joystick] || buttons[_joystick] != _frame.buttons[_joystick] || pov[_joystick] != _frame.pov[_joystick])
+            return false;
+        for (int k = 0; k < axisCount[_joystick]; k++)
+            if (Float.floatToIntBits(axes[_joystick][k]) != Float.floatToIntBits(_frame.axes[_joystick][k]))
+                return false;
+        return true;
+    }
+
+
+
+    /*
+     * Encoding: only the joysticks that changed since the previous frame are written, so a
+     * frame of a driver holding the sticks still is 5 bytes.
+     *     int      time since start of recording (microseconds)
+     *     byte     bit j set if joystick j follows
+     *     per changed joystick:  byte axis count, float axes, int buttons, short POV
+     */
+
+    public static final int kMaxEncodedBytes = 4 + 1 + 8 * (1 + 4*kMaxAxes + 4 + 2);
+
+    // _prev: previous frame encoded, or null to write every joystick
+    public void encode(ByteBuffer _buffer, DriverInputFrame _prev, double _startTime)
+    {
+        _buffer.putInt((int) Math.round((timestamp - _startTime) * 1e6));
+        int mask = 0;
+        for (int j = 0; j < axisCount.length; j++)
+            if (_prev == null || !joystickEquals(_prev, j))
+                mask |= (1 << j);
+        _buffer.put((byte) mask);
+
+        for (int j = 0; j < axisCount.length; j++)
+        {
+            if ((mask & (1 << j)) == 0)
+                continue;
+            _buffer.put((byte) axisCount[j]);
+            for (int k = 0; k < axisCount[j]; k++)
+                _buffer.putFloat(axes[j][k]);
+            _buffer.putInt(buttons[j]);
+            _buffer.putShort((short) pov[j]);
+        }
+    }
+
+    // apply an encoded frame on top of the previous one
+    public void decode(ByteBuffer _buffer)
+    {
+        timestamp = _buffer.getInt() / 1e6;
+        int mask = _buffer.get() & 0xFF;
+        for (int j = 0; j < axisCount.length; j++)
+        {
+            if ((mask & (1 << j)) == 0)
+                continue;
+            axisCount[j] = _buffer.get();
+            for (int k = 0; k < axisCount[j]; k++)
+                axes[j][k] = _buffer.getFloat();
+            buttons[j] = _buffer.getInt();
+            pov[j] = _buffer.getShort();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package frc.robot.controls;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import frc.robot.lib.util.LogArchiver;
+
+/**
+ * Plays back a file written by DriverInputRecorder, one frame per call to next(), so a
+ * recorded driver session drives DriverInteraction exactly as it did on the robot,
+ * independent of how fast the simulation runs.  Recordings are small (a match is well
+ * under a megabyte), so the whole file is read up front.  Reads recordings compressed by
+ * LogArchiver as well.
+ */
+public class DriverInputPlayer
+{
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int numJoysticks;
+    private long framesPlayed = 0;
+
+    public DriverInputPlayer(File _file) throws IOException
+    {
+        file = _file;
+        if (_file.getName().endsWith(LogArchiver.kCompressedExtension))
+        {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(_file)))
+            {
+                buffer = ByteBuffer.wrap(in.readAllBytes());
+            }
+        }
+        else
+        {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(_file.toPath()));
+        }
+
+        byte[] magic = new byte[DriverInputRecorder.kMagic.length];
+        if (buffer.remaining() < magic.length + 2)
+            throw new IOException("DriverInputPlayer: " + _file.getName() + " is too short");
+        buffer.get(magic);
+        if (!Arrays.equals(magic, DriverInputRecorder.kMagic))
+            throw new IOException("DriverInputPlayer: " + _file.getName() + " is not a driver input recording");
+        int version = buffer.get();
+        if (version != DriverInputRecorder.kVersion)
+            throw new IOException("DriverInputPlayer: " + _file.getName() + " has unknown version " + version);
+        numJoysticks = buffer.get();
+    }
+
+    public File getFile() { return file; }
+    public int getNumJoysticks() { return numJoysticks; }
+    public long getFramesPlayed() { return framesPlayed; }
+    public boolean isFinished() { return !buffer.hasRemaining(); }
+
+    // apply the next recorded frame to _frame (which must hold the previous frame played).
+    // Returns false at the end of the recording, or at a partly written last frame
+    public boolean next(DriverInputFrame _frame)
+    {
+        if (!buffer.hasRemaining())
+            return false;
+        try
+        {
+            _frame.decode(buffer);
+        }
+        catch (RuntimeException e)     // BufferUnderflowException: recording was cut off
+        {
+            buffer.position(buffer.limit());
+            return false;
+        }
+        framesPlayed++;
+        return true;
+    }
+}
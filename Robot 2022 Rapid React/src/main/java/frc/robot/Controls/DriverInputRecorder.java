@@ -0,0 +1,134 @@
+package frc.robot.controls;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import frc.robot.lib.util.LogArchiver;
+import frc.robot.lib.util.LogRingBuffer;
+
+/**
+ * Records the DriverInputFrame of every teleop cycle to a file, for playback with
+ * DriverInputPlayer.  Like AsyncLogWriter, the robot loop only copies the encoded frame
+ * into a LogRingBuffer, and a low priority thread does the file writes.
+ *
+ * File: "686DRV", version byte, joystick count byte, then encoded frames back to back
+ * (see DriverInputFrame.encode()).
+ */
+public class DriverInputRecorder implements Runnable
+{
+    public static final byte[] kMagic = {'6', '8', '6', 'D', 'R', 'V'};
+    public static final int kVersion = 1;
+    public static final String kExtension = ".drv";
+
+    private static final int kRingSize = 512;              // 10 seconds at 50 Hz
+    private static final long kIdleSleepMs = 20;
+    private static final long kFlushIntervalMs = 1000;
+
+    private final File file;
+    private final int numJoysticks;
+    private final LogRingBuffer ring = new LogRingBuffer(kRingSize, DriverInputFrame.kMaxEncodedBytes);
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile long framesWritten = 0;
+
+    // producer state
+    private final DriverInputFrame prev;
+    private boolean started = false;
+    private boolean fullFrame = true;          // next frame can't be a delta (first frame, or after a drop)
+    private double startTime;
+
+    public DriverInputRecorder(File _file, int _numJoysticks)
+    {
+        file = _file;
+        numJoysticks = _numJoysticks;
+        prev = new DriverInputFrame(_numJoysticks);
+        thread = new Thread(this, "DriverInputRecorder " + _file.getName());
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public File getFile() { return file; }
+    public long getFramesWritten() { return framesWritten; }
+    public long getDroppedFrames() { return ring.getDropped(); }
+
+    // called from the robot loop.  A dropped frame is re-sent in full, so playback stays correct
+    public void record(DriverInputFrame _frame)
+    {
+        if (!started)
+        {
+            startTime = _frame.timestamp;
+            started = true;
+        }
+
+        ByteBuffer buffer = ring.claim();
+        if (buffer == null)
+        {
+            fullFrame = true;
+            return;
+        }
+        _frame.encode(buffer, (fullFrame ? null : prev), startTime);
+        ring.publish();
+        prev.copyFrom(_frame);
+        fullFrame = false;
+    }
+
+    public void close()
+    {
+        running = false;
+        try
+        {
+            thread.join(1000);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        LogArchiver.getInstance().open(file);
+        try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 16*1024)))
+        {
+            dos.write(kMagic);
+            dos.writeByte(kVersion);
+            dos.writeByte(numJoysticks);
+
+            long lastFlushTime = System.currentTimeMillis();
+            while (running || ring.size() > 0)
+            {
+                ByteBuffer buffer;
+                while ((buffer = ring.peek()) != null)
+                {
+                    dos.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+                    ring.release();
+                    framesWritten++;
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastFlushTime >= kFlushIntervalMs)
+                {
+                    dos.flush();
+                    lastFlushTime = now;
+                }
+                Thread.sleep(kIdleSleepMs);
+            }
+        }
+        catch (IOException e)
+        {
+            System.out.println("DriverInputRecorder: " + file.getName() + ": " + e);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        LogArchiver.getInstance().close(file);
+        System.out.println("DriverInputRecorder: " + file.getName() + ": " + framesWritten + " frames, " + getDroppedFrames() + " dropped");
+    }
+}
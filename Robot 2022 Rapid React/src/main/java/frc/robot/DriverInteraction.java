@@ -2,13 +2,13 @@ package frc.robot;
  
 import com.ctre.phoenix.motorcontrol.NeutralMode;
 
-import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import frc.robot.command_status.DriveCommand;
 import frc.robot.command_status.DriveCommand.DriveControlMode;
 import frc.robot.controls.Controls;
 import frc.robot.controls.Controls.ButtonControlEnum;
 import frc.robot.controls.Controls.JoystickEnum;
 import frc.robot.lib.util.RisingEdgeDetector;
+import frc.robot.lib.util.TelemetryPublisher;
 import frc.robot.subsystems.Climber;
 import frc.robot.subsystems.Drive;
 import frc.robot.subsystems.Intake;
@@ -25,6 +25,7 @@ public class DriverInteraction {
     Controls controls; 
     Climber climber; 
     Intake intake; 
+    TelemetryPublisher telemetry; 
  
     private DriverInteraction() 
     { 
@@ -32,6 +33,7 @@ public class DriverInteraction {
         drive = Drive.getInstance(); 
         intake = Intake.getInstance(); 
         climber = Climber.getInstance(); 
+        telemetry = TelemetryPublisher.getInstance(); 
         /*for (Subsystem s : SubsystemManager.getInstance().subsystems) 
         { 
             if (s instanceof Drive)         {drive =        (Drive)s;} 
@@ -49,6 +51,7 @@ public class DriverInteraction {
  
     public void run() 
     { 
+        controls.update();      // sample driver input once for this cycle (or play back a recording)
         climberNextEdgeDetector.update(controls.getButton(ButtonControlEnum.CLIMBER_NEXT_STATE)); 
         climberPrevEdgeDetector.update(controls.getButton(ButtonControlEnum.CLIMBER_PREV_STATE)); 
         if(climberNextEdgeDetector.get())
@@ -67,7 +70,7 @@ public class DriverInteraction {
         {
             case DEFENSE:
             case CALIBRATING:
-                Shuffleboard.selectTab("Intake");
+                telemetry.selectTab("Intake");
                 if (controls.getButton(ButtonControlEnum.INTAKE) && controls.getButton(ButtonControlEnum.OUTTAKE)) 
                 { 
                     intake.setState(IntakeState.OUTTAKE_GROUND); 
@@ -88,16 +91,16 @@ public class DriverInteraction {
             break;
             case LOW_BAR:
                 drive.setOpenLoop(controls.getDriveCommand());
-                Shuffleboard.selectTab("Climber");
+                telemetry.selectTab("Climber");
             break;
             case SLOW_DRIVE:
                 drive.setOpenLoop(new DriveCommand(DriveControlMode.OPEN_LOOP, controls.getDriveCommand().getLeftMotor()*kClimbingDriveSlowdown, controls.getDriveCommand().getRightMotor()*kClimbingDriveSlowdown, NeutralMode.Coast));
-                Shuffleboard.selectTab("Climber");
+                telemetry.selectTab("Climber");
             break;
             case RETRACT_EXTEND:
                 drive.setOpenLoop(new DriveCommand(DriveControlMode.OPEN_LOOP, -0.1,-0.1, NeutralMode.Coast));
             default:
-                Shuffleboard.selectTab("Climber");
+                telemetry.selectTab("Climber");
                 climber.setTargetPos(controls.getAxis(JoystickEnum.THRUSTMASTER).y*kClimberMaxPercent);
             break;
         }
@@ -4,14 +4,26 @@
 
 package frc.robot;
 
-import edu.wpi.first.networktables.NetworkTableEntry;
+import java.io.File;
+import java.io.IOException;
+
 import edu.wpi.first.wpilibj.DataLogManager;
+import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import frc.robot.auto.AutoManager;
 import frc.robot.command_status.DriveState;
+import frc.robot.command_status.GoalStates;
 import frc.robot.command_status.RobotState;
+import frc.robot.controls.Controls;
+import frc.robot.lib.util.DataLogController;
+import frc.robot.lib.util.PeriodicTimer;
+import frc.robot.lib.util.Pose;
+import frc.robot.lib.util.TelemetryPublisher;
+import frc.robot.loops.CharacterizationLoop;
+import frc.robot.loops.DataLogLoop;
 import frc.robot.loops.DriveLoop;
+import frc.robot.loops.GoalStateLoop;
 import frc.robot.loops.LoopController;
 import frc.robot.loops.RobotStateLoop;
 import frc.robot.subsystems.Drive;
@@ -24,11 +36,19 @@ public class Robot extends TimedRobot {
   AutoManager autoManager = AutoManager.getInstance();
   DriverInteraction driverInteraction = DriverInteraction.getInstance();
 
-  private NetworkTableEntry headingEntry = Shuffleboard.getTab("Robot Status").add("Heading Degrees", -999999).getEntry();
-  private NetworkTableEntry averageDistanceEntry = Shuffleboard.getTab("Robot Status").add("Average Distance", -999999).getEntry();
-  private NetworkTableEntry leftDistanceEntry = Shuffleboard.getTab("Robot Status").add("Left Distance", -999999).getEntry();
-  private NetworkTableEntry rightDistanceEntry = Shuffleboard.getTab("Robot Status").add("Right Distance", -999999).getEntry();
-  private NetworkTableEntry poseEntry = Shuffleboard.getTab("Robot Status").add("Pose", "not updating").getEntry();
+  private TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+  private TelemetryPublisher.DoubleEntry headingEntry = telemetry.addDouble(Shuffleboard.getTab("Robot Status").add("Heading Degrees", -999999).getEntry());
+  private TelemetryPublisher.DoubleEntry averageDistanceEntry = telemetry.addDouble(Shuffleboard.getTab("Robot Status").add("Average Distance", -999999).getEntry());
+  private TelemetryPublisher.DoubleEntry leftDistanceEntry = telemetry.addDouble(Shuffleboard.getTab("Robot Status").add("Left Distance", -999999).getEntry());
+  private TelemetryPublisher.DoubleEntry rightDistanceEntry = telemetry.addDouble(Shuffleboard.getTab("Robot Status").add("Right Distance", -999999).getEntry());
+  private TelemetryPublisher.DoubleArrayEntry poseEntry = telemetry.addDoubleArray(Shuffleboard.getTab("Robot Status").add("Pose", new double[] {0, 0, 0}).getEntry());   // x, y, heading (deg)
+  private TelemetryPublisher.DoubleEntry telemetrySavedEntry = telemetry.addDouble(Shuffleboard.getTab("Robot Status").add("NT Updates Saved/sec", 0).getEntry(), 1);
+  private double[] pose = new double[3];
+
+  // duration of each TimedRobot period: mode periodic through robotPeriodic
+  private PeriodicTimer periodicTimer = new PeriodicTimer(50);
+  private TelemetryPublisher.DoubleEntry periodicAvgEntry = telemetry.addDouble(Shuffleboard.getTab("Robot Status").add("Periodic ms (avg)", 0).getEntry(), 1);
+  private TelemetryPublisher.DoubleEntry periodicMaxEntry = telemetry.addDouble(Shuffleboard.getTab("Robot Status").add("Periodic ms (max)", 0).getEntry(), 1);
   private double startingDistance;
   private double startingLeftDistance;
   private double startingRightDistance;
@@ -48,16 +68,38 @@ public class Robot extends TimedRobot {
     autoManager.InitChoices();
     LoopController.getInstance().register(Drive.getInstance().getVelocityPIDLoop());
     LoopController.getInstance().register(DriveLoop.getInstance());
+    LoopController.getInstance().register(CharacterizationLoop.getInstance());
     LoopController.getInstance().register(RobotStateLoop.getInstance());
+    LoopController.getInstance().register(GoalStateLoop.getInstance());
+
+    // log odometry inputs and outputs every loop cycle
+    DataLogController robotLogController = DataLogController.getRobotLogController();
+    robotLogController.register(DriveState.getInstance().getLogger());
+    robotLogController.register(Drive.getInstance().getLogger());
+    robotLogController.register(RobotState.getInstance().getLogger());
+    robotLogController.register(GoalStateLoop.getInstance().getLogger());
+    robotLogController.register(GoalStates.getInstance().getLogger());
+    robotLogController.register(Vision.getInstance().getCargoDetector().getLogger());
+    robotLogController.setOutputMode(true, false);
+    LoopController.getInstance().register(DataLogLoop.getInstance());
   }
 
   @Override
   public void robotPeriodic() {subsystemManager.updateShuffleboard(); LoopController.getInstance().run();
-    averageDistanceEntry.setDouble(getDistance() - startingDistance);
-    leftDistanceEntry.setDouble(DriveState.getInstance().getLeftDistanceInches() - startingLeftDistance);
-    rightDistanceEntry.setDouble(DriveState.getInstance().getRightDistanceInches() - startingRightDistance);
-    headingEntry.setDouble(RobotState.getInstance().getLatestFieldToVehicle().getHeadingDeg());
-    poseEntry.setString(RobotState.getInstance().getLatestFieldToVehicle().toString());
+    averageDistanceEntry.set(getDistance() - startingDistance);
+    leftDistanceEntry.set(DriveState.getInstance().getLeftDistanceInches() - startingLeftDistance);
+    rightDistanceEntry.set(DriveState.getInstance().getRightDistanceInches() - startingRightDistance);
+    Pose fieldToVehicle = RobotState.getInstance().getLatestFieldToVehicle();
+    headingEntry.set(fieldToVehicle.getHeadingDeg());
+    pose[0] = fieldToVehicle.getX();
+    pose[1] = fieldToVehicle.getY();
+    pose[2] = fieldToVehicle.getHeadingDeg();
+    poseEntry.set(pose);
+    telemetrySavedEntry.set(Math.round(telemetry.getUpdatesSavedPerSec()));
+    periodicAvgEntry.set(periodicTimer.getAvgMs());
+    periodicMaxEntry.set(periodicTimer.getMaxMs());
+    telemetry.publish();
+    periodicTimer.stop();
   }
 
   @Override
@@ -70,6 +112,7 @@ public class Robot extends TimedRobot {
 
   @Override
   public void autonomousPeriodic() {
+    periodicTimer.start();
     subsystemManager.run();
   }
 
@@ -80,19 +123,39 @@ public class Robot extends TimedRobot {
     startingRightDistance = DriveState.getInstance().getRightDistanceInches();
     LoopController.getInstance().start();
     driverInteraction.init();
+
+    // replay a recorded driver session in simulation, otherwise record this one
+    String playbackFile = System.getenv(Controls.kPlaybackEnv);
+    if (RobotBase.isSimulation() && playbackFile != null)
+    {
+      try
+      {
+        Controls.getInstance().startPlayback(new File(playbackFile));
+      }
+      catch (IOException e)
+      {
+        System.out.println("Robot: can't play back driver input: " + e.getMessage());
+      }
+    }
+    else if (Controls.kRecordDriverInput)
+    {
+      Controls.getInstance().startRecording();
+    }
   }
 
   @Override
   public void teleopPeriodic() {
+    periodicTimer.start();
     subsystemManager.run();
     driverInteraction.run();
   }
 
   @Override
-  public void disabledInit() {LoopController.getInstance().start(); autoManager.stop();}
+  public void disabledInit() {LoopController.getInstance().start(); autoManager.stop(); Controls.getInstance().stopRecording();}
 
   @Override
   public void disabledPeriodic() {
+    periodicTimer.start();
     subsystemManager.disable();
   }
 
@@ -101,6 +164,7 @@ public class Robot extends TimedRobot {
 
   @Override
   public void testPeriodic() {
+    periodicTimer.start();
     subsystemManager.run();
   }
 }
@@ -14,6 +14,9 @@ import edu.wpi.first.wpilibj.shuffleboard.BuiltInWidgets;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import frc.robot.Constants;
+import frc.robot.lib.util.MotorTelemetry;
+import frc.robot.lib.util.TelemetryPublisher;
+import frc.robot.lib.util.TelemetrySampler;
 import frc.robot.subsystems.Intake.IntakeState; 
  
 /**<h4>Contains all code for the Climber subsystem</h4>*/ 
@@ -23,6 +26,7 @@ public class Climber extends Subsystem {
  
     private TalonFX LeftMotor; 
     private TalonFX RightMotor;
+    private MotorTelemetry LeftTelemetry;
     private DigitalInput CalibrationHallEffect;
  
     private Intake intake; 
@@ -45,6 +49,7 @@ public class Climber extends Subsystem {
     { 
         LeftMotor = new TalonFX(Constants.kLeftClimberID); 
         RightMotor = new TalonFX(Constants.kRightClimberID);
+        LeftTelemetry = TelemetrySampler.getInstance().addMotor(LeftMotor);
         CalibrationHallEffect = new DigitalInput(Constants.kClimberHallEffectPort);
         
         LeftMotor.configFactoryDefault();
@@ -209,61 +214,70 @@ private double power;
     private static double encoderUnitsToInches(double _encoderUnits) {return (double)(_encoderUnits / kEncoderUnitsPerIn);} 
   
     private ShuffleboardTab tab = Shuffleboard.getTab("Climber");  
-    private NetworkTableEntry statusEntry = tab.add("Status", "not updating").withWidget(BuiltInWidgets.kTextView)              .withPosition(0,0).withSize(2,1).getEntry();  
-    private NetworkTableEntry historyEntry = tab.add("Status History", "not updating").withWidget(BuiltInWidgets.kTextView)     .withPosition(3,1).withSize(4,1).getEntry();  
-    private NetworkTableEntry calibratedEntry = tab.add("Calibrated", false).withWidget(BuiltInWidgets.kBooleanBox)             .withPosition(1,1).getEntry();
-    private NetworkTableEntry pauseEntry = tab.add("Calibration Paused", false).withWidget(BuiltInWidgets.kBooleanBox)          .withPosition(0,1).getEntry();  
+    private TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+    private TelemetryPublisher.StringEntry statusEntry = telemetry.addString(tab.add("Status", "not updating").withWidget(BuiltInWidgets.kTextView)             .withPosition(0,0).withSize(2,1).getEntry());  
+    private TelemetryPublisher.DoubleArrayEntry historyEntry = telemetry.addDoubleArray(tab.add("Status History", new double[0]).withWidget(BuiltInWidgets.kTextView) .withPosition(3,1).withSize(4,1).getEntry());  // ClimberState ordinals
+    private TelemetryPublisher.BooleanEntry calibratedEntry = telemetry.addBoolean(tab.add("Calibrated", false).withWidget(BuiltInWidgets.kBooleanBox)          .withPosition(1,1).getEntry());
+    private TelemetryPublisher.BooleanEntry pauseEntry = telemetry.addBoolean(tab.add("Calibration Paused", false).withWidget(BuiltInWidgets.kBooleanBox)       .withPosition(0,1).getEntry());  
 
     private NetworkTableEntry enableEntry = tab.add("Enable", true).withWidget(BuiltInWidgets.kToggleSwitch)                    .withPosition(0,3).getEntry(); 
     private NetworkTableEntry calibrateButton = tab.add("Calibrate", false).withWidget(BuiltInWidgets.kToggleButton)            .withPosition(1,3).getEntry();
 
-    private NetworkTableEntry climbingPowerInput = tab.add("Power Input", -9999).withWidget(BuiltInWidgets.kTextView)           .withPosition(8,0).getEntry(); 
-    private NetworkTableEntry climberCurrentPosEntry = tab.add("Current Pos", -9999).withWidget(BuiltInWidgets.kTextView)       .withPosition(9,0).getEntry(); 
-    private NetworkTableEntry climberSupplyEntry = tab.add("Supply Current", -9999).withWidget(BuiltInWidgets.kTextView)        .withPosition(8,1).getEntry(); 
-    private NetworkTableEntry climberStatorEntry = tab.add("Stator Current", -9999).withWidget(BuiltInWidgets.kTextView)        .withPosition(9,1).getEntry(); 
-    private NetworkTableEntry climberBusVoltageEntry = tab.add("Bus Voltage", -9999).withWidget(BuiltInWidgets.kTextView)       .withPosition(8,2).getEntry(); 
-    private NetworkTableEntry climberOutputVoltageEntry = tab.add("Output Voltage", -9999).withWidget(BuiltInWidgets.kTextView) .withPosition(9,2).getEntry(); 
+    private static final double kMotorTelemetryRateHz = 10;
+    private TelemetryPublisher.DoubleEntry climbingPowerInput = telemetry.addDouble(tab.add("Power Input", -9999).withWidget(BuiltInWidgets.kTextView)          .withPosition(8,0).getEntry(), kMotorTelemetryRateHz); 
+    private TelemetryPublisher.DoubleEntry climberCurrentPosEntry = telemetry.addDouble(tab.add("Current Pos", -9999).withWidget(BuiltInWidgets.kTextView)      .withPosition(9,0).getEntry(), kMotorTelemetryRateHz); 
+    private TelemetryPublisher.DoubleEntry climberSupplyEntry = telemetry.addDouble(tab.add("Supply Current", -9999).withWidget(BuiltInWidgets.kTextView)       .withPosition(8,1).getEntry(), kMotorTelemetryRateHz); 
+    private TelemetryPublisher.DoubleEntry climberStatorEntry = telemetry.addDouble(tab.add("Stator Current", -9999).withWidget(BuiltInWidgets.kTextView)       .withPosition(9,1).getEntry(), kMotorTelemetryRateHz); 
+    private TelemetryPublisher.DoubleEntry climberBusVoltageEntry = telemetry.addDouble(tab.add("Bus Voltage", -9999).withWidget(BuiltInWidgets.kTextView)      .withPosition(8,2).getEntry(), kMotorTelemetryRateHz); 
+    private TelemetryPublisher.DoubleEntry climberOutputVoltageEntry = telemetry.addDouble(tab.add("Output Voltage", -9999).withWidget(BuiltInWidgets.kTextView).withPosition(9,2).getEntry(), kMotorTelemetryRateHz); 
 
-    private NetworkTableEntry lowbarEntry           = tab.add("Low Bar", false)         .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(3,2).getEntry();
-    private NetworkTableEntry extendGroundEntry     = tab.add("Extend Ground", false)   .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(4,2).getEntry();
-    private NetworkTableEntry slowDriveEntry        = tab.add("Slow Drive", false)      .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(5,2).getEntry();
-    private NetworkTableEntry retractExtendEntry    = tab.add("Retract|Extend", false)  .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(6,2).getEntry();
-    private NetworkTableEntry intakeEntry           = tab.add("Intake", false)          .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(3,3).withSize(4,1).getEntry();
+    private TelemetryPublisher.BooleanEntry lowbarEntry           = telemetry.addBoolean(tab.add("Low Bar", false)         .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(3,2).getEntry());
+    private TelemetryPublisher.BooleanEntry extendGroundEntry     = telemetry.addBoolean(tab.add("Extend Ground", false)   .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(4,2).getEntry());
+    private TelemetryPublisher.BooleanEntry slowDriveEntry        = telemetry.addBoolean(tab.add("Slow Drive", false)      .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(5,2).getEntry());
+    private TelemetryPublisher.BooleanEntry retractExtendEntry    = telemetry.addBoolean(tab.add("Retract|Extend", false)  .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(6,2).getEntry());
+    private TelemetryPublisher.BooleanEntry intakeEntry           = telemetry.addBoolean(tab.add("Intake", false)          .withWidget(BuiltInWidgets.kBooleanBox) .withPosition(3,3).withSize(4,1).getEntry());
+
+    private double[] historyOrdinals = new double[0];
       
     @Override  
     public void updateShuffleboard()  
     {
-        statusEntry.setString(climberStatus.name()); 
-        historyEntry.setString(ClimberStatusHistory.toString());
-        calibratedEntry.setBoolean(calibrated);
-        pauseEntry.setBoolean(calibrationPaused);
+        statusEntry.set(climberStatus.name()); 
+        if (historyOrdinals.length != ClimberStatusHistory.size())
+            historyOrdinals = new double[ClimberStatusHistory.size()];
+        for (int k = 0; k < historyOrdinals.length; k++)
+            historyOrdinals[k] = ClimberStatusHistory.get(k).ordinal();
+        historyEntry.set(historyOrdinals);
+        calibratedEntry.set(calibrated);
+        pauseEntry.set(calibrationPaused);
         
         Enabled = enableEntry.getBoolean(true);
         
-        climberStatorEntry.setNumber(LeftMotor.getStatorCurrent());
-        climberOutputVoltageEntry.setNumber(LeftMotor.getMotorOutputVoltage());
-        climberBusVoltageEntry.setNumber(LeftMotor.getBusVoltage());
-        climberSupplyEntry.setNumber(LeftMotor.getSupplyCurrent());
-        climberCurrentPosEntry.setNumber(encoderUnitsToInches(LeftMotor.getSelectedSensorPosition()));
-        climbingPowerInput.setNumber(power);
+        MotorTelemetry.Snapshot left = LeftTelemetry.get();   // sampled in the background, no CAN reads here
+        climberStatorEntry.set(left.statorCurrent);
+        climberOutputVoltageEntry.set(left.outputVoltage);
+        climberBusVoltageEntry.set(left.busVoltage);
+        climberSupplyEntry.set(left.supplyCurrent);
+        climberCurrentPosEntry.set(encoderUnitsToInches(left.sensorPosition));
+        climbingPowerInput.set(power);
         
-        lowbarEntry.setBoolean(false);
-        extendGroundEntry.setBoolean(false);
-        slowDriveEntry.setBoolean(false);
-        retractExtendEntry.setBoolean(false);
-        intakeEntry.setBoolean(false);
+        lowbarEntry.set(false);
+        extendGroundEntry.set(false);
+        slowDriveEntry.set(false);
+        retractExtendEntry.set(false);
+        intakeEntry.set(false);
         switch(climberStatus)
         {
             case INTAKE:
-                intakeEntry.setBoolean(true);
+                intakeEntry.set(true);
             case RETRACT_EXTEND:
-                retractExtendEntry.setBoolean(true);
+                retractExtendEntry.set(true);
             case SLOW_DRIVE:
-                slowDriveEntry.setBoolean(true);
+                slowDriveEntry.set(true);
             case EXTEND_GROUND:
-                extendGroundEntry.setBoolean(true);
+                extendGroundEntry.set(true);
             case LOW_BAR:
-                lowbarEntry.setBoolean(true);
+                lowbarEntry.set(true);
             default: break;
         }
     }  
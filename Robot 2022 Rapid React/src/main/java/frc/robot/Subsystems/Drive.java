@@ -1,7 +1,9 @@
 package frc.robot.subsystems;
 
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.shuffleboard.BuiltInWidgets;
 import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import frc.robot.command_status.DriveCommand;
@@ -9,6 +11,7 @@ import frc.robot.command_status.DriveCommand.DriveControlMode;
 import frc.robot.command_status.DriveState;
 import frc.robot.command_status.RobotState;
 import frc.robot.lib.util.DataLogger;
+import frc.robot.lib.util.DriveTrajectory;
 import frc.robot.lib.util.Kinematics;
 import frc.robot.lib.util.Kinematics.WheelSpeed;
 import frc.robot.lib.util.PIDController;
@@ -79,11 +82,11 @@ public class Drive extends Subsystem
     			case OPEN_LOOP:
     			case BASE_LOCKED:
 				case POSITION_SETPOINT:
-				case TURN_TO_HEADING:
 				// states where Talon SRXs are not controlling velocity
     				return;
 
     			case VELOCITY_SETPOINT:
+    			case MOTION_PROFILE:
     				// Nothing to do: Talons SRXs are updating the control loop state
     				return;
     				
@@ -91,6 +94,11 @@ public class Drive extends Subsystem
     				// Need to adjust left/right motor velocities to keep desired heading
     				updateVelocityHeading();
     				return;
+
+    			case TURN_TO_HEADING:
+    				// Need to adjust left/right motor velocities to follow heading profile
+    				updateTurnToHeading();
+    				return;
     				
     			default:
     				System.out.println("Unexpected drive control state: " + driveCmd.getDriveControlMode());
@@ -149,29 +157,46 @@ public class Drive extends Subsystem
 		updateVelocityHeading();
 	}
 
-	public double lTargetDistanceInches, rTargetDistanceInches; 
+	// stream a precomputed trajectory to the Talons.  Call keepMotionProfileAlive() every cycle while it runs
+	public void setMotionProfile(DriveTrajectory _trajectory)
+	{
+		driveCmd.setDriveMode(DriveControlMode.MOTION_PROFILE);
+		driveCmd.setMotionProfile(_trajectory);
+		driveCmd.setCommandTime();
+	}
+
+	public void keepMotionProfileAlive() { driveCmd.setCommandTime(); }		// feed DriveLoop watchdog
+
+	public boolean isMotionProfileFinished() { return driveState.getMotionProfileFinished(); }
 
 	public void setTurnToHeadingSetpoint(double _targetHeadingDeg)
 	{
 		// get remaining angular error
 		double robotToTargetDeg = Vector2d.normalizeAngleDeg(_targetHeadingDeg - RobotState.getInstance().getLatestFieldToVehicle().getHeadingDeg());
 
-		// use this error to calculate how much more the left and right wheels should turn
-		WheelSpeed deltaDistanceInches = Kinematics.inverseKinematics(0.0, Units.degreesToRadians(robotToTargetDeg));
-
-		lTargetDistanceInches = DriveState.getInstance().getLeftDistanceInches()  + deltaDistanceInches.left;
-		rTargetDistanceInches = DriveState.getInstance().getRightDistanceInches()  + deltaDistanceInches.right;
+		// profile is run in gyro coordinates, which are continuous (not wrapped to +/-180)
+		// (turns start from a stop, so the profile starts at zero angular velocity)
+		double headingDeg = driveState.getHeadingDeg();
+		turnToHeadingSetpoint = new TurnToHeadingSetpoint(headingDeg, headingDeg + robotToTargetDeg, 0.0);
+		turnRateDegPerSec = driveState.getYawRateDegPerSec();
 
-		// update Position Motion Magic Setpoint
 		driveCmd.setDriveMode(DriveControlMode.TURN_TO_HEADING);
-		driveCmd.setMotors(lTargetDistanceInches, rTargetDistanceInches);
+		updateTurnToHeading();
 	}	
 
-	public boolean isTurnToHeadingFinished(double _distanceThresholdInches)
+	public boolean isTurnToHeadingFinished(double _headingThresholdDeg, double _rateThresholdDegPerSec)
 	{
-		return (Math.abs(lTargetDistanceInches - driveState.getLeftDistanceInches())  < _distanceThresholdInches) &&
-		       (Math.abs(rTargetDistanceInches - driveState.getRightDistanceInches()) < _distanceThresholdInches);
+		boolean finished = (Math.abs(turnToHeadingSetpoint.getTargetHeadingDeg() - driveState.getHeadingDeg()) < _headingThresholdDeg) &&
+						   (Math.abs(turnRateDegPerSec) < _rateThresholdDegPerSec);
+
+		if (finished && turnToHeadingSetpoint.settleTime < 0)
+			turnToHeadingSetpoint.settleTime = Timer.getFPGATimestamp() - turnToHeadingSetpoint.startTime;
+		return finished;
 	}
+
+	// time from start of turn until isTurnToHeadingFinished(), or -1 if not finished yet
+	public double getTurnToHeadingSettleTime() { return turnToHeadingSetpoint.settleTime; }
+	public double getTurnToHeadingProfileTime() { return turnToHeadingSetpoint.profile.totalTime(); }
 		
 
 
@@ -244,6 +269,60 @@ public class Drive extends Subsystem
 	}
 	
 	
+	/**
+	 * TurnToHeadingSetpoints hold a trapezoidal profile in angular velocity from the
+	 * starting heading to the target heading.  The profile is tracked in the velocity loop,
+	 * with gyro feedback correcting the angular velocity feedforward.
+	 */
+	public static class TurnToHeadingSetpoint
+	{
+		private final TrapezoidProfile profile;
+		private final double targetHeadingDeg;
+		private final double startTime;
+		private double settleTime = -1;
+
+		public TurnToHeadingSetpoint()
+		{
+			this(0, 0, 0);
+		}
+
+		public TurnToHeadingSetpoint(double _startHeadingDeg, double _targetHeadingDeg, double _startRateDegPerSec)
+		{
+			TrapezoidProfile.Constraints constraints = new TrapezoidProfile.Constraints(DriveLoop.kTurnMaxRateDegPerSec, DriveLoop.kTurnMaxAccelDegPerSecSqr);
+			profile = new TrapezoidProfile(constraints, new TrapezoidProfile.State(_targetHeadingDeg, 0), new TrapezoidProfile.State(_startHeadingDeg, _startRateDegPerSec));
+			targetHeadingDeg = _targetHeadingDeg;
+			startTime = Timer.getFPGATimestamp();
+		}
+
+		public double getTargetHeadingDeg() { return targetHeadingDeg; }
+	}
+
+
+
+	/**************************************************************************
+	 * TurnToHeading code
+	 * (updates VelocitySetpoints in order to follow a heading profile)
+	 *************************************************************************/
+
+	private TurnToHeadingSetpoint turnToHeadingSetpoint = new TurnToHeadingSetpoint();
+	private TrapezoidProfile.State turnProfileState = new TrapezoidProfile.State();
+	private double turnRateDegPerSec = 0;
+
+	private void updateTurnToHeading()
+	{
+		double currentTime = Timer.getFPGATimestamp();
+		double headingDeg = driveState.getHeadingDeg();
+		turnRateDegPerSec = driveState.getYawRateDegPerSec();	// from the same gyro sample as the heading
+
+		// profile feedforward + heading error feedback, in deg/sec
+		turnProfileState = turnToHeadingSetpoint.profile.calculate(currentTime - turnToHeadingSetpoint.startTime);
+		double angularSpeedDegPerSec = turnProfileState.velocity + DriveLoop.kTurnHeadingKp * (turnProfileState.position - headingDeg);
+		
+		WheelSpeed wheelSpeed = Kinematics.inverseKinematics(0.0, Units.degreesToRadians(angularSpeedDegPerSec));
+		updateVelocitySetpoint(wheelSpeed.left, wheelSpeed.right);
+	}
+
+
 	/**************************************************************************
 	 * VelocitySetpoint code
 	 * Configures Talon SRXs to desired left/right wheel velocities
@@ -282,7 +361,6 @@ public class Drive extends Subsystem
 
 	@Override public void run(){} @Override public void updateShuffleboard(){
 		Enabled = enableEntry.getBoolean(true);
-		enableEntry.setBoolean(Enabled);
 	}
 
 
@@ -290,18 +368,36 @@ public class Drive extends Subsystem
 	
 	private final DataLogger logger = new DataLogger()
     {
+		final int driveControlModeCmdSlot = onChange(addEnum("Drive/DriveControlModeCmd"));
+		final int talonControlModeCmdSlot = onChange(addEnum("Drive/TalonControlModeCmd"));
+		final int lMotorCmdSlot = addDouble("Drive/lMotorCmd");
+		final int rMotorCmdSlot = addDouble("Drive/rMotorCmd");
+		final int brakeModeCmdSlot = onChange(addEnum("Drive/BrakeModeCmd"));
+		final int velocityHeadingPIDErrorSlot = addDouble("VelocityHeading/PIDError");
+		final int velocityHeadingPIDOutputSlot = addDouble("VelocityHeading/PIDOutput");
+		final int turnTargetDegSlot = onChange(addDouble("TurnToHeading/targetDeg"));
+		final int turnProfilePositionDegSlot = addDouble("TurnToHeading/profilePositionDeg");
+		final int turnProfileRateDegPerSecSlot = addDouble("TurnToHeading/profileRateDegPerSec");
+		final int turnRateDegPerSecSlot = addDouble("TurnToHeading/rateDegPerSec");
+		final int turnSettleTimeSlot = onChange(addDouble("TurnToHeading/settleTime"));
+
         @Override
         public void log()
         {
 			try // pathFollowingController doesn't exist until started
 			{
-				put("Drive/DriveControlModeCmd", driveCmd.getDriveControlMode().toString() );
-				put("Drive/TalonControlModeCmd", driveCmd.getTalonControlMode().toString() );
-				put("Drive/lMotorCmd", driveCmd.getLeftMotor() );
-				put("Drive/rMotorCmd", driveCmd.getRightMotor() );
-				put("Drive/BrakeModeCmd", DriveCommand.getNeutralMode().toString() );
-				put("VelocityHeading/PIDError",  velocityHeadingSetpoint.velocityHeadingPID.getError() );
-				put("VelocityHeading/PIDOutput", velocityHeadingSetpoint.velocityHeadingPID.get() );
+				put(driveControlModeCmdSlot, driveCmd.getDriveControlMode() );
+				put(talonControlModeCmdSlot, driveCmd.getTalonControlMode() );
+				put(lMotorCmdSlot, driveCmd.getLeftMotor() );
+				put(rMotorCmdSlot, driveCmd.getRightMotor() );
+				put(brakeModeCmdSlot, DriveCommand.getNeutralMode() );
+				put(velocityHeadingPIDErrorSlot,  velocityHeadingSetpoint.velocityHeadingPID.getError() );
+				put(velocityHeadingPIDOutputSlot, velocityHeadingSetpoint.velocityHeadingPID.get() );
+				put(turnTargetDegSlot, turnToHeadingSetpoint.getTargetHeadingDeg() );
+				put(turnProfilePositionDegSlot, turnProfileState.position );
+				put(turnProfileRateDegPerSecSlot, turnProfileState.velocity );
+				put(turnRateDegPerSecSlot, turnRateDegPerSec );
+				put(turnSettleTimeSlot, turnToHeadingSetpoint.settleTime );
 
 //				AdaptivePurePursuitController.getLogger().log();
 			} catch (NullPointerException e) {
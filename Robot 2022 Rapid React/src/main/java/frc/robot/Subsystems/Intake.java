@@ -17,6 +17,9 @@ import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
 import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
 import edu.wpi.first.wpilibj.smartdashboard.SendableChooser;
 import frc.robot.Constants;
+import frc.robot.lib.util.MotorTelemetry;
+import frc.robot.lib.util.TelemetryPublisher;
+import frc.robot.lib.util.TelemetrySampler;
 
 /**<h4>Contains all code for the Intake subsystem</h4>*/
 public class Intake extends Subsystem {
@@ -24,6 +27,7 @@ public class Intake extends Subsystem {
     public static Intake getInstance() {if(instance == null){instance = new Intake();}return instance;}
     
     private TalonFX ArmMotor;
+    private MotorTelemetry ArmTelemetry;
     private VictorSPX RollerMotor;
     
     private static final double kOuttakePercentOutput = -1.0;
@@ -64,6 +68,7 @@ public class Intake extends Subsystem {
         ArmMotor.setInverted(TalonFXInvertType.CounterClockwise);
         ArmMotor.setNeutralMode(NeutralMode.Brake);
         ArmMotor.configForwardSoftLimitThreshold(degreesToEncoderUnits(IntakeState.DEFENSE.armPos.angleDeg));
+        ArmTelemetry = TelemetrySampler.getInstance().addMotor(ArmMotor);
 
         TrapezoidProfile.Constraints constraints = new TrapezoidProfile.Constraints(kMaxVelocityDegPerSecond, kMaxAccelerationDegPerSecSquared);
         pid = new ProfiledPIDController(kP, kI, kD, constraints);
@@ -254,29 +259,31 @@ public class Intake extends Subsystem {
     }
 
     private ShuffleboardTab tab = Shuffleboard.getTab("Intake");
-    private NetworkTableEntry statusEntry = tab.add("Status", "not updating what").withWidget(BuiltInWidgets.kTextView)         .withPosition(0,0).withSize(2,1).getEntry();
-    private NetworkTableEntry armposEntry = tab.add("Arm position", "not updating what").withWidget(BuiltInWidgets.kTextView)   .withPosition(0,1).getEntry();
-    private NetworkTableEntry calibratedEntry = tab.add("Calibrated", false).withWidget(BuiltInWidgets.kBooleanBox)             .withPosition(1,1).getEntry();
+    private TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+    private TelemetryPublisher.StringEntry statusEntry = telemetry.addString(tab.add("Status", "not updating what").withWidget(BuiltInWidgets.kTextView)        .withPosition(0,0).withSize(2,1).getEntry());
+    private TelemetryPublisher.StringEntry armposEntry = telemetry.addString(tab.add("Arm position", "not updating what").withWidget(BuiltInWidgets.kTextView)  .withPosition(0,1).getEntry());
+    private TelemetryPublisher.BooleanEntry calibratedEntry = telemetry.addBoolean(tab.add("Calibrated", false).withWidget(BuiltInWidgets.kBooleanBox)         .withPosition(1,1).getEntry());
     private NetworkTableEntry calibrateButton = tab.add("Calibrate", false).withWidget(BuiltInWidgets.kToggleButton)            .withPosition(1,3).getEntry();
     private NetworkTableEntry enableEntry = tab.add("Enable", true).withWidget(BuiltInWidgets.kToggleSwitch)                    .withPosition(0,3).getEntry();
     private SendableChooser<IntakeState> stateChooser = new SendableChooser<>();
     private ComplexWidget wig = tab.add("State Chooser", stateChooser)                                                          .withPosition(0,4).withSize(2,1);
-    private NetworkTableEntry armCurrentEntry = tab.add("Arm Current", -9999).withWidget(BuiltInWidgets.kTextView)              .withPosition(8,0).getEntry();
-    private NetworkTableEntry armCurrentPosEntry = tab.add("Arm Current Pos", -9999).withWidget(BuiltInWidgets.kTextView)       .withPosition(9,0).getEntry();
-    private NetworkTableEntry armPIDOutputEntry = tab.add("Arm PID Output", -9999).withWidget(BuiltInWidgets.kTextView)         .withPosition(8,1).getEntry();
-    private NetworkTableEntry armGoalEntry = tab.add("Arm PID Goal", -9999).withWidget(BuiltInWidgets.kTextView)                .withPosition(9,1).getEntry();
+    private static final double kArmTelemetryRateHz = 10;
+    private TelemetryPublisher.DoubleEntry armCurrentEntry = telemetry.addDouble(tab.add("Arm Current", -9999).withWidget(BuiltInWidgets.kTextView)             .withPosition(8,0).getEntry(), kArmTelemetryRateHz);
+    private TelemetryPublisher.DoubleEntry armCurrentPosEntry = telemetry.addDouble(tab.add("Arm Current Pos", -9999).withWidget(BuiltInWidgets.kTextView)      .withPosition(9,0).getEntry(), kArmTelemetryRateHz);
+    private TelemetryPublisher.DoubleEntry armPIDOutputEntry = telemetry.addDouble(tab.add("Arm PID Output", -9999).withWidget(BuiltInWidgets.kTextView)        .withPosition(8,1).getEntry(), kArmTelemetryRateHz);
+    private TelemetryPublisher.DoubleEntry armGoalEntry = telemetry.addDouble(tab.add("Arm PID Goal", -9999).withWidget(BuiltInWidgets.kTextView)               .withPosition(9,1).getEntry());
 
     @Override
     public void updateShuffleboard()
     {
-        armCurrentEntry.setDouble(ArmMotor.getStatorCurrent());
-        armPIDOutputEntry.setDouble(pidOutput);
-        armCurrentPosEntry.setDouble(encoderUnitsToDegrees(ArmMotor.getSelectedSensorPosition()));
-        armGoalEntry.setDouble(pid.getGoal().position);
+        MotorTelemetry.Snapshot arm = ArmTelemetry.get();     // sampled in the background, no CAN reads here
+        armCurrentEntry.set(arm.statorCurrent);
+        armPIDOutputEntry.set(pidOutput);
+        armCurrentPosEntry.set(encoderUnitsToDegrees(arm.sensorPosition));
+        armGoalEntry.set(pid.getGoal().position);
         Enabled = enableEntry.getBoolean(true);
-        enableEntry.setBoolean(Enabled);
-        statusEntry.setString(intakeStatus.name());
-        armposEntry.setString(targetPos.name());
-        calibratedEntry.setBoolean(calibrated);
+        statusEntry.set(intakeStatus.name());
+        armposEntry.set(targetPos.name());
+        calibratedEntry.set(calibrated);
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ public class SubsystemManager {
         subsystems.add(Intake.getInstance());
         subsystems.add(Drive.getInstance());
         subsystems.add(Climber.getInstance());
+        subsystems.add(Vision.getInstance());
     }
 
     public void run()                   {for (Subsystem s : subsystems) {if (s.Enabled) s.run();            else s.disable();}}
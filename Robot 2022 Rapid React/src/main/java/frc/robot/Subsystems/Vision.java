@@ -1,6 +1,8 @@
 package frc.robot.subsystems;
 
-import org.opencv.core.Mat;
+import java.util.ArrayList;
+import java.util.List;
+
 import org.opencv.core.Point;
 import org.opencv.core.Scalar;
 import org.opencv.imgproc.Imgproc;
@@ -8,54 +10,163 @@ import org.opencv.imgproc.Imgproc;
 import edu.wpi.first.cameraserver.CameraServer;
 import edu.wpi.first.cscore.CvSink;
 import edu.wpi.first.cscore.CvSource;
+import edu.wpi.first.cscore.MjpegServer;
 import edu.wpi.first.cscore.UsbCamera;
+import edu.wpi.first.cscore.VideoMode.PixelFormat;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+import edu.wpi.first.wpilibj.shuffleboard.ShuffleboardTab;
+import frc.robot.lib.util.TelemetryPublisher;
+import frc.robot.vision.CameraStream;
+import frc.robot.vision.CargoDetector;
+import frc.robot.vision.StreamGovernor;
+import frc.robot.vision.VisionPipeline;
 
-public class Vision {
-    private static Vision instance; 
-    public static Vision getInstance() {if(instance == null){instance = new Vision();}return instance;} 
+/**<h4>Camera capture and processing</h4>
+ * Frames go through a VisionPipeline on its own low priority threads, capped at kMaxFps,
+ * so camera work never competes with the control loops for more than its share of the roboRIO.
+ * The CargoDetector stage publishes the cargo it finds for autonomous and the intake.
+ * The camera streams to the dashboard are kept under the bandwidth budget by StreamGovernor.
+ */
+public class Vision extends Subsystem {
+    private static Vision instance;
+    public static Vision getInstance() {if(instance == null){instance = new Vision();}return instance;}
     private Vision(){}
 
+    public static double kMaxFps = 15;
+    public static int kImageWidth = 320;
+    public static int kImageHeight = 240;
+
+    private VisionPipeline pipeline;
+    private CargoDetector cargoDetector = new CargoDetector();
+    private List<CameraStream> streams = new ArrayList<>();
+
+    private TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+    private ShuffleboardTab tab = Shuffleboard.getTab("Vision");
+    private TelemetryPublisher.DoubleEntry fpsEntry;
+    private TelemetryPublisher.DoubleEntry droppedEntry;
+    private TelemetryPublisher.DoubleEntry grabErrorsEntry;
+    private TelemetryPublisher.DoubleEntry stageErrorsEntry;
+    private TelemetryPublisher.DoubleEntry totalAvgEntry;
+    private TelemetryPublisher.DoubleEntry totalMaxEntry;
+    private TelemetryPublisher.DoubleEntry cargoCountEntry;
+    private TelemetryPublisher.DoubleEntry cargoOverrunsEntry;
+    private TelemetryPublisher.DoubleEntry streamMbpsEntry;
+    private TelemetryPublisher.DoubleEntry linkTxMbpsEntry;
+    private List<TelemetryPublisher.DoubleEntry> streamKbpsEntries = new ArrayList<>();
+    private List<TelemetryPublisher.DoubleEntry> streamLevelEntries = new ArrayList<>();
+    private List<TelemetryPublisher.DoubleEntry> stageAvgEntries = new ArrayList<>();
+    private List<TelemetryPublisher.DoubleEntry> stageMaxEntries = new ArrayList<>();
+
+    private long prevFramesProcessed = 0;
+    private double prevStatsTime = -1;
+
     public void init()
     {
-        Thread m_visionThread =
-        new Thread(
-            () -> {
-              // Get the UsbCamera from CameraServer
-              UsbCamera limelight = CameraServer.startAutomaticCapture();
-              UsbCamera driverCamera = CameraServer.startAutomaticCapture();
-              // Set the resolution
-              limelight.setResolution(320, 240);
-              driverCamera.setResolution(320, 240);
-
-              // Get a CvSink. This will capture Mats from the camera
-              CvSink cvSink = CameraServer.getVideo();
-              // Setup a CvSource. This will send images back to the Dashboard
-              CvSource outputStream = CameraServer.putVideo("Rectangle", 640, 480);
-
-              // Mats are very memory expensive. Lets reuse this Mat.
-              Mat mat = new Mat();
-
-              // This cannot be 'true'. The program will never exit if it is. This
-              // lets the robot stop this thread when restarting robot code or
-              // deploying.
-              while (!Thread.interrupted()) {
-                // Tell the CvSink to grab a frame from the camera and put it
-                // in the source mat.  If there is an error notify the output.
-                if (cvSink.grabFrame(mat) == 0) {
-                  // Send the output the error.
-                  outputStream.notifyError(cvSink.getError());
-                  // skip the rest of the current iteration
-                  continue;
-                }
-                // Put a rectangle on the image
-                Imgproc.rectangle(
-                    mat, new Point(100, 100), new Point(400, 400), new Scalar(255, 255, 255), 5);
-                // Give the output stream a new image to display
-                outputStream.putFrame(mat);
-              }
-            });
-        m_visionThread.setDaemon(true);
-        m_visionThread.start();
-        //Shuffleboard.getTab("Intake").add("Camera", sendable)
+        // Start the UsbCameras, each streamed by its own MjpegServer
+        UsbCamera limelight = new UsbCamera("USB Camera 0", 0);
+        UsbCamera driverCamera = new UsbCamera("USB Camera 1", 1);
+        MjpegServer limelightServer = CameraServer.startAutomaticCapture(limelight);
+        MjpegServer driverServer = CameraServer.startAutomaticCapture(driverCamera);
+        // Set the resolution
+        limelight.setResolution(kImageWidth, kImageHeight);
+        driverCamera.setResolution(kImageWidth, kImageHeight);
+
+        // Get a CvSink. This will capture Mats from the camera
+        CvSink cvSink = CameraServer.getVideo();
+        // Setup a CvSource. This will send images back to the Dashboard
+        CvSource outputStream = new CvSource("Rectangle", PixelFormat.kMJPEG, 640, 480, 30);
+        MjpegServer outputServer = CameraServer.startAutomaticCapture(outputStream);
+
+        // keep the streams under the bandwidth budget
+        StreamGovernor governor = StreamGovernor.getInstance();
+        streams.add(governor.add(new CameraStream("Driver", CameraStream.Role.DRIVER, driverCamera, driverServer)));
+        streams.add(governor.add(new CameraStream("Limelight", CameraStream.Role.VISION, limelight, limelightServer)));
+        streams.add(governor.add(new CameraStream("Rectangle", CameraStream.Role.VISION, outputStream, outputServer)));
+
+        pipeline = new VisionPipeline("Vision", cvSink, outputStream, kMaxFps);
+
+        pipeline.addStage("Cargo", cargoDetector);
+
+        // Put a rectangle on the image
+        pipeline.addStage("Annotate", (mat, timestamp) ->
+            Imgproc.rectangle(mat, new Point(100, 100), new Point(400, 400), new Scalar(255, 255, 255), 5));
+
+        addTelemetry();
+        pipeline.start();
+    }
+
+    public VisionPipeline getPipeline() { return pipeline; }
+    public CargoDetector getCargoDetector() { return cargoDetector; }
+
+    private void addTelemetry()
+    {
+        fpsEntry = telemetry.addDouble(tab.add("Processed fps", 0).getEntry(), 1);
+        droppedEntry = telemetry.addDouble(tab.add("Dropped frames", 0).getEntry(), 1);
+        grabErrorsEntry = telemetry.addDouble(tab.add("Grab errors", 0).getEntry(), 1);
+        stageErrorsEntry = telemetry.addDouble(tab.add("Stage errors", 0).getEntry(), 1);
+        totalAvgEntry = telemetry.addDouble(tab.add("Pipeline ms (avg)", 0).getEntry(), 1);
+        totalMaxEntry = telemetry.addDouble(tab.add("Pipeline ms (max)", 0).getEntry(), 1);
+        cargoCountEntry = telemetry.addDouble(tab.add("Cargo seen", 0).getEntry(), 1);
+        cargoOverrunsEntry = telemetry.addDouble(tab.add("Cargo overruns", 0).getEntry(), 1);
+        streamMbpsEntry = telemetry.addDouble(tab.add("Stream Mbps (est)", 0).getEntry(), 1);
+        linkTxMbpsEntry = telemetry.addDouble(tab.add("Link tx Mbps", 0).getEntry(), 1);
+        for (CameraStream stream : streams)
+        {
+            streamKbpsEntries.add(telemetry.addDouble(tab.add(stream.getName() + " stream kbps", 0).getEntry(), 1));
+            streamLevelEntries.add(telemetry.addDouble(tab.add(stream.getName() + " stream level", 0).getEntry(), 1));
+        }
+        for (VisionPipeline.Stage stage : pipeline.getStages())
+        {
+            stageAvgEntries.add(telemetry.addDouble(tab.add(stage.getName() + " ms (avg)", 0).getEntry(), 1));
+            stageMaxEntries.add(telemetry.addDouble(tab.add(stage.getName() + " ms (max)", 0).getEntry(), 1));
+        }
+    }
+
+    @Override
+    public void run() {}
+
+    @Override
+    public void updateShuffleboard()
+    {
+        if (pipeline == null)
+            return;
+
+        double now = Timer.getFPGATimestamp();
+        long framesProcessed = pipeline.getFramesProcessed();
+        if (prevStatsTime >= 0 && now - prevStatsTime >= 1.0)
+        {
+            fpsEntry.set((framesProcessed - prevFramesProcessed) / (now - prevStatsTime));
+            prevFramesProcessed = framesProcessed;
+            prevStatsTime = now;
+        }
+        else if (prevStatsTime < 0)
+        {
+            prevFramesProcessed = framesProcessed;
+            prevStatsTime = now;
+        }
+
+        droppedEntry.set(pipeline.getFramesDropped());
+        grabErrorsEntry.set(pipeline.getGrabErrors());
+        stageErrorsEntry.set(pipeline.getStageErrors());
+        totalAvgEntry.set(pipeline.getTotalAvgMs());
+        totalMaxEntry.set(pipeline.getTotalMaxMs());
+        cargoCountEntry.set(cargoDetector.getLatest().size());
+        cargoOverrunsEntry.set(cargoDetector.getOverruns());
+
+        StreamGovernor governor = StreamGovernor.getInstance();
+        streamMbpsEntry.set(governor.getStreamMbps());
+        linkTxMbpsEntry.set(governor.getLinkTxMbps());
+        for (int k = 0; k < streamKbpsEntries.size(); k++)
+        {
+            streamKbpsEntries.get(k).set(streams.get(k).getKbps());
+            streamLevelEntries.get(k).set(streams.get(k).getLevel());
+        }
+        List<VisionPipeline.Stage> stages = pipeline.getStages();
+        for (int k = 0; k < stageAvgEntries.size(); k++)
+        {
+            stageAvgEntries.get(k).set(stages.get(k).getAvgMs());
+            stageMaxEntries.get(k).set(stages.get(k).getMaxMs());
+        }
     }
 }
@@ -3,6 +3,7 @@ package frc.robot.command_status;
 
 
 import frc.robot.lib.util.DataLogger;
+import frc.robot.lib.util.DriveTrajectory;
 import frc.robot.lib.util.Kinematics.WheelSpeed;
 
 import com.ctre.phoenix.motorcontrol.*;
@@ -32,14 +33,18 @@ import edu.wpi.first.wpilibj.Timer;
  *                      Motor controllers use velocity PID to maintain velocity setpoints, RoboRIO uses heading PID
  *                      to adjust velocity setpoints to maintain heading. 
  *                                
- * TURN_TO_HEADING:     The robot attempts to turn to an absolute heading angle.  The remaining angle is used to update
- *                      the setpoint of a position PID loop
+ * TURN_TO_HEADING:     The robot attempts to turn to an absolute heading angle.  A trapezoidal angular velocity profile
+ *                      is tracked with gyro feedback, adjusting left/right velocity setpoints.  Motor controllers use
+ *                      velocity PID loops.
+ *
+ * MOTION_PROFILE:      A precomputed DriveTrajectory is streamed into the motor controllers' motion profile buffers.
+ *                      The motor controllers execute the profile on their own.  RoboRIO only supervises.
  */
 
 public class DriveCommand
 {    
 	// The robot drivetrain's various states
-	public enum DriveControlMode { OPEN_LOOP, BASE_LOCKED, POSITION_SETPOINT, VELOCITY_SETPOINT, VELOCITY_HEADING, TURN_TO_HEADING }
+	public enum DriveControlMode { OPEN_LOOP, BASE_LOCKED, POSITION_SETPOINT, VELOCITY_SETPOINT, VELOCITY_HEADING, TURN_TO_HEADING, MOTION_PROFILE }
 
 	// all member variables should be private to force other object to use the set/get access methods
 	// which are synchronized to allow multi-thread synchronization	
@@ -48,6 +53,7 @@ public class DriveCommand
 	private WheelSpeed wheelSpeed = new WheelSpeed();
 	private static NeutralMode neutralMode;	// Brake or Coast
 	private boolean resetEncoders;
+	private DriveTrajectory motionProfile;
     private double commandTime;
     
     public DriveCommand(double _left, double _right)
@@ -95,14 +101,18 @@ public class DriveCommand
             talonMode = ControlMode.Position;
         
         case POSITION_SETPOINT:
-        case TURN_TO_HEADING:
             talonMode = ControlMode.MotionMagic;
             break;
     		
     	case VELOCITY_SETPOINT:
     	case VELOCITY_HEADING:
+    	case TURN_TO_HEADING:
      		talonMode = ControlMode.Velocity;
     		break;
+
+    	case MOTION_PROFILE:
+    		talonMode = ControlMode.MotionProfile;
+    		break;
     		
     	default:
     		talonMode = ControlMode.Disabled;
@@ -130,6 +140,15 @@ public class DriveCommand
     	return rv; 
     }	
     
+    public synchronized void setMotionProfile(DriveTrajectory _motionProfile) { motionProfile = _motionProfile; }
+    public synchronized DriveTrajectory getNewMotionProfile() 
+    {	
+    	// self-clearing on read, so the profile is only loaded once
+    	DriveTrajectory rv = motionProfile; 
+    	motionProfile = null; 
+    	return rv; 
+    }	
+    
     public synchronized void   setCommandTime() { commandTime = Timer.getFPGATimestamp(); }
     public synchronized double getCommandTime() { return commandTime; } 
     
@@ -149,16 +168,22 @@ public class DriveCommand
     
 	private final DataLogger logger = new DataLogger()
     {
+		final int driveModeSlot = onChange(addEnum("DriveCommand/driveMode"));
+		final int talonModeSlot = onChange(addEnum("DriveCommand/talonMode"));
+		final int leftSlot = addDouble("DriveCommand/left");
+		final int rightSlot = addDouble("DriveCommand/right");
+		final int brakeSlot = onChange(addString("DriveCommand/brake"));
+
         @Override
         public void log()
         {
         	synchronized (DriveCommand.this)
         	{
-	    		put("DriveCommand/driveMode", driveMode.toString() );
-	    		put("DriveCommand/talonMode", talonMode.toString() );
-	    		put("DriveCommand/left",  wheelSpeed.left );
-	       		put("DriveCommand/right", wheelSpeed.right );
-	       		put("DriveCommand/brake", (neutralMode == NeutralMode.Coast ? "Coast" : "Brake") );
+	    		put(driveModeSlot, driveMode );
+	    		put(talonModeSlot, talonMode );
+	    		put(leftSlot,  wheelSpeed.left );
+	       		put(rightSlot, wheelSpeed.right );
+	       		put(brakeSlot, (neutralMode == NeutralMode.Coast ? "Coast" : "Brake") );
         	}
         }
     };
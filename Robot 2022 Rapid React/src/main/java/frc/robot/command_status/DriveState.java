@@ -1,5 +1,6 @@
 package frc.robot.command_status;
 
+import frc.robot.lib.sensors.GyroBase;
 import frc.robot.lib.util.DataLogger;
 
 import com.ctre.phoenix.motorcontrol.*;
@@ -28,10 +29,15 @@ public class DriveState
 	private double lDistanceInches, rDistanceInches;
 	private double lSpeedInchesPerSec, rSpeedInchesPerSec;
 	private double heading;
+	private double yawRate;						// rad/sec, positive turning left
+	private double pitchDeg, rollDeg;
+	private double gyroTimestamp;
+	private boolean yawRateMeasured;
 	
 	private double lMotorCurrent, rMotorCurrent;
 	private double lMotorStatus, rMotorStatus;
 	private double lMotorPIDError, rMotorPIDError;
+	private boolean motionProfileFinished;
 	
 	public DriveState() {}
 	
@@ -66,35 +72,76 @@ public class DriveState
 	public synchronized double getLeftMotorPIDError()  { return lMotorPIDError; }
 	public synchronized double getRightMotorPIDError() { return rMotorPIDError; }
 
+	public synchronized void setMotionProfileFinished(boolean val) { motionProfileFinished = val; }
+	public synchronized boolean getMotionProfileFinished() { return motionProfileFinished; }
+
 	public synchronized void setHeadingDeg(double val) { setHeading(val*Math.PI/180.0); }
     public synchronized void setHeading(double val) { heading = val; }
 
     public synchronized double getHeading() { return heading; };
     public synchronized double getHeadingDeg() { return heading*180.0/Math.PI; }
+
+	// everything read from the gyro this tick (see GyroBase.read())
+	public synchronized void setGyroSample(GyroBase.Sample val)
+	{
+		setHeadingDeg(val.headingDeg);
+		yawRate = val.yawRateDegPerSec*Math.PI/180.0;
+		pitchDeg = val.pitchDeg;
+		rollDeg = val.rollDeg;
+		gyroTimestamp = val.timestamp;
+		yawRateMeasured = val.rateMeasured;
+	}
+
+	public synchronized double getYawRate() { return yawRate; }
+	public synchronized double getYawRateDegPerSec() { return yawRate*180.0/Math.PI; }
+	public synchronized boolean isYawRateMeasured() { return yawRateMeasured; }
+	public synchronized double getPitchDeg() { return pitchDeg; }
+	public synchronized double getRollDeg() { return rollDeg; }
+	public synchronized double getGyroTimestamp() { return gyroTimestamp; }
 	
     
 
     
 	private final DataLogger logger = new DataLogger()
     {
+		final int talonControlModeSlot = onChange(addEnum("DriveState/TalonControlMode"));
+		final int neutralModeSlot = onChange(addString("DriveState/neutralMode"));
+		final int lMotorCurrentSlot = aggregate(addDouble("DriveState/lMotorCurrent"), 10);
+		final int rMotorCurrentSlot = aggregate(addDouble("DriveState/rMotorCurrent"), 10);
+		final int lMotorStatusSlot = rate(addDouble("DriveState/lMotorStatus"), 10);
+		final int rMotorStatusSlot = rate(addDouble("DriveState/rMotorStatus"), 10);
+		final int lSpeedSlot = addDouble("DriveState/lSpeed");
+		final int rSpeedSlot = addDouble("DriveState/rSpeed");
+		final int lDistanceSlot = addDouble("DriveState/lDistance");
+		final int rDistanceSlot = addDouble("DriveState/rDistance");
+		final int lPIDErrorSlot = addDouble("DriveState/lPIDError");
+		final int rPIDErrorSlot = addDouble("DriveState/rPIDError");
+		final int headingSlot = addDouble("DriveState/Heading");
+		final int yawRateSlot = addDouble("DriveState/YawRate");
+		final int pitchSlot = rate(addDouble("DriveState/Pitch"), 10);
+		final int rollSlot = rate(addDouble("DriveState/Roll"), 10);
+
         @Override
         public void log()
         {
         	synchronized (DriveState.this)
         	{
-	    		put("DriveState/TalonControlMode", talonControlMode.toString() );
-	    		put("DriveState/neutralMode", (neutralMode == NeutralMode.Coast ? "Coast" : "Brake"));
-	    		put("DriveState/lMotorCurrent", lMotorCurrent );
-	    		put("DriveState/rMotorCurrent", rMotorCurrent );
-	    		put("DriveState/lMotorStatus", lMotorStatus );
-	    		put("DriveState/rMotorStatus", rMotorStatus );
-	    		put("DriveState/lSpeed", lSpeedInchesPerSec );	// used by RaspberryPi set LED velocity display
-	    		put("DriveState/rSpeed", rSpeedInchesPerSec );	// used by RaspberryPi set LED velocity display
-	    		put("DriveState/lDistance", lDistanceInches );
-	    		put("DriveState/rDistance", rDistanceInches );
-	    		put("DriveState/lPIDError",  lMotorPIDError );
-	    		put("DriveState/rPIDError", rMotorPIDError );
-	    		put("DriveState/Heading", getHeadingDeg() );
+	    		put(talonControlModeSlot, talonControlMode );
+	    		put(neutralModeSlot, (neutralMode == NeutralMode.Coast ? "Coast" : "Brake"));
+	    		put(lMotorCurrentSlot, lMotorCurrent );
+	    		put(rMotorCurrentSlot, rMotorCurrent );
+	    		put(lMotorStatusSlot, lMotorStatus );
+	    		put(rMotorStatusSlot, rMotorStatus );
+	    		put(lSpeedSlot, lSpeedInchesPerSec );	// used by RaspberryPi set LED velocity display
+	    		put(rSpeedSlot, rSpeedInchesPerSec );	// used by RaspberryPi set LED velocity display
+	    		put(lDistanceSlot, lDistanceInches );
+	    		put(rDistanceSlot, rDistanceInches );
+	    		put(lPIDErrorSlot,  lMotorPIDError );
+	    		put(rPIDErrorSlot, rMotorPIDError );
+	    		put(headingSlot, getHeadingDeg() );
+	    		put(yawRateSlot, getYawRateDegPerSec() );
+	    		put(pitchSlot, pitchDeg );
+	    		put(rollSlot, rollDeg );
         	}
         }
     };
@@ -1,16 +1,20 @@
 package frc.robot.command_status;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Optional;
 
 import frc.robot.lib.util.DataLogger;
 import frc.robot.lib.util.Pose;
 import frc.robot.lib.util.Vector2d;
+import frc.robot.vision.GoalTracker;
 
 
 // Sorted list of range & bearing to each tracked target
-// First item in list has the highest score (determined by GoalTracker.TrackReportComparator)
+// First item in list has the highest score (determined by GoalTracker.rank())
+//
+// GoalStateLoop builds the list with clear()/add() and makes it visible with publish().
+// Readers get the last published list without locking.  The two lists (and their GoalStates)
+// are allocated up front and swapped on each publish(): a published list is not changed until
+// the loop after next, so read it right away and copy out any values that must be kept.
 
 public class GoalStates
 {
@@ -20,25 +24,42 @@ public class GoalStates
 		return instance;
 	}
 
-	static List<GoalState> goalList = new ArrayList<>();	
+	private final GoalList[] lists = { new GoalList(GoalTracker.kMaxTracks), new GoalList(GoalTracker.kMaxTracks) };
+	private GoalList pending = lists[0];					// being built by GoalStateLoop
+	private volatile GoalList goalList = lists[1];		// last published
 
-	synchronized public void clear() 
+	// writer only (GoalStateLoop)
+	public void clear() 
 	{	
-		goalList.clear();	
-	
+		pending.size = 0;	
 	}
-	synchronized public void add(Vector2d _fieldToGoal, Pose _fieldToShooter, int _trackId, double _time)
+
+	// writer only (GoalStateLoop).  Goals past the capacity of the list are dropped.
+	public void add(double _goalX, double _goalY, Pose _fieldToShooter, int _trackId, double _time)
+	{
+		if (pending.size < pending.goals.length)
+			pending.goals[pending.size++].set(_goalX, _goalY, _fieldToShooter, _trackId, _time);
+	}
+
+	// writer only (GoalStateLoop): make the list built since clear() visible to readers
+	public void publish()
 	{
-		goalList.add(new GoalState(_fieldToGoal, _fieldToShooter, _trackId, _time));
+		GoalList published = pending;
+		pending = goalList;
+		goalList = published;
 	}
 
-	synchronized public boolean targetFound() { return !goalList.isEmpty(); }
+	public boolean targetFound() { return goalList.size() > 0; }
+
+	// all goals, best first.  Use the same list for all values that go together
+	public GoalList getGoals() { return goalList; }
 	
-	synchronized public Optional<GoalState> getBestVisionTarget()
+	public Optional<GoalState> getBestVisionTarget()
 	{
 		Optional<GoalState> rv;
+		GoalList goalList = this.goalList;
 		
-		if (goalList.isEmpty())
+		if (goalList.size() == 0)
 		{
 			rv = Optional.empty();
 		}
@@ -50,35 +71,61 @@ public class GoalStates
 	}
 	
 
+
+	// fixed capacity list of GoalStates, best first
+	public static class GoalList
+	{
+		final GoalState[] goals;
+		int size = 0;
+
+		GoalList(int _capacity)
+		{
+			goals = new GoalState[_capacity];
+			for (int k = 0; k < _capacity; k++)
+				goals[k] = new GoalState();
+		}
+
+		public int size() { return size; }
+		public GoalState get(int _k) { return goals[_k]; }
+	}
+	
+
 	
 	
 	 // A container class to specify the range and angle of a goal
 	 // with respect to a robot's position and heading. angle. 
 	 // It also contains the computer vision's track's ID.
 	
-	public class GoalState 
+	public static class GoalState 
 	{
-		Vector2d fieldToGoal;
-	    double horizontalDistance;	// in inches
-	    double relativeBearing;		// in radians, relative to robot's heading
+		final Vector2d fieldToGoal = new Vector2d();
+	    double horizontalDistance;		// in inches
+	    double relativeBearing;			// in radians, relative to robot's heading
 	    int trackId;
-	    double time;				// not really needed, just for debug to see that GoalState is still being updated
+	    double time;					// not really needed, just for debug to see that GoalState is still being updated
 
-	    public GoalState(Vector2d _fieldToGoal, Pose _fieldToShooter, int _trackId, double _time)
+	    GoalState()
+	    {
+	    }
+
+	    void set(double _goalX, double _goalY, Pose _fieldToShooter, int _trackId, double _time)
 	    {
 			// find relative distance and bearing to goal
-			Vector2d shooterToGoal = _fieldToGoal.sub(_fieldToShooter.getPosition());
+			double dx = _goalX - _fieldToShooter.getPosition().getX();
+			double dy = _goalY - _fieldToShooter.getPosition().getY();
 	    	
-			double distanceToGoal = shooterToGoal.length();
-			double bearingToGoal = shooterToGoal.angle() - _fieldToShooter.getHeading(); 	// bearing relative to shooter's heading
+			double distanceToGoal = Math.sqrt(dx*dx + dy*dy);
+			double bearingToGoal = Math.atan2(dy, dx) - _fieldToShooter.getHeading(); 	// bearing relative to shooter's heading
 		
-			fieldToGoal = _fieldToGoal;
+			fieldToGoal.setX(_goalX);
+			fieldToGoal.setY(_goalY);
 	        horizontalDistance = distanceToGoal;
 	        relativeBearing = bearingToGoal;
 	        trackId = _trackId;
 	        time = _time;
 	    }
 
+	    // reused: copy it to keep it
 	    public Vector2d getPosition() { return fieldToGoal; }
 	    public double getHorizontalDistance() { return horizontalDistance; }
 	    public double getRelativeBearing() { return relativeBearing; }
@@ -97,29 +144,35 @@ public class GoalStates
 
 	private final DataLogger logger = new DataLogger()
 	{
+		final int numTargetsSlot = onChange(addInt("GoalState/numTargets"));
+		final int bestTargetXSlot = addDouble("GoalState/bestTargetX");
+		final int bestTargetYSlot = addDouble("GoalState/bestTargetY");
+		final int bestTargetRangeSlot = addDouble("GoalState/bestTargetRange");
+		final int bestTargetBearingSlot = addDouble("GoalState/bestTargetBearing");
+		final int bestTargetTimeSlot = addDouble("GoalState/bestTargetTime");
+
 		@Override
 		public void log()
 		{
-			GoalStates goalStates = GoalStates.getInstance();
-			put("GoalState/numTargets", goalList.size());
+			GoalList goals = goalList;
+			put(numTargetsSlot, goals.size());
 			
-			Optional<GoalState> optTarget = goalStates.getBestVisionTarget();
-			if (optTarget.isPresent())
+			if (goals.size() > 0)
 			{
-				GoalState target = optTarget.get();
-				put("GoalState/bestTargetX", target.getPosition().getX());
-				put("GoalState/bestTargetY", target.getPosition().getY());
-				put("GoalState/bestTargetRange", target.getHorizontalDistance());
-				put("GoalState/bestTargetBearing", target.getRelativeBearing());
-				put("GoalState/bestTargetTime", target.getTrackTime());
+				GoalState target = goals.get(0);
+				put(bestTargetXSlot, target.getPosition().getX());
+				put(bestTargetYSlot, target.getPosition().getY());
+				put(bestTargetRangeSlot, target.getHorizontalDistance());
+				put(bestTargetBearingSlot, target.getRelativeBearing());
+				put(bestTargetTimeSlot, target.getTrackTime());
 			}
 			else
 			{
-				put("GoalState/bestTargetX", -999);
-				put("GoalState/bestTargetY", -999);
-				put("GoalState/bestTargetRange", -999);
-				put("GoalState/bestTargetBearing", -999);
-				put("GoalState/bestTargetTime", -999);
+				put(bestTargetXSlot, -999);
+				put(bestTargetYSlot, -999);
+				put(bestTargetRangeSlot, -999);
+				put(bestTargetBearingSlot, -999);
+				put(bestTargetTimeSlot, -999);
 			}
 		}
 	};
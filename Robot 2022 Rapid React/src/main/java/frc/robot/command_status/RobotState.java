@@ -1,7 +1,10 @@
 package frc.robot.command_status;
 
+import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants;
+import frc.robot.lib.util.DataLogger;
 import frc.robot.lib.util.InterpolatingDouble;
 import frc.robot.lib.util.InterpolatingTreeMap;
 import frc.robot.lib.util.Kinematics;
@@ -69,6 +72,7 @@ public class RobotState
     private Kinematics.LinearAngularSpeed robotSpeed;
 
     private double gyroCorrection;
+    private double lastTime;
 
     private double lPrevDistance = 0;
     private double rPrevDistance = 0;
@@ -80,15 +84,23 @@ public class RobotState
 
     public synchronized void reset(double _startTime, double _lEncoderDistance, double _rEncoderDistance,
             Pose _initialFieldToRobot)
+    {
+        reset(_startTime, _lEncoderDistance, _rEncoderDistance, _initialFieldToRobot, DriveState.getInstance().getHeading());
+    }
+
+    // reset with an explicit gyro heading, instead of the current DriveState (used for log replay)
+    public synchronized void reset(double _startTime, double _lEncoderDistance, double _rEncoderDistance,
+            Pose _initialFieldToRobot, double _gyroHeading)
     {
         // calibrate initial position to initial pose (set by autonomous mode)
         fieldToRobot = new InterpolatingTreeMap<>(kObservationBufferSize);
         fieldToRobot.put(new InterpolatingDouble(_startTime), _initialFieldToRobot);
+        lastTime = _startTime;
 
         // calculate gyro heading correction for the desired initial pose (as set by
         // autonomous mode)
         double desiredHeading = _initialFieldToRobot.getHeading();
-        double gyroHeading = DriveState.getInstance().getHeading();
+        double gyroHeading = _gyroHeading;
         gyroCorrection = gyroHeading - desiredHeading; // subtract gyroCorrection from actual gyro heading to get
                                                        // desired orientation
 
@@ -105,6 +117,7 @@ public class RobotState
 		// calibrate initial position to initial pose (set by autonomous mode)
 		fieldToRobot = new InterpolatingTreeMap<>(kObservationBufferSize);
 		fieldToRobot.put(new InterpolatingDouble(currentTime), _newPose);
+		lastTime = currentTime;
 
 		// calculate gyro heading correction for the desired initial pose (as set by autonomous mode)
 		double desiredHeading = _newPose.getHeading();
@@ -128,6 +141,15 @@ public class RobotState
         return fieldToRobot.getInterpolated(new InterpolatingDouble(_timestamp));
     }
 
+    // pose of the camera on the robot (constant)
+    private static final Pose kRobotToCamera = new Pose(Constants.kCameraPoseX, Constants.kCameraPoseY, Constants.kCameraPoseThetaRad);
+
+    // pose of the camera at _timestamp, e.g. the capture time of an image
+    public synchronized Pose getFieldToCamera(double _timestamp)
+    {
+        return kRobotToCamera.changeCoordinateSystem(getFieldToVehicle(_timestamp));
+    }
+
     public synchronized Pose getLatestFieldToVehicle()
     {
         return fieldToRobot.lastEntry().getValue();
@@ -145,8 +167,24 @@ public class RobotState
         fieldToRobot.put(new InterpolatingDouble(_timestamp), _observation);
     }
 
+    // angular speed from the difference in wheel speeds
     public void generateOdometryFromSensors(double _time, double _lEncoderDistance, double _rEncoderDistance,
             double _lEncoderSpeed, double _rEncoderSpeed, double _gyroAngle)
+    {
+        generateOdometryFromSensors(_time, _lEncoderDistance, _rEncoderDistance, _gyroAngle,
+                Kinematics.forwardKinematics(_lEncoderSpeed, _rEncoderSpeed));
+    }
+
+    // angular speed measured by the gyro (rad/sec)
+    public void generateOdometryFromSensors(double _time, double _lEncoderDistance, double _rEncoderDistance,
+            double _lEncoderSpeed, double _rEncoderSpeed, double _gyroAngle, double _gyroRate)
+    {
+        generateOdometryFromSensors(_time, _lEncoderDistance, _rEncoderDistance, _gyroAngle,
+                Kinematics.forwardKinematics(_lEncoderSpeed, _rEncoderSpeed, _gyroRate));
+    }
+
+    private void generateOdometryFromSensors(double _time, double _lEncoderDistance, double _rEncoderDistance,
+            double _gyroAngle, Kinematics.LinearAngularSpeed _speed)
     {
         Pose lastPose = getLatestFieldToVehicle();
 
@@ -158,10 +196,15 @@ public class RobotState
 
         Pose odometry = Kinematics.integrateForwardKinematics(lastPose, lDeltaDistance, rDeltaDistance,
                 _gyroAngle - gyroCorrection);
-        Kinematics.LinearAngularSpeed speed = Kinematics.forwardKinematics(_lEncoderSpeed, _rEncoderSpeed);
 
         addFieldToVehicleObservation(_time, odometry); // store odometry
-        robotSpeed = speed; // used in getPredictedFieldToVehicle()
+        robotSpeed = _speed; // used in getPredictedFieldToVehicle()
+        lastTime = _time;
+    }
+
+    public double getGyroCorrection()
+    {
+        return gyroCorrection;
     }
 
     public double getSpeed()
@@ -169,15 +212,50 @@ public class RobotState
         return robotSpeed.linearSpeed;
     }
 
+    // looked up on first use, so RobotState can still be used off-robot (replay) without NetworkTables
+    private NetworkTableEntry positionXEntry, positionYEntry, headingDegEntry;
+
     public void outputToSmartDashboard() 
     {
+        if (positionXEntry == null)
+        {
+            positionXEntry = SmartDashboard.getEntry("RobotState/positionX");
+            positionYEntry = SmartDashboard.getEntry("RobotState/positionY");
+            headingDegEntry = SmartDashboard.getEntry("RobotState/headingDeg");
+        }
         synchronized (RobotState.this)
         {
             Pose odometry = getLatestFieldToVehicle();
-            SmartDashboard.putNumber("RobotState/positionX", odometry.getX());
-            SmartDashboard.putNumber("RobotState/positionY", odometry.getY());
-            SmartDashboard.putNumber("RobotState/headingDeg", odometry.getHeadingDeg());
+            positionXEntry.setDouble(odometry.getX());
+            positionYEntry.setDouble(odometry.getY());
+            headingDegEntry.setDouble(odometry.getHeadingDeg());
         }
     };
 
+    // odometry inputs are logged by DriveState, outputs here: together they can be replayed off-robot
+    private final DataLogger logger = new DataLogger()
+    {
+        final int timeSlot = addDouble("RobotState/time");
+        final int odometryXSlot = addDouble("RobotState/odometryX");
+        final int odometryYSlot = addDouble("RobotState/odometryY");
+        final int odometryHeadingDegSlot = addDouble("RobotState/odometryHeadingDeg");
+        final int gyroCorrectionDegSlot = onChange(addDouble("RobotState/gyroCorrectionDeg"));
+
+        @Override
+        public void log()
+        {
+            synchronized (RobotState.this)
+            {
+                Pose odometry = getLatestFieldToVehicle();
+                put(timeSlot, lastTime);
+                put(odometryXSlot, odometry.getX());
+                put(odometryYSlot, odometry.getY());
+                put(odometryHeadingDegSlot, odometry.getHeadingDeg());
+                put(gyroCorrectionDegSlot, Math.toDegrees(gyroCorrection));
+            }
+        }
+    };
+
+    public DataLogger getLogger() { return logger; }
+
 }
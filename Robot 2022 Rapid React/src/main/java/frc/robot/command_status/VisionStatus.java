@@ -30,14 +30,18 @@ public class VisionStatus
 	
 	private final DataLogger logger = new DataLogger()
     {
+		final int imageTimestampSlot = addDouble("VisionStatus/imageTimestamp");
+		final int normalizedTargetXSlot = addDouble("VisionStatus/normalizedTargetX");
+		final int normalizedTargetWidthSlot = addDouble("VisionStatus/normalizedTargetWidth");
+
         @Override
         public void log()
         {
         	synchronized (this)
         	{
- 	    		put("VisionStatus/imageTimestamp", imageTimestamp );
-	    		put("VisionStatus/normalizedTargetX", normalizedTargetX );
-	    		put("VisionStatus/normalizedTargetWidth", normalizedTargetWidth );
+ 	    		put(imageTimestampSlot, imageTimestamp );
+	    		put(normalizedTargetXSlot, normalizedTargetX );
+	    		put(normalizedTargetWidthSlot, normalizedTargetWidth );
         	}
         }
     };
@@ -5,6 +5,7 @@ import java.util.TimerTask;
 import edu.wpi.first.wpilibj.I2C;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.lib.util.Histogram;
 
 /**
  * Attribution: copied from FRC team 2168, https://github.com/jcorcoran/BNO055_FRC/blob/master/src/org/team2168/utils/BNO055.java
@@ -95,16 +96,19 @@ public class BNO055 extends GyroBase {
 	private static vector_type_t requestedVectorType;
 	
 	// How long the last I2C read of data took (expect less than .003 seconds)
-	private double readDurationLast;
+	private volatile double readDurationLast;
 	
 	// The maximum time it took for an I2C read of data (should be less than .005 seconds)
-	private double readDurationMax;
+	private volatile double readDurationMax;
 	
 	// If I2C read takes longer than this, flag it
 	private static final double READ_TOO_LONG_THRESHOLD = 0.05;
 	
 	// Number of times read took more than READ_TOO_LONG_THRESHOLD seconds (hopefully 0)
-	private int readDurationOver = 0;
+	private volatile int readDurationOver = 0;
+
+	// Distribution of I2C read durations (ms), to judge bus health
+	private final Histogram readDurationHist = new Histogram(0.5, 1, 2, 3, 5, 10, 20, 50);
 
 
 
@@ -117,6 +121,43 @@ public class BNO055 extends GyroBase {
 	private volatile byte[] positionVector = new byte[6];
 	private volatile long turns = 0;
 	private volatile double[] xyz = new double[3];
+	private double prevHeading = 0;		// update thread only, for counting turns
+
+	/**
+	 * Everything from one burst read, published whole by the update thread.
+	 * Immutable, so other threads can use it without locking.
+	 */
+	public static class Reading {
+		public final double timestamp;			// FPGA time at start of the I2C read (sec)
+		public final double heading;			// continuous, increasing clockwise like getHeading()
+		public final double headingNormalized;	// 0 - 360, like getHeadingNormalized()
+		public final double roll;
+		public final double pitch;
+		public final double yawRateDegPerSec;	// gyro z axis, positive counterclockwise
+		public final int calStatus;				// CALIB_STAT register: sys, gyro, accel, mag (2 bits each)
+
+		Reading(double timestamp, double heading, double headingNormalized, double roll, double pitch, double yawRateDegPerSec, int calStatus) {
+			this.timestamp = timestamp;
+			this.heading = heading;
+			this.headingNormalized = headingNormalized;
+			this.roll = roll;
+			this.pitch = pitch;
+			this.yawRateDegPerSec = yawRateDegPerSec;
+			this.calStatus = calStatus;
+		}
+
+		public int getGyroCal() {
+			return (calStatus >> 4) & 0x03;
+		}
+	}
+
+	// Burst read covers GYRO_DATA (0x14) through CALIB_STAT (0x35) in one I2C transaction
+	private static final int BURST_START = reg_t.BNO055_GYRO_DATA_X_LSB_ADDR.getVal();
+	private static final int BURST_GYRO_Z = reg_t.BNO055_GYRO_DATA_Z_LSB_ADDR.getVal() - BURST_START;
+	private static final int BURST_EULER = reg_t.BNO055_EULER_H_LSB_ADDR.getVal() - BURST_START;
+	private static final int BURST_CALIB_STAT = reg_t.BNO055_CALIB_STAT_ADDR.getVal() - BURST_START;
+	private final byte[] burstBuffer = new byte[BURST_CALIB_STAT + 1];
+	private volatile Reading reading = null;
 
 	public class SystemStatus {
 		public int system_status;
@@ -383,6 +424,25 @@ public class BNO055 extends GyroBase {
 		return -getHeading();			// sign correction so that heading increases as robot turns to the left 
 	}
 
+	/**
+	 * Copies the latest burst reading into the GyroBase sample (no I2C access on the
+	 * caller's thread).  Falls back to the default until the sensor is initialized.
+	 */
+	@Override
+	public Sample read() {
+		Reading r = reading;
+		if (r == null) {
+			return super.read();
+		}
+		sample.timestamp = r.timestamp;
+		sample.headingDeg = -r.heading;			// same sign correction as getHeadingDeg()
+		sample.pitchDeg = r.pitch;
+		sample.rollDeg = r.roll;
+		sample.yawRateDegPerSec = r.yawRateDegPerSec;
+		sample.rateMeasured = true;
+		return sample;
+	}
+
 	
 	
 	
@@ -579,8 +639,65 @@ public class BNO055 extends GyroBase {
 		else
 		{
 			//Sensor is initialized, periodically query position data
-			calculateVector();
+			if (requestedVectorType == vector_type_t.VECTOR_EULER) {
+				burstRead();
+			} else {
+				calculateVector();
+			}
+		}
+	}
+
+	/**
+	 * Reads gyro rate, Euler angles and calibration status in one I2C transaction
+	 *   into the preallocated burst buffer, and publishes them as a new Reading.
+	 */
+	private void burstRead() {
+		double startTime = Timer.getFPGATimestamp();
+		boolean ok = readLen(BURST_START, burstBuffer);
+		recordReadDuration(Timer.getFPGATimestamp() - startTime);
+		if (!ok) {
+			return;		// keep the previous reading
+		}
+
+		/* 1 dps = 16 LSB, 1 degree = 16 LSB (default units, section 3.6.4) */
+		double yawRate = getShort(burstBuffer, BURST_GYRO_Z) / 16.0;
+		double h = getShort(burstBuffer, BURST_EULER) / 16.0;
+		double r = getShort(burstBuffer, BURST_EULER + 2) / 16.0;
+		double p = getShort(burstBuffer, BURST_EULER + 4) / 16.0;
+
+		updateTurns(h);
+		reading = new Reading(startTime, h + turns * 360, h, r, p, yawRate, burstBuffer[BURST_CALIB_STAT] & 0xFF);
+	}
+
+	private static short getShort(byte[] buffer, int offset) {
+		return (short)((buffer[offset] & 0xFF) | ((buffer[offset + 1] << 8) & 0xFF00));
+	}
+
+	private void recordReadDuration(double duration) {
+		readDurationLast = duration;
+		if (readDurationLast > READ_TOO_LONG_THRESHOLD) {
+			readDurationOver++;
+		}
+		if (readDurationLast > readDurationMax) {
+			readDurationMax = readDurationLast;
+		}
+		readDurationHist.add(duration * 1000);
+	}
+
+	//calculate turns
+	private void updateTurns(double heading) {
+		double headingDiff = prevHeading - heading;
+		if(Math.abs(headingDiff) >= 180) 
+		{
+			//We've traveled past the zero heading position
+			if(headingDiff > 0) 
+			{
+				turns++;
+			} else {
+				turns--;
+			}
 		}
+		prevHeading = heading;
 	}
 
 	/**
@@ -589,21 +706,13 @@ public class BNO055 extends GyroBase {
 	private void calculateVector() {
 		double[] pos = new double[3];
 		short x = 0, y = 0, z = 0;
-		double headingDiff = 0.0;
 		
 		// Read vector data (6 bytes)
 		double startTime = Timer.getFPGATimestamp();
 		readLen(requestedVectorType.getVal(), positionVector);
 		
 		// Diagnostics for checking how long read operation took
-		double endTime = Timer.getFPGATimestamp();
-		readDurationLast = (endTime - startTime);
-		if (readDurationLast > READ_TOO_LONG_THRESHOLD) {
-			readDurationOver++;
-		}
-		if (readDurationLast > readDurationMax) {
-			readDurationMax = readDurationLast;
-		}
+		recordReadDuration(Timer.getFPGATimestamp() - startTime);
 		
 
 		x = (short)((positionVector[0] & 0xFF) | ((positionVector[1] << 8) & 0xFF00));
@@ -641,18 +750,7 @@ public class BNO055 extends GyroBase {
 			break;
 		}
 		
-		//calculate turns
-		headingDiff = xyz[0] - pos[0];
-		if(Math.abs(headingDiff) >= 180) 
-		{
-			//We've traveled past the zero heading position
-			if(headingDiff > 0) 
-			{
-				turns++;
-			} else {
-				turns--;
-			}
-		}
+		updateTurns(pos[0]);
 		
 		//Update position vectors
 		xyz = pos;
@@ -963,6 +1061,10 @@ public class BNO055 extends GyroBase {
 	 * @return a vector [heading, roll, pitch]
 	 */
 	public double[] getVector() {
+		Reading r = reading;
+		if (r != null) {
+			return new double[] {r.headingNormalized, r.roll, r.pitch};
+		}
 		return xyz;
 	}
 
@@ -976,8 +1078,38 @@ public class BNO055 extends GyroBase {
 	 * @return heading in degrees
 	 */
 	public double getHeading() {
+		Reading r = reading;
+		if (r != null) {
+			return r.heading;		// heading and turns from the same read
+		}
 		return xyz[0] + turns * 360;
 	}
+
+	/**
+	 * The latest burst reading (Euler mode only), or null before the first one.
+	 */
+	public Reading getReading() {
+		return reading;
+	}
+
+	public double getReadDurationLast() {
+		return readDurationLast;
+	}
+
+	public double getReadDurationMax() {
+		return readDurationMax;
+	}
+
+	public int getReadDurationOver() {
+		return readDurationOver;
+	}
+
+	/**
+	 * Histogram of I2C read durations in milliseconds.
+	 */
+	public Histogram getReadDurationHistogram() {
+		return readDurationHist;
+	}
 	
 	/**
 	 * The heading (x axis) of the sensor in non-continuous format (0 - 360).
@@ -985,7 +1117,8 @@ public class BNO055 extends GyroBase {
 	 * @return Returns the heading from the gyro in the range of 0 - 360 degrees.
 	 */
 	public double getHeadingNormalized() {
-		return xyz[0];
+		Reading r = reading;
+		return (r != null ? r.headingNormalized : xyz[0]);
 	}
 	
 	/**
@@ -994,7 +1127,8 @@ public class BNO055 extends GyroBase {
 	 * @return Returns the roll from the gyro in the range of -90 to +90 degrees.
 	 */
 	public double getRoll() {
-		return xyz[1];
+		Reading r = reading;
+		return (r != null ? r.roll : xyz[1]);
 	}
 	
 	/**
@@ -1003,7 +1137,8 @@ public class BNO055 extends GyroBase {
 	 * @return Returns the pitch from the gyro in the range of -180 to +180 degrees.
 	 */
 	public double getPitch() {
-		return xyz[2];
+		Reading r = reading;
+		return (r != null ? r.pitch : xyz[2]);
 	}
 	
 	/**
@@ -1068,6 +1203,8 @@ public class BNO055 extends GyroBase {
 		SmartDashboard.putNumber("BNO055 Read Dur", readDurationLast);
 		SmartDashboard.putNumber("BNO055 Read Max", readDurationMax);			
 		SmartDashboard.putNumber("BNO055 Read Over", readDurationOver);	
+		SmartDashboard.putStringArray("BNO055 Read Hist Buckets (ms)", readDurationHist.getLabels());
+		SmartDashboard.putNumberArray("BNO055 Read Hist", readDurationHist.getCounts());
 
 		if (verbosity < 9) {
 			return;
@@ -1098,6 +1235,8 @@ public class BNO055 extends GyroBase {
 		SmartDashboard.delete("BNO055 Read Dur");
 		SmartDashboard.delete("BNO055 Read Max");
 		SmartDashboard.delete("BNO055 Read Over");
+		SmartDashboard.delete("BNO055 Read Hist Buckets (ms)");
+		SmartDashboard.delete("BNO055 Read Hist");
 		SmartDashboard.delete("BNO055 accel_offset_x");
 		SmartDashboard.delete("BNO055 accel_offset_y");
 		SmartDashboard.delete("BNO055 accel_offset_z");
@@ -1,5 +1,7 @@
 package frc.robot.lib.sensors;
 
+import edu.wpi.first.wpilibj.Timer;
+
 /**
  * An abstract class for a simple gyro interface.
  */
@@ -14,4 +16,50 @@ public abstract class GyroBase
 	{
 		// no code
 	}
+
+	/**
+	 * Everything read from the gyro in one tick, taken together so all consumers in that
+	 * tick see the same sample.  Reused from tick to tick: copy values out, don't keep it.
+	 */
+	public static class Sample
+	{
+		public double timestamp;			// FPGA time of the read (sec)
+		public double headingDeg;			// same convention as getHeadingDeg()
+		public double pitchDeg;
+		public double rollDeg;
+		public double yawRateDegPerSec;		// positive turning left
+		public boolean rateMeasured;		// false: yaw rate is differenced from headings
+	}
+
+	protected final Sample sample = new Sample();
+	private double prevHeadingDeg = 0;
+	private double prevTimestamp = -1;
+
+	/**
+	 * Read the gyro once for this tick (call from DriveLoop only).  The default reads the
+	 * heading and differences it for the yaw rate; gyros that can report pitch, roll or a
+	 * measured rate override this.
+	 */
+	public Sample read()
+	{
+		sample.timestamp = Timer.getFPGATimestamp();
+		sample.headingDeg = getHeadingDeg();
+		differenceYawRate();
+		return sample;
+	}
+
+	// the last sample taken by read()
+	public Sample getSample()
+	{
+		return sample;
+	}
+
+	protected void differenceYawRate()
+	{
+		double dt = sample.timestamp - prevTimestamp;
+		sample.yawRateDegPerSec = (prevTimestamp >= 0 && dt > 0 ? (sample.headingDeg - prevHeadingDeg) / dt : 0);
+		sample.rateMeasured = false;
+		prevHeadingDeg = sample.headingDeg;
+		prevTimestamp = sample.timestamp;
+	}
 }
@@ -1,8 +1,10 @@
 package frc.robot.lib.sensors;
 
+import edu.wpi.first.networktables.EntryListenerFlags;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableValue;
 import edu.wpi.first.wpilibj.Timer;
 import frc.robot.lib.util.Vector2d;
 
@@ -21,11 +23,18 @@ public class Limelight
     static final int V1 = 0;
     static final int V2 = 1;
 
+    // Must stay declared before the static instances below: static fields are initialized in
+    // order, and the constructors use kNoCorners (it would still be null if declared after them).
+    private static final double[] kNoCorners = new double[0];
+
     private static Limelight cargoInstance = new Limelight("limelight-cargo", V1);
     private static Limelight hatchInstance = new Limelight("limelight-hatch", V2);
     public static Limelight getCargoInstance() { return cargoInstance; }
     public static Limelight getHatchInstance()  { return  hatchInstance; }
 
+    private static Limelight goalInstance = new Limelight();    // upper hub camera
+    public static Limelight getGoalInstance()  { return  goalInstance; }
+
     public static final double kImageHeightPixels = 240;
     public static final double kImageWidthPixels  = 320;
 
@@ -40,6 +49,9 @@ public class Limelight
 
     public final double kImageCaptureLatencyMs = 11.0;
 
+    // values arriving this close together are from one frame (Limelight frames are at least 11 ms apart)
+    private static final double kFrameGroupSec = 0.002;
+
     // Put methods for controlling this subsystem
     // here. Call these from Commands.
 
@@ -47,6 +59,66 @@ public class Limelight
     private String tableName;
     private int version;
 
+    // entries read every frame, looked up once
+    private NetworkTableEntry tvEntry;
+    private NetworkTableEntry txEntry;
+    private NetworkTableEntry tyEntry;
+    private NetworkTableEntry taEntry;
+    private NetworkTableEntry tsEntry;
+    private NetworkTableEntry tlEntry;
+    private NetworkTableEntry tcornxEntry;
+    private NetworkTableEntry tcornyEntry;
+
+    /**
+     * Everything the Limelight published for one camera frame, read together once the
+     * frame's values have arrived.  Immutable: use the values from one Frame together
+     * instead of calling the individual getters one after another.
+     */
+    public static class Frame
+    {
+        public final long frameCount;               // frames received since startup
+        public final double captureTimestamp;       // FPGA time the image was taken (sec)
+        public final double receivedTimestamp;      // FPGA time the values arrived (sec)
+        public final boolean targetFound;
+        public final double hAngleRad;              // turns to the left are positive
+        public final double vAngleRad;
+        public final double areaPercentage;
+        public final double skewRotation;
+        public final double pipelineLatencyMs;
+        private final double[] xCorners;
+        private final double[] yCorners;
+
+        Frame(long _frameCount, double _receivedTimestamp, boolean _targetFound, double _hAngleRad, double _vAngleRad,
+              double _areaPercentage, double _skewRotation, double _pipelineLatencyMs, double _captureLatencyMs,
+              double[] _xCorners, double[] _yCorners)
+        {
+            frameCount = _frameCount;
+            receivedTimestamp = _receivedTimestamp;
+            captureTimestamp = _receivedTimestamp - (_pipelineLatencyMs + _captureLatencyMs) / 1000.0;
+            targetFound = _targetFound;
+            hAngleRad = _hAngleRad;
+            vAngleRad = _vAngleRad;
+            areaPercentage = _areaPercentage;
+            skewRotation = _skewRotation;
+            pipelineLatencyMs = _pipelineLatencyMs;
+            xCorners = _xCorners;
+            yCorners = _yCorners;
+        }
+
+        // shared arrays: do not modify
+        public double[] getXCorners() { return xCorners; }
+        public double[] getYCorners() { return yCorners; }
+    }
+
+    private volatile Frame latestFrame = new Frame(0, 0, false, 0, 0, 0, 0, 0, 0, kNoCorners, kNoCorners);
+    private volatile Frame pendingFrame = latestFrame;     // values of the newest frame so far
+
+    // listener thread only
+    private long groupCount = 0;
+    private double groupTimestamp = -1;
+
+    private LimelightMonitor.Heartbeat heartbeat;
+
     /**
      * Using the Default Limelight NT table
      */
@@ -64,6 +136,23 @@ public class Limelight
         table = NetworkTableInstance.getDefault().getTable(tableName);
         version = _version;
 
+        tvEntry = table.getEntry("tv");
+        txEntry = table.getEntry("tx");
+        tyEntry = table.getEntry("ty");
+        taEntry = table.getEntry("ta");
+        tsEntry = table.getEntry("ts");
+        tlEntry = table.getEntry("tl");
+        tcornxEntry = table.getEntry("tcornx");
+        tcornyEntry = table.getEntry("tcorny");
+
+        // The Limelight writes its values once per processed frame and flushes them together,
+        // but NetworkTables only sends the values that changed: tl alone can't mark a frame
+        // (a lost target may only change tv).  Any target value update is grouped into a frame
+        // by its arrival time.
+        table.addEntryListener(this::onValue, EntryListenerFlags.kNew | EntryListenerFlags.kUpdate);
+
+        heartbeat = LimelightMonitor.getInstance().add(this);
+
         kCameraFocalLengthInPixels[V1] = kImageHorizCenterPixels / Math.atan(kCameraHorizFOVRad[V1]/2.0 * kFOVError[V1]);
         kCameraFocalLengthInPixels[V2] = kImageHorizCenterPixels / Math.atan(kCameraHorizFOVRad[V2]/2.0 * kFOVError[V2]);
     }
@@ -138,23 +227,70 @@ public class Limelight
 
     // }
 
+    /**
+     * True if a frame has arrived in the last LimelightMonitor.kStaleTimeoutSec.
+     * Does not block.
+     */
     public boolean isConnected()
     {
-        resetPipelineLatency();
-        Timer.delay(.05); // How to make this not hold the thread?
-        if (getPipelineLatency() == 0.0)
+        return heartbeat.isConnected();
+    }
+
+    /**
+     * Frame rate, last frame age and stall state, kept up to date by LimelightMonitor
+     */
+    public LimelightMonitor.Heartbeat getHeartbeat()
+    {
+        return heartbeat;
+    }
+
+    public String getTableName()
+    {
+        return tableName;
+    }
+
+    // runs on the NetworkTables listener thread
+    private void onValue(NetworkTable _table, String _key, NetworkTableEntry _entry, NetworkTableValue _value, int _flags)
+    {
+        switch (_key)
         {
-            return false;
+            case "tv": case "tx": case "ty": case "ta": case "ts": case "tl": case "tcornx": case "tcorny":
+                break;
+            default:
+                return;     // settings, or values we don't use
         }
-        else
+
+        // NT value times are in microseconds of FPGA time on the roboRIO
+        double timestamp = _value.getTime() / 1e6;
+        if (groupTimestamp < 0 || timestamp - groupTimestamp > kFrameGroupSec)
         {
-            return true;
+            groupTimestamp = timestamp;     // first value of a new frame
+            groupCount++;
         }
+
+        // rebuilt as each value of the frame arrives, from the latest value of every entry
+        pendingFrame = new Frame(groupCount, groupTimestamp,
+                                tvEntry.getDouble(0) != 0.0,
+                                -txEntry.getDouble(0.0) * Vector2d.degreesToRadians,    // turns to left (negative x) result in positive theta
+                                tyEntry.getDouble(0.0) * Vector2d.degreesToRadians,
+                                taEntry.getDouble(0.0),
+                                tsEntry.getDouble(0.0),
+                                tlEntry.getDouble(0.0), kImageCaptureLatencyMs,
+                                tcornxEntry.getDoubleArray(kNoCorners),
+                                tcornyEntry.getDoubleArray(kNoCorners));
     }
 
-    public String getTableName()
+    /**
+     * The most recent complete frame from the Limelight: a frame is complete kFrameGroupSec
+     * after its first value arrived.  Returns the same object until the next frame is
+     * complete, so callers can compare frameCount to see if it is new.
+     */
+    public Frame getLatestFrame()
     {
-        return tableName;
+        Frame pending = pendingFrame;
+        if (pending != latestFrame && Timer.getFPGATimestamp() - pending.receivedTimestamp >= kFrameGroupSec)
+            latestFrame = pending;
+        return latestFrame;
     }
 
     /**
@@ -164,16 +300,7 @@ public class Limelight
      */
     public boolean getIsTargetFound()
     {
-        NetworkTableEntry tv = table.getEntry("tv");
-        double v = tv.getDouble(0);
-        if (v == 0.0f)
-        {
-            return false;
-        }
-        else
-        {
-            return true;
-        }
+        return latestFrame.targetFound;
     }
 
     /**
@@ -183,9 +310,7 @@ public class Limelight
      */
     public double getTargetHorizontalAngleRad()
     {
-        NetworkTableEntry tx = table.getEntry("tx");
-        double x = -tx.getDouble(0.0);      // turns to left (negative x) result in positive theta
-        return x * Vector2d.degreesToRadians;
+        return latestFrame.hAngleRad;
     }
 
     /**
@@ -195,19 +320,17 @@ public class Limelight
      */
     public double getTargetVerticalAngleRad()
     {
-        NetworkTableEntry ty = table.getEntry("ty");
-        double y = ty.getDouble(0.0);
-        return y * Vector2d.degreesToRadians;
+        return latestFrame.vAngleRad;
     }
 
     public double[] getXCorners()
     {
-        return table.getEntry("tcornx").getDoubleArray(new double[0]);
+        return latestFrame.getXCorners();
     }
 
     public double[] getYCorners()
     {
-        return table.getEntry("tcorny").getDoubleArray(new double[0]);
+        return latestFrame.getYCorners();
     }
 
 
@@ -229,8 +352,9 @@ public class Limelight
 	{
 		BoundingRectangle boundingRectangle = new BoundingRectangle();
 
-        double[] xCorn = getXCorners();
-        double[] yCorn = getYCorners();
+        Frame frame = latestFrame;     // x and y corners from the same frame
+        double[] xCorn = frame.getXCorners();
+        double[] yCorn = frame.getYCorners();
 
 		for (int k=0; k<xCorn.length; k++)
 		{
@@ -281,9 +405,7 @@ public class Limelight
      */
     public double getTargetAreaPercentage()
     {
-        NetworkTableEntry ta = table.getEntry("ta");
-        double a = ta.getDouble(0.0);
-        return a;
+        return latestFrame.areaPercentage;
     }
 
     /**
@@ -293,9 +415,7 @@ public class Limelight
      */
     public double getSkewRotation()
     {
-        NetworkTableEntry ts = table.getEntry("ts");
-        double s = ts.getDouble(0.0);
-        return s;
+        return latestFrame.skewRotation;
     }
 
     /**
@@ -306,14 +426,7 @@ public class Limelight
      */
     public double getPipelineLatency()
     {
-        NetworkTableEntry tl = table.getEntry("tl");
-        double l = tl.getDouble(0.0);
-        return l;
-    }
-
-    private void resetPipelineLatency()
-    {
-        table.getEntry("tl").setValue(0.0);
+        return latestFrame.pipelineLatencyMs;
     }
 
     public double getTotalLatencyMs()
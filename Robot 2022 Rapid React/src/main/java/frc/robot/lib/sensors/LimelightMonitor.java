@@ -0,0 +1,131 @@
+package frc.robot.lib.sensors;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Low priority thread that watches the arrival of Limelight frames (see Limelight.Frame)
+ * and keeps a Heartbeat for each camera: frame rate, connected/stale state, and a count
+ * of stalls.  Nothing here blocks the caller; the getters return the latest values.
+ *
+ * A stall is a camera that was sending frames and then stops for kStaleTimeoutSec while
+ * the robot is enabled.  Each stall is reported once to the driver station.
+ */
+public class LimelightMonitor implements Runnable
+{
+	// singleton class
+	private static LimelightMonitor instance = null;
+
+	public static LimelightMonitor getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new LimelightMonitor();
+		}
+		return instance;
+	}
+
+	public static double kRateHz = 10;
+	public static double kStaleTimeoutSec = 0.5;	// Limelight runs at 22-90 fps, so this is many missed frames
+	public static double kFrameRateFilter = 0.3;	// weight of newest frame rate measurement
+
+	public class Heartbeat
+	{
+		private final Limelight limelight;
+
+		private long prevFrameCount = 0;
+		private double prevTime = -1;
+
+		private volatile double frameRate = 0;
+		private volatile boolean stalled = false;
+		private volatile int stallCount = 0;
+
+		Heartbeat(Limelight _limelight)
+		{
+			limelight = _limelight;
+		}
+
+		// seconds since the last frame arrived (infinite if none has)
+		public double getLastFrameAgeSec()
+		{
+			Limelight.Frame frame = limelight.getLatestFrame();
+			if (frame.frameCount == 0)
+				return Double.POSITIVE_INFINITY;
+			return Timer.getFPGATimestamp() - frame.receivedTimestamp;
+		}
+
+		public boolean isConnected() { return getLastFrameAgeSec() < kStaleTimeoutSec; }
+		public boolean isStale() { return !isConnected(); }
+		public boolean isStalled() { return stalled; }
+		public double getFrameRate() { return frameRate; }		// frames/sec, filtered
+		public int getStallCount() { return stallCount; }
+
+		void update(double _now)
+		{
+			long frameCount = limelight.getLatestFrame().frameCount;
+			if (prevTime >= 0 && _now > prevTime)
+			{
+				double rate = (frameCount - prevFrameCount) / (_now - prevTime);
+				frameRate += kFrameRateFilter * (rate - frameRate);
+			}
+			prevFrameCount = frameCount;
+			prevTime = _now;
+
+			boolean connected = isConnected();
+			if (!stalled && !connected && frameCount > 0 && DriverStation.isEnabled())
+			{
+				stalled = true;
+				stallCount++;
+				DriverStation.reportWarning(String.format("Limelight %s stalled: no frames for %.1f sec", limelight.getTableName(), getLastFrameAgeSec()), false);
+			}
+			else if (stalled && connected)
+			{
+				stalled = false;
+				DriverStation.reportWarning("Limelight " + limelight.getTableName() + " frames resumed", false);
+			}
+		}
+	}
+
+	private final List<Heartbeat> heartbeats = new CopyOnWriteArrayList<Heartbeat>();
+	private Thread thread = null;
+
+	private LimelightMonitor() {}
+
+	public synchronized Heartbeat add(Limelight _limelight)
+	{
+		Heartbeat heartbeat = new Heartbeat(_limelight);
+		heartbeats.add(heartbeat);
+		if (thread == null)
+		{
+			thread = new Thread(this, "LimelightMonitor");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.start();
+		}
+		return heartbeat;
+	}
+
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			double now = Timer.getFPGATimestamp();
+			for (Heartbeat heartbeat : heartbeats)
+				heartbeat.update(now);
+
+			try
+			{
+				Thread.sleep(Math.round(1000 / kRateHz));
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
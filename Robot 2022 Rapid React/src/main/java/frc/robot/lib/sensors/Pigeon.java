@@ -2,6 +2,7 @@ package frc.robot.lib.sensors;
 
 import com.ctre.phoenix.sensors.PigeonIMU;
 
+import edu.wpi.first.wpilibj.Timer;
 import frc.robot.Constants;
 
 public class Pigeon extends GyroBase 
@@ -24,50 +25,69 @@ public class Pigeon extends GyroBase
         final int kROLL = 2;
         final int kYPR_SIZE = kROLL + 1;
 
+        // raw gyro (deg/sec) constants
+        final int kZ = 2;
+        final int kXYZ_SIZE = kZ + 1;
+
         // calibration values
         double calPitch = 0.0;
         double calRoll = 0.0;
 
+        // reused for every read
+        private final double[] ypr = new double[kYPR_SIZE];
+        private final double[] xyz = new double[kXYZ_SIZE];
+
         // constructors
         public Pigeon() 
         {
                 pigeon = new PigeonIMU(Constants.kPigeonID);
         }
 
+        /**
+         * Yaw, pitch and roll from a single getYawPitchRoll() call, and the yaw rate
+         * measured by the gyro (z axis, positive counterclockwise like yaw).
+         */
+        @Override
+        public synchronized Sample read()
+        {
+                pigeon.getYawPitchRoll(ypr);
+                pigeon.getRawGyro(xyz);
+                sample.timestamp = Timer.getFPGATimestamp();
+                sample.headingDeg = ypr[kYAW];
+                sample.pitchDeg = ypr[kPITCH] - calPitch;
+                sample.rollDeg = ypr[kROLL] - calRoll;
+                sample.yawRateDegPerSec = xyz[kZ];
+                sample.rateMeasured = true;
+                return sample;
+        }
+
         /**
          * Returns heading for the GyroBase class.
-         *
+         * Reads the sensor: code running every tick should use read()/getSample() instead.
          */
-        public double getHeadingDeg() 
+        public synchronized double getHeadingDeg()
         {
-                double[] ypr = new double[kYPR_SIZE]; // yaw/pitch/roll array
                 pigeon.getYawPitchRoll(ypr); // fill array
-                double yaw = ypr[kYAW];
-                return yaw;
+                return ypr[kYAW];
         }
 
-        public double getPitchDeg()
+        public synchronized double getPitchDeg()
         {
-                double[] ypr = new double[kYPR_SIZE]; // yaw/pitch/roll array
                 pigeon.getYawPitchRoll(ypr); // fill array
-                double pitch = ypr[kPITCH];
-                return pitch - calPitch;
+                return ypr[kPITCH] - calPitch;
         }
 
-        public double getRollDeg()
+        public synchronized double getRollDeg()
         {
-                double[] ypr = new double[kYPR_SIZE]; // yaw/pitch/roll array
                 pigeon.getYawPitchRoll(ypr); // fill array
-                double roll = ypr[kROLL];
-                return roll - calRoll;
+                return ypr[kROLL] - calRoll;
         }
 
         @Override
-        public void zeroSensor() 
+        public synchronized void zeroSensor() 
         {
                 pigeon.setYaw(0.0, Constants.kTalonTimeoutMs);
 
-                double[] ypr = new double[kYPR_SIZE]; // yaw/pitch/roll array
                 pigeon.getYawPitchRoll(ypr); // fill array
                 calPitch = ypr[kPITCH];
                 calRoll = ypr[kROLL];
@@ -2,8 +2,18 @@ package frc.robot.lib.sensors;
 
 /* Taken from Team 4028, https://www.chiefdelphi.com/forums/showpost.php?p=1662895&postcount=6 */
 
+import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
 
 import org.opencv.core.Mat;
 
@@ -12,442 +22,438 @@ import edu.wpi.first.cscore.CvSink;
 import edu.wpi.first.cscore.CvSource;
 import edu.wpi.first.cscore.MjpegServer;
 import edu.wpi.first.cscore.UsbCamera;
+import edu.wpi.first.cscore.VideoMode.PixelFormat;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import frc.robot.lib.util.CircularList;
+import frc.robot.vision.CameraStream;
+import frc.robot.vision.StreamGovernor;
 
 
 /*
  * Web Browser address for camera exposure controls
- * http://roborio-686-frc.local:1181/   or 
+ * http://roborio-686-frc.local:1181/   or
  * http://10.6.86.2:1181/
- * 
+ *
  * MJPGServer @
- * http://roboRIO-686-frc.local:1181/stream.mjpg   or  
+ * http://roboRIO-686-frc.local:1181/stream.mjpg   or
  * http://10.6.86.2:1181/stream.mjpg
  */
 
 
-//This class implements all functionality for operator/driver cameras
+/**
+ * Streams one of several USB cameras (cam0 = /dev/video0, cam1 = /dev/video1, ...) to the
+ * driver station, switching between them on request.  Only the camera being streamed is
+ * enabled, so the others don't use USB bandwidth.
+ *
+ * Cameras are plugged and unplugged while the robot runs: a watch on /dev keeps track of which
+ * are present, and a replugged camera is reconfigured on its next frame.  If /dev can't be
+ * watched, presence is checked every kPresencePollSec instead.  Frames are grabbed with a
+ * timeout, so an unplugged camera never hangs the thread.
+ *
+ * Switch latency (request to first frame from the new camera) and frames served by each
+ * camera are measured and shown on SmartDashboard.
+ *
+ * The stream is a DRIVER stream of the StreamGovernor, which sets its resolution, frame rate
+ * and compression (kStreamRes* is only the size of the CvSource).
+ */
 public class SwitchableCameraServer
-{	
-	// working variables
-	private String _cameraName;
-	private String _previousCameraName;
-	private String _gearCameraName;
-	private String _climberCameraName;
-	// private String _shooterCameraName;
-	// private String _driverCameraName;
-	
-	private boolean _isCam0Present;
-	private boolean _isCam1Present;
-	private boolean _isCam2Present;
-	private boolean _isCam3Present;
-	
-	private CircularList<String> _camList;
-
-	private int cameraResWidth  = 320;
-	private int cameraResHeight = 240;
-	
-	private int streamResWidth  = 320;
-	private int streamResHeight = 240;
-	
-	private int cam0exposure = 4;	// back camera
-	private int exposure = 1;		// front camera
-	private int fps = 15;
-	
+{
+	public static int kNumCameras = 4;
+	public static int[] kExposure = {4, 1, 1, 1};		// by camera: cam0 is the back camera
+	public static int kDefaultExposure = 1;
+
+	public static int kCameraResWidth  = 320;
+	public static int kCameraResHeight = 240;
+	public static int kStreamResWidth  = 320;
+	public static int kStreamResHeight = 240;
+	public static int kFps = 15;
+	public static int kStreamPort = 1181;
+
+	public static double kGrabTimeoutSec = 0.5;
+	public static double kErrorRetrySec = 0.1;			// wait this long after a failed grab
+	public static double kPresencePollSec = 1.0;		// only used if /dev can't be watched
+
+	private static final Path kDevDir = Paths.get("/dev");
+
+	private class Camera
+	{
+		final int index;
+		final String name;
+		final Path devicePath;
+		final int exposure;
+
+		volatile boolean present = false;
+		volatile int plugCount = 0;		// incremented each time the camera appears
+
+		UsbCamera camera = null;		// created the first time the camera is used (switcher thread only)
+		CvSink sink = null;
+
+		// statistics
+		volatile long framesServed = 0;
+		volatile long grabErrors = 0;
+
+		Camera(int _index)
+		{
+			index = _index;
+			name = "cam" + _index;
+			devicePath = kDevDir.resolve("video" + _index);
+			exposure = (_index < kExposure.length ? kExposure[_index] : kDefaultExposure);
+		}
+
+		void setPresent(boolean _present)
+		{
+			if (_present && !present)
+				plugCount++;
+			present = _present;
+		}
+	}
+
+	private final Camera[] cameras;
+	private final Map<String, String> cameraFunctions = new ConcurrentHashMap<String, String>();
+
+	private volatile int requestedIndex = -1;
+	private volatile long requestNanos = System.nanoTime();
+	private volatile boolean watchingDev = false;
+
+	private Thread switcherThread;
+	private Thread watcherThread;
+	private MjpegServer server;
+
+	// statistics (written by switcher thread)
+	private volatile String lastError = "";
+	private volatile long switchCount = 0;
+	private volatile double lastSwitchMs = 0;
+	private volatile double maxSwitchMs = 0;
+	private volatile double sumSwitchMs = 0;
+
 	//============================================================================================
 	// constructors follow
 	//============================================================================================
-	public SwitchableCameraServer(String cameraname)
-	{	
-		// check what cameras are plugged in
-    	_isCam0Present = Files.exists(Paths.get("/dev/video0"));
-    	_isCam1Present = Files.exists(Paths.get("/dev/video1"));
-    	_isCam2Present = Files.exists(Paths.get("/dev/video2"));
-    	_isCam3Present = Files.exists(Paths.get("/dev/viedo3"));
-    	
-
-    	// Display which cameras are active at the beginning of the match
-    	DriverStation.reportWarning("Cam0 is Connected? " + _isCam0Present, false);
-    	DriverStation.reportWarning("Cam1 is Connected? " + _isCam1Present, false);
-    	DriverStation.reportWarning("Cam2 is Connected? " + _isCam2Present, false);
-    	DriverStation.reportWarning("Cam3 is Connected? " + _isCam3Present, false);
-		
-    	// build list of available cameras
-		_camList = new CircularList<String>();
-		
-		if(_isCam0Present)	{ _camList.add("cam0"); }
-		if(_isCam1Present)	{ _camList.add("cam1"); }
-		if(_isCam2Present)	{ _camList.add("cam2"); }
-		if(_isCam3Present)	{ _camList.add("cam3"); }
-		
+	public SwitchableCameraServer(String _cameraName)
+	{
+		cameras = new Camera[kNumCameras];
+		for (int k = 0; k < kNumCameras; k++)
+			cameras[k] = new Camera(k);
+
+		// start watching before the first scan, so nothing plugged in between is missed
+		WatchService watchService = openWatchService();
+		rescan();
+
+		// Display which cameras are active at the beginning of the match
+		for (Camera camera : cameras)
+			DriverStation.reportWarning(camera.name + " is Connected? " + camera.present, false);
+
 		// change to the requested camera
-		changeToCamera(cameraname);
-		
-		// start the camera thread
-		Thread cameraThread = new Thread(CameraSwitcherRunnable);
-		cameraThread.start();
+		changeToCamera(_cameraName);
+
+		switcherThread = new Thread(this::switcherLoop, "SwitchableCameraServer");
+		switcherThread.setDaemon(true);
+		switcherThread.setPriority(Thread.MIN_PRIORITY);
+		switcherThread.start();
+
+		if (watchService != null)
+		{
+			watcherThread = new Thread(() -> watcherLoop(watchService), "SwitchableCameraServer hotplug");
+			watcherThread.setDaemon(true);
+			watcherThread.setPriority(Thread.MIN_PRIORITY);
+			watcherThread.start();
+		}
 	}
 
 	//============================================================================================
 	// Methods follow
 	//============================================================================================
-	public void changeToCamera(String cameraName) 
+	public void changeToCamera(String _cameraName)
 	{
-		if(_previousCameraName != cameraName)		//check if there is more than 1 camera
+		Camera camera = findCamera(_cameraName);
+		if (camera == null)
 		{
-			// make sure the requested camera is available
-			if(_camList.contains(cameraName))
-			{
-				_cameraName = cameraName;
-			}	
-			else
-			{
-				System.out.println("Camera not available: " + cameraName);
-				DriverStation.reportError("Camera not available: " + _cameraName, false);
-			}
+			DriverStation.reportError("Camera not available: " + _cameraName, false);
+			return;
 		}
-		else
+		if (camera.index == requestedIndex)
 		{
-			System.out.println("Requested Camera is already current: " + cameraName);
+			System.out.println("Requested Camera is already current: " + _cameraName);
+			return;
 		}
+		if (!camera.present)
+			DriverStation.reportWarning("Camera not plugged in: " + _cameraName + " (will switch when it is)", false);
+
+		requestNanos = System.nanoTime();
+		requestedIndex = camera.index;
+		LockSupport.unpark(switcherThread);
 	}
-	
+
+	// next camera that is plugged in, after the current one
 	public void changeToNextCamera()
-	{		
-		if(!_camList.isEmpty())		//check to see if there are cameras connected
-		{
-			changeToCamera(_camList.getNext());
-		}
-		else
+	{
+		int start = Math.max(requestedIndex, 0);
+		for (int k = 1; k <= cameras.length; k++)
 		{
-			DriverStation.reportError("No Cameras Available", false);
+			Camera camera = cameras[(start + k) % cameras.length];
+			if (camera.present)
+			{
+				if (camera.index != requestedIndex)
+					changeToCamera(camera.name);
+				return;
+			}
 		}
+		DriverStation.reportError("No Cameras Available", false);
 	}
-	
+
 	public void outputToSmartDashboard()
 	{
-		SmartDashboard.putString("IsCam0Present:", Boolean.toString(_isCam0Present) + " (" + getCameraFunction("cam0") + ")");
-		SmartDashboard.putString("IsCam1Present?", Boolean.toString(_isCam1Present) + " (" + getCameraFunction("cam1") + ")");
-		SmartDashboard.putString("IsCam2Present?", Boolean.toString(_isCam2Present) + " (" + getCameraFunction("cam2") + ")");
-		SmartDashboard.putString("IsCam3Present?", Boolean.toString(_isCam3Present) + " (" + getCameraFunction("cam3") + ")");
-		if (_cameraName == null)		//give no camera name if there is nothing connected
+		for (Camera camera : cameras)
 		{
-			_cameraName = "N/A";
+			SmartDashboard.putString("IsCam" + camera.index + "Present?", Boolean.toString(camera.present) + " (" + getCameraFunction(camera.name) + ")");
+			SmartDashboard.putNumber("Cam" + camera.index + " frames served", camera.framesServed);
 		}
+		SmartDashboard.putString("CurrentCameraName:", getCurrentCameraName());
+		SmartDashboard.putNumber("Camera switch ms (last)", lastSwitchMs);
+		SmartDashboard.putNumber("Camera switch ms (max)", maxSwitchMs);
+	}
 
-		SmartDashboard.putString("CurrentCameraName:", _cameraName);
+	private String getCameraFunction(String _cameraName)		//display the expected camera name based on sendable choosers
+	{
+		return cameraFunctions.getOrDefault(_cameraName, "N/A");
 	}
-	
-	private String getCameraFunction(String cameraName)		//display the expected camera name based on sendable choosers
+
+	private Camera findCamera(String _cameraName)
 	{
-		if(_gearCameraName == cameraName)
-		{
-			return "Gear";
-		}
-		else if(_climberCameraName == cameraName)
-		{
-			return "Climber";
-		}
-		else
+		for (Camera camera : cameras)
 		{
-			return "N/A";
+			if (camera.name.equals(_cameraName))
+				return camera;
 		}
+		return null;
 	}
+
 	//============================================================================================
 	// get/sets
 	//============================================================================================
 	public String getCurrentCameraName()
 	{
-		return _cameraName;
+		int index = requestedIndex;
+		return (index >= 0 ? cameras[index].name : "N/A");
+	}
+
+	// e.g. setCameraFunction("cam1", "Intake")
+	public void setCameraFunction(String _cameraName, String _function)
+	{
+		cameraFunctions.put(_cameraName, _function);
+	}
+
+	public int getNumCameras() { return cameras.length; }
+	public boolean isPresent(int _index) { return cameras[_index].present; }
+	public long getFramesServed(int _index) { return cameras[_index].framesServed; }
+	public long getGrabErrors(int _index) { return cameras[_index].grabErrors; }
+	public String getLastError() { return lastError; }
+	public boolean isWatchingHotplug() { return watchingDev; }
+
+	public long getSwitchCount() { return switchCount; }
+	public double getLastSwitchMs() { return lastSwitchMs; }
+	public double getMaxSwitchMs() { return maxSwitchMs; }
+	public double getAvgSwitchMs() { long count = switchCount; return (count > 0 ? sumSwitchMs / count : 0); }
+
+	public MjpegServer getServer() { return server; }		// null until the switcher thread has started
+
+	//============================================================================================
+	// Hotplug
+	//============================================================================================
+	private WatchService openWatchService()
+	{
+		try
+		{
+			WatchService watchService = FileSystems.getDefault().newWatchService();
+			kDevDir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+			watchingDev = true;
+			return watchService;
+		}
+		catch (IOException | UnsupportedOperationException e)
+		{
+			DriverStation.reportWarning("SwitchableCameraServer: can't watch " + kDevDir + ", checking for cameras every " + kPresencePollSec + " sec", false);
+			return null;
+		}
+	}
+
+	private void rescan()
+	{
+		for (Camera camera : cameras)
+			camera.setPresent(Files.exists(camera.devicePath));
 	}
-	
-	public void setGearCameraName(String cameraname)
+
+	private void watcherLoop(WatchService _watchService)
 	{
-		_gearCameraName = cameraname;
+		while (!Thread.interrupted())
+		{
+			WatchKey key;
+			try
+			{
+				key = _watchService.take();
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+
+			for (WatchEvent<?> event : key.pollEvents())
+			{
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+				{
+					rescan();
+					continue;
+				}
+				Camera camera = cameraForDevice(event.context().toString());
+				if (camera == null)
+					continue;
+				boolean plugged = (event.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+				camera.setPresent(plugged);
+				System.out.println("Camera " + (plugged ? "plugged in: " : "unplugged: ") + camera.name);
+			}
+			LockSupport.unpark(switcherThread);
+
+			if (!key.reset())
+			{
+				// /dev went away: shouldn't happen, but fall back to polling
+				watchingDev = false;
+				break;
+			}
+		}
 	}
-	
-	public void setClimberCameraName(String cameraname)
+
+	// camera for a /dev entry name ("video2"), or null
+	private Camera cameraForDevice(String _fileName)
 	{
-		_climberCameraName = cameraname;
+		if (!_fileName.startsWith("video"))
+			return null;
+		try
+		{
+			int index = Integer.parseInt(_fileName.substring(5));
+			return (index >= 0 && index < cameras.length ? cameras[index] : null);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
 	}
-	
-	// public void setShooterCameraName(String cameraname)
-	// {
-	// 	_shooterCameraName = cameraname;
-	// }
-	
-	// public void setDriverCameraName(String cameraname)
-	// {
-	// 	_driverCameraName = cameraname;
-	// }
-	
+
 	//============================================================================================
 	// Task that is run on a separate thread
 	//============================================================================================
-	private Runnable CameraSwitcherRunnable = new Runnable()
+	private void switcherLoop()
 	{
-		@Override
-		public void run() 
-		{   
-
-			// create instances of the all the cameras
-            // create sinks for each camera
-	    	UsbCamera cam0 = null;		
-	    	UsbCamera cam1 = null;
-	    	UsbCamera cam2 = null;
-	    	UsbCamera cam3 = null;
-	    	
-	    	CvSink cvSink0 = null;
-	    	CvSink cvSink1 = null;
-	    	CvSink cvSink2 = null;
-	    	CvSink cvSink3 = null;
-	    	
-	    	//declare instances of each camera if it exists
-	    	if(_isCam0Present)
-	    	{
-	    		cam0 = new UsbCamera("cam0", 0); 				
-	    		cvSink0 = CameraServer.getInstance().getVideo(cam0); 
-	    		cvSink0.setEnabled(false);
-	    	}
-	    	
-	    	if(_isCam1Present)
-	    	{
-	    		cam1 = new UsbCamera("cam1",  1); 	
-	    		cvSink1 = CameraServer.getInstance().getVideo(cam1);
-	    		cvSink1.setEnabled(false);
-	    	}
-	    	
-		    if(_isCam2Present)
-		    {
-		    	cam2 = new UsbCamera("cam2", 2); 
-		    	cvSink2 = CameraServer.getInstance().getVideo(cam2);
-		    	cvSink2.setEnabled(false);
-		    }
-		    
-		    if(_isCam3Present)
-		    {
-		    	cam3 = new UsbCamera("cam3", 3); 
-		    	cvSink3 = CameraServer.getInstance().getVideo(cam3);
-		    	cvSink3.setEnabled(false);
-		    }
- 
-            // create an output stream
-            CvSource outputStream = CameraServer.getInstance().putVideo("Switcher", streamResWidth, streamResHeight);
-            
-            // create a 2d array to hold the captured image
-            Mat image = new Mat();
-            
-            // create a MjpegServer on port 1181
-            MjpegServer server = new MjpegServer("server", 1181);
-            
-            // set the image source for the mjepg server to be the output stream
-            server.setSource(outputStream);
-                       
-            boolean isImageAvailable = false;
-            boolean isCameraAvailableLastScan = false;
-            
-            // =============================================================================
-            // start looping
-            // =============================================================================
-            while(!Thread.interrupted()) 
-            {            	
-            	isImageAvailable = false;
-            	
-        		// enable this camera & configure it
-        		if(_cameraName == "cam0")
-        		{              
-        			// make sure camera is still plugged in
-        			_isCam0Present = Files.exists(Paths.get("/dev/video0"));
-        			
-        			if (_isCam0Present)
-        			{
-	          			try
-	        			{        
-	          				// if camera was jut swapped or unplugged & plugged back in
-		        			if(_previousCameraName != _cameraName || !isCameraAvailableLastScan)
-		        			{                	
-		        				// disable the other cameras
-		                		//	NOTE: Key point is to disable all other cameras BEFORE you enable the one
-		                		//			you want to avoid USB bus overload!
-		            			if(cvSink1 != null) { cvSink1.setEnabled(false); }
-		            			
-		            			if(cvSink2 != null) { cvSink2.setEnabled(false); }
-		            			
-		            			if(cvSink3 != null) { cvSink3.setEnabled(false); }
-		            			
-		            			//set properties for each camera
-				                cvSink0.setEnabled(true);
-			                	cam0.setFPS(fps);
-			               		cam0.setResolution(cameraResWidth, cameraResHeight);
-			               		cam0.setExposureManual(cam0exposure);
-			               		_previousCameraName = _cameraName;
-			               		
-			               		System.out.println("Camera Swapped to: " + _cameraName);
-		        			}
-		               		
-		        			// grab the current frame from this camera and put it into the 2D array
-		            		cvSink0.grabFrameNoTimeout(image);
-		            		isImageAvailable = true;
-		            		isCameraAvailableLastScan = true;
-	        			}
-	        			catch(Exception ex) 
-	          			{ 
-	        				isCameraAvailableLastScan = false;
-	        				System.out.println("Camera Unplugged: " + _cameraName);
-	        				DriverStation.reportError("Camera Unplugged: " + _cameraName, false);
-	        			}
-        			}
-            	} 
-        		// ===== CAM1 =======
-        		else if(_cameraName == "cam1")
-        		{              
-        			// make sure camera is still plugged in
-        			_isCam1Present = Files.exists(Paths.get("/dev/video1"));
-        			
-        			if (_isCam1Present)
-        			{
-	          			try
-	        			{        
-	          				// if camera was jut swapped or unplugged & plugged back in
-		        			if(_previousCameraName != _cameraName || !isCameraAvailableLastScan)
-		        			{                		
-		        				// disable the other cameras
-		                		//	NOTE: Key point is to disable all other cameras BEFORE you enable the one
-		                		//			you want to avoid USB bus overload!
-		            			if(cvSink0 != null) { cvSink0.setEnabled(false); }
-		            			
-		            			if(cvSink2 != null) { cvSink2.setEnabled(false); }
-		            			
-		            			if(cvSink3 != null) { cvSink3.setEnabled(false); }
-		            			
-		            			//define properties for camera 1
-				                cvSink1.setEnabled(true);
-			                	cam1.setFPS(fps);
-			                	cam1.setResolution(cameraResWidth, cameraResHeight);			      
-			                	cam1.setExposureManual(exposure);
-			               		_previousCameraName = _cameraName;
-			               		
-			               		System.out.println("Camera Swapped to: " + _cameraName);
-		        			}
-		               		
-		        			// grab the current frame from this camera and put it into the 2D array
-		        			cvSink1.grabFrameNoTimeout(image);
-		            		isImageAvailable = true;
-		            		isCameraAvailableLastScan = true;
-	        			}
-	        			catch(Exception ex) 
-	          			{ 
-	        				isCameraAvailableLastScan = false;
-	        				System.out.println("Camera Unplugged: " + _cameraName);
-	        			}
-        			}
-            	} 
-        		// ===== CAM2 =======
-        		else if(_cameraName == "cam2")
-        		{              
-        			// make sure camera is still plugged in
-        			_isCam2Present = Files.exists(Paths.get("/dev/video2"));
-        			
-        			if (_isCam2Present)
-        			{
-	          			try
-	        			{        
-	          				// if camera was jut swapped or unplugged & plugged back in
-		        			if(_previousCameraName != _cameraName || !isCameraAvailableLastScan)
-		        			{                		
-		        				// disable the other cameras
-		                		//	NOTE: Key point is to disable all other cameras BEFORE you enable the one
-		                		//			you want to avoid USB bus overload!
-		            			if(cvSink0 != null) { cvSink0.setEnabled(false); }
-		            			
-		            			if(cvSink1 != null) { cvSink1.setEnabled(false); }
-		            			
-		            			if(cvSink3 != null) { cvSink3.setEnabled(false); }
-		            			
-		            			//define properties for camera 2
-				                cvSink2.setEnabled(true);
-			                	cam2.setFPS(fps);
-			                	cam2.setResolution(cameraResWidth, cameraResHeight);
-			                	cam2.setExposureManual(exposure);
-			               		_previousCameraName = _cameraName;
-			               		
-			               		System.out.println("Camera Swapped to: " + _cameraName);
-		        			}
-		               		
-		        			// grab the current frame from this camera and put it into the 2D array
-		        			cvSink2.grabFrameNoTimeout(image);
-		            		isImageAvailable = true;
-		            		isCameraAvailableLastScan = true;
-	        			}
-	        			catch(Exception ex) 
-	          			{ 
-	        				isCameraAvailableLastScan = false;
-	        				System.out.println("Camera Unplugged: " + _cameraName);
-	        			}
-        			}
-            	} 
-        		// ===== CAM3 =======
-        		else if(_cameraName == "cam3")
-        		{              
-        			// make sure camera is still plugged in
-        			_isCam3Present = Files.exists(Paths.get("/dev/video3"));
-        			
-        			if (_isCam3Present)
-        			{
-	          			try
-	        			{        
-	          				// if camera was jut swapped or unplugged & plugged back in
-		        			if(_previousCameraName != _cameraName || !isCameraAvailableLastScan)
-		        			{                		
-		        				// disable the other cameras
-		                		//	NOTE: Key point is to disable all other cameras BEFORE you enable the one
-		                		//			you want to avoid USB bus overload!
-		            			if(cvSink0 != null) { cvSink0.setEnabled(false); }
-		            			
-		            			if(cvSink1 != null) { cvSink1.setEnabled(false); }
-		            			
-		            			if(cvSink2 != null) { cvSink2.setEnabled(false); }
-		            			
-		            			//define properties for camera 3
-				                cvSink3.setEnabled(true);
-			                	cam3.setFPS(fps);
-			                	cam3.setResolution(cameraResWidth, cameraResHeight);
-			                	cam3.setExposureManual(exposure);
-			               		_previousCameraName = _cameraName;
-			               		
-			               		System.out.println("Camera Swapped to: " + _cameraName);
-		        			}
-		               		
-		        			// grab the current frame from this camera and put it into the 2D array
-		        			cvSink3.grabFrameNoTimeout(image);
-		            		isImageAvailable = true;
-		            		isCameraAvailableLastScan = true;
-	        			}
-	        			catch(Exception ex) 
-	          			{ 
-	        				isCameraAvailableLastScan = false;
-	        				System.out.println("Camera Unplugged: " + _cameraName);
-	        			}
-        			}
-            	} 
-        		            	
-        		if(isImageAvailable)
-        		{
-		           	// push the captured frame to the output stream
-	           		outputStream.putFrame(image);
-        		}
-        		
-        		// sleep each cycle to avoid Robot Code not updating often enough issues
-        		try {
-					Thread.sleep(10);
-				} catch (InterruptedException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+		// create an output stream, and a MjpegServer to send it
+		CvSource outputStream = new CvSource("Switcher", PixelFormat.kMJPEG, kStreamResWidth, kStreamResHeight, kFps);
+		server = new MjpegServer("server", kStreamPort);
+		server.setSource(outputStream);
+		StreamGovernor.getInstance().add(new CameraStream("Switcher", CameraStream.Role.DRIVER, outputStream, server));
+
+		Mat image = new Mat();
+		Camera active = null;
+		int activePlugCount = -1;
+		boolean switchPending = false;
+		long switchStartNanos = 0;
+		long nextPollNanos = System.nanoTime();
+
+		while (!Thread.interrupted())
+		{
+			if (!watchingDev && System.nanoTime() - nextPollNanos >= 0)
+			{
+				rescan();
+				nextPollNanos = System.nanoTime() + (long)(kPresencePollSec * 1e9);
+			}
+
+			int index = requestedIndex;
+			Camera requested = (index >= 0 ? cameras[index] : null);
+			if (requested == null || !requested.present)
+			{
+				// nothing to stream: wait for a request or a camera to be plugged in
+				if (active != null && active.sink != null)
+					active.sink.setEnabled(false);
+				active = null;
+				LockSupport.parkNanos((long)(kPresencePollSec * 1e9));
+				continue;
+			}
+
+			// camera was just swapped or unplugged & plugged back in
+			if (requested != active || requested.plugCount != activePlugCount)
+			{
+				switchStartNanos = (requested != active ? requestNanos : System.nanoTime());
+				try
+				{
+					enable(requested);
 				}
-            }
-	            	
+				catch (Exception e)
+				{
+					lastError = requested.name + ": " + e.getMessage();
+					DriverStation.reportError("Camera " + lastError, false);
+					active = null;
+					sleep(kErrorRetrySec);
+					continue;
+				}
+				active = requested;
+				activePlugCount = requested.plugCount;
+				switchPending = true;
+				System.out.println("Camera Swapped to: " + active.name);
+			}
+
+			// grab the current frame from this camera: returns 0 on timeout or error (e.g. unplugged)
+			if (active.sink.grabFrame(image, kGrabTimeoutSec) == 0)
+			{
+				active.grabErrors++;
+				lastError = active.name + ": " + active.sink.getError();
+				sleep(kErrorRetrySec);
+				continue;
+			}
+
+			// push the captured frame to the output stream
+			outputStream.putFrame(image);
+			active.framesServed++;
+
+			if (switchPending)
+			{
+				switchPending = false;
+				double ms = (System.nanoTime() - switchStartNanos) / 1e6;
+				lastSwitchMs = ms;
+				maxSwitchMs = Math.max(maxSwitchMs, ms);
+				sumSwitchMs += ms;
+				switchCount++;
+			}
+		}
+	}
+
+	private void enable(Camera _camera)
+	{
+		// NOTE: Key point is to disable all other cameras BEFORE you enable the one
+		//		 you want to avoid USB bus overload!
+		for (Camera camera : cameras)
+		{
+			if (camera != _camera && camera.sink != null)
+				camera.sink.setEnabled(false);
+		}
+
+		if (_camera.camera == null)
+		{
+			_camera.camera = new UsbCamera(_camera.name, _camera.index);
+			_camera.sink = CameraServer.getVideo(_camera.camera);
 		}
-	};
-}
\ No newline at end of file
+
+		// set properties for the camera: again after a replug, which resets them
+		_camera.sink.setEnabled(true);
+		_camera.camera.setFPS(kFps);
+		_camera.camera.setResolution(kCameraResWidth, kCameraResHeight);
+		_camera.camera.setExposureManual(_camera.exposure);
+	}
+
+	private static void sleep(double _sec)
+	{
+		try
+		{
+			Thread.sleep((long)(_sec * 1000));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,429 @@
+package frc.robot.lib.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Background writer for DataLogController.
+ *
+ * The robot loop encodes each row into a LogRingBuffer slot (a memory copy, no formatting
+ * or I/O).  A low priority thread drains the ring and writes either the raw binary records
+ * or CSV (same layout as the old DataLogController files).  Formatting, file open and flush
+ * all happen on the writer thread.  Files are rotated when they reach kMaxFileBytes or
+ * kMaxFileAgeMs (each part starts with the column header), and closed files are handed to
+ * LogArchiver for compression and retention.
+ *
+ * Ring slots are maxRecordBytes each (DataLogController sizes them for its channels).
+ * A record that doesn't fit can't be logged: see DataLogController.
+ *
+ * Binary file layout:
+ *     magic "686LOG" + version byte
+ *     records: int length, then the record bytes (see below)
+ *
+ * Record layout:
+ *     'H' header:  short count, then count column names (short length + UTF-8 bytes)
+ *     'R' row:     long wall clock millis, long millis since start, short count,
+ *                  then count values, each a type tag followed by the value:
+ *                  'D' double, 'I' int, 'Z' boolean (1 byte), 'S' string (short length + UTF-8 bytes),
+ *                  'N' no value (channel not sampled this cycle; empty in CSV)
+ */
+public class AsyncLogWriter implements Runnable
+{
+	public enum Format { BINARY, CSV }
+
+	public static int kRingSize = 1024;				// 10 sec of records at 100 Hz
+	public static int kMaxRecordBytes = 4096;		// smallest slot size
+	public static long kIdleSleepMs = 5;
+	public static long kFlushIntervalMs = 100;
+	public static long kMaxFileBytes = 20L * 1024 * 1024;	// rotate to a new file after this size...
+	public static long kMaxFileAgeMs = 10 * 60 * 1000;		// ...or this long
+
+	public static final byte[] kMagic = { '6', '8', '6', 'L', 'O', 'G' };
+	public static final byte kVersion = 1;
+
+	public static final byte kHeaderRecord = 'H';
+	public static final byte kRowRecord = 'R';
+	public static final byte kDoubleTag = 'D';
+	public static final byte kIntTag = 'I';
+	public static final byte kBooleanTag = 'Z';
+	public static final byte kStringTag = 'S';
+	public static final byte kNoValueTag = 'N';
+
+	private final File baseFile;
+	private volatile File file;					// current file
+	private final Format format;
+	private final int maxRecordBytes;
+	private final LogRingBuffer ring;
+	private final Thread thread;
+	private volatile boolean running = true;
+	private final AtomicBoolean rotated = new AtomicBoolean(false);
+
+	// writer statistics (written by writer thread only)
+	private volatile long recordsWritten = 0;
+	private volatile long lagMs = 0;			// age of the last record when it was written
+	private volatile long maxLagMs = 0;
+	private volatile int maxLagRecords = 0;		// most records waiting in the ring
+
+	public AsyncLogWriter(File _file, Format _format)
+	{
+		this(_file, _format, kMaxRecordBytes);
+	}
+
+	public AsyncLogWriter(File _file, Format _format, int _maxRecordBytes)
+	{
+		baseFile = _file;
+		file = _file;
+		format = _format;
+		maxRecordBytes = Math.max(_maxRecordBytes, kMaxRecordBytes);
+		ring = new LogRingBuffer(kRingSize, maxRecordBytes);
+		thread = new Thread(this, "AsyncLogWriter " + _file.getName());
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	public File getFile() { return file; }
+	public int getMaxRecordBytes() { return maxRecordBytes; }
+
+	// true once after each rotation to a new file
+	public boolean checkRotated() { return rotated.getAndSet(false); }
+	public long getRecordsWritten() { return recordsWritten; }
+	public long getDroppedRecords() { return ring.getDropped(); }
+	public int getLagRecords() { return ring.size(); }
+	public int getMaxLagRecords() { return maxLagRecords; }
+	public long getLagMs() { return lagMs; }
+	public long getMaxLagMs() { return maxLagMs; }
+
+	public String toString()
+	{
+		return String.format("%s: %d written, %d dropped, lag %d records / %d ms (max %d records / %d ms)",
+				file.getName(), getRecordsWritten(), getDroppedRecords(), getLagRecords(), getLagMs(), getMaxLagRecords(), getMaxLagMs());
+	}
+
+
+
+	/*
+	 * Producer side: called from the robot loop.  Encoding a record only copies values into the ring.
+	 */
+
+	private ByteBuffer record = null;
+
+	// returns false if the ring is full, in which case the record is dropped
+	public boolean beginHeader(int _count)
+	{
+		record = ring.claim();
+		if (record == null)
+			return false;
+		record.put(kHeaderRecord);
+		record.putShort((short)_count);
+		return true;
+	}
+
+	public boolean beginRow(long _wallMillis, long _timeSinceStart, int _count)
+	{
+		record = ring.claim();
+		if (record == null)
+			return false;
+		record.put(kRowRecord);
+		record.putLong(_wallMillis);
+		record.putLong(_timeSinceStart);
+		record.putShort((short)_count);
+		return true;
+	}
+
+	public void putName(String _name)
+	{
+		putUTF(_name);
+	}
+
+	public void putDouble(double _value)
+	{
+		record.put(kDoubleTag);
+		record.putDouble(_value);
+	}
+
+	public void putInt(int _value)
+	{
+		record.put(kIntTag);
+		record.putInt(_value);
+	}
+
+	public void putBoolean(boolean _value)
+	{
+		record.put(kBooleanTag);
+		record.put((byte)(_value ? 1 : 0));
+	}
+
+	public void putString(String _value)
+	{
+		record.put(kStringTag);
+		putUTF(_value);
+	}
+
+	public void putNoValue()
+	{
+		record.put(kNoValueTag);
+	}
+
+	private void putUTF(String _value)
+	{
+		// copy ASCII strings (names, enums) directly, without allocating a byte array
+		int length = _value.length();
+		boolean ascii = true;
+		for (int k = 0; k < length && ascii; k++)
+			ascii = (_value.charAt(k) < 0x80);
+
+		if (ascii)
+		{
+			record.putShort((short)length);
+			for (int k = 0; k < length; k++)
+				record.put((byte)_value.charAt(k));
+		}
+		else
+		{
+			byte[] bytes = _value.getBytes(StandardCharsets.UTF_8);
+			record.putShort((short)bytes.length);
+			record.put(bytes);
+		}
+	}
+
+	public void endRecord()
+	{
+		if (record != null)
+			ring.publish();
+		record = null;
+	}
+
+	// call instead of endRecord() if encoding failed (BufferOverflowException)
+	public void abandonRecord()
+	{
+		if (record != null)
+			ring.abandon();
+		record = null;
+	}
+
+	public void close()
+	{
+		running = false;
+		try
+		{
+			thread.join(1000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+
+	/*
+	 * Writer thread
+	 */
+
+	// writer thread state
+	private OutputStream os;
+	private DataOutputStream dos;
+	private PrintStream ps;
+	private long fileBytes;
+	private long fileOpenTime;
+	private int part = 0;
+	private byte[] lastHeader = new byte[0];		// copied to the start of each rotated file
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd-yyyy HH:mm:ss.SS");
+	private final Date date = new Date();
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			open();
+
+			long lastFlushTime = System.currentTimeMillis();
+			boolean unflushed = false;
+			while (running || ring.size() > 0)
+			{
+				maxLagRecords = Math.max(maxLagRecords, ring.size());
+
+				ByteBuffer buffer;
+				while ((buffer = ring.peek()) != null)
+				{
+					if (buffer.get(0) == kHeaderRecord)
+					{
+						lastHeader = Arrays.copyOf(buffer.array(), buffer.limit());
+					}
+					else if (buffer.get(0) == kRowRecord)
+					{
+						lagMs = System.currentTimeMillis() - buffer.getLong(1);
+						maxLagMs = Math.max(maxLagMs, lagMs);
+
+						if (fileBytes >= kMaxFileBytes || System.currentTimeMillis() - fileOpenTime >= kMaxFileAgeMs)
+						{
+							rotate();
+						}
+					}
+
+					writeRecord(buffer);
+					ring.release();
+					recordsWritten++;
+					unflushed = true;
+				}
+
+				long now = System.currentTimeMillis();
+				if (unflushed && (now - lastFlushTime >= kFlushIntervalMs))
+				{
+					ps.flush();
+					dos.flush();
+					lastFlushTime = now;
+					unflushed = false;
+				}
+
+				Thread.sleep(kIdleSleepMs);
+			}
+			closeFile();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// file name for each part: base name, then base_2, base_3...
+	private File getPartFile(int _part)
+	{
+		if (_part == 0)
+			return baseFile;
+		String name = baseFile.getName();
+		int dot = name.lastIndexOf('.');
+		String stem = (dot >= 0 ? name.substring(0, dot) : name);
+		String extension = (dot >= 0 ? name.substring(dot) : "");
+		return new File(baseFile.getParentFile(), stem + "_" + (_part+1) + extension);
+	}
+
+	private void open() throws IOException
+	{
+		file = getPartFile(part);
+		LogArchiver.getInstance().open(file);
+		System.out.println("Opening log file: " + file.getName());
+
+		os = new BufferedOutputStream(new FileOutputStream(file), 64*1024)
+		{
+			@Override
+			public synchronized void write(int b) throws IOException { super.write(b); fileBytes++; }
+			@Override
+			public synchronized void write(byte[] b, int off, int len) throws IOException { super.write(b, off, len); fileBytes += len; }
+		};
+		dos = new DataOutputStream(os);
+		ps = new PrintStream(os, false);
+		fileBytes = 0;
+		fileOpenTime = System.currentTimeMillis();
+
+		if (format == Format.BINARY)
+		{
+			dos.write(kMagic);
+			dos.writeByte(kVersion);
+		}
+	}
+
+	private void closeFile() throws IOException
+	{
+		ps.flush();
+		dos.flush();
+		os.close();
+		LogArchiver.getInstance().close(file);
+	}
+
+	// close the current file (it gets compressed in the background) and continue in a new one
+	private void rotate() throws IOException
+	{
+		closeFile();
+		part++;
+		open();
+		if (lastHeader.length > 0)
+		{
+			writeRecord(ByteBuffer.wrap(lastHeader));
+		}
+		rotated.set(true);
+	}
+
+	private void writeRecord(ByteBuffer _buffer) throws IOException
+	{
+		if (format == Format.BINARY)
+		{
+			dos.writeInt(_buffer.remaining());
+			dos.write(_buffer.array(), _buffer.arrayOffset() + _buffer.position(), _buffer.remaining());
+		}
+		else
+		{
+			writeCSV(_buffer, ps, dateFormat, date);
+		}
+	}
+
+	private static void writeCSV(ByteBuffer _buffer, PrintStream _ps, SimpleDateFormat _dateFormat, Date _date)
+	{
+		byte type = _buffer.get();
+		if (type == kHeaderRecord)
+		{
+			int count = _buffer.getShort();
+			_ps.print("time,timeSinceStart");
+			for (int k = 0; k < count; k++)
+			{
+				_ps.print(',');
+				_ps.print(getUTF(_buffer));
+			}
+			_ps.println();
+		}
+		else if (type == kRowRecord)
+		{
+			_date.setTime(_buffer.getLong());
+			_ps.print(_dateFormat.format(_date));
+			_ps.print(',');
+			_ps.print(_buffer.getLong());
+			int count = _buffer.getShort();
+			for (int k = 0; k < count; k++)
+			{
+				_ps.print(',');
+				_ps.print(getValue(_buffer));
+			}
+			_ps.println();
+		}
+	}
+
+	// decode one tagged value (for readers of binary logs)
+	public static Object getValue(ByteBuffer _buffer)
+	{
+		byte tag = _buffer.get();
+		switch (tag)
+		{
+			case kDoubleTag:	return _buffer.getDouble();
+			case kIntTag:		return _buffer.getInt();
+			case kBooleanTag:	return (_buffer.get() != 0);
+			case kStringTag:	return getUTF(_buffer);
+			case kNoValueTag:	return "";
+			default:			throw new IllegalStateException("AsyncLogWriter: unknown value tag " + tag);
+		}
+	}
+
+	public static String getUTF(ByteBuffer _buffer)
+	{
+		int length = _buffer.getShort() & 0xFFFF;
+		String s = new String(_buffer.array(), _buffer.arrayOffset() + _buffer.position(), length, StandardCharsets.UTF_8);
+		_buffer.position(_buffer.position() + length);
+		return s;
+	}
+}
@@ -1,15 +1,16 @@
 package frc.robot.lib.util;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.PrintStream;
+import java.nio.BufferOverflowException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
 //Adapted from FRC Team 3620, The Average Joes
@@ -90,6 +91,11 @@ public class DataLogController
 		parentDirectory = directory;
 	}
 
+	static public File getDirectory()
+	{
+		return parentDirectory;
+	}
+
 	public void setFileBase(String _fileBase)
 	{
 		fileBase = _fileBase;
@@ -104,22 +110,42 @@ public class DataLogController
 		sdOutput = _sd;
 	}
 
+	// loggers may be added and removed from other threads (e.g. auto actions), so register,
+	// deregister and log are synchronized.  The lock is uncontended except when (de)registering
 	private final List<DataLogger> loggers = new ArrayList<>();
 
-	public void register(DataLogger logger)
+	public synchronized void register(DataLogger logger)
 	{
 		loggers.add(logger);
+		columnsChanged();	// new columns
+		if (writer != null && getMaxRecordBytes() > writer.getMaxRecordBytes())
+		{
+			// slots were sized for the loggers registered when the file was opened
+			reportRecordTooLarge();
+		}
+	}
+
+	public synchronized void deregister(DataLogger logger)
+	{
+		if (loggers.remove(logger))
+			columnsChanged();	// columns removed
 	}
 
-	public void deregister()
+	public synchronized void deregister()
 	{
-		clearLogs();
 		loggers.clear();
-		writeHeader = true; // write a new header to indicate start of new
+		columnsChanged();	// write a new header to indicate start of new
 							// action (autonomous mode only)
 	}
 
-	public void log()
+	private void columnsChanged()
+	{
+		writeHeader = true;
+		recordTooLarge = false;		// try the new columns
+		tooLargeReported = false;
+	}
+
+	public synchronized void log()
 	{
 		for (DataLogger logger : loggers)
 		{
@@ -128,17 +154,31 @@ public class DataLogController
 		saveDataItems(); // write to file / SmartDashboard
 	}
 
-	PrintStream ps;
+	AsyncLogWriter writer;
 	long startTime;
 	long timeUpdated;
 	long timeSinceLog;
 	boolean writeHeader = true;
+	boolean recordTooLarge = false;		// header didn't fit in a ring slot: nothing is logged until the loggers change
+	boolean tooLargeReported = false;
+
+	// room allowed for each string or enum value when sizing the writer's ring slots
+	public static int kMaxStringBytes = 64;
+	// slots are this much bigger than the registered loggers need, for loggers registered later
+	public static double kRecordBytesMargin = 1.5;
+
+	static AsyncLogWriter.Format fileFormat = AsyncLogWriter.Format.BINARY;
+
+	public static void setFileFormat(AsyncLogWriter.Format _format)
+	{
+		fileFormat = _format;
+	}
 
 	private boolean shouldLogData()
 	{
 		boolean retVal = false;
 
-		if (ps == null)
+		if (writer == null)
 			retVal = true;
 
 		long now = System.currentTimeMillis();
@@ -152,54 +192,65 @@ public class DataLogController
 	{
 		if (shouldLogData())
 		{
-			try
+			if (fileOutput && (writer == null))
 			{
-				if (fileOutput && (ps == null))
+				// file is opened on the writer thread
+				String timestampString = getTimestampString();
+				if (timestampString != null)
 				{
-					// file stream has not yet been initialized
-					String timestampString = getTimestampString();
-					if (timestampString != null)
-					{
-						String filename = timestampString + "_" + fileBase + ".csv";
-						System.out.println("Opening log file: " + filename);
-						File logFile = new File(parentDirectory, filename);
-						ps = new PrintStream(new FileOutputStream(logFile));
-						startTime = System.currentTimeMillis();
-					}
-				} else
+					String extension = (fileFormat == AsyncLogWriter.Format.BINARY ? ".bin" : ".csv");
+					String filename = timestampString + "_" + fileBase + extension;
+					int maxRecordBytes = (int)(kRecordBytesMargin * getMaxRecordBytes());
+					writer = new AsyncLogWriter(new File(parentDirectory, filename), fileFormat, maxRecordBytes);
+					startTime = System.currentTimeMillis();
+				}
+			}
+			if (fileOutput && (writer != null))
+			{
+				// only copies values into the writer's ring buffer
+				if (writeHeader && !recordTooLarge)
 				{
-					if (fileOutput)
-					{
-						if (writeHeader)
-						{
-							ps.print("time,timeSinceStart");
-							writeNames();
-							writeHeader = false;
-						}
+					writeHeader = !writeNames();
+				}
 
-						timeUpdated = (System.currentTimeMillis() - startTime);
-						ps.print(getDate());
-						ps.print(',');
-						ps.print(timeUpdated);
-						writeValues();
-						ps.flush();
-						timeSinceLog = System.currentTimeMillis();
-					}
-					if (sdOutput)
+				long now = System.currentTimeMillis();
+				timeUpdated = now - startTime;
+				writeValues(now, timeUpdated);
+				timeSinceLog = now;
+
+				if (writer.checkRotated())
+				{
+					// new file: write every channel again so each file stands on its own
+					for (DataLogger logger : loggers)
 					{
-						putValues();
+						logger.resetSampling();
 					}
 				}
-			} catch (IOException e)
+			}
+			if (sdOutput)
 			{
-				e.printStackTrace();
+				putValues();
 			}
 		}
+	}
 
-		clearLogs();
-
+	// stop the writer thread, after it writes everything logged so far
+	public synchronized void close()
+	{
+		if (writer != null)
+		{
+			writer.close();
+			System.out.println(writer);
+			writer = null;
+			writeHeader = true;
+		}
 	}
 
+	public long getDroppedRecords() { return (writer != null ? writer.getDroppedRecords() : 0); }
+	public int getWriterLagRecords() { return (writer != null ? writer.getLagRecords() : 0); }
+	public long getWriterLagMs() { return (writer != null ? writer.getLagMs() : 0); }
+	public long getMaxWriterLagMs() { return (writer != null ? writer.getMaxLagMs() : 0); }
+
 	private final static long SOME_TIME_AFTER_1970 = 523980000000L;
 
 	public static String getTimestampString() 
@@ -216,107 +267,199 @@ public class DataLogController
 	}
 	
 	
-	private void writeNames()
+	private int getNumValues()
 	{
+		int count = 0;
 		for (DataLogger logger : loggers)
 		{
-			synchronized (logger)
-			{
-				for (String name : logger.logMap.keySet())
-				{
-					// remove SmartDashboard folder hierarchy
-				    int index = name.lastIndexOf('/');
-			    	name = name.substring(index+1);				
-					
-					ps.print(',');
-					ps.print(name);
-				}
-			}
+			count += logger.getNumColumns();
 		}
-		ps.println();
+		return count;
 	}
 
-	private void writeValues()
+	// most bytes a header or row record can take with the registered loggers
+	// (string and enum values are allowed kMaxStringBytes)
+	private int getMaxRecordBytes()
 	{
+		int headerBytes = 1 + 2;			// type, count
+		int rowBytes = 1 + 8 + 8 + 2;		// type, wall clock, time since start, count
 		for (DataLogger logger : loggers)
 		{
-			synchronized (logger)
+			for (int slot = 0; slot < logger.getNumChannels(); slot++)
 			{
-				for (Object value : logger.logMap.values())
+				int nameBytes = 2 + 3 * logger.getName(slot).length();		// UTF-8 is at most 3 bytes per char
+				if (logger.isAggregate(slot))
+				{
+					headerBytes += 3 * (nameBytes + "_mean".length());
+					rowBytes += 3 * (1 + 8);
+					continue;
+				}
+				headerBytes += nameBytes;
+				switch (logger.getType(slot))
 				{
-					ps.print(',');
-					ps.print(value.toString());
+					case DOUBLE:	rowBytes += 1 + 8;					break;
+					case INT:		rowBytes += 1 + 4;					break;
+					case BOOLEAN:	rowBytes += 1 + 1;					break;
+					default:		rowBytes += 1 + 2 + kMaxStringBytes;	break;
 				}
 			}
 		}
-		ps.println();
+		return Math.max(headerBytes, rowBytes);
 	}
 
-	private void putValues()
+	// once for each set of loggers, so a row that doesn't fit every cycle doesn't flood the console
+	private void reportRecordTooLarge()
 	{
-		for (DataLogger logger : loggers)
+		if (tooLargeReported)
+			return;
+		tooLargeReported = true;
+		DriverStation.reportError(String.format("DataLogController %s: %d columns need records of up to %d bytes, but log slots are %d bytes.  "
+				+ "Rows that don't fit are not logged: register loggers before logging starts, or raise AsyncLogWriter.kMaxRecordBytes",
+				fileBase, getNumValues(), getMaxRecordBytes(), writer.getMaxRecordBytes()), false);
+	}
+
+	// returns false if the header was dropped because the ring was full, so we can try again next cycle
+	private boolean writeNames()
+	{
+		if (!writer.beginHeader(getNumValues()))
+			return false;
+		try
 		{
-			synchronized (logger)
+			// short names, unless two loggers use the same one (e.g. lSpeed)
+			Set<String> shortNames = new HashSet<>();
+			Set<String> duplicates = new HashSet<>();
+			for (DataLogger logger : loggers)
 			{
-				for (Map.Entry<String, Object> entry : logger.logMap.entrySet())
+				for (int slot = 0; slot < logger.getNumChannels(); slot++)
 				{
-					String key = entry.getKey();
-					Object value = entry.getValue();
-
-					if (value.getClass().equals(Boolean.class))
-						putValue(key, (Boolean) value);
-					else if (value.getClass().equals(Integer.class))
-						putValue(key, (Integer) value);
-					else if (value.getClass().equals(Double.class))
-						putValue(key, (Double) value);
-					else if (value.getClass().equals(Float.class))
-						putValue(key, (Double) value);
-					else if (value.getClass().equals(String.class))
-						putValue(key, (String) value);
+					if (!shortNames.add(logger.getShortName(slot)))
+						duplicates.add(logger.getShortName(slot));
+				}
+			}
+
+			for (DataLogger logger : loggers)
+			{
+				for (int slot = 0; slot < logger.getNumChannels(); slot++)
+				{
+					String name = logger.getShortName(slot);
+					if (duplicates.contains(name))
+						name = logger.getName(slot);
+					if (logger.isAggregate(slot))
+					{
+						writer.putName(name + "_min");
+						writer.putName(name + "_max");
+						writer.putName(name + "_mean");
+					}
 					else
-						putValue(key, "ERROR");
+					{
+						writer.putName(name);
+					}
 				}
+				logger.resetSampling();		// write every channel in the first row
 			}
+			writer.endRecord();
+			return true;
+		}
+		catch (BufferOverflowException e)
+		{
+			// retrying won't help: stop logging until the loggers change
+			writer.abandonRecord();
+			recordTooLarge = true;
+			reportRecordTooLarge();
+			return true;
 		}
 	}
 
-	private void putValue(String key, boolean val)
-	{
-		SmartDashboard.putBoolean(key, val);
-	}
-
-	private void putValue(String key, int val)
+	private void writeValues(long _wallMillis, long _timeSinceStart)
 	{
-		SmartDashboard.putNumber(key, val);
-	}
+		if (recordTooLarge)
+			return;
+		if (!writer.beginRow(_wallMillis, _timeSinceStart, getNumValues()))
+			return;		// ring full: row dropped and counted
+		try
+		{
+			for (DataLogger logger : loggers)
+			{
+				for (int slot = 0; slot < logger.getNumChannels(); slot++)
+				{
+					boolean write = logger.sample(slot, _wallMillis);
+					if (logger.isAggregate(slot))
+					{
+						if (write)
+						{
+							writer.putDouble(logger.getMin(slot));
+							writer.putDouble(logger.getMax(slot));
+							writer.putDouble(logger.getMean(slot));
+							logger.resetAggregate(slot);
+						}
+						else
+						{
+							writer.putNoValue();
+							writer.putNoValue();
+							writer.putNoValue();
+						}
+						continue;
+					}
 
-	private void putValue(String key, double val)
-	{
-		SmartDashboard.putNumber(key, val);
-	}
+					if (!write)
+					{
+						writer.putNoValue();
+						continue;
+					}
 
-	private void putValue(String key, String val)
-	{
-		SmartDashboard.putString(key, val);
+					switch (logger.getType(slot))
+					{
+						case DOUBLE:	writer.putDouble(logger.getDouble(slot));	break;
+						case INT:		writer.putInt(logger.getInt(slot));			break;
+						case BOOLEAN:	writer.putBoolean(logger.getBoolean(slot));	break;
+						default:		writer.putString(logger.getString(slot));	break;
+					}
+				}
+			}
+			writer.endRecord();
+		}
+		catch (BufferOverflowException e)
+		{
+			// e.g. a long string value: row dropped and counted
+			writer.abandonRecord();
+			reportRecordTooLarge();
+		}
 	}
 
-	private void clearLogs()
+	// mirror every channel to SmartDashboard.  Entries are looked up by name once, so each
+	// cycle is one pass over the channels with a typed set per value
+	private void putValues()
 	{
 		for (DataLogger logger : loggers)
 		{
-			logger.logMap.clear();
+			int numChannels = logger.getNumChannels();
+			if (logger.dashboardEntries.length != numChannels)
+				bindDashboardEntries(logger);
+
+			NetworkTableEntry[] entries = logger.dashboardEntries;
+			for (int slot = 0; slot < numChannels; slot++)
+			{
+				switch (logger.getType(slot))
+				{
+					case DOUBLE:	entries[slot].setDouble(logger.getDouble(slot));	break;
+					case INT:		entries[slot].setDouble(logger.getInt(slot));		break;
+					case BOOLEAN:	entries[slot].setBoolean(logger.getBoolean(slot));	break;
+					default:		entries[slot].setString(logger.getString(slot));	break;
+				}
+			}
 		}
 	}
 
-	private String getDate()
+	private static void bindDashboardEntries(DataLogger logger)
 	{
-		Date curDate = new Date();
-		String DateToStr = format.format(curDate);
-		return DateToStr;
+		NetworkTableEntry[] entries = new NetworkTableEntry[logger.getNumChannels()];
+		for (int slot = 0; slot < entries.length; slot++)
+		{
+			entries[slot] = SmartDashboard.getEntry(logger.getName(slot));
+		}
+		logger.dashboardEntries = entries;
 	}
 
-	SimpleDateFormat format = new SimpleDateFormat("MM-dd-yyyy HH:mm:ss.SS");
-
 	public static void setMinimumInterval(long _minimumInterval)
 	{
 		minimumInterval = _minimumInterval;
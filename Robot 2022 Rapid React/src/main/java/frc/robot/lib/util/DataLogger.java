@@ -1,39 +1,250 @@
 package frc.robot.lib.util;
 
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.Objects;
 
+import edu.wpi.first.networktables.NetworkTableEntry;
 
 
-public abstract class DataLogger 
+
+/**
+ * A DataLogger owns a fixed set of typed channels.  Channels are registered once
+ * (usually in the field initializers of the anonymous subclass) and each gets an
+ * integer slot.  log() then stores the current values by slot, which is a plain array
+ * store: no boxing, hashing or locking.  Values hold until they are overwritten.
+ *
+ * By default a channel is written to the log file every cycle.  Slow or static channels
+ * can instead be written at a lower rate, only when they change, or (doubles only) as
+ * min/max/mean over each decimation window.  Cycles where a channel isn't written leave
+ * an empty value in the file.
+ *
+ *	private final DataLogger logger = new DataLogger()
+ *	{
+ *		final int speedSlot = addDouble("Drive/speed");
+ *		final int modeSlot = onChange(addEnum("Drive/mode"));
+ *		final int currentSlot = aggregate(addDouble("Drive/current"), 10);	// min/max/mean at 10 Hz
+ *
+ *		@Override
+ *		public void log()
+ *		{
+ *			put(speedSlot, speed);
+ *		}
+ *	};
+ */
+public abstract class DataLogger
 {
-	public Map<String, Object> logMap = new LinkedHashMap<String, Object>();
+	public enum Type { DOUBLE, INT, BOOLEAN, ENUM, STRING }
+
+	private int numChannels = 0;
+	private String[] names = new String[16];		// full name, including SmartDashboard folders
+	private String[] shortNames = new String[16];	// name without folders, for file headers
+	private Type[] types = new Type[16];
+
+	private double[] doubles = new double[16];		// DOUBLE
+	private int[] ints = new int[16];				// INT, BOOLEAN (0/1)
+	private Object[] objects = new Object[16];		// ENUM, STRING
+
+	// sampling options
+	private long[] periodMs = new long[16];			// 0: every cycle
+	private boolean[] onChange = new boolean[16];
+	private boolean[] aggregate = new boolean[16];
+
+	// sampling state, used by the log controller thread only
+	private long[] nextLogTime = new long[16];
+	private boolean[] logged = new boolean[16];		// lastXXX are valid
+	private double[] lastDouble = new double[16];
+	private int[] lastInt = new int[16];
+	private Object[] lastObject = new Object[16];
+	private double[] min = new double[16];
+	private double[] max = new double[16];
+	private double[] sum = new double[16];
+	private int[] count = new int[16];
+
+	// SmartDashboard entry of each channel, bound once by DataLogController.putValues()
+	NetworkTableEntry[] dashboardEntries = new NetworkTableEntry[0];
+
+	public abstract void log();
+
+
+
+	/*
+	 * Registration: call once per channel, before logging starts
+	 */
+
+	public int addDouble(String _name)	{ return add(_name, Type.DOUBLE); }
+	public int addInt(String _name)		{ return add(_name, Type.INT); }
+	public int addBoolean(String _name)	{ return add(_name, Type.BOOLEAN); }
+	public int addEnum(String _name)	{ return add(_name, Type.ENUM); }
+	public int addString(String _name)	{ return add(_name, Type.STRING); }
+
+	private int add(String _name, Type _type)
+	{
+		for (int k = 0; k < numChannels; k++)
+			if (names[k].equals(_name))
+				throw new IllegalArgumentException("DataLogger: channel " + _name + " already registered");
+
+		if (numChannels == names.length)
+		{
+			int capacity = 2 * names.length;
+			names = Arrays.copyOf(names, capacity);
+			shortNames = Arrays.copyOf(shortNames, capacity);
+			types = Arrays.copyOf(types, capacity);
+			doubles = Arrays.copyOf(doubles, capacity);
+			ints = Arrays.copyOf(ints, capacity);
+			objects = Arrays.copyOf(objects, capacity);
+			periodMs = Arrays.copyOf(periodMs, capacity);
+			onChange = Arrays.copyOf(onChange, capacity);
+			aggregate = Arrays.copyOf(aggregate, capacity);
+			nextLogTime = Arrays.copyOf(nextLogTime, capacity);
+			logged = Arrays.copyOf(logged, capacity);
+			lastDouble = Arrays.copyOf(lastDouble, capacity);
+			lastInt = Arrays.copyOf(lastInt, capacity);
+			lastObject = Arrays.copyOf(lastObject, capacity);
+			min = Arrays.copyOf(min, capacity);
+			max = Arrays.copyOf(max, capacity);
+			sum = Arrays.copyOf(sum, capacity);
+			count = Arrays.copyOf(count, capacity);
+		}
+
+		int slot = numChannels++;
+		names[slot] = _name;
+		shortNames[slot] = _name.substring(_name.lastIndexOf('/') + 1);	// remove SmartDashboard folder hierarchy
+		types[slot] = _type;
+		objects[slot] = (_type == Type.STRING || _type == Type.ENUM) ? "" : null;
+		return slot;
+	}
+
+
+
+	// write channel to file at most _rateHz times per second
+	public int rate(int _slot, double _rateHz)
+	{
+		periodMs[_slot] = Math.round(1000.0 / _rateHz);
+		return _slot;
+	}
 
-	public abstract void log();	
-	
-	public synchronized void put(String name, boolean value)
+	// write channel to file only when its value changes
+	public int onChange(int _slot)
 	{
-		logMap.put(name, Boolean.valueOf(value));
+		onChange[_slot] = true;
+		return _slot;
 	}
-	
-	public synchronized void put(String name, double value)
+
+	// write min, max and mean of a DOUBLE channel over each 1/_rateHz window (3 columns)
+	public int aggregate(int _slot, double _rateHz)
+	{
+		if (types[_slot] != Type.DOUBLE)
+			throw new IllegalArgumentException("DataLogger: can only aggregate double channels, not " + names[_slot]);
+		aggregate[_slot] = true;
+		resetAggregate(_slot);
+		return rate(_slot, _rateHz);
+	}
+
+
+
+	/*
+	 * Logging: store current value of a channel
+	 */
+
+	// numeric values are stored as both double and int, so an int value logged to a
+	// DOUBLE channel (or vice versa) isn't lost
+	public void put(int _slot, double _value)	{ doubles[_slot] = _value; ints[_slot] = (int)_value; }
+	public void put(int _slot, int _value)		{ ints[_slot] = _value; doubles[_slot] = _value; }
+	public void put(int _slot, boolean _value)	{ ints[_slot] = (_value ? 1 : 0); }
+	public void put(int _slot, Enum<?> _value)	{ objects[_slot] = _value; }
+	public void put(int _slot, String _value)	{ objects[_slot] = _value; }
+
+
+
+	/*
+	 * Access for DataLogController
+	 */
+
+	public int getNumChannels()				{ return numChannels; }
+	public String getName(int _slot)		{ return names[_slot]; }
+	public String getShortName(int _slot)	{ return shortNames[_slot]; }
+	public Type getType(int _slot)			{ return types[_slot]; }
+	public double getDouble(int _slot)		{ return doubles[_slot]; }
+	public int getInt(int _slot)			{ return ints[_slot]; }
+	public boolean getBoolean(int _slot)	{ return ints[_slot] != 0; }
+	public String getString(int _slot)		{ return String.valueOf(objects[_slot]); }
+
+	public boolean isAggregate(int _slot)	{ return aggregate[_slot]; }
+	public double getMin(int _slot)			{ return min[_slot]; }
+	public double getMax(int _slot)			{ return max[_slot]; }
+	public double getMean(int _slot)		{ return (count[_slot] > 0 ? sum[_slot] / count[_slot] : doubles[_slot]); }
+
+	// number of columns in the log file
+	public int getNumColumns()
 	{
-		logMap.put(name, Double.valueOf(value));
+		int columns = numChannels;
+		for (int k = 0; k < numChannels; k++)
+			if (aggregate[k])
+				columns += 2;
+		return columns;
 	}
-	
-	public synchronized void put(String name, float value)
+
+	// start sampling over (e.g. after a new file header), so every channel is written next cycle
+	public void resetSampling()
 	{
-		logMap.put(name, Double.valueOf((double)value));
+		for (int k = 0; k < numChannels; k++)
+		{
+			nextLogTime[k] = 0;
+			logged[k] = false;
+			if (aggregate[k])
+				resetAggregate(k);
+		}
 	}
-	
-	public synchronized void put(String name, int value)
+
+	// called every logging cycle.  Returns true if the channel should be written this cycle
+	public boolean sample(int _slot, long _nowMs)
 	{
-		logMap.put(name, Integer.valueOf(value));
+		if (aggregate[_slot])
+		{
+			double value = doubles[_slot];
+			min[_slot] = Math.min(min[_slot], value);
+			max[_slot] = Math.max(max[_slot], value);
+			sum[_slot] += value;
+			count[_slot]++;
+		}
+
+		if (periodMs[_slot] > 0)
+		{
+			if (_nowMs < nextLogTime[_slot])
+				return false;
+			nextLogTime[_slot] += periodMs[_slot];
+			if (nextLogTime[_slot] <= _nowMs)
+				nextLogTime[_slot] = _nowMs + periodMs[_slot];	// fell behind (or first sample)
+		}
+
+		if (onChange[_slot] && logged[_slot])
+		{
+			boolean changed;
+			switch (types[_slot])
+			{
+				case DOUBLE:	changed = (Double.compare(doubles[_slot], lastDouble[_slot]) != 0);	break;
+				case INT:
+				case BOOLEAN:	changed = (ints[_slot] != lastInt[_slot]);							break;
+				default:		changed = !Objects.equals(objects[_slot], lastObject[_slot]);		break;
+			}
+			if (!changed)
+				return false;
+		}
+
+		lastDouble[_slot] = doubles[_slot];
+		lastInt[_slot] = ints[_slot];
+		lastObject[_slot] = objects[_slot];
+		logged[_slot] = true;
+		return true;
 	}
-	
-	public synchronized void put(String name, String value)
+
+	// call after writing an aggregate channel
+	public void resetAggregate(int _slot)
 	{
-		logMap.put(name, value);
+		min[_slot] = Double.POSITIVE_INFINITY;
+		max[_slot] = Double.NEGATIVE_INFINITY;
+		sum[_slot] = 0;
+		count[_slot] = 0;
 	}
-	
 }
@@ -0,0 +1,257 @@
+package frc.robot.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import frc.robot.lib.util.PathSegment.Options;
+import frc.robot.loops.DriveLoop;
+
+
+/**
+ * A DriveTrajectory is a Path converted into left and right wheel positions and
+ * velocities, sampled at a fixed time step.  It is precomputed before driving so it can
+ * be streamed to the Talon FX motion profile buffers.
+ *
+ * Corners between path segments are replaced by circular arcs (radius up to the
+ * segment lookahead distance), so the robot turns while driving, the same way the pure
+ * pursuit follower rounds corners.  Speed is limited by each segment's max speed and
+ * accel, and on arcs by keeping centripetal acceleration below the segment's max accel.
+ *
+ * A path that can't be driven this way (no segments, or a corner sharper than kMaxTurnRad)
+ * gives an empty trajectory: check isValid() and use the PathFollower instead.
+ */
+public class DriveTrajectory
+{
+	public static double kDefaultDt = 0.010;	// seconds between trajectory points
+	private static final double kDs = 0.5;		// inches between samples when computing the speed profile
+	private static final double kMaxTurnRad = Math.toRadians(170);	// sharper corners can't be driven through
+
+	public final double dt;
+	public final boolean reversed;
+	public final double[] lDistance, rDistance;		// inches, relative to start of trajectory
+	public final double[] lSpeed, rSpeed;			// inches/sec
+	public final double[] x, y, heading;			// expected robot pose (heading in radians)
+	private String error = null;					// why the trajectory is invalid
+
+	// a straight line or circular arc along the path
+	private static class Piece
+	{
+		Vector2d start;
+		double startHeading;	// direction of travel
+		double length;
+		double curvature;		// positive: turning left
+		double maxSpeed;
+		double maxAccel;
+
+		Piece(Vector2d _start, double _startHeading, double _length, double _curvature, Options _options)
+		{
+			start = _start;
+			startHeading = _startHeading;
+			length = _length;
+			curvature = _curvature;
+			maxSpeed = _options.getMaxSpeed();
+			maxAccel = _options.getMaxAccel();
+		}
+	}
+
+	private DriveTrajectory(int _n, double _dt, boolean _reversed)
+	{
+		dt = _dt;
+		reversed = _reversed;
+		lDistance = new double[_n];
+		rDistance = new double[_n];
+		lSpeed = new double[_n];
+		rSpeed = new double[_n];
+		x = new double[_n];
+		y = new double[_n];
+		heading = new double[_n];
+	}
+
+	private static DriveTrajectory invalid(Path _path, double _dt, String _error)
+	{
+		DriveTrajectory traj = new DriveTrajectory(0, _dt, _path.getReverseDirection());
+		traj.error = _error;
+		return traj;
+	}
+
+	public boolean isValid() { return error == null; }
+	public String getError() { return error; }
+
+	public int size() { return lDistance.length; }
+	public double getDuration() { return Math.max(size()-1, 0) * dt; }
+
+	// index of trajectory point at time _t from start
+	public int getIndex(double _t)
+	{
+		int k = (int)Math.round(_t / dt);
+		return Math.max(0, Math.min(k, size()-1));
+	}
+
+	public Pose getPose(double _t)
+	{
+		int k = getIndex(_t);
+		return new Pose(x[k], y[k], heading[k]);
+	}
+
+
+
+	public static DriveTrajectory fromPath(Path _path)
+	{
+		return fromPath(_path, kDefaultDt);
+	}
+
+	public static DriveTrajectory fromPath(Path _path, double _dt)
+	{
+		if (_path.segments.isEmpty())
+			return invalid(_path, _dt, "DriveTrajectory: path has no segments");
+		List<Piece> pieces = new ArrayList<Piece>();
+		String error = getPieces(_path, pieces);
+		if (error != null)
+			return invalid(_path, _dt, error);
+
+		// sample along path
+		double totalLength = 0;
+		for (Piece piece : pieces)
+			totalLength += piece.length;
+		int n = Math.max(2, (int)Math.ceil(totalLength / kDs) + 1);
+		double ds = totalLength / (n-1);
+
+		double[] s = new double[n];
+		double[] v = new double[n];
+		double[] accel = new double[n];
+		double[] curvature = new double[n];
+		double[] px = new double[n];
+		double[] py = new double[n];
+		double[] theta = new double[n];
+		int p = 0;
+		double pieceStartS = 0;
+		for (int i = 0; i < n; i++)
+		{
+			s[i] = i * ds;
+			while (p < pieces.size()-1 && s[i] > pieceStartS + pieces.get(p).length)
+			{
+				pieceStartS += pieces.get(p).length;
+				p++;
+			}
+			Piece piece = pieces.get(p);
+			double u = Math.min(s[i] - pieceStartS, piece.length);
+			theta[i] = piece.startHeading + piece.curvature * u;
+			if (piece.curvature == 0)
+			{
+				px[i] = piece.start.getX() + u * Math.cos(piece.startHeading);
+				py[i] = piece.start.getY() + u * Math.sin(piece.startHeading);
+			}
+			else
+			{
+				double r = 1 / piece.curvature;
+				px[i] = piece.start.getX() + r * (Math.sin(theta[i]) - Math.sin(piece.startHeading));
+				py[i] = piece.start.getY() - r * (Math.cos(theta[i]) - Math.cos(piece.startHeading));
+			}
+			curvature[i] = piece.curvature;
+			accel[i] = piece.maxAccel;
+			v[i] = piece.maxSpeed;
+			if (piece.curvature != 0)
+				v[i] = Math.min(v[i], Math.sqrt(piece.maxAccel / Math.abs(piece.curvature)));
+		}
+
+		// speed profile: braking (backwards pass), then acceleration (forwards pass)
+		v[n-1] = Math.min(v[n-1], _path.finalSpeed);
+		for (int i = n-2; i >= 0; i--)
+			v[i] = Math.min(v[i], Math.sqrt(v[i+1]*v[i+1] + 2*accel[i]*ds));
+		v[0] = 0;
+		for (int i = 1; i < n; i++)
+			v[i] = Math.min(v[i], Math.sqrt(v[i-1]*v[i-1] + 2*accel[i]*ds));
+
+		// time at each sample
+		double[] t = new double[n];
+		for (int i = 1; i < n; i++)
+		{
+			double vAvg = Math.max((v[i-1] + v[i]) / 2, 1e-3);
+			t[i] = t[i-1] + ds / vAvg;
+		}
+
+		// resample at fixed time step
+		int m = (int)Math.ceil(t[n-1] / _dt) + 1;
+		DriveTrajectory traj = new DriveTrajectory(m, _dt, _path.getReverseDirection());
+		double direction = (traj.reversed ? -1 : +1);
+		double halfTrack = DriveLoop.kTrackEffectiveDiameter / (2 * DriveLoop.kTrackScrubFactor);
+		int i = 0;
+		for (int k = 0; k < m; k++)
+		{
+			double tk = Math.min(k * _dt, t[n-1]);
+			while (i < n-2 && t[i+1] < tk)
+				i++;
+			double f = (t[i+1] > t[i]) ? (tk - t[i]) / (t[i+1] - t[i]) : 0;
+			f = Math.max(0, Math.min(f, 1));
+
+			double sk = s[i] + f * (s[i+1] - s[i]);
+			double vk = v[i] + f * (v[i+1] - v[i]);
+			double thetak = theta[i] + f * (theta[i+1] - theta[i]);
+			double dTheta = thetak - theta[0];
+			double omega = vk * curvature[i];
+
+			// reversed: drive backwards, robot turns the same way as the direction of travel
+			traj.lDistance[k] = direction * sk - dTheta * halfTrack;
+			traj.rDistance[k] = direction * sk + dTheta * halfTrack;
+			traj.lSpeed[k] = direction * vk - omega * halfTrack;
+			traj.rSpeed[k] = direction * vk + omega * halfTrack;
+			traj.x[k] = px[i] + f * (px[i+1] - px[i]);
+			traj.y[k] = py[i] + f * (py[i+1] - py[i]);
+			traj.heading[k] = thetak + (traj.reversed ? Math.PI : 0);
+		}
+		return traj;
+	}
+
+
+	// break path into straight lines joined by arcs, added to _pieces.  Returns an error message if the path can't be driven
+	private static String getPieces(Path _path, List<Piece> _pieces)
+	{
+		List<PathSegment> segments = _path.segments;
+
+		Vector2d start = segments.get(0).getStart();
+		double segHeading = segments.get(0).startToEnd.angle();		// kept continuous (not wrapped) along the path
+		for (int k = 0; k < segments.size(); k++)
+		{
+			PathSegment seg = segments.get(k);
+			Vector2d end = seg.getEnd();
+			double tangentLength = 0;
+			double turn = 0;
+			double radius = 0;
+
+			if (k < segments.size()-1)
+			{
+				// fillet corner with next segment
+				PathSegment next = segments.get(k+1);
+				turn = Vector2d.normalizeAngle(next.startToEnd.angle() - segHeading);
+				if (Math.abs(turn) > kMaxTurnRad)
+					return "DriveTrajectory: path turns too sharply at " + end;
+
+				radius = next.getOptions().getLookaheadDist();
+				tangentLength = radius * Math.tan(Math.abs(turn)/2);
+				double maxTangentLength = 0.5 * Math.min(seg.getLength(), next.getLength());
+				if (tangentLength > maxTangentLength)
+				{
+					tangentLength = maxTangentLength;
+					radius = tangentLength / Math.tan(Math.abs(turn)/2);
+				}
+			}
+
+			// straight line to start of arc
+			Vector2d lineEnd = end.sub(Vector2d.magnitudeAngle(tangentLength, segHeading));
+			_pieces.add(new Piece(start, segHeading, start.distance(lineEnd), 0, seg.getOptions()));
+
+			if (Math.abs(turn) > 1e-6 && radius > 1e-6)
+			{
+				PathSegment next = segments.get(k+1);
+				_pieces.add(new Piece(lineEnd, segHeading, radius * Math.abs(turn), Math.signum(turn) / radius, next.getOptions()));
+				start = end.add(Vector2d.magnitudeAngle(tangentLength, next.startToEnd.angle()));
+			}
+			else
+			{
+				start = lineEnd;
+			}
+			segHeading += turn;
+		}
+		return null;
+	}
+}
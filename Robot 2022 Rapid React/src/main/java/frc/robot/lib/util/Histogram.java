@@ -0,0 +1,65 @@
+package frc.robot.lib.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of values falling into fixed buckets.  Bucket k holds values <= upperEdges[k]
+ * (and above the previous edge); one extra bucket at the end holds everything larger.
+ * add() may be called from one thread while others read the counts, without locking.
+ */
+public class Histogram
+{
+	private final double[] upperEdges;
+	private final AtomicLongArray counts;
+
+	public Histogram(double... _upperEdges)
+	{
+		upperEdges = _upperEdges.clone();
+		counts = new AtomicLongArray(upperEdges.length + 1);
+	}
+
+	public void add(double _value)
+	{
+		int k = 0;
+		while (k < upperEdges.length && _value > upperEdges[k])
+			k++;
+		counts.incrementAndGet(k);
+	}
+
+	public void clear()
+	{
+		for (int k = 0; k < counts.length(); k++)
+			counts.set(k, 0);
+	}
+
+	public int getNumBuckets() { return counts.length(); }
+	public double[] getUpperEdges() { return upperEdges.clone(); }
+	public long getCount(int _bucket) { return counts.get(_bucket); }
+
+	public long getTotal()
+	{
+		long total = 0;
+		for (int k = 0; k < counts.length(); k++)
+			total += counts.get(k);
+		return total;
+	}
+
+	// bucket counts as doubles, for NetworkTables number arrays
+	public double[] getCounts()
+	{
+		double[] out = new double[counts.length()];
+		for (int k = 0; k < out.length; k++)
+			out[k] = counts.get(k);
+		return out;
+	}
+
+	// labels like "<=1", "<=2", ">2" to go with getCounts()
+	public String[] getLabels()
+	{
+		String[] labels = new String[counts.length()];
+		for (int k = 0; k < upperEdges.length; k++)
+			labels[k] = "<=" + upperEdges[k];
+		labels[upperEdges.length] = ">" + upperEdges[upperEdges.length - 1];
+		return labels;
+	}
+}
@@ -0,0 +1,226 @@
+package frc.robot.lib.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses closed log files and keeps the log directory under a size cap, on a single
+ * low priority background thread.  AsyncLogWriter hands over each file when it is closed
+ * or rotated.  Files left uncompressed by a previous run (e.g. robot was powered off
+ * with a file still open) are compressed at startup.
+ *
+ * Retention: oldest files are deleted until the directory is below kMaxDirectoryBytes, but
+ * the files of the newest kKeepSessions sessions (log files with the same timestamp prefix)
+ * are always kept, as are files still being written.  Free disk space is not used to decide:
+ * on the roboRIO's internal flash it can stay low whatever is in the log directory, and
+ * deleting for it would throw away the last match's logs.  Low free space is only reported.
+ *
+ * Only log files (kLogExtensions, plain or compressed) and the index files LogQuery leaves
+ * next to them (kIndexExtension, e.g. on a USB stick read on a laptop) are touched: anything
+ * else kept in the directory is neither counted nor deleted.
+ */
+public class LogArchiver implements Runnable
+{
+	// synchronized: log writers on several threads can ask for it first
+	private static LogArchiver instance;
+	public static synchronized LogArchiver getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new LogArchiver();
+		}
+		return instance;
+	}
+
+	public static long kMaxDirectoryBytes = 200L * 1024 * 1024;
+	public static int kKeepSessions = 10;
+	public static long kMinFreeBytes = 100L * 1024 * 1024;		// warn below this
+	public static final String kCompressedExtension = ".gz";
+	public static final String[] kLogExtensions = {".bin", ".csv", ".drv"};		// data logs and driver input recordings
+	public static final String kIndexExtension = ".idx";						// LogIndex of a log, made by the tools
+
+	private final LinkedBlockingQueue<File> queue = new LinkedBlockingQueue<File>();
+	private final Set<File> openFiles = ConcurrentHashMap.newKeySet();
+	private final long startTime = System.currentTimeMillis();
+	private final Thread thread;
+
+	private volatile long filesCompressed = 0;
+	private volatile long filesDeleted = 0;
+	private boolean lowSpaceReported = false;
+
+	private LogArchiver()
+	{
+		thread = new Thread(this, "LogArchiver");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	public long getFilesCompressed() { return filesCompressed; }
+	public long getFilesDeleted() { return filesDeleted; }
+
+	// file is being written: don't compress or delete it
+	public void open(File _file)
+	{
+		openFiles.add(_file.getAbsoluteFile());
+	}
+
+	// file is closed: queue it for compression
+	public void close(File _file)
+	{
+		openFiles.remove(_file.getAbsoluteFile());
+		queue.add(_file);
+	}
+
+
+
+	@Override
+	public void run()
+	{
+		compressPreviousRuns();
+		enforceRetention();
+
+		while (true)
+		{
+			try
+			{
+				File file = queue.take();
+				compress(file);
+				enforceRetention();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+		}
+	}
+
+	private void compressPreviousRuns()
+	{
+		File directory = DataLogController.getDirectory();
+		if (directory == null)
+			return;
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files)
+		{
+			if (file.isFile() && isLogFile(file) && !isIndexFile(file) && !file.getName().endsWith(kCompressedExtension)
+					&& file.lastModified() < startTime && !openFiles.contains(file.getAbsoluteFile()))
+				compress(file);
+		}
+	}
+
+	// only touch files written by DataLogController (plain or compressed) and their indexes, not anything else kept in the directory
+	private static boolean isLogFile(File _file)
+	{
+		String name = _file.getName();
+		if (name.endsWith(kIndexExtension))
+			name = name.substring(0, name.length() - kIndexExtension.length());
+		if (name.endsWith(kCompressedExtension))
+			name = name.substring(0, name.length() - kCompressedExtension.length());
+		for (String extension : kLogExtensions)
+			if (name.endsWith(extension))
+				return true;
+		return false;
+	}
+
+	private static boolean isIndexFile(File _file)
+	{
+		return _file.getName().endsWith(kIndexExtension);
+	}
+
+	private void compress(File _file)
+	{
+		if (!_file.isFile())
+			return;
+		File compressed = new File(_file.getPath() + kCompressedExtension);
+		try (InputStream in = new BufferedInputStream(new FileInputStream(_file));
+			 OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(compressed)), 64*1024))
+		{
+			byte[] buffer = new byte[64*1024];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, n);
+			}
+		}
+		catch (IOException e)
+		{
+			System.out.println("LogArchiver: could not compress " + _file.getName() + ": " + e);
+			compressed.delete();
+			return;
+		}
+		compressed.setLastModified(_file.lastModified());
+		_file.delete();
+		new File(_file.getPath() + kIndexExtension).delete();		// index of the uncompressed file no longer matches anything
+		filesCompressed++;
+	}
+
+	private void enforceRetention()
+	{
+		File directory = DataLogController.getDirectory();
+		if (directory == null)
+			return;
+		File[] files = directory.listFiles(file -> file.isFile() && isLogFile(file));
+		if (files == null)
+			return;
+
+		long totalBytes = 0;
+		for (File file : files)
+			totalBytes += file.length();
+
+		// newest sessions are kept whatever their size (an index made later doesn't make its session new)
+		Set<String> keep = new HashSet<String>();
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+		for (File file : files)
+		{
+			if (keep.size() >= kKeepSessions)
+				break;
+			if (!isIndexFile(file))
+				keep.add(getSession(file));
+		}
+
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files)
+		{
+			if (totalBytes <= kMaxDirectoryBytes)
+				break;
+			if (openFiles.contains(file.getAbsoluteFile()) || keep.contains(getSession(file)))
+				continue;
+			long length = file.length();
+			if (file.delete())
+			{
+				System.out.println("LogArchiver: deleted " + file.getName());
+				totalBytes -= length;
+				filesDeleted++;
+			}
+		}
+
+		boolean lowSpace = (directory.getUsableSpace() < kMinFreeBytes);
+		if (lowSpace && !lowSpaceReported)
+			System.out.println(String.format("LogArchiver: only %d MB free in %s", directory.getUsableSpace() / (1024 * 1024), directory));
+		lowSpaceReported = lowSpace;
+	}
+
+	// timestamp prefix shared by all parts of one log (e.g. 20220315-143005 for 20220315-143005_robot_2.bin)
+	private static String getSession(File _file)
+	{
+		String name = _file.getName();
+		int underscore = name.indexOf('_');
+		return (underscore >= 0 ? name.substring(0, underscore) : name);
+	}
+}
@@ -0,0 +1,104 @@
+package frc.robot.lib.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer / single-consumer ring of byte records.
+ * All slots are allocated up front.  The producer (robot loop) claims a slot, copies
+ * a record into it and publishes it.  The consumer (log writer thread) peeks at the
+ * oldest published record, writes it out and releases the slot.
+ * If the ring is full, the record is dropped rather than blocking the producer.
+ */
+public class LogRingBuffer
+{
+	private final int capacity;
+	private final int mask;
+	private final ByteBuffer[] writeBuffers;
+	private final ByteBuffer[] readBuffers;		// separate position/limit for consumer
+	private final int[] lengths;
+
+	private final AtomicLong head = new AtomicLong(0);		// next slot to publish (written by producer only)
+	private final AtomicLong tail = new AtomicLong(0);		// next slot to release (written by consumer only)
+	private final AtomicLong dropped = new AtomicLong(0);
+
+	public LogRingBuffer(int _capacity, int _maxRecordBytes)
+	{
+		// round up to power of 2 so we can mask instead of mod
+		capacity = Integer.highestOneBit(Math.max(_capacity - 1, 1)) << 1;
+		mask = capacity - 1;
+		writeBuffers = new ByteBuffer[capacity];
+		readBuffers = new ByteBuffer[capacity];
+		lengths = new int[capacity];
+		for (int k = 0; k < capacity; k++)
+		{
+			byte[] slot = new byte[_maxRecordBytes];
+			writeBuffers[k] = ByteBuffer.wrap(slot);
+			readBuffers[k] = ByteBuffer.wrap(slot);
+		}
+	}
+
+	public int getCapacity() { return capacity; }
+	public long getDropped() { return dropped.get(); }
+	public long getPublished() { return head.get(); }
+	public int size() { return (int)(head.get() - tail.get()); }		// records waiting for the consumer
+
+
+
+	/*
+	 * Producer
+	 */
+
+	// returns an empty buffer to encode the next record into, or null if the ring is full
+	public ByteBuffer claim()
+	{
+		long h = head.get();
+		if (h - tail.get() >= capacity)
+		{
+			dropped.incrementAndGet();
+			return null;
+		}
+		ByteBuffer buffer = writeBuffers[(int)(h & mask)];
+		buffer.clear();
+		return buffer;
+	}
+
+	// make the record encoded into the last claimed buffer visible to the consumer
+	public void publish()
+	{
+		long h = head.get();
+		int index = (int)(h & mask);
+		lengths[index] = writeBuffers[index].position();
+		head.lazySet(h + 1);
+	}
+
+	// give up on the last claimed buffer (e.g. record didn't fit)
+	public void abandon()
+	{
+		dropped.incrementAndGet();
+	}
+
+
+
+	/*
+	 * Consumer
+	 */
+
+	// oldest published record, or null if there is none.  Valid until release()
+	public ByteBuffer peek()
+	{
+		long t = tail.get();
+		if (t == head.get())
+			return null;
+		int index = (int)(t & mask);
+		ByteBuffer buffer = readBuffers[index];
+		buffer.clear();
+		buffer.limit(lengths[index]);
+		return buffer;
+	}
+
+	public void release()
+	{
+		tail.lazySet(tail.get() + 1);
+	}
+}
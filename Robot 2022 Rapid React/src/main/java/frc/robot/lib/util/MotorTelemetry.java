@@ -0,0 +1,55 @@
+package frc.robot.lib.util;
+
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
+
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Latest diagnostic readings (currents, voltages, position) of one TalonFX, sampled by
+ * TelemetrySampler on its own thread.  get() returns an immutable snapshot, so dashboards
+ * and loggers on other threads always see a consistent set of values without any CAN reads.
+ * Readings used for control should still be read directly from the motor.
+ */
+public class MotorTelemetry
+{
+	public static class Snapshot
+	{
+		public final double timestamp;			// when the values were read (sec)
+		public final double statorCurrent;
+		public final double supplyCurrent;
+		public final double busVoltage;
+		public final double outputVoltage;
+		public final double sensorPosition;		// raw sensor units
+
+		Snapshot(double _timestamp, double _statorCurrent, double _supplyCurrent, double _busVoltage, double _outputVoltage, double _sensorPosition)
+		{
+			timestamp = _timestamp;
+			statorCurrent = _statorCurrent;
+			supplyCurrent = _supplyCurrent;
+			busVoltage = _busVoltage;
+			outputVoltage = _outputVoltage;
+			sensorPosition = _sensorPosition;
+		}
+	}
+
+	private final TalonFX motor;
+	private volatile Snapshot snapshot = new Snapshot(0, 0, 0, 0, 0, 0);
+
+	MotorTelemetry(TalonFX _motor)
+	{
+		motor = _motor;
+	}
+
+	void sample()
+	{
+		snapshot = new Snapshot(Timer.getFPGATimestamp(), motor.getStatorCurrent(), motor.getSupplyCurrent(),
+								motor.getBusVoltage(), motor.getMotorOutputVoltage(), motor.getSelectedSensorPosition());
+	}
+
+	public Snapshot get()
+	{
+		if (!TelemetrySampler.kBackgroundSampling)
+			sample();		// old behavior, for comparison: read on the caller's thread
+		return snapshot;
+	}
+}
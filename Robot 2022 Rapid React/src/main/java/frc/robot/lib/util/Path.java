@@ -1,9 +1,11 @@
 package frc.robot.lib.util;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -26,6 +28,7 @@ public class Path
     protected List<Waypoint> waypoints;
     protected List<PathSegment> segments;
     protected Set<String> markersCrossed;
+    protected Map<String, List<Runnable>> markerListeners;
     private double lookaheadDistance;
 
     // when path is reversed:
@@ -69,6 +72,7 @@ public class Path
         waypoints = new ArrayList<Waypoint>();
         segments  = new ArrayList<PathSegment>();
         markersCrossed = new HashSet<String>();
+        markerListeners = new HashMap<String, List<Runnable>>();
     }
 
     public Path(Path _path) 
@@ -76,8 +80,12 @@ public class Path
         finalSpeed = _path.finalSpeed;
     	reverseDirection = _path.reverseDirection;		// call setReverseDirection() to drive backwards
         waypoints = new ArrayList<Waypoint>(_path.waypoints);
-        segments  = new ArrayList<PathSegment>(_path.segments);
+        segments  = new ArrayList<PathSegment>();
+        for (PathSegment segment : _path.segments)
+        	segments.add(new PathSegment(segment));		// segments are shortened by update(), so don't share them
         markersCrossed = new HashSet<String>();
+        markerListeners = new HashMap<String, List<Runnable>>();
+        addMarkerListeners(_path);
     }
     
     public void add(Waypoint _waypoint)
@@ -228,10 +236,37 @@ public class Path
     	
     	if (marker.isPresent())
     	{
-    		markersCrossed.add( marker.get() );
+    		// only fire listeners the first time a marker is crossed
+    		if (markersCrossed.add( marker.get() ))
+    		{
+    			List<Runnable> listeners = markerListeners.get( marker.get() );
+    			if (listeners != null)
+    			{
+    				for (Runnable listener : listeners)
+    					listener.run();
+    			}
+    		}
     	}
     }
     
+    /*
+     *  addMarkerListener() registers a callback that is run from update() on the same tick
+     *  the segment carrying _marker is completed.  A marker is attached to the Options of the 
+     *  waypoint at the start of a segment, so the callback fires when the robot reaches the 
+     *  end of that segment.  Callbacks run on the path following thread, so keep them short.
+     */
+    public void addMarkerListener(String _marker, Runnable _listener)
+    {
+    	markerListeners.computeIfAbsent(_marker, k -> new ArrayList<Runnable>()).add(_listener);
+    }
+
+    // copy marker listeners registered on another path (e.g. when joining paths)
+    public void addMarkerListeners(Path _path)
+    {
+    	for (Map.Entry<String, List<Runnable>> entry : _path.markerListeners.entrySet())
+    		markerListeners.computeIfAbsent(entry.getKey(), k -> new ArrayList<Runnable>()).addAll(entry.getValue());
+    }
+    
     public Set<String> getMarkersCrossed() 
     {
         return markersCrossed;
@@ -0,0 +1,337 @@
+package frc.robot.lib.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import frc.robot.lib.util.Path.Waypoint;
+import frc.robot.lib.util.PathSegment.Options;
+import frc.robot.loops.DriveLoop;
+
+
+/**
+ * A PathChain joins consecutive Paths so they can be followed without stopping in between.
+ *
+ * Paths that continue in the same direction (both forward or both reversed) are merged
+ * into a single Path.  At a joint with a moderate turn the robot keeps moving through the
+ * joint, slowing to a cornering speed while the lookahead point rounds the corner.  A sharper
+ * turn is replaced by a generated arc (a fillet tangent to both paths, up to kFilletRadius)
+ * that is driven at the speed its curvature allows.
+ *
+ * Where the robot has to reverse it must stop, so the chain is split into legs there: the
+ * previous leg stops and, if the robot has to face a new direction, the next leg starts with
+ * a turn to its initial heading.  The same happens at a turn too close to 180 degrees for a
+ * fillet of at least kMinFilletRadius to fit.  Paths with a single waypoint are skipped.
+ *
+ * getChainedTimeEstimate() and getStopAndTurnTimeEstimate() estimate the time to
+ * drive the same waypoints with and without chaining.
+ */
+public class PathChain
+{
+	public static double kMaxBlendAngleDeg = 120.0;		// sharper turns than this are driven as a fillet arc
+	public static double kFilletRadius = 24.0;			// inches: largest fillet radius
+	public static double kMinFilletRadius = 4.0;		// inches: a fillet smaller than this stops and turns in place instead
+	public static double kFilletMaxSegmentFraction = 0.5;	// a fillet may use up to this fraction of each segment at the joint
+	public static double kFilletStepDeg = 15.0;			// angle between waypoints on the fillet arc
+	public static double kTurnThresholdDeg = 5.0;		// smaller heading changes at a stop don't need a turn
+	public static double kJointTolerance = 1.0;		// inches between end of one path and start of the next
+	public static double kMinCornerSpeed = 6.0;		// inches/sec
+
+	// A Leg is a Path to be followed without stopping, optionally preceded by a turn in place
+	public static class Leg
+	{
+		public final Path path;
+		public final Optional<Double> turnToHeadingDeg;
+
+		public Leg(Path _path, Optional<Double> _turnToHeadingDeg)
+		{
+			path = _path;
+			turnToHeadingDeg = _turnToHeadingDeg;
+		}
+	}
+
+	private final List<Path> paths;
+	private final List<Leg> legs;
+
+	// build chain from a list of Paths.  Paths must not have been followed yet.
+	public PathChain(List<Path> _paths)
+	{
+		paths = new ArrayList<Path>(_paths);
+		legs = new ArrayList<Leg>();
+
+		Path leg = null;
+		for (Path path : paths)
+		{
+			if (path.segments.isEmpty())
+				continue;		// nowhere to drive
+
+			if (leg == null)
+			{
+				leg = copyPath(path);
+				legs.add(new Leg(leg, Optional.empty()));
+			}
+			else if (!join(leg, path))
+			{
+				Optional<Double> turn = Optional.empty();
+				double headingChangeDeg = Vector2d.normalizeAngleDeg(getStartHeadingDeg(path) - getEndHeadingDeg(leg));
+				if (Math.abs(headingChangeDeg) > kTurnThresholdDeg)
+					turn = Optional.of(getStartHeadingDeg(path));
+
+				leg.finalSpeed = 0.0;	// stop before reversing or turning in place
+				leg = copyPath(path);
+				legs.add(new Leg(leg, turn));
+			}
+		}
+	}
+
+	public List<Leg> getLegs() { return legs; }
+
+
+	// direction the robot faces (not the direction it travels) at start/end of path
+	// NaN for a path with no segments
+	public static double getStartHeadingDeg(Path _path)
+	{
+		if (_path.segments.isEmpty())
+			return Double.NaN;
+		double headingDeg = _path.segments.get(0).startToEnd.angle() * Vector2d.radiansToDegrees;
+		if (_path.reverseDirection)
+			headingDeg += 180.0;
+		return Vector2d.normalizeAngleDeg(headingDeg);
+	}
+
+	public static double getEndHeadingDeg(Path _path)
+	{
+		if (_path.segments.isEmpty())
+			return Double.NaN;
+		double headingDeg = _path.segments.get(_path.segments.size()-1).startToEnd.angle() * Vector2d.radiansToDegrees;
+		if (_path.reverseDirection)
+			headingDeg += 180.0;
+		return Vector2d.normalizeAngleDeg(headingDeg);
+	}
+
+	// paths can be followed without stopping between them
+	private static boolean canJoin(Path _prev, Path _next)
+	{
+		if (_prev.segments.isEmpty() || _next.segments.isEmpty())
+			return false;
+		if (_prev.reverseDirection != _next.reverseDirection)
+			return false;
+
+		Vector2d prevEnd = _prev.waypoints.get(_prev.waypoints.size()-1).position;
+		Vector2d nextStart = _next.waypoints.get(0).position;
+		return (prevEnd.distance(nextStart) <= kJointTolerance);
+	}
+
+	// append _next to _leg, blending or filleting the joint.  Returns false if the robot has to stop between them
+	private static boolean join(Path _leg, Path _next)
+	{
+		if (!canJoin(_leg, _next))
+			return false;
+		if (Math.abs(getJointTurnDeg(_leg, _next)) <= kMaxBlendAngleDeg)
+		{
+			appendPath(_leg, _next);
+			return true;
+		}
+		return appendFillet(_leg, _next);
+	}
+
+	private static double getJointTurnDeg(Path _prev, Path _next)
+	{
+		return Vector2d.normalizeAngleDeg(getStartHeadingDeg(_next) - getEndHeadingDeg(_prev));
+	}
+
+	private static Path copyPath(Path _path)
+	{
+		Path path = new Path(_path.finalSpeed);
+		if (_path.reverseDirection)
+			path.setReverseDirection();
+		for (Waypoint waypoint : _path.waypoints)
+			path.add(waypoint);
+		path.addMarkerListeners(_path);
+		return path;
+	}
+
+	// append _next to _leg.  The joint waypoint takes _next's options, limited to the cornering speed
+	private static void appendPath(Path _leg, Path _next)
+	{
+		PathSegment lastSeg = _leg.segments.get(_leg.segments.size()-1);
+		PathSegment nextSeg = _next.segments.get(0);
+		double turnRad = Math.abs(Vector2d.normalizeAngle(nextSeg.startToEnd.angle() - lastSeg.startToEnd.angle()));
+
+		Options jointOptions = nextSeg.getOptions();
+		double cornerSpeed = getCornerSpeed(turnRad, jointOptions.getLookaheadDist(), jointOptions.getMaxAccel());
+		if (cornerSpeed < jointOptions.getMaxSpeed())
+		{
+			if (jointOptions.getMarker().isPresent())
+				jointOptions = new Options(cornerSpeed, jointOptions.getMaxAccel(), jointOptions.getLookaheadDist(), jointOptions.getVisionEnable(), jointOptions.getMarker().get());
+			else
+				jointOptions = new Options(cornerSpeed, jointOptions.getMaxAccel(), jointOptions.getLookaheadDist(), jointOptions.getVisionEnable());
+		}
+
+		// replace last waypoint of _leg with the joint waypoint
+		_leg.waypoints.remove(_leg.waypoints.size()-1);
+		_leg.segments.remove(_leg.segments.size()-1);
+		_leg.add(new Waypoint(_next.waypoints.get(0).position, jointOptions));
+		for (int k = 1; k < _next.waypoints.size(); k++)
+			_leg.add(_next.waypoints.get(k));
+
+		_leg.finalSpeed = _next.finalSpeed;
+		_leg.addMarkerListeners(_next);
+	}
+
+	/**
+	 * Append _next to _leg, replacing the joint with an arc tangent to both paths.  The arc
+	 * starts and ends kFilletMaxSegmentFraction or less along the segments at the joint, and its
+	 * waypoints are limited to the speed its curvature allows.
+	 * @return false (and _leg unchanged) if the turn is too sharp for a fillet of kMinFilletRadius
+	 */
+	private static boolean appendFillet(Path _leg, Path _next)
+	{
+		PathSegment lastSeg = _leg.segments.get(_leg.segments.size()-1);
+		PathSegment nextSeg = _next.segments.get(0);
+		double turnRad = Vector2d.normalizeAngle(nextSeg.startToEnd.angle() - lastSeg.startToEnd.angle());
+		double tanHalfTurn = Math.tan(Math.abs(turnRad)/2);
+
+		double maxTangentDist = kFilletMaxSegmentFraction * Math.min(lastSeg.getLength(), nextSeg.getLength());
+		double radius = Math.min(kFilletRadius, maxTangentDist / tanHalfTurn);
+		if (!(radius >= kMinFilletRadius))
+			return false;
+
+		// tangent points, and center of the arc on the inside of the turn
+		double tangentDist = radius * tanHalfTurn;
+		Vector2d in = lastSeg.startToEnd.scale(1.0 / lastSeg.getLength());
+		Vector2d out = nextSeg.startToEnd.scale(1.0 / nextSeg.getLength());
+		Vector2d joint = _next.waypoints.get(0).position;
+		Vector2d arcStart = joint.sub(in.scale(tangentDist));
+		Vector2d arcEnd = joint.add(out.scale(tangentDist));
+		Vector2d center = arcStart.add(in.rotate(Math.signum(turnRad) * Math.PI/2).scale(radius));
+
+		Options nextOptions = nextSeg.getOptions();
+		double arcSpeed = Math.min(nextOptions.getMaxSpeed(), Math.max(Math.sqrt(nextOptions.getMaxAccel() * radius), kMinCornerSpeed));
+		Options arcOptions = new Options(arcSpeed, nextOptions.getMaxAccel(), nextOptions.getLookaheadDist(), nextOptions.getVisionEnable());
+
+		// replace last waypoint of _leg with the arc.  The arc end takes the options (and marker) of _next's first waypoint
+		_leg.waypoints.remove(_leg.waypoints.size()-1);
+		_leg.segments.remove(_leg.segments.size()-1);
+		_leg.add(new Waypoint(arcStart, arcOptions));
+		int steps = Math.max(2, (int)Math.ceil(Math.abs(turnRad) / Math.toRadians(kFilletStepDeg)));
+		Vector2d radial = arcStart.sub(center);
+		for (int k = 1; k < steps; k++)
+			_leg.add(new Waypoint(center.add(radial.rotate(turnRad * k / steps)), arcOptions));
+		_leg.add(new Waypoint(arcEnd, _next.waypoints.get(0).options));
+		for (int k = 1; k < _next.waypoints.size(); k++)
+			_leg.add(_next.waypoints.get(k));
+
+		_leg.finalSpeed = _next.finalSpeed;
+		_leg.addMarkerListeners(_next);
+		return true;
+	}
+
+	// speed at which the pure pursuit arc through a corner stays within the acceleration limit
+	// the arc reaching a lookahead point past a corner of angle _turnRad has curvature ~ 2*sin(_turnRad/2)/lookahead
+	public static double getCornerSpeed(double _turnRad, double _lookaheadDist, double _maxAccel)
+	{
+		double curvature = 2 * Math.sin(_turnRad/2) / _lookaheadDist;
+		if (curvature <= 0)
+			return Double.MAX_VALUE;
+		return Math.max(Math.sqrt(_maxAccel / curvature), kMinCornerSpeed);
+	}
+
+
+
+	/*
+	 * Time estimates
+	 */
+
+	public double getChainedTimeEstimate()
+	{
+		double time = 0.0;
+		for (int k = 0; k < legs.size(); k++)
+		{
+			Leg leg = legs.get(k);
+			if (leg.turnToHeadingDeg.isPresent())
+				time += getTurnTimeEstimate(Vector2d.normalizeAngleDeg(leg.turnToHeadingDeg.get() - getEndHeadingDeg(legs.get(k-1).path)));
+			time += getPathTimeEstimate(leg.path, leg.path.finalSpeed);
+		}
+		return time;
+	}
+
+	// every path stops at its end, then turns in place to the heading of the next path
+	public double getStopAndTurnTimeEstimate()
+	{
+		double time = 0.0;
+		for (int k = 0; k < paths.size(); k++)
+		{
+			Path path = paths.get(k);
+			if (k > 0)
+			{
+				double headingChangeDeg = Vector2d.normalizeAngleDeg(getStartHeadingDeg(path) - getEndHeadingDeg(paths.get(k-1)));
+				if (Math.abs(headingChangeDeg) > kTurnThresholdDeg)
+					time += getTurnTimeEstimate(headingChangeDeg);
+			}
+			time += getPathTimeEstimate(path, 0.0);
+		}
+		return time;
+	}
+
+	// time to turn in place following the Drive turn to heading profile
+	public static double getTurnTimeEstimate(double _headingChangeDeg)
+	{
+		return getSegmentTimeEstimate(Math.abs(_headingChangeDeg), 0.0, 0.0, DriveLoop.kTurnMaxRateDegPerSec, DriveLoop.kTurnMaxAccelDegPerSecSqr);
+	}
+
+	// time to follow a path from rest, using the same speed limits as PathFollower.speedControl()
+	public static double getPathTimeEstimate(Path _path, double _finalSpeed)
+	{
+		int n = _path.segments.size();
+		if (n == 0)
+			return 0.0;
+
+		// speed at end of each segment: limited by next segment's max speed, then braking distance (backwards pass)
+		double[] endSpeed = new double[n];
+		endSpeed[n-1] = _finalSpeed;
+		for (int k = n-2; k >= 0; k--)
+		{
+			Options next = _path.segments.get(k+1).options;
+			double brakingSpeed = Math.sqrt(endSpeed[k+1]*endSpeed[k+1] + 2*next.getMaxAccel()*_path.segments.get(k+1).getLength());
+			endSpeed[k] = Math.min(next.getMaxSpeed(), brakingSpeed);
+		}
+
+		// then acceleration from the start (forwards pass)
+		double time = 0.0;
+		double startSpeed = 0.0;
+		for (int k = 0; k < n; k++)
+		{
+			PathSegment seg = _path.segments.get(k);
+			double accelSpeed = Math.sqrt(startSpeed*startSpeed + 2*seg.options.getMaxAccel()*seg.getLength());
+			endSpeed[k] = Math.min(endSpeed[k], accelSpeed);
+			time += getSegmentTimeEstimate(seg.getLength(), startSpeed, endSpeed[k], seg.options.getMaxSpeed(), seg.options.getMaxAccel());
+			startSpeed = endSpeed[k];
+		}
+		return time;
+	}
+
+	// time to travel _dist with a trapezoidal speed profile
+	public static double getSegmentTimeEstimate(double _dist, double _startSpeed, double _endSpeed, double _maxSpeed, double _maxAccel)
+	{
+		if (_dist <= 0 || _maxAccel <= 0 || _maxSpeed <= 0)
+			return 0.0;
+
+		double peakSpeed = Math.sqrt((2*_maxAccel*_dist + _startSpeed*_startSpeed + _endSpeed*_endSpeed) / 2);
+		if (peakSpeed <= _maxSpeed)
+			return (2*peakSpeed - _startSpeed - _endSpeed) / _maxAccel;
+
+		double accelDist = (_maxSpeed*_maxSpeed - _startSpeed*_startSpeed) / (2*_maxAccel);
+		double decelDist = (_maxSpeed*_maxSpeed - _endSpeed*_endSpeed) / (2*_maxAccel);
+		double cruiseDist = _dist - accelDist - decelDist;
+		return (2*_maxSpeed - _startSpeed - _endSpeed) / _maxAccel + cruiseDist / _maxSpeed;
+	}
+
+	public String toString()
+	{
+		double chained = getChainedTimeEstimate();
+		double stopAndTurn = getStopAndTurnTimeEstimate();
+		return String.format("PathChain: %d paths in %d legs, estimated %.2f sec chained vs %.2f sec stop-and-turn (%.2f sec saved)",
+				paths.size(), legs.size(), chained, stopAndTurn, stopAndTurn - chained);
+	}
+}
@@ -2,12 +2,11 @@ package frc.robot.lib.util;
 
 import frc.robot.Constants;
 import frc.robot.command_status.DriveCommand;
-//import frc.robot.command_status.GoalStates;
+import frc.robot.command_status.GoalStates;
 import frc.robot.command_status.RobotState;
-//import frc.robot.command_status.GoalStates.GoalState;
+import frc.robot.command_status.GoalStates.GoalState;
 import frc.robot.lib.util.Kinematics.WheelSpeed;
 import frc.robot.loops.DriveLoop;
-// import frc.robot.loops.GoalStateLoop;
 import frc.robot.subsystems.Drive;
 
 import java.util.Optional;
@@ -32,9 +31,9 @@ public class PathFollower
 	
 	public PathVisionState state;
 	
-	public Drive drive = Drive.getInstance();
-	public RobotState robotState = RobotState.getInstance();
-	// public GoalStates goalStates = GoalStates.getInstance();
+	public Drive drive;
+	public RobotState robotState;
+	public GoalStates goalStates = GoalStates.getInstance();
 	
 	Path path;
 
@@ -74,6 +73,16 @@ public class PathFollower
     public PathFollower(Path _path, PathVisionState _initialState) 
     {
         drive = Drive.getInstance();
+        robotState = RobotState.getInstance();
+        path = _path;
+        state = _initialState;
+    }
+
+    // for off-robot replay: only pathVisionDrive() may be used (no Drive subsystem)
+    public PathFollower(Path _path, PathVisionState _initialState, RobotState _robotState) 
+    {
+        drive = null;
+        robotState = _robotState;
         path = _path;
         state = _initialState;
     }
@@ -104,6 +113,8 @@ public class PathFollower
 		// Output: Send drive control
 		//---------------------------------------------------
         drive.setVelocitySetpoint(wheelSpeed);
+
+		updateLogValues();
 	}
 
     
@@ -119,16 +130,16 @@ public class PathFollower
 		double maxSpeed = 0;
 		double maxAccel = 0;
 		
-		boolean visionEnabledSegment = path.getSegmentVisionEnable(); 
-		// if (visionEnabledSegment)
-		// {
-		// 	visionDrive(_currentTime, _currentPose);
-		// }
-		// else
-		// {
-			// GoalStateLoop.getInstance().resetVision();
+		boolean visionEnabledSegment = path.getSegmentVisionEnable();
+		if (visionEnabledSegment)
+		{
+			visionDrive(_currentTime, _currentPose);
+		}
+		else
+		{
+			currentFieldToGoal = Optional.empty();	// forget goal from any earlier vision segment
 			pathDrive(_currentTime, _currentPose);
-		// }
+		}
 			
 		if (state == PathVisionState.PATH_FOLLOWING)	 
 		{
@@ -194,14 +205,13 @@ public class PathFollower
 
 	
 	// drive towards vision target (or follow path if no target acquired)
-	/*
 	public void visionDrive(double _currentTime, Pose _currentPose)
 	{
 		// update currentGoalState based on whether target is currently seen, and if button is being pressed
 		Optional<GoalState> visionGoalState = goalStates.getBestVisionTarget();
 		if (visionGoalState.isPresent())
 		{
-			currentFieldToGoal = Optional.of( visionGoalState.get().getPosition() );
+			currentFieldToGoal = Optional.of( new Vector2d(visionGoalState.get().getPosition()) );	// GoalStates reuses its Vector2d
 		}
 		else
 		{
@@ -226,18 +236,18 @@ public class PathFollower
 			state = PathVisionState.VISION;
 
             // Get range and angle to target
-            fieldToGoal = currentFieldToGoal.get();
-            fieldToShooter = RobotState.getInstance().getFieldToShooter(currentTime);
+            fieldToGoal = currentFieldToGoal.get();		// already latency compensated by GoalStateLoop
+            fieldToShooter = _currentPose;
 		    Vector2d shooterToGoal = fieldToGoal.sub(fieldToShooter.getPosition());
 	    	distanceToGoal = shooterToGoal.length();
 			bearingToGoal = shooterToGoal.angle() - fieldToShooter.getHeading(); 	// bearing relative to shooter's heading
 
-			kTargetDistanceThresholdFromCenterInches = Constants.kHatchTargetDistanceThresholdFromCenterInches;			
+			kTargetDistanceThresholdFromCenterInches = Constants.kVisionStopDistanceInches;
             distanceToTargetInches = distanceToGoal - kTargetDistanceThresholdFromCenterInches;   // distance from camera
             bearingToTarget = bearingToGoal;
 
 			// Calculate motor settings to turn towards target
-			lookaheadDist = Math.min(Constants.kVisionLookaheadDist, distanceToTargetInches);	// length of chord <= kVisionLookaheadDist
+			lookaheadDist = Math.max(Math.min(Constants.kVisionLookaheadDist, distanceToTargetInches), 1.0);	// length of chord <= kVisionLookaheadDist (and > 0 at the stop distance)
 			curvature     = 2 * Math.sin(bearingToTarget) / lookaheadDist;						// curvature = 1/radius of circle (positive: turn left, negative: turn right)
 		}
 		else
@@ -245,7 +255,7 @@ public class PathFollower
 			// target not acquired -- speed/curvature will be controlled by path follower
 			pathDrive(_currentTime, _currentPose);
 		}
-	}*/
+	}
 
 	
 	// keep speed within acceleration limits
@@ -290,10 +300,10 @@ public class PathFollower
     {
     	boolean done = false;
     	
-    	// if (state == PathVisionState.PATH_FOLLOWING)
+    	if (state == PathVisionState.PATH_FOLLOWING)
 	        done = (remainingDistance <= DriveLoop.kPathFollowingCompletionTolerance);
-    	// else
-    		// done = (remainingDistance <= Constants.kVisionCompletionTolerance);
+    	else
+    		done = (remainingDistance <= Constants.kVisionCompletionTolerance);
     	
      	return done;
     }
@@ -307,70 +317,180 @@ public class PathFollower
  
     
     
+	// Values for the logger, copied at the end of each update().  log() runs on the logging
+	// thread, so it reads only this copy, never the follower's fields or the path, which
+	// update() changes (and Path.update() removes segments from) on the control thread.
+	private static class LogValues
+	{
+		boolean valid = false;		// nothing to log until the first update()
+		double currentTime;
+		double positionX, positionY, headingDeg;
+		boolean reversed;
+		PathVisionState state;
+		double segmentStartX, segmentStartY, segmentEndX, segmentEndY;
+		double segmentFinalSpeed, segmentMaxSpeed;
+		boolean segmentVisionEnable;
+		double distanceFromPath, lookaheadDist, lookaheadPointX, lookaheadPointY;
+		double prevPoseX, prevPoseY;
+		double remainingDistance, speed, curvature, lSpeed, rSpeed;
+		boolean haveGoal;
+		double fieldToGoalX, fieldToGoalY, fieldToShooterX, fieldToShooterY;
+		double distanceToGoal, bearingToGoal;
+	}
+	private final LogValues logValues = new LogValues();
+
+	private void updateLogValues()
+	{
+		synchronized (logValues)
+		{
+			LogValues v = logValues;
+			v.currentTime = currentTime;
+			v.positionX = currentPose.getX();
+			v.positionY = currentPose.getY();
+			v.headingDeg = currentPose.getHeadingDeg();
+			v.reversed = path.getReverseDirection();
+			v.state = state;
+			Vector2d segmentStart = path.getSegmentStart();
+			Vector2d segmentEnd = path.getSegmentEnd();
+			v.segmentStartX = segmentStart.getX();
+			v.segmentStartY = segmentStart.getY();
+			v.segmentEndX = segmentEnd.getX();
+			v.segmentEndY = segmentEnd.getY();
+			v.segmentFinalSpeed = path.getSegmentFinalSpeed();
+			v.segmentMaxSpeed = path.getSegmentMaxSpeed();
+			v.segmentVisionEnable = path.getSegmentVisionEnable();
+			v.distanceFromPath = distanceFromPath;
+			v.lookaheadDist = lookaheadDist;
+			v.lookaheadPointX = lookaheadPoint.getX();
+			v.lookaheadPointY = lookaheadPoint.getY();
+			v.prevPoseX = previousPose.getX();
+			v.prevPoseY = previousPose.getY();
+			v.remainingDistance = remainingDistance;
+			v.speed = speed;
+			v.curvature = curvature;
+			v.lSpeed = wheelSpeed.left;
+			v.rSpeed = wheelSpeed.right;
+			v.haveGoal = currentFieldToGoal.isPresent();
+			v.fieldToGoalX = fieldToGoal.getX();
+			v.fieldToGoalY = fieldToGoal.getY();
+			v.fieldToShooterX = fieldToShooter.getX();
+			v.fieldToShooterY = fieldToShooter.getY();
+			v.distanceToGoal = distanceToGoal;
+			v.bearingToGoal = bearingToGoal;
+			v.valid = true;
+		}
+	}
+
     private final DataLogger logger = new DataLogger()
     {
+        final int driveModeSlot = onChange(addEnum("PathVision/driveMode"));
+        final int talonModeSlot = onChange(addEnum("PathVision/talonMode"));
+        final int leftSlot = addDouble("PathVision/left");
+        final int rightSlot = addDouble("PathVision/right");
+        final int neutralModeSlot = onChange(addEnum("PathVision/neutralMode"));
+        final int currentTimeSlot = addDouble("PathVision/currentTime");
+        final int positionXSlot = addDouble("PathVision/positionX");
+        final int positionYSlot = addDouble("PathVision/positionY");
+        final int headingDegSlot = addDouble("PathVision/headingDeg");
+        final int reversedSlot = onChange(addBoolean("PathVision/reversed"));
+        final int stateSlot = onChange(addEnum("PathVision/state"));
+        final int segmentStartXSlot = onChange(addDouble("PathVision/segmentStartX"));
+        final int segmentStartYSlot = onChange(addDouble("PathVision/segmentStartY"));
+        final int segmentEndXSlot = onChange(addDouble("PathVision/segmentEndX"));
+        final int segmentEndYSlot = onChange(addDouble("PathVision/segmentEndY"));
+        final int segmentFinalSpeedSlot = onChange(addDouble("PathVision/segmentFinalSpeed"));
+        final int segmentMaxSpeedSlot = onChange(addDouble("PathVision/segmentMaxSpeed"));
+        final int segmentVisionEnableSlot = onChange(addBoolean("PathVision/segmentVisionEnable"));
+        final int distanceFromPathSlot = addDouble("PathVision/distanceFromPath");
+        final int lookaheadDistSlot = onChange(addDouble("PathVision/lookaheadDist"));
+        final int lookaheadPointXSlot = addDouble("PathVision/lookaheadPointX");
+        final int lookaheadPointYSlot = addDouble("PathVision/lookaheadPointY");
+        final int prevPoseXSlot = addDouble("PathVision/prevPoseX");
+        final int prevPoseYSlot = addDouble("PathVision/prevPoseY");
+        final int remainingDistanceSlot = addDouble("PathVision/remainingDistance");
+        final int speedSlot = addDouble("PathVision/speed");
+        final int curvatureSlot = addDouble("PathVision/curvature");
+        final int lSpeedSlot = addDouble("PathVision/lSpeed");
+        final int rSpeedSlot = addDouble("PathVision/rSpeed");
+        final int visionEnabledSegmentSlot = onChange(addBoolean("PathVision/visionEnabledSegment"));
+        final int fieldToGoalXSlot = addDouble("PathVision/fieldToGoalX");
+        final int fieldToGoalYSlot = addDouble("PathVision/fieldToGoalY");
+        final int fieldToShooterXSlot = addDouble("PathVision/fieldToShooterX");
+        final int fieldToShooterYSlot = addDouble("PathVision/fieldToShooterY");
+        final int distanceToGoalSlot = addDouble("PathVision/distanceToGoal");
+        final int bearingToGoalSlot = addDouble("PathVision/bearingToGoal");
+
         @Override
         public void log()
         {            
-			DriveCommand cmd = drive.getCommand();
-    		put("PathVision/driveMode", cmd.getDriveControlMode().toString() );
-    		put("PathVision/talonMode", cmd.getTalonControlMode().toString() );
-    		put("PathVision/left",  cmd.getLeftMotor() );
-       		put("PathVision/right", cmd.getRightMotor() );
-      		put("PathVision/neutralMode", DriveCommand.getNeutralMode().toString() );
-      		
-       		Pose odometry = robotState.getLatestFieldToVehicle();
-            put("PathVision/positionX",  odometry.getX());
-            put("PathVision/positionY",  odometry.getY());
-            put("PathVision/headingDeg", odometry.getHeadingDeg());
-        	
-			put("PathVision/reversed", path.getReverseDirection());
-			put("PathVision/state", state.toString());
-
-			put("PathVision/segmentStartX", path.getSegmentStart().getX());
-			put("PathVision/segmentStartY", path.getSegmentStart().getY());
-			put("PathVision/segmentEndX", path.getSegmentEnd().getX());
-			put("PathVision/segmentEndY", path.getSegmentEnd().getY());
-			put("PathVision/segmentFinalSpeed", path.getSegmentFinalSpeed());
-			put("PathVision/segmentMaxSpeed", path.getSegmentMaxSpeed());
-			put("PathVision/segmentVisionEnable", path.getSegmentVisionEnable());
-			
-			put("PathVision/distanceFromPath", distanceFromPath );
-			put("PathVision/lookaheadDist", lookaheadDist );
-			put("PathVision/lookaheadPointX",  lookaheadPoint.getX() );
-			put("PathVision/lookaheadPointY",  lookaheadPoint.getY());
-
-			put("PathVision/prevPoseX", previousPose.getX());
-			put("PathVision/prevPoseY", previousPose.getY());
-			
-			put("PathVision/remainingDistance",  remainingDistance );
-			
-			put("PathVision/speed", 	speed);
-			put("PathVision/curvature", curvature );
-			put("PathVision/lSpeed", 	wheelSpeed.left);
-			put("PathVision/rSpeed", 	wheelSpeed.right);
-
-			put("PathVision/visionEnabledSegment", path.getSegmentVisionEnable());
-			put("PathVision/state", state.toString());
- 			
-			if (currentFieldToGoal.isPresent())
+			if (drive != null)
 			{
-				put("PathVision/fieldToGoalX", fieldToGoal.getX());
-				put("PathVision/fieldToGoalY", fieldToGoal.getY());
-				put("PathVision/fieldToShooterX", fieldToShooter.getX());
-				put("PathVision/fieldToShooterY", fieldToShooter.getY());
-				put("PathVision/distanceToGoal", distanceToGoal);
-				put("PathVision/bearingToGoal", bearingToGoal);
-			}
-			else{
-				put("PathVision/fieldToGoalX", -999);
-				put("PathVision/fieldToGoalY", -999);
-				put("PathVision/fieldToShooterX", -999);
-				put("PathVision/fieldToShooterY", -999);
-				put("PathVision/distanceToGoal", -999);
-				put("PathVision/bearingToGoal", -999);
+				DriveCommand cmd = drive.getCommand();
+	    		put(driveModeSlot, cmd.getDriveControlMode() );
+	    		put(talonModeSlot, cmd.getTalonControlMode() );
+	    		put(leftSlot,  cmd.getLeftMotor() );
+	       		put(rightSlot, cmd.getRightMotor() );
+	      		put(neutralModeSlot, DriveCommand.getNeutralMode() );
 			}
 
+			synchronized (logValues)
+			{
+				LogValues v = logValues;
+				if (!v.valid)
+					return;
+
+	       		// pose and time used by the last pathVisionDrive(), so it can be replayed
+	            put(currentTimeSlot, v.currentTime);
+	            put(positionXSlot,  v.positionX);
+	            put(positionYSlot,  v.positionY);
+	            put(headingDegSlot, v.headingDeg);
+	        	
+				put(reversedSlot, v.reversed);
+				put(stateSlot, v.state);
+
+				put(segmentStartXSlot, v.segmentStartX);
+				put(segmentStartYSlot, v.segmentStartY);
+				put(segmentEndXSlot, v.segmentEndX);
+				put(segmentEndYSlot, v.segmentEndY);
+				put(segmentFinalSpeedSlot, v.segmentFinalSpeed);
+				put(segmentMaxSpeedSlot, v.segmentMaxSpeed);
+				put(segmentVisionEnableSlot, v.segmentVisionEnable);
+				
+				put(distanceFromPathSlot, v.distanceFromPath );
+				put(lookaheadDistSlot, v.lookaheadDist );
+				put(lookaheadPointXSlot,  v.lookaheadPointX );
+				put(lookaheadPointYSlot,  v.lookaheadPointY );
+
+				put(prevPoseXSlot, v.prevPoseX);
+				put(prevPoseYSlot, v.prevPoseY);
+				
+				put(remainingDistanceSlot,  v.remainingDistance );
+				
+				put(speedSlot, 	v.speed);
+				put(curvatureSlot, v.curvature );
+				put(lSpeedSlot, 	v.lSpeed);
+				put(rSpeedSlot, 	v.rSpeed);
+
+				put(visionEnabledSegmentSlot, v.segmentVisionEnable);
+	 			
+				if (v.haveGoal)
+				{
+					put(fieldToGoalXSlot, v.fieldToGoalX);
+					put(fieldToGoalYSlot, v.fieldToGoalY);
+					put(fieldToShooterXSlot, v.fieldToShooterX);
+					put(fieldToShooterYSlot, v.fieldToShooterY);
+					put(distanceToGoalSlot, v.distanceToGoal);
+					put(bearingToGoalSlot, v.bearingToGoal);
+				}
+				else{
+					put(fieldToGoalXSlot, -999);
+					put(fieldToGoalYSlot, -999);
+					put(fieldToShooterXSlot, -999);
+					put(fieldToShooterYSlot, -999);
+					put(distanceToGoalSlot, -999);
+					put(bearingToGoalSlot, -999);
+				}
+			}
        }
     };
 	
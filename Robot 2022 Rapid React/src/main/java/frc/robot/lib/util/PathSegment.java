@@ -48,6 +48,7 @@ public class PathSegment
 	    public Options(Options _options)
 	    {
 	    	this(_options.maxSpeed, _options.maxAccel, _options.lookaheadDist, _options.visionEnable);
+	    	marker = _options.marker;		// keep marker, otherwise it is lost when PathSegment copies its options
 	    }
 	    
 	    public double   getMaxSpeed()   		{ return maxSpeed; }		
@@ -58,7 +59,7 @@ public class PathSegment
 	    
 	    public String toString()
 	    {
-	    	return String.format("MaxSpeed: %5.1f, MaxAccel: %5.1f: LookaheadDist: %4.1f, VisionEnable: %b", maxSpeed, maxAccel, lookaheadDist, visionEnable);
+	    	return String.format("MaxSpeed: %5.1f, MaxAccel: %5.1f: LookaheadDist: %4.1f, VisionEnable: %b, Marker: %s", maxSpeed, maxAccel, lookaheadDist, visionEnable, marker.orElse("none"));
 	    }
 	    
     };
@@ -0,0 +1,40 @@
+package frc.robot.lib.util;
+
+/**
+ * Accumulates distance-off-path and roboRIO time per cycle while following a path,
+ * so different path following methods can be compared on the same path.
+ */
+public class PathTrackingStats
+{
+	private final String name;
+	private int count = 0;
+	private double sumSqrError = 0;
+	private double maxError = 0;
+	private long sumNanos = 0;
+	private long maxNanos = 0;
+
+	public PathTrackingStats(String _name)
+	{
+		name = _name;
+	}
+
+	public void add(double _distanceFromPath, long _elapsedNanos)
+	{
+		count++;
+		sumSqrError += _distanceFromPath * _distanceFromPath;
+		maxError = Math.max(maxError, Math.abs(_distanceFromPath));
+		sumNanos += _elapsedNanos;
+		maxNanos = Math.max(maxNanos, _elapsedNanos);
+	}
+
+	public double getRmsError()  { return (count > 0) ? Math.sqrt(sumSqrError / count) : 0; }
+	public double getMaxError()  { return maxError; }
+	public double getAvgMicros() { return (count > 0) ? sumNanos / 1000.0 / count : 0; }
+	public double getMaxMicros() { return maxNanos / 1000.0; }
+
+	public String toString()
+	{
+		return String.format("%s: %d cycles, distance from path rms %.2f in, max %.2f in, roboRIO time avg %.1f us, max %.1f us",
+				name, count, getRmsError(), getMaxError(), getAvgMicros(), getMaxMicros());
+	}
+}
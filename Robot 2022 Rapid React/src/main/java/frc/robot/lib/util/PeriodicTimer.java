@@ -0,0 +1,57 @@
+package frc.robot.lib.util;
+
+/**
+ * Measures how long each TimedRobot period takes, averaged over a window of periods.
+ * Call start() at the top of the mode periodic function (TimedRobot runs it first) and
+ * stop() at the end of robotPeriodic().
+ *
+ * Also used to time work on other threads: start()/stop() from one thread, the getters
+ * from any thread.
+ */
+public class PeriodicTimer
+{
+	private final int windowPeriods;
+
+	private long startNanos = -1;
+	private int count = 0;
+	private long sumNanos = 0;
+	private long maxNanos = 0;
+
+	private volatile double avgMs = 0;
+	private volatile double maxMs = 0;
+	private volatile double lastMs = 0;
+
+	public PeriodicTimer(int _windowPeriods)
+	{
+		windowPeriods = _windowPeriods;
+	}
+
+	public void start()
+	{
+		startNanos = System.nanoTime();
+	}
+
+	public void stop()
+	{
+		if (startNanos < 0)
+			return;
+		long elapsed = System.nanoTime() - startNanos;
+		startNanos = -1;
+
+		lastMs = elapsed / 1e6;
+		sumNanos += elapsed;
+		maxNanos = Math.max(maxNanos, elapsed);
+		if (++count >= windowPeriods)
+		{
+			avgMs = sumNanos / 1e6 / count;
+			maxMs = maxNanos / 1e6;
+			count = 0;
+			sumNanos = 0;
+			maxNanos = 0;
+		}
+	}
+
+	public double getLastMs() { return lastMs; }
+	public double getAvgMs() { return avgMs; }		// over the last full window
+	public double getMaxMs() { return maxMs; }		// over the last full window
+}
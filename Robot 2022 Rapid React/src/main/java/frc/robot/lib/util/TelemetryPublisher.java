@@ -0,0 +1,221 @@
+package frc.robot.lib.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.shuffleboard.Shuffleboard;
+
+/**
+ * Change-only, rate-limited publishing of Shuffleboard entries.
+ *
+ * Code that used to call NetworkTableEntry.setXxx() every period calls set() on a typed
+ * entry instead, which only stores the value.  publish(), called once per robotPeriodic,
+ * then writes the entries whose value changed since they were last published, at most
+ * maxRateHz times a second per entry (0: every period).  Noisy values such as motor
+ * currents should be given a rate; state and mode entries usually only need change-only.
+ *
+ * Structured values (poses, histories) should be published as numeric arrays with
+ * addDoubleArray() rather than formatted into strings every period.
+ */
+public class TelemetryPublisher
+{
+	// singleton class
+	private static TelemetryPublisher instance = null;
+
+	public static TelemetryPublisher getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new TelemetryPublisher();
+		}
+		return instance;
+	}
+
+	public static double kStatsIntervalSec = 1.0;
+
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private String selectedTab = null;
+
+	// statistics
+	private long setCount = 0;				// calls to set(): what used to be written to NT
+	private long publishCount = 0;			// values actually written to NT
+	private double statsStartTime = -1;
+	private long statsStartSetCount = 0;
+	private long statsStartPublishCount = 0;
+	private double updatesSavedPerSec = 0;
+	private double updatesPublishedPerSec = 0;
+
+
+
+	public abstract class Entry
+	{
+		protected final NetworkTableEntry entry;
+		private final double minIntervalSec;
+		private double lastPublishTime = Double.NEGATIVE_INFINITY;
+		protected boolean published = false;		// anything written yet
+		protected boolean pending = false;			// value differs from what was last written
+
+		Entry(NetworkTableEntry _entry, double _maxRateHz)
+		{
+			entry = _entry;
+			minIntervalSec = (_maxRateHz > 0 ? 1.0 / _maxRateHz : 0);
+			entries.add(this);
+		}
+
+		public NetworkTableEntry getEntry() { return entry; }
+
+		protected void countSet() { setCount++; }
+
+		void publish(double _now)
+		{
+			if (!pending || _now - lastPublishTime < minIntervalSec)
+				return;
+			write();
+			lastPublishTime = _now;
+			published = true;
+			pending = false;
+			publishCount++;
+		}
+
+		abstract void write();
+	}
+
+	public class DoubleEntry extends Entry
+	{
+		private double value, publishedValue;
+
+		DoubleEntry(NetworkTableEntry _entry, double _maxRateHz) { super(_entry, _maxRateHz); }
+
+		public void set(double _value)
+		{
+			countSet();
+			value = _value;
+			pending = !published || Double.doubleToLongBits(_value) != Double.doubleToLongBits(publishedValue);
+		}
+
+		void write()
+		{
+			entry.setDouble(value);
+			publishedValue = value;
+		}
+	}
+
+	public class BooleanEntry extends Entry
+	{
+		private boolean value, publishedValue;
+
+		BooleanEntry(NetworkTableEntry _entry, double _maxRateHz) { super(_entry, _maxRateHz); }
+
+		public void set(boolean _value)
+		{
+			countSet();
+			value = _value;
+			pending = !published || _value != publishedValue;
+		}
+
+		void write()
+		{
+			entry.setBoolean(value);
+			publishedValue = value;
+		}
+	}
+
+	public class StringEntry extends Entry
+	{
+		private String value, publishedValue;
+
+		StringEntry(NetworkTableEntry _entry, double _maxRateHz) { super(_entry, _maxRateHz); }
+
+		// enum name() and other constant strings compare by reference, so this is cheap
+		public void set(String _value)
+		{
+			countSet();
+			value = _value;
+			pending = !published || !_value.equals(publishedValue);
+		}
+
+		void write()
+		{
+			entry.setString(value);
+			publishedValue = value;
+		}
+	}
+
+	public class DoubleArrayEntry extends Entry
+	{
+		private double[] value = new double[0];
+		private double[] publishedValue = new double[0];
+
+		DoubleArrayEntry(NetworkTableEntry _entry, double _maxRateHz) { super(_entry, _maxRateHz); }
+
+		// values are copied, so callers can reuse their array
+		public void set(double... _values)
+		{
+			countSet();
+			if (value.length != _values.length)
+				value = new double[_values.length];
+			System.arraycopy(_values, 0, value, 0, _values.length);
+			pending = !published || !Arrays.equals(value, publishedValue);
+		}
+
+		void write()
+		{
+			entry.setDoubleArray(value);
+			if (publishedValue.length != value.length)
+				publishedValue = new double[value.length];
+			System.arraycopy(value, 0, publishedValue, 0, value.length);
+		}
+	}
+
+	public DoubleEntry addDouble(NetworkTableEntry _entry)							{ return new DoubleEntry(_entry, 0); }
+	public DoubleEntry addDouble(NetworkTableEntry _entry, double _maxRateHz)		{ return new DoubleEntry(_entry, _maxRateHz); }
+	public BooleanEntry addBoolean(NetworkTableEntry _entry)						{ return new BooleanEntry(_entry, 0); }
+	public StringEntry addString(NetworkTableEntry _entry)							{ return new StringEntry(_entry, 0); }
+	public DoubleArrayEntry addDoubleArray(NetworkTableEntry _entry)				{ return new DoubleArrayEntry(_entry, 0); }
+	public DoubleArrayEntry addDoubleArray(NetworkTableEntry _entry, double _maxRateHz)	{ return new DoubleArrayEntry(_entry, _maxRateHz); }
+
+
+
+	// write changed entries to NetworkTables.  Call once per period, after all the set() calls
+	public void publish()
+	{
+		double now = Timer.getFPGATimestamp();
+		for (Entry entry : entries)
+			entry.publish(now);
+
+		if (statsStartTime < 0)
+			statsStartTime = now;
+		double elapsed = now - statsStartTime;
+		if (elapsed >= kStatsIntervalSec)
+		{
+			long sets = setCount - statsStartSetCount;
+			long publishes = publishCount - statsStartPublishCount;
+			updatesPublishedPerSec = publishes / elapsed;
+			updatesSavedPerSec = (sets - publishes) / elapsed;
+			statsStartTime = now;
+			statsStartSetCount = setCount;
+			statsStartPublishCount = publishCount;
+		}
+	}
+
+	// Shuffleboard.selectTab() sends a NetworkTables update every call, so only send it when the tab changes
+	public void selectTab(String _title)
+	{
+		if (!_title.equals(selectedTab))
+		{
+			Shuffleboard.selectTab(_title);
+			selectedTab = _title;
+			publishCount++;
+		}
+		setCount++;
+	}
+
+	public int getNumEntries() { return entries.size(); }
+	public long getSetCount() { return setCount; }
+	public long getPublishCount() { return publishCount; }
+	public double getUpdatesSavedPerSec() { return updatesSavedPerSec; }
+	public double getUpdatesPublishedPerSec() { return updatesPublishedPerSec; }
+}
@@ -0,0 +1,87 @@
+package frc.robot.lib.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
+
+/**
+ * Low priority thread that reads display-only motor diagnostics at kRateHz, so the
+ * TimedRobot periodic functions do no CAN reads for telemetry.  Subsystems register their
+ * motors with addMotor() and read the latest MotorTelemetry snapshot in updateShuffleboard().
+ *
+ * Set kBackgroundSampling to false to read on the robot thread again (e.g. to compare
+ * periodic durations with PeriodicTimer).
+ */
+public class TelemetrySampler implements Runnable
+{
+	// singleton class
+	private static TelemetrySampler instance = null;
+
+	public static TelemetrySampler getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new TelemetrySampler();
+		}
+		return instance;
+	}
+
+	public static boolean kBackgroundSampling = true;
+	public static double kRateHz = 10;
+
+	private final List<MotorTelemetry> motors = new CopyOnWriteArrayList<MotorTelemetry>();
+	private Thread thread = null;
+
+	// statistics (written by sampler thread only)
+	private volatile long samples = 0;
+	private volatile double lastSampleMs = 0;
+	private volatile double maxSampleMs = 0;
+
+	private TelemetrySampler() {}
+
+	public synchronized MotorTelemetry addMotor(TalonFX _motor)
+	{
+		MotorTelemetry telemetry = new MotorTelemetry(_motor);
+		motors.add(telemetry);
+		if (thread == null && kBackgroundSampling)
+		{
+			thread = new Thread(this, "TelemetrySampler");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.start();
+		}
+		return telemetry;
+	}
+
+	public long getSamples() { return samples; }
+	public double getLastSampleMs() { return lastSampleMs; }
+	public double getMaxSampleMs() { return maxSampleMs; }
+
+	@Override
+	public void run()
+	{
+		while (kBackgroundSampling)
+		{
+			long start = System.nanoTime();
+			for (MotorTelemetry motor : motors)
+				motor.sample();
+			long elapsed = System.nanoTime() - start;
+
+			lastSampleMs = elapsed / 1e6;
+			maxSampleMs = Math.max(maxSampleMs, lastSampleMs);
+			samples++;
+
+			long sleepMs = Math.round(1000 / kRateHz - elapsed / 1e6);
+			try
+			{
+				Thread.sleep(Math.max(sleepMs, 1));
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
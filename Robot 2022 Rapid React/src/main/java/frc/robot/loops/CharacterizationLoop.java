@@ -0,0 +1,130 @@
+package frc.robot.loops;
+
+import java.io.PrintWriter;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.command_status.DriveCommand;
+import frc.robot.command_status.DriveState;
+import frc.robot.subsystems.Drive;
+
+/**
+ * Runs drive characterization tests at the LoopController rate.  While a test is running,
+ * each cycle records the voltage applied since the last cycle with the wheel velocity and
+ * acceleration it produced, then applies the next open loop voltage: a ramp (quasistatic
+ * test) or a step (dynamic test).  Samples are kept in preallocated arrays.
+ *
+ * CharacterizationAction starts and stops a test and writes the samples out.
+ * Register after DriveLoop, so each sample holds that cycle's wheel speeds.
+ */
+public class CharacterizationLoop implements Loop
+{
+    // singleton class
+    private static CharacterizationLoop instance = null;
+
+    public static CharacterizationLoop getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new CharacterizationLoop();
+        }
+        return instance;
+    }
+
+    public enum TestType { QUASISTATIC, DYNAMIC }
+
+    public static final int kMaxSamples = 3000;            // 30 sec at 10 ms
+    public static double kMaxVolts = 10.0;
+
+    private boolean running = false;
+    private TestType testType;
+    private double direction;
+    private double volts;                                   // ramp rate (V/sec) for QUASISTATIC, step (V) for DYNAMIC
+    private double startTime;
+    private double appliedVolts;
+
+    private int numSamples = 0;
+    private final double[] time = new double[kMaxSamples];
+    private final double[] voltage = new double[kMaxSamples];
+    private final double[] lSpeed = new double[kMaxSamples];
+    private final double[] rSpeed = new double[kMaxSamples];
+    private final double[] lAccel = new double[kMaxSamples];
+    private final double[] rAccel = new double[kMaxSamples];
+
+    private final DriveCommand cmd = new DriveCommand(0, 0);
+
+    CharacterizationLoop()
+    {
+    }
+
+    public synchronized void startTest(TestType _testType, boolean _reverse, double _volts)
+    {
+        testType = _testType;
+        direction = _reverse ? -1.0 : +1.0;
+        volts = _volts;
+        startTime = Timer.getFPGATimestamp();
+        appliedVolts = 0;
+        numSamples = 0;
+        running = true;
+    }
+
+    public synchronized void stopTest()
+    {
+        running = false;
+    }
+
+    public synchronized int getNumSamples() { return numSamples; }
+    public synchronized boolean isFull() { return numSamples >= kMaxSamples; }
+
+    @Override
+    public void onStart()
+    {
+        // no-op
+    }
+
+    @Override
+    public synchronized void onLoop()
+    {
+        if (!running)
+            return;
+
+        double t = Timer.getFPGATimestamp() - startTime;
+        DriveState driveState = DriveState.getInstance();
+
+        // record response to voltage applied since last cycle
+        if (numSamples < kMaxSamples)
+        {
+            int k = numSamples++;
+            time[k] = t;
+            voltage[k] = appliedVolts;
+            lSpeed[k] = driveState.getLeftSpeedInchesPerSec();
+            rSpeed[k] = driveState.getRightSpeedInchesPerSec();
+            if (k > 0 && time[k] > time[k-1])
+            {
+                lAccel[k] = (lSpeed[k] - lSpeed[k-1]) / (time[k] - time[k-1]);
+                rAccel[k] = (rSpeed[k] - rSpeed[k-1]) / (time[k] - time[k-1]);
+            }
+        }
+
+        double v = (testType == TestType.QUASISTATIC) ? volts * t : volts;
+        v = direction * Math.min(v, kMaxVolts);
+        double percentOutput = v / RobotController.getBatteryVoltage();
+        appliedVolts = v;
+        cmd.setMotors(percentOutput, percentOutput);
+        Drive.getInstance().setOpenLoop(cmd);
+    }
+
+    @Override
+    public synchronized void onStop()
+    {
+        running = false;
+    }
+
+    // samples of the last test, one csv row each
+    public synchronized void writeSamples(PrintWriter _pw)
+    {
+        _pw.println("time,voltage,lSpeed,rSpeed,lAccel,rAccel");
+        for (int k = 0; k < numSamples; k++)
+            _pw.printf("%.4f,%.3f,%.3f,%.3f,%.3f,%.3f\n", time[k], voltage[k], lSpeed[k], rSpeed[k], lAccel[k], rAccel[k]);
+    }
+}
@@ -0,0 +1,49 @@
+package frc.robot.loops;
+
+import frc.robot.lib.util.DataLogController;
+
+/**
+ * Logs the robot DataLogController once per LoopController cycle.
+ * Register after DriveLoop and RobotStateLoop, so each row holds that cycle's
+ * sensor inputs and odometry output (see the replay harness in src/tools).
+ */
+public class DataLogLoop implements Loop
+{
+    // singleton class
+    private static DataLogLoop instance = null;
+
+    public static DataLogLoop getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new DataLogLoop();
+        }
+        return instance;
+    }
+
+    DataLogController logController;
+
+    DataLogLoop()
+    {
+        logController = DataLogController.getRobotLogController();
+    }
+
+    @Override
+    public void onStart()
+    {
+        // no-op
+    }
+
+    @Override
+    public void onLoop()
+    {
+        logController.log();
+    }
+
+    @Override
+    public void onStop()
+    {
+        // no-op
+    }
+
+}
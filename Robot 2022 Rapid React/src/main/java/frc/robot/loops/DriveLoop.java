@@ -3,6 +3,8 @@ package frc.robot.loops;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.ctre.phoenix.motion.BufferedTrajectoryPointStream;
+import com.ctre.phoenix.motion.TrajectoryPoint;
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.InvertType;
 import com.ctre.phoenix.motorcontrol.NeutralMode;
@@ -15,6 +17,8 @@ import edu.wpi.first.wpilibj.Timer;
 import frc.robot.Constants;
 import frc.robot.command_status.DriveCommand;
 import frc.robot.command_status.DriveState;
+import frc.robot.lib.util.DriveTrajectory;
+import frc.robot.lib.sensors.BNO055;
 import frc.robot.lib.sensors.GyroBase;
 import frc.robot.lib.sensors.Pigeon;
 import frc.robot.subsystems.Drive;
@@ -51,6 +55,7 @@ public class DriveLoop implements Loop
 	private static final int kVelocityControlSlot = 0;
 	private static final int kPositionControlSlot = 1;
 	private static final int kMotionMagicControlSlot = 2;
+	private static final int kMotionProfileControlSlot = 3;
 
 	// Motor Controller Inversions
 	
@@ -117,6 +122,14 @@ public class DriveLoop implements Loop
     public static double kDriveMotionMagicRampRate = 0;
     public static int    kDriveMotionMagicAllowableError = 0;
 
+    // PID gains for streamed motion profiles (velocity feedforward, position feedback)
+    // Units: error is 2048 counts/rev. Max output is +/- 1023 units.
+    public static double kDriveMotionProfileKf = kDriveVelocityKf;
+    public static double kDriveMotionProfileKp = 0.05;
+    public static double kDriveMotionProfileKi = 0;
+    public static double kDriveMotionProfileKd = 0;
+    public static int    kDriveMotionProfileMinBufferedPoints = 10;	// points buffered before profile starts
+
     // PID gains for constant heading velocity control
     // Units: Error is degrees. Output is inches/second difference to
     // left/right.
@@ -124,6 +137,12 @@ public class DriveLoop implements Loop
     public static double kDriveHeadingVelocityKi = 0.0;
     public static double kDriveHeadingVelocityKd = 0.0;//50.0;
     
+    // Turn to heading profile (tracked in velocity loop)
+    // Units: error is degrees.  Output is deg/sec added to profile angular velocity
+    public static double kTurnMaxRateDegPerSec     = 180.0;	// ~36 in/s at the wheels
+    public static double kTurnMaxAccelDegPerSecSqr = 360.0;
+    public static double kTurnHeadingKp = 3.0;
+
     // Point Turn constants
     public static double kPointTurnKp = 0.05;
     public static double kPointTurnKd = 0.50;
@@ -221,6 +240,17 @@ public class DriveLoop implements Loop
 
 		configMotionMagicSpeed(kPathFollowingMaxVel, kPathFollowingMaxAccel);
 
+		// Load motion profile control gains
+		lMotorMaster.config_kF(kMotionProfileControlSlot, kDriveMotionProfileKf, kTalonTimeoutMs);
+		lMotorMaster.config_kP(kMotionProfileControlSlot, kDriveMotionProfileKp, kTalonTimeoutMs);
+		lMotorMaster.config_kI(kMotionProfileControlSlot, kDriveMotionProfileKi, kTalonTimeoutMs);
+		lMotorMaster.config_kD(kMotionProfileControlSlot, kDriveMotionProfileKd, kTalonTimeoutMs);
+
+		rMotorMaster.config_kF(kMotionProfileControlSlot, kDriveMotionProfileKf, kTalonTimeoutMs);
+		rMotorMaster.config_kP(kMotionProfileControlSlot, kDriveMotionProfileKp, kTalonTimeoutMs);
+		rMotorMaster.config_kI(kMotionProfileControlSlot, kDriveMotionProfileKi, kTalonTimeoutMs);
+		rMotorMaster.config_kD(kMotionProfileControlSlot, kDriveMotionProfileKd, kTalonTimeoutMs);
+
 		lMotorMaster.configOpenloopRamp(kDriveOpenLoopRampRate, 0);
 		rMotorMaster.configOpenloopRamp(kDriveOpenLoopRampRate, 0);
 
@@ -259,9 +289,24 @@ public class DriveLoop implements Loop
 		 * Select which Gyro is installed
 		 *****************************************************************/
 		// select which gyro is installed
-		System.out.println("Selected gyro = Pigeon");
-		gyro = Pigeon.getInstance();
+		switch (GyroSelection)
+		{
+		case BNO055:
+			System.out.println("Selected gyro = BNO055");
+			gyro = BNO055.getInstance();
+			break;
+		default:
+			System.out.println("Selected gyro = Pigeon");	// no NavX driver in this tree
+			gyro = Pigeon.getInstance();
+			break;
+		}
+
+	}
 
+	public void configOpenLoopRamp(double _secondsFromNeutralToFull)
+	{
+		lMotorMaster.configOpenloopRamp(_secondsFromNeutralToFull, kTalonTimeoutMs);
+		rMotorMaster.configOpenloopRamp(_secondsFromNeutralToFull, kTalonTimeoutMs);
 	}
 
 	public void configMotionMagicSpeed(double _cruiseVelocityInchesPerSec, double _accelerationInchesPerSecSqr)
@@ -320,7 +365,7 @@ public class DriveLoop implements Loop
 			 * documentation, and standard right hand rule convention
 			 * negate it here to correct
 			 */
-			driveState.setHeadingDeg( gyro.getHeadingDeg() );
+			driveState.setGyroSample( gyro.read() );		// one read of the gyro per tick: heading, pitch, roll, yaw rate
 	
 			driveState.setMotorCurrent(lMotorMaster.getStatorCurrent(), rMotorMaster.getStatorCurrent() );
 			driveState.setMotorPIDError(lMotorMaster.getClosedLoopError( kTalonPidIdx ), rMotorMaster.getClosedLoopError( kTalonPidIdx ) );
@@ -343,11 +388,17 @@ public class DriveLoop implements Loop
 	        		driveState.setMotorStatus(lMotorMaster.getSelectedSensorPosition( kTalonPidIdx ), rMotorMaster.getSelectedSensorPosition( kTalonPidIdx ) );
 	        		break;
 	        		
+				case MotionProfile:
+	        		driveState.setMotorStatus(lMotorMaster.getActiveTrajectoryPosition(), rMotorMaster.getActiveTrajectoryPosition() );
+	        		break;
+	        		
 	        	case Disabled:
 	        	default:
 	        		driveState.setMotorStatus(lMotorMaster.getMotorOutputPercent(), rMotorMaster.getMotorOutputPercent() );
 	        		break;
 			}
+
+			driveState.setMotionProfileFinished(lMotorMaster.isMotionProfileFinished() && rMotorMaster.isMotionProfileFinished());
 		}
 	}
 		
@@ -369,6 +420,7 @@ public class DriveLoop implements Loop
 		
 		synchronized(newCmd)	// lock DriveCommand so no one changes it under us while we are sending the commands
 		{
+			loadMotionProfile(newCmd);
 			setControlMode(newCmd);
 			setMotors(newCmd);
 			setNeutralMode(newCmd);
@@ -406,6 +458,10 @@ public class DriveLoop implements Loop
 	    			rMotorMaster.selectProfileSlot(kMotionMagicControlSlot, kTalonPidIdx);
 	        		break;
 	        		
+				case MotionProfile:
+					// slot is selected by each trajectory point, and mode is set by startMotionProfile()
+	        		break;
+	        		
 				case Disabled:
 	        	default:
 	        		break;
@@ -471,6 +527,10 @@ public class DriveLoop implements Loop
            		lMotorMaster.set(ControlMode.MotionMagic, inchesToEncoderUnits(lMotorCtrl)); 
         		rMotorMaster.set(ControlMode.MotionMagic, inchesToEncoderUnits(rMotorCtrl));
         		break;
+
+			case MotionProfile:
+				// Talons are executing the streamed profile, nothing to send
+				break;
         						
         	case Disabled:
         	default:
@@ -491,6 +551,50 @@ public class DriveLoop implements Loop
 	
 	
 
+	// stream a new trajectory into the Talon buffers, relative to the current encoder positions
+	private void loadMotionProfile(DriveCommand newCmd)
+	{
+		DriveTrajectory traj = newCmd.getNewMotionProfile();
+		if (traj == null)
+			return;
+
+		lMotorMaster.clearMotionProfileTrajectories();
+		rMotorMaster.clearMotionProfileTrajectories();
+
+		lMotionProfileStream.Clear();
+		rMotionProfileStream.Clear();
+		double lStart = lMotorMaster.getSelectedSensorPosition( kTalonPidIdx );
+		double rStart = rMotorMaster.getSelectedSensorPosition( kTalonPidIdx );
+		int durationMs = (int)Math.round(traj.dt * 1000.0);
+		
+		for (int k = 0; k < traj.size(); k++)
+		{
+			boolean last = (k == traj.size()-1);
+			lMotionProfileStream.Write(getTrajectoryPoint(lStart + inchesToEncoderUnits(traj.lDistance[k]), traj.lSpeed[k], durationMs, last));
+			rMotionProfileStream.Write(getTrajectoryPoint(rStart + inchesToEncoderUnits(traj.rDistance[k]), traj.rSpeed[k], durationMs, last));
+		}
+
+		lMotorMaster.startMotionProfile(lMotionProfileStream, kDriveMotionProfileMinBufferedPoints, ControlMode.MotionProfile);
+		rMotorMaster.startMotionProfile(rMotionProfileStream, kDriveMotionProfileMinBufferedPoints, ControlMode.MotionProfile);
+	}
+
+	private final BufferedTrajectoryPointStream lMotionProfileStream = new BufferedTrajectoryPointStream();
+	private final BufferedTrajectoryPointStream rMotionProfileStream = new BufferedTrajectoryPointStream();
+	private final TrajectoryPoint trajectoryPoint = new TrajectoryPoint();	// Write() copies the point
+
+	private TrajectoryPoint getTrajectoryPoint(double _position, double _inchesPerSec, int _durationMs, boolean _last)
+	{
+		trajectoryPoint.position = _position;
+		trajectoryPoint.velocity = inchesPerSecondToEncoderUnitsPerFrame(_inchesPerSec);
+		trajectoryPoint.timeDur = _durationMs;
+		trajectoryPoint.profileSlotSelect0 = kMotionProfileControlSlot;
+		trajectoryPoint.zeroPos = false;
+		trajectoryPoint.isLastPoint = _last;
+		return trajectoryPoint;
+	}
+
+
+
 	private void resetEncoders(DriveCommand newCmd)
 	{
 		if (newCmd.getResetEncoders())
@@ -1,192 +1,175 @@
-// package frc.robot.loops;
-
-// import java.util.ArrayList;
-// import java.util.List;
-// import java.util.Optional;
-
-// import edu.wpi.first.wpilibj.Timer;
-// import frc.robot.Constants;
-// import frc.robot.command_status.GoalStates;
-// import frc.robot.command_status.GoalStates.GoalState;
-// import frc.robot.command_status.RobotState;
-// import frc.robot.lib.joystick.SelectedJoystick;
-// import frc.robot.lib.util.DataLogger;
-// import frc.robot.lib.util.Pose;
-// import frc.robot.lib.util.Vector2d;
-// import frc.robot.vision.GoalTracker;
-// import frc.robot.vision.VisionTargetList;
-
-// /**
-//  * This function adds vision updates (from the Nexus smartphone) to a list in
-//  * RobotState. This helps keep track of goals detected by the vision system. The
-//  * code to determine the best goal to shoot at and prune old Goal tracks is in
-//  * GoalTracker.java
-//  * 
-//  * @see GoalTracker.java
-//  */
-// public class GoalStateLoop implements Loop
-// {
-// 	static GoalStateLoop instance = new GoalStateLoop();
-// 	boolean visionUpdatePending = false; // set to true when updated vision information is available 
-// 										 // (set from VisionServer thread)
-
-// 	RobotState robotState = RobotState.getInstance();
-// 	VisionTargetList visionTargetList = VisionTargetList.getInstance();
-
-// 	public GoalTracker goalTracker = new GoalTracker();
-// 	GoalStates goalStates = GoalStates.getInstance();
-
-// 	int currentBestTrackId = -1;
-	
-// 	enum RangeMethod { DIFFERENTIAL_HEIGHT, TARGET_HEIGHT, TARGET_WIDTH };
-// 	RangeMethod rangeMethod = RangeMethod.TARGET_HEIGHT; 
-// 	// RangeMethod rangeMethod = RangeMethod.TARGET_WIDTH; 
-	
-// 	public static GoalStateLoop getInstance()
-// 	{
-// 		return instance;
-// 	}
-
-// 	GoalStateLoop()
-// 	{
-// 	}
-
-// 	@Override
-// 	public void onStart() {}
-
-// 	@Override
-// 	public void onLoop()
-// 	{
-// 		updateGoalLocations();
-// 	}
-
-// 	@Override
-// 	public void onStop()
-// 	{
-// 		// no-op
-// 	}
-
-// 	double hAngle, vAngle, hWidth, vWidth, range, horizontalDistance;
-// 	SelectedJoystick selectedJoystick = SelectedJoystick.getInstance();
-
-// 	private void updateGoalLocations()
-// 	{
-// 		// Step 1: Find location of goals in this image with respect to field
-		
-// 		double imageCaptureTimestamp = visionTargetList.getImageCaptureTimestamp();
-// 		List<VisionTargetList.Target> visionTargets = visionTargetList.getTargets();
-// 		Pose fieldToCamera = robotState.getFieldToCamera(imageCaptureTimestamp);	// find position of camera back when image was taken (removes latency in processing)
-
-// 		double kCameraPoseThetaRad = 0.0;	// no variation from PI in Constants
-// 		double kCameraPitchRad = Constants.kHatchCameraPitchRad;
-// 		double kCameraPoseZ = Constants.kHatchCameraPoseZ;
-		
-// 		if (selectedJoystick.getDrivingCargo())
-// 		{
-// 			kCameraPoseThetaRad = 0.0;
-// 			kCameraPitchRad = Constants.kCargoCameraPitchRad;
-// 			kCameraPoseZ = Constants.kCargoCameraPoseZ;
-// 		}
-
-
-// 		List<Vector2d> fieldToGoals = new ArrayList<>();
-		
-// 		if (!(visionTargets == null || visionTargets.isEmpty()))
-// 		{
-// 			for (VisionTargetList.Target target : visionTargets)
-// 			{
-// 				hAngle = target.getHorizontalAngle() - kCameraPoseThetaRad;	// compensate for camera yaw
-// 				vAngle = target.getVerticalAngle()   - kCameraPitchRad;		// compensate for camera pitch
-// 				hWidth = target.getHorizontalWidth();
-// 				vWidth = target.getVerticalWidth();
-						
-// 		        double differentialHeight = Constants.kCenterOfTargetHeightInches - kCameraPoseZ;	
-// 				horizontalDistance = 0;
-// 				range = 0;
-				
-// 				switch (rangeMethod)
-// 				{
-// 				case DIFFERENTIAL_HEIGHT:
-// 					horizontalDistance = Math.abs(differentialHeight / Math.tan(vAngle));
-// 					break;
-					
-// 				case TARGET_WIDTH:
-// 					// assumes target is horizontally perpendicular to camera axis (not likely unless you attempt to make it so)
-// 					range = (Constants.kTargetWidthInches/2.0) / Math.tan(hWidth/2.0);
-// 					horizontalDistance = Math.abs(range * Math.cos(hAngle));
-// 					break;
-					
-// 				case TARGET_HEIGHT:
-// 				default:
-// 					// assumes target is vertical
-// 					// using Law of Sines
-// 					range = (Constants.kTargetHeightInches/2.0) * Math.sin(Math.PI/2.0-vAngle-vWidth/2.0) / Math.sin(vWidth/2.0);
-// 					horizontalDistance = Math.abs(range * Math.cos(vAngle));
-// 					break;
-// 				}
-				
-// 				if (horizontalDistance > 0)
-// 				{
-// 					Pose cameraToTarget = new Pose( Vector2d.magnitudeAngle(horizontalDistance, hAngle) );
-// 					Pose fieldToTarget = cameraToTarget.changeCoordinateSystem( fieldToCamera );
-// 					fieldToGoals.add( fieldToTarget.getPosition() );
-// 				}
-// 			}
-// 		}
-// 		else
-// 		{
-// 			boolean break_here = true; 	
-// 		}
-		
-	
-		
-		
-// 		// Step 2: Add these goals to goal tracker
-// 		goalTracker.update(imageCaptureTimestamp, fieldToGoals);
-		
-		
-
-		
-// 		// Step 3: 	Rank each goal, sort goals by rank
-// 		//			Store position of goals, calculate range/bearing from shooter to each goal
-//         double now = Timer.getFPGATimestamp();
-//         Optional<GoalState> currentTarget = goalStates.getBestVisionTarget();
-// 		Pose predictedFieldToShooter = robotState.getPredictedFieldToShooter(Constants.kAutoAimPredictionTime);
-
-// 		goalStates.clear();
-// 		for (GoalTracker.TrackReport report : goalTracker.getSortedTrackReports(now, currentTarget))
-// 		{
-// 			goalStates.add(report.fieldToGoal, predictedFieldToShooter, report.trackId, report.getLatestTimestamp());
-// 		}		
-
-// 	}
-	
-	
-// 	public synchronized void resetVision()
-// 	{
-// 		goalTracker.reset();
-// 	}
-
-
-// 	public GoalTracker getGoalTracker() { return goalTracker; }
-
-
-
-// 	private final DataLogger logger = new DataLogger()
-//     {
-//         @Override
-//         public void log()
-//         {
-// 			put("GoalStateLoop/rangeMethod", rangeMethod.toString());
-// 			put("GoalStateLoop/hAngle", hAngle);
-// 			put("GoalStateLoop/vAngle", vAngle);
-// 			put("GoalStateLoop/hWidth", hWidth);
-// 			put("GoalStateLoop/vWidth", vWidth);
-// 			put("GoalStateLoop/range", range);
-// 			put("GoalStateLoop/horizontalDistance", horizontalDistance);
-//         }
-//     };
-    
-//     public DataLogger getLogger() { return logger; }
-
-// }
+package frc.robot.loops;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.Constants;
+import frc.robot.command_status.GoalStates;
+import frc.robot.command_status.RobotState;
+import frc.robot.lib.sensors.Limelight;
+import frc.robot.lib.util.DataLogger;
+import frc.robot.lib.util.Pose;
+import frc.robot.lib.util.Vector2d;
+import frc.robot.vision.GoalTracker;
+
+/**
+ * Turns Limelight targets into field-relative goal positions and keeps GoalStates up to date.
+ *
+ * Each new Limelight frame is located using the pose of the camera at the frame's capture
+ * time (from the RobotState pose history), so robot motion during the processing latency
+ * does not skew the goal position.  Goal positions are added to a GoalTracker, which follows
+ * each goal from frame to frame and ranks them.  Range and bearing to each tracked goal are
+ * then found from the predicted robot pose every loop, so they stay current between frames.
+ *
+ * @see GoalTracker
+ */
+public class GoalStateLoop implements Loop
+{
+	// singleton class
+	private static GoalStateLoop instance = null;
+
+	public static GoalStateLoop getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new GoalStateLoop();
+		}
+		return instance;
+	}
+
+	RobotState robotState = RobotState.getInstance();
+	GoalStates goalStates = GoalStates.getInstance();
+	Limelight limelight = Limelight.getGoalInstance();
+
+	GoalTracker goalTracker = new GoalTracker();
+	volatile boolean resetPending = false;		// set by resetVision() from other threads
+	int currentBestTrackId = -1;
+
+	long prevFrameCount = 0;
+
+	// goal detections in the latest frame (the Limelight reports one grouped target)
+	static final int kMaxDetections = 1;
+	double[] detectionX = new double[kMaxDetections];
+	double[] detectionY = new double[kMaxDetections];
+
+	// latest goal location
+	Vector2d fieldToGoal = new Vector2d();
+	double goalTimestamp = 0;		// capture time of the image it was found in
+
+	// for logging
+	double hAngle, vAngle, horizontalDistance, captureLatencyMs;
+
+	GoalStateLoop()
+	{
+	}
+
+	@Override
+	public void onStart() {}
+
+	@Override
+	public void onLoop()
+	{
+		if (resetPending)
+		{
+			resetPending = false;
+			goalTracker.reset();
+			currentBestTrackId = -1;
+		}
+
+		// Step 1: Find location of goals in any new image with respect to field
+		// Step 2: Add these goals to goal tracker
+		Limelight.Frame frame = limelight.getLatestFrame();
+		if (frame.frameCount != prevFrameCount)
+		{
+			prevFrameCount = frame.frameCount;
+			if (frame.targetFound && updateGoalLocation(frame))
+				goalTracker.update(frame.captureTimestamp, detectionX, detectionY, 1);
+		}
+
+		// Step 3: 	Rank each goal, sort goals by rank
+		//			Store position of goals, calculate range/bearing from shooter to each goal
+		double now = Timer.getFPGATimestamp();
+		goalTracker.prune(now);
+		goalTracker.rank(now, currentBestTrackId);
+		currentBestTrackId = (goalTracker.hasTracks() ? goalTracker.getRanked(0).getId() : -1);
+
+		Pose predictedFieldToShooter = robotState.getPredictedFieldToVehicle(Constants.kAutoAimPredictionTime);
+
+		goalStates.clear();
+		for (int k = 0; k < goalTracker.getNumRanked(); k++)
+		{
+			GoalTracker.Track track = goalTracker.getRanked(k);
+			goalStates.add(track.getX(), track.getY(), predictedFieldToShooter, track.getId(), track.getLatestTimestamp());
+		}
+		goalStates.publish();
+	}
+
+	@Override
+	public void onStop()
+	{
+		// no-op
+	}
+
+	// returns false if the frame doesn't give a usable goal location
+	private boolean updateGoalLocation(Limelight.Frame _frame)
+	{
+		Pose fieldToCamera = robotState.getFieldToCamera(_frame.captureTimestamp);	// find position of camera back when image was taken (removes latency in processing)
+
+		hAngle = _frame.hAngleRad;									// camera yaw is in fieldToCamera
+		vAngle = _frame.vAngleRad + Constants.kCameraPitchRad;		// elevation above horizontal
+		captureLatencyMs = (_frame.receivedTimestamp - _frame.captureTimestamp) * 1000.0;
+
+		double differentialHeight = Constants.kHubTargetHeightInches - Constants.kCameraPoseZ;
+		if (vAngle <= 0)
+			return false;		// target can't be below the camera: bad frame
+		horizontalDistance = differentialHeight / Math.tan(vAngle);
+
+		// vision tape is on the near rim of the hub: goal is one radius further along the same line
+		Pose cameraToGoal = new Pose( Vector2d.magnitudeAngle(horizontalDistance + Constants.kHubRadiusInches, hAngle) );
+		fieldToGoal = cameraToGoal.changeCoordinateSystem( fieldToCamera ).getPosition();
+		goalTimestamp = _frame.captureTimestamp;
+		detectionX[0] = fieldToGoal.getX();
+		detectionY[0] = fieldToGoal.getY();
+		return true;
+	}
+
+	// forget all tracked goals (takes effect on the next loop)
+	public void resetVision()
+	{
+		resetPending = true;
+	}
+
+	public GoalTracker getGoalTracker() { return goalTracker; }
+
+
+
+	private final DataLogger logger = new DataLogger()
+	{
+		final int frameCountSlot = addInt("GoalStateLoop/frameCount");
+		final int hAngleSlot = addDouble("GoalStateLoop/hAngle");
+		final int vAngleSlot = addDouble("GoalStateLoop/vAngle");
+		final int horizontalDistanceSlot = addDouble("GoalStateLoop/horizontalDistance");
+		final int captureLatencyMsSlot = addDouble("GoalStateLoop/captureLatencyMs");
+		final int fieldToGoalXSlot = addDouble("GoalStateLoop/fieldToGoalX");
+		final int fieldToGoalYSlot = addDouble("GoalStateLoop/fieldToGoalY");
+		final int goalTimestampSlot = onChange(addDouble("GoalStateLoop/goalTimestamp"));
+		final int numTracksSlot = onChange(addInt("GoalStateLoop/numTracks"));
+		final int bestTrackIdSlot = onChange(addInt("GoalStateLoop/bestTrackId"));
+
+		@Override
+		public void log()
+		{
+			put(frameCountSlot, (int)prevFrameCount);
+			put(hAngleSlot, hAngle);
+			put(vAngleSlot, vAngle);
+			put(horizontalDistanceSlot, horizontalDistance);
+			put(captureLatencyMsSlot, captureLatencyMs);
+			put(fieldToGoalXSlot, fieldToGoal.getX());
+			put(fieldToGoalYSlot, fieldToGoal.getY());
+			put(goalTimestampSlot, goalTimestamp);
+			put(numTracksSlot, goalTracker.getNumRanked());
+			put(bestTrackIdSlot, currentBestTrackId);
+		}
+	};
+
+	public DataLogger getLogger() { return logger; }
+
+}
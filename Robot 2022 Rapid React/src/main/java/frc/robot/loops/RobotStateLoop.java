@@ -52,8 +52,12 @@ public class RobotStateLoop implements Loop
         double lSpeed = driveState.getLeftSpeedInchesPerSec();
         double rSpeed = driveState.getRightSpeedInchesPerSec();
         double gyroAngle = driveState.getHeading();
+        double gyroRate = driveState.getYawRate();
 
-        robotState.generateOdometryFromSensors(time, lDistance, rDistance, lSpeed, rSpeed, gyroAngle);
+        if (driveState.isYawRateMeasured())
+            robotState.generateOdometryFromSensors(time, lDistance, rDistance, lSpeed, rSpeed, gyroAngle, gyroRate);
+        else
+            robotState.generateOdometryFromSensors(time, lDistance, rDistance, lSpeed, rSpeed, gyroAngle);
     }
 
     @Override
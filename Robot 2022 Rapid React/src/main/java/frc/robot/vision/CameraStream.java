@@ -0,0 +1,161 @@
+package frc.robot.vision;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import edu.wpi.first.cscore.CvSink;
+import edu.wpi.first.cscore.MjpegServer;
+import edu.wpi.first.cscore.VideoSource;
+
+/**
+ * One MJPEG stream to the driver station, with settings that StreamGovernor steps up and down.
+ *
+ * Settings come from a ladder of Levels (0 is the best quality) and are applied to the
+ * MjpegServer, which scales and compresses frames for its clients.  A disabled stream is
+ * disconnected from its source, so it sends nothing.
+ *
+ * cscore doesn't report how many bytes a server sends, so measure() estimates it: a frame
+ * is taken from the source through a private CvSink, scaled and JPEG compressed at the
+ * current settings, and its size multiplied by the frame rate.  This is the rate for one
+ * client (normally the dashboard).
+ *
+ * measure(), setLevel() and setEnabled() are called from the StreamGovernor thread only;
+ * the getters can be called from any thread.
+ */
+public class CameraStream
+{
+	public enum Role { DRIVER, VISION }
+
+	public static class Level
+	{
+		public final int width, height, fps, quality;
+
+		public Level(int _width, int _height, int _fps, int _quality)
+		{
+			width = _width;
+			height = _height;
+			fps = _fps;
+			quality = _quality;
+		}
+
+		@Override
+		public String toString() { return String.format("%dx%d@%d q%d", width, height, fps, quality); }
+	}
+
+	public static Level[] kLevels = {
+		new Level(320, 240, 15, 50),
+		new Level(320, 240, 10, 40),
+		new Level(160, 120, 15, 40),
+		new Level(160, 120, 10, 30),
+		new Level(160, 120,  5, 20),
+	};
+
+	public static double kGrabTimeoutSec = 0.2;
+	public static double kRateFilter = 0.5;		// weight of newest measurement
+
+	private final String name;
+	private final Role role;
+	private final VideoSource source;
+	private final MjpegServer server;
+	private final CvSink sampler;
+
+	// reused buffers
+	private final Mat frame = new Mat();
+	private final Mat scaled = new Mat();
+	private final Size scaledSize = new Size();
+	private final MatOfByte jpeg = new MatOfByte();
+	private final MatOfInt encodeParams = new MatOfInt();
+
+	private volatile int level = 0;
+	private volatile boolean enabled = true;
+
+	// statistics
+	private volatile double bytesPerFrame = 0;
+	private volatile double bytesPerSec = 0;
+	private volatile long sampleErrors = 0;
+
+	public CameraStream(String _name, Role _role, VideoSource _source, MjpegServer _server)
+	{
+		name = _name;
+		role = _role;
+		source = _source;
+		server = _server;
+		sampler = new CvSink(_name + " sampler");
+		sampler.setSource(_source);
+		sampler.setEnabled(false);		// only while taking a sample
+		applyLevel();
+	}
+
+	void setLevel(int _level)
+	{
+		level = Math.max(0, Math.min(kLevels.length - 1, _level));
+		applyLevel();
+	}
+
+	private void applyLevel()
+	{
+		Level settings = kLevels[level];
+		server.setResolution(settings.width, settings.height);
+		server.setFPS(settings.fps);
+		server.setCompression(settings.quality);
+	}
+
+	void setEnabled(boolean _enabled)
+	{
+		if (_enabled == enabled)
+			return;
+		enabled = _enabled;
+		server.setSource(_enabled ? source : null);
+		if (!_enabled)
+			bytesPerSec = 0;
+	}
+
+	// estimated bytes/sec sent, updated from one sample frame
+	double measure()
+	{
+		if (!enabled)
+			return 0;
+
+		sampler.setEnabled(true);
+		long frameTime = sampler.grabFrame(frame, kGrabTimeoutSec);
+		sampler.setEnabled(false);
+		if (frameTime == 0 || frame.empty())
+		{
+			sampleErrors++;
+			return bytesPerSec;		// keep the last estimate
+		}
+
+		Level settings = kLevels[level];
+		Mat image = frame;
+		if (frame.cols() != settings.width || frame.rows() != settings.height)
+		{
+			scaledSize.width = settings.width;
+			scaledSize.height = settings.height;
+			Imgproc.resize(frame, scaled, scaledSize, 0, 0, Imgproc.INTER_AREA);
+			image = scaled;
+		}
+		encodeParams.fromArray(Imgcodecs.IMWRITE_JPEG_QUALITY, settings.quality);
+		Imgcodecs.imencode(".jpg", image, jpeg, encodeParams);
+
+		bytesPerFrame = jpeg.total();
+		double rate = bytesPerFrame * settings.fps;
+		bytesPerSec += kRateFilter * (rate - bytesPerSec);
+		return bytesPerSec;
+	}
+
+	public String getName() { return name; }
+	public Role getRole() { return role; }
+	public int getLevel() { return level; }
+	public Level getSettings() { return kLevels[level]; }
+	public boolean isEnabled() { return enabled; }
+	public boolean isAtBest() { return level == 0; }
+	public boolean isAtWorst() { return level == kLevels.length - 1; }
+	public double getBytesPerFrame() { return bytesPerFrame; }
+	public double getBytesPerSec() { return bytesPerSec; }
+	public double getKbps() { return bytesPerSec * 8 / 1000.0; }
+	public long getSampleErrors() { return sampleErrors; }
+}
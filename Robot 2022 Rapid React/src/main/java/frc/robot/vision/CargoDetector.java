@@ -0,0 +1,311 @@
+package frc.robot.vision;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.imgproc.Moments;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.robot.lib.util.DataLogger;
+
+/**
+ * Finds cargo of our alliance color in camera frames.
+ *
+ * Each frame is shrunk by kDownsample, converted to HSV and thresholded for the alliance
+ * color (red wraps around hue 0, so it takes two ranges).  Outer contours of the mask are
+ * filtered by size, shape and fill, and the kMaxDetections largest are kept, with their
+ * centroid converted to angles from the camera axis.  Results are published as an immutable
+ * Detections snapshot that any thread can read with getLatest().
+ *
+ * Work stops once a frame has used kBudgetMs: whatever was found by then is published
+ * (marked incomplete) and the overrun is counted, so a cluttered image can't stall the pipeline.
+ *
+ * All image buffers are allocated once and reused.  OpenCV's Java API still allocates a few
+ * small objects per contour (the contour itself, its Rect and Moments).
+ */
+public class CargoDetector implements VisionStage
+{
+	public static int kDownsample = 2;						// 320x240 camera image is processed at 160x120
+	public static double kBudgetMs = 20.0;					// per-frame processing budget
+	public static int kMaxDetections = 4;
+	public static double kAllianceCheckPeriodSec = 1.0;
+
+	// camera model, for the full size image
+	public static double kHorizontalFovDeg = 61.0;			// Microsoft LifeCam HD-3000
+
+	// HSV thresholds (OpenCV hue is 0-180)
+	public static Scalar kRedLow1 =  new Scalar(  0, 120,  70);
+	public static Scalar kRedHigh1 = new Scalar( 10, 255, 255);
+	public static Scalar kRedLow2 =  new Scalar(170, 120,  70);
+	public static Scalar kRedHigh2 = new Scalar(180, 255, 255);
+	public static Scalar kBlueLow =  new Scalar( 95, 120,  50);
+	public static Scalar kBlueHigh = new Scalar(125, 255, 255);
+
+	// contour filter (areas in full size image pixels)
+	public static double kMinAreaPx = 150;
+	public static double kMinAspectRatio = 0.5;				// width/height of bounding box (cargo partly hidden by a bumper is still found)
+	public static double kMaxAspectRatio = 2.0;
+	public static double kMinFillRatio = 0.5;				// contour area / bounding box area (a circle is 0.785)
+
+	private static final Scalar kMarkerColor = new Scalar(0, 255, 0);
+
+	/** One piece of cargo in an image */
+	public static class Detection
+	{
+		public final double hAngleRad;			// from camera axis, turns to the left are positive
+		public final double vAngleRad;			// from camera axis, up is positive
+		public final double areaPercentage;		// of the image
+		public final double x, y;				// centroid in the full size image (pixels)
+
+		Detection(double _hAngleRad, double _vAngleRad, double _areaPercentage, double _x, double _y)
+		{
+			hAngleRad = _hAngleRad;
+			vAngleRad = _vAngleRad;
+			areaPercentage = _areaPercentage;
+			x = _x;
+			y = _y;
+		}
+	}
+
+	/** Detections from one frame, largest (usually nearest) first */
+	public static class Detections
+	{
+		public final long frameCount;
+		public final double captureTimestamp;	// FPGA time the image was taken (sec)
+		public final Alliance color;
+		public final boolean complete;			// false if the frame ran out of time budget
+		private final Detection[] detections;
+
+		Detections(long _frameCount, double _captureTimestamp, Alliance _color, boolean _complete, Detection[] _detections)
+		{
+			frameCount = _frameCount;
+			captureTimestamp = _captureTimestamp;
+			color = _color;
+			complete = _complete;
+			detections = _detections;
+		}
+
+		public int size() { return detections.length; }
+		public Detection get(int _k) { return detections[_k]; }
+		public Detection getBest() { return (detections.length > 0 ? detections[0] : null); }
+	}
+
+	private static final Detection[] kNoDetections = new Detection[0];
+
+	private volatile Detections latest = new Detections(0, 0, Alliance.Red, true, kNoDetections);
+
+	// alliance: followed from the DriverStation unless set
+	private volatile Alliance color = Alliance.Red;
+	private volatile boolean followDriverStation = true;
+	private long nextAllianceCheckNanos = 0;
+
+	// reused buffers
+	private final Mat small = new Mat();
+	private final Mat hsv = new Mat();
+	private final Mat mask = new Mat();
+	private final Mat mask2 = new Mat();
+	private final Mat hierarchy = new Mat();
+	private final Size smallSize = new Size();
+	private final List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
+	private final Point markerTopLeft = new Point();
+	private final Point markerBottomRight = new Point();
+
+	// candidates for the current frame, largest first
+	private final double[] candArea = new double[kMaxDetections];
+	private final double[] candX = new double[kMaxDetections];
+	private final double[] candY = new double[kMaxDetections];
+	private final double[] candRadius = new double[kMaxDetections];
+	private int numCand = 0;
+
+	// statistics
+	private long frameCount = 0;
+	private volatile long overruns = 0;
+	private volatile double lastProcessMs = 0;
+
+	/** Detect cargo of this color, instead of following the DriverStation alliance */
+	public void setAlliance(Alliance _color)
+	{
+		color = _color;
+		followDriverStation = false;
+	}
+
+	public void followDriverStationAlliance() { followDriverStation = true; nextAllianceCheckNanos = 0; }
+
+	@Override
+	public void process(Mat _frame, double _captureTimestamp)
+	{
+		long startNanos = System.nanoTime();
+		long deadlineNanos = startNanos + (long)(kBudgetMs * 1e6);
+		frameCount++;
+
+		if (followDriverStation && startNanos - nextAllianceCheckNanos >= 0)
+		{
+			Alliance alliance = DriverStation.getAlliance();
+			if (alliance != Alliance.Invalid)
+				color = alliance;
+			nextAllianceCheckNanos = startNanos + (long)(kAllianceCheckPeriodSec * 1e9);
+		}
+		Alliance frameColor = color;
+
+		if (_frame.empty())
+			return;
+
+		// downsample and threshold
+		smallSize.width = _frame.cols() / kDownsample;
+		smallSize.height = _frame.rows() / kDownsample;
+		Imgproc.resize(_frame, small, smallSize, 0, 0, Imgproc.INTER_AREA);
+		Imgproc.cvtColor(small, hsv, Imgproc.COLOR_BGR2HSV);
+		if (frameColor == Alliance.Blue)
+		{
+			Core.inRange(hsv, kBlueLow, kBlueHigh, mask);
+		}
+		else
+		{
+			Core.inRange(hsv, kRedLow1, kRedHigh1, mask);
+			Core.inRange(hsv, kRedLow2, kRedHigh2, mask2);
+			Core.bitwise_or(mask, mask2, mask);
+		}
+
+		// contours
+		numCand = 0;
+		boolean complete = (System.nanoTime() - deadlineNanos < 0);
+		if (complete)
+		{
+			Imgproc.findContours(mask, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+			double scaleSqr = kDownsample * kDownsample;
+			for (MatOfPoint contour : contours)
+			{
+				if (System.nanoTime() - deadlineNanos >= 0)
+				{
+					complete = false;
+					break;
+				}
+				double area = Imgproc.contourArea(contour) * scaleSqr;
+				if (area < kMinAreaPx)
+					continue;
+				Rect box = Imgproc.boundingRect(contour);
+				double aspectRatio = (double)box.width / box.height;
+				if (aspectRatio < kMinAspectRatio || aspectRatio > kMaxAspectRatio)
+					continue;
+				if (area < kMinFillRatio * box.width * box.height * scaleSqr)
+					continue;
+				Moments moments = Imgproc.moments(contour);
+				if (moments.m00 <= 0)
+					continue;
+				addCandidate(area, moments.m10 / moments.m00 * kDownsample, moments.m01 / moments.m00 * kDownsample,
+						0.5 * Math.max(box.width, box.height) * kDownsample);
+			}
+			for (MatOfPoint contour : contours)
+				contour.release();
+			contours.clear();
+		}
+		if (!complete)
+			overruns++;
+
+		publish(_frame, _captureTimestamp, frameColor, complete);
+		lastProcessMs = (System.nanoTime() - startNanos) / 1e6;
+	}
+
+	// keep the largest candidates, largest first
+	private void addCandidate(double _area, double _x, double _y, double _radius)
+	{
+		int pos = numCand;
+		if (pos == candArea.length)
+		{
+			if (_area <= candArea[pos-1])
+				return;
+			pos--;
+		}
+		else
+		{
+			numCand++;
+		}
+		while (pos > 0 && candArea[pos-1] < _area)
+		{
+			candArea[pos] = candArea[pos-1];
+			candX[pos] = candX[pos-1];
+			candY[pos] = candY[pos-1];
+			candRadius[pos] = candRadius[pos-1];
+			pos--;
+		}
+		candArea[pos] = _area;
+		candX[pos] = _x;
+		candY[pos] = _y;
+		candRadius[pos] = _radius;
+	}
+
+	private void publish(Mat _frame, double _captureTimestamp, Alliance _color, boolean _complete)
+	{
+		double width = _frame.cols();
+		double height = _frame.rows();
+		double focalLengthPx = 0.5 * width / Math.tan(Math.toRadians(kHorizontalFovDeg) / 2);
+
+		Detection[] detections = (numCand > 0 ? new Detection[numCand] : kNoDetections);
+		for (int k = 0; k < numCand; k++)
+		{
+			double hAngleRad = Math.atan2(0.5 * width - candX[k], focalLengthPx);
+			double vAngleRad = Math.atan2(0.5 * height - candY[k], focalLengthPx);
+			detections[k] = new Detection(hAngleRad, vAngleRad, 100.0 * candArea[k] / (width * height), candX[k], candY[k]);
+
+			// mark it on the output stream
+			markerTopLeft.x = candX[k] - candRadius[k];
+			markerTopLeft.y = candY[k] - candRadius[k];
+			markerBottomRight.x = candX[k] + candRadius[k];
+			markerBottomRight.y = candY[k] + candRadius[k];
+			Imgproc.rectangle(_frame, markerTopLeft, markerBottomRight, kMarkerColor, 2);
+		}
+		latest = new Detections(frameCount, _captureTimestamp, _color, _complete, detections);
+	}
+
+	/** Latest detections.  Check captureTimestamp to see how old they are. */
+	public Detections getLatest() { return latest; }
+
+	/** Largest cargo in the latest frame, or null if none was seen in a frame taken after _minTimestamp */
+	public Detection getBest(double _minTimestamp)
+	{
+		Detections detections = latest;
+		return (detections.captureTimestamp >= _minTimestamp ? detections.getBest() : null);
+	}
+
+	public Alliance getAlliance() { return color; }
+	public long getOverruns() { return overruns; }
+	public double getLastProcessMs() { return lastProcessMs; }
+
+
+
+	private final DataLogger logger = new DataLogger()
+	{
+		final int frameCountSlot = addInt("CargoDetector/frameCount");
+		final int captureTimestampSlot = addDouble("CargoDetector/captureTimestamp");
+		final int countSlot = addInt("CargoDetector/count");
+		final int hAngleSlot = addDouble("CargoDetector/hAngle");
+		final int vAngleSlot = addDouble("CargoDetector/vAngle");
+		final int areaSlot = addDouble("CargoDetector/areaPercentage");
+		final int overrunsSlot = onChange(addInt("CargoDetector/overruns"));
+
+		@Override
+		public void log()
+		{
+			Detections detections = latest;
+			Detection best = detections.getBest();
+			put(frameCountSlot, (int)detections.frameCount);
+			put(captureTimestampSlot, detections.captureTimestamp);
+			put(countSlot, detections.size());
+			put(hAngleSlot, best != null ? best.hAngleRad : 0.0);
+			put(vAngleSlot, best != null ? best.vAngleRad : 0.0);
+			put(areaSlot, best != null ? best.areaPercentage : 0.0);
+			put(overrunsSlot, (int)overruns);
+		}
+	};
+
+	public DataLogger getLogger() { return logger; }
+}
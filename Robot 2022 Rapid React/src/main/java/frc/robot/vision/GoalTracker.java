@@ -0,0 +1,204 @@
+package frc.robot.vision;
+
+import frc.robot.command_status.RobotState;
+
+/**
+ * Keeps track of goals seen by the vision system over several frames.
+ *
+ * Each frame's detections (field-relative goal positions) are associated with the nearest
+ * existing track within kMaxTrackerDistance; the rest start new tracks.  Track positions are
+ * smoothed with an exponential average.  Tracks not seen for RobotState.kMaxTargetAge are
+ * dropped, and the remaining tracks are ranked by how steadily (observations within the last
+ * kMaxTargetAge) and recently they have been seen, with a bonus for the current best track so
+ * the choice doesn't flicker.
+ *
+ * All tracks are allocated up front: update(), prune() and rank() allocate nothing.
+ * Not thread safe -- used only from GoalStateLoop, which publishes the results to GoalStates.
+ *
+ * Attribution: scoring adapted from FRC Team 254's GoalTracker
+ */
+public class GoalTracker
+{
+	public static int kMaxTracks = 8;
+	public static double kMaxTrackerDistance = 18.0;		// inches: further than this from a track starts a new one
+	public static double kSmoothing = 0.3;					// weight of each new detection in the track position
+	public static double kCameraFrameRate = 30.0;			// for the stability score (frames/sec)
+	// observations in kMaxTargetAge for full stability: only this many recent observation times are kept
+	public static int kStabilityObservations = (int)Math.ceil(kCameraFrameRate * RobotState.kMaxTargetAge);
+
+	public static double kStabilityWeight = 1.0;
+	public static double kAgeWeight = 1.0;
+	public static double kSwitchingWeight = 3.0;
+
+	public static class Track
+	{
+		int id;
+		boolean active;
+		double x, y;					// smoothed field position of goal (inches)
+		double firstTimestamp;			// capture time of first and latest detections
+		double latestTimestamp;
+		int numObservations;
+		final double[] recentTimestamps = new double[kStabilityObservations];	// circular, indexed by numObservations
+		double score;
+		boolean matched;				// already associated with a detection this frame
+
+		void observe(double _timestamp)
+		{
+			latestTimestamp = _timestamp;
+			recentTimestamps[numObservations % recentTimestamps.length] = _timestamp;
+			numObservations++;
+		}
+
+		// observations seen since _since (at most kStabilityObservations)
+		int numRecentObservations(double _since)
+		{
+			int n = Math.min(numObservations, recentTimestamps.length);
+			int count = 0;
+			for (int k = 0; k < n; k++)
+				if (recentTimestamps[k] >= _since)
+					count++;
+			return count;
+		}
+
+		public int getId() { return id; }
+		public double getX() { return x; }
+		public double getY() { return y; }
+		public double getFirstTimestamp() { return firstTimestamp; }
+		public double getLatestTimestamp() { return latestTimestamp; }
+		public int getNumObservations() { return numObservations; }
+		public double getScore() { return score; }
+	}
+
+	private final Track[] tracks;
+	private final int[] ranked;				// indices of active tracks, best first
+	private int numRanked = 0;
+	private int nextId = 0;
+
+	public GoalTracker()
+	{
+		tracks = new Track[kMaxTracks];
+		for (int k = 0; k < kMaxTracks; k++)
+			tracks[k] = new Track();
+		ranked = new int[kMaxTracks];
+	}
+
+	public void reset()
+	{
+		for (Track track : tracks)
+			track.active = false;
+		numRanked = 0;
+	}
+
+	/**
+	 * Add the detections from one frame
+	 * @param _timestamp capture time of the frame
+	 * @param _x, _y field positions of the goals detected in the frame
+	 * @param _count number of detections in _x and _y
+	 */
+	public void update(double _timestamp, double[] _x, double[] _y, int _count)
+	{
+		for (Track track : tracks)
+			track.matched = false;
+
+		for (int d = 0; d < _count; d++)
+		{
+			// nearest unmatched track
+			Track nearest = null;
+			double nearestDistSqr = kMaxTrackerDistance * kMaxTrackerDistance;
+			for (Track track : tracks)
+			{
+				if (!track.active || track.matched)
+					continue;
+				double dx = _x[d] - track.x;
+				double dy = _y[d] - track.y;
+				double distSqr = dx*dx + dy*dy;
+				if (distSqr <= nearestDistSqr)
+				{
+					nearest = track;
+					nearestDistSqr = distSqr;
+				}
+			}
+
+			if (nearest != null)
+			{
+				nearest.x += kSmoothing * (_x[d] - nearest.x);
+				nearest.y += kSmoothing * (_y[d] - nearest.y);
+				nearest.observe(_timestamp);
+				nearest.matched = true;
+			}
+			else
+			{
+				Track track = freeTrack();
+				track.id = nextId++;
+				track.active = true;
+				track.x = _x[d];
+				track.y = _y[d];
+				track.firstTimestamp = _timestamp;
+				track.numObservations = 0;
+				track.observe(_timestamp);
+				track.matched = true;
+			}
+		}
+	}
+
+	// an inactive track, or the one seen longest ago if all are in use
+	private Track freeTrack()
+	{
+		Track oldest = tracks[0];
+		for (Track track : tracks)
+		{
+			if (!track.active)
+				return track;
+			if (track.latestTimestamp < oldest.latestTimestamp)
+				oldest = track;
+		}
+		return oldest;
+	}
+
+	// drop tracks that haven't been seen in RobotState.kMaxTargetAge
+	public void prune(double _now)
+	{
+		for (Track track : tracks)
+		{
+			if (track.active && (_now - track.latestTimestamp) > RobotState.kMaxTargetAge)
+				track.active = false;
+		}
+	}
+
+	/**
+	 * Score and sort the active tracks.  Results are read with getNumRanked() and getRanked()
+	 * @param _now current time
+	 * @param _currentBestId id of the track currently being used (-1 if none), which is favored
+	 */
+	public void rank(double _now, int _currentBestId)
+	{
+		numRanked = 0;
+		for (int k = 0; k < tracks.length; k++)
+		{
+			Track track = tracks[k];
+			if (!track.active)
+				continue;
+
+			double stability = Math.min(1.0, track.numRecentObservations(_now - RobotState.kMaxTargetAge) / (kCameraFrameRate * RobotState.kMaxTargetAge));
+			double age = Math.max(0.0, 1.0 - (_now - track.latestTimestamp) / RobotState.kMaxTargetAge);
+			double switching = (track.id == _currentBestId ? 1.0 : 0.0);
+			track.score = kStabilityWeight * stability + kAgeWeight * age + kSwitchingWeight * switching;
+
+			// insertion sort, highest score first
+			int pos = numRanked++;
+			while (pos > 0 && tracks[ranked[pos-1]].score < track.score)
+			{
+				ranked[pos] = ranked[pos-1];
+				pos--;
+			}
+			ranked[pos] = k;
+		}
+	}
+
+	public int getNumRanked() { return numRanked; }
+
+	// _rank = 0 is the best track.  The Track is reused: copy values out, don't keep it.
+	public Track getRanked(int _rank) { return tracks[ranked[_rank]]; }
+
+	public boolean hasTracks() { return numRanked > 0; }
+}
@@ -0,0 +1,216 @@
+package frc.robot.vision;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.vision.CameraStream.Role;
+
+/**
+ * Keeps the camera streams under a bandwidth budget.
+ *
+ * Once every kPeriodSec a low priority thread measures each CameraStream and adds up the
+ * estimated bytes/sec.  It also measures the bytes the roboRIO actually transmitted (from
+ * /proc/net/dev, all interfaces but loopback), which includes stream overhead, NetworkTables
+ * and DS traffic the estimate misses.  The larger of the two is governed: over kBudgetMbps,
+ * one stream steps down a Level, starting with the streams the drivers need least: in teleop the DRIVER camera is preferred and VISION streams
+ * give way first, otherwise the other way around.  Below kStepUpFraction of the budget, and
+ * kHoldSec after the last step down, one stream steps back up, preferred streams first.
+ * One step per period keeps it from oscillating.
+ *
+ * While the robot is disabled all streams are switched off (unless kStreamWhileDisabled),
+ * and they come back at the Levels they had.
+ *
+ * Where /proc/net/dev can't be read (not Linux) only the estimate is governed.
+ */
+public class StreamGovernor implements Runnable
+{
+	// singleton class
+	private static StreamGovernor instance = null;
+
+	public static StreamGovernor getInstance()
+	{
+		if (instance == null)
+		{
+			instance = new StreamGovernor();
+		}
+		return instance;
+	}
+
+	public static double kPeriodSec = 1.0;
+	public static double kBudgetMbps = 3.0;			// field radio limit is 4 Mbps: leave a margin for DS control
+	public static double kStepUpFraction = 0.7;		// step up only below this fraction of the budget
+	public static double kHoldSec = 5.0;			// no step up for this long after a step down
+	public static boolean kStreamWhileDisabled = false;
+
+	private static final Path kNetDevFile = Paths.get("/proc/net/dev");
+
+	private final List<CameraStream> streams = new CopyOnWriteArrayList<CameraStream>();
+	private Thread thread = null;
+
+	private long lastStepDownNanos = System.nanoTime();
+	private long prevTxBytes = -1;
+	private long prevTxNanos = 0;
+
+	// statistics
+	private volatile double streamMbps = 0;
+	private volatile double linkTxMbps = 0;
+	private volatile boolean streaming = true;
+	private volatile long stepsDown = 0;
+	private volatile long stepsUp = 0;
+
+	private StreamGovernor() {}
+
+	public synchronized CameraStream add(CameraStream _stream)
+	{
+		streams.add(_stream);
+		if (thread == null)
+		{
+			thread = new Thread(this, "StreamGovernor");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.start();
+		}
+		return _stream;
+	}
+
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			update();
+
+			try
+			{
+				Thread.sleep(Math.round(kPeriodSec * 1000));
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	private void update()
+	{
+		boolean on = kStreamWhileDisabled || !DriverStation.isDisabled();
+		Role preferred = (DriverStation.isTeleop() ? Role.DRIVER : Role.VISION);
+		streaming = on;
+
+		double totalBytesPerSec = 0;
+		for (CameraStream stream : streams)
+		{
+			stream.setEnabled(on);
+			totalBytesPerSec += stream.measure();
+		}
+		streamMbps = totalBytesPerSec * 8 / 1e6;
+		updateLinkTx();
+
+		if (!on)
+			return;
+
+		long now = System.nanoTime();
+		double bytesPerSec = Math.max(totalBytesPerSec, linkTxMbps * 1e6 / 8);
+		double budgetBytesPerSec = kBudgetMbps * 1e6 / 8;
+		if (bytesPerSec > budgetBytesPerSec)
+		{
+			CameraStream stream = pickStepDown(preferred);
+			if (stream != null)
+			{
+				stream.setLevel(stream.getLevel() + 1);
+				stepsDown++;
+				lastStepDownNanos = now;
+			}
+		}
+		else if (bytesPerSec < kStepUpFraction * budgetBytesPerSec && (now - lastStepDownNanos) / 1e9 > kHoldSec)
+		{
+			CameraStream stream = pickStepUp(preferred);
+			if (stream != null)
+			{
+				stream.setLevel(stream.getLevel() - 1);
+				stepsUp++;
+			}
+		}
+	}
+
+	// the biggest stream that isn't preferred, or the biggest preferred stream if they are all at their lowest
+	private CameraStream pickStepDown(Role _preferred)
+	{
+		CameraStream best = null;
+		for (CameraStream stream : streams)
+		{
+			if (stream.isAtWorst())
+				continue;
+			if (best == null || rankDown(stream, _preferred) > rankDown(best, _preferred))
+				best = stream;
+		}
+		return best;
+	}
+
+	private static double rankDown(CameraStream _stream, Role _preferred)
+	{
+		return (_stream.getRole() == _preferred ? 0 : 1e12) + _stream.getBytesPerSec();
+	}
+
+	// the most reduced preferred stream, or the most reduced other stream if all preferred streams are at their best
+	private CameraStream pickStepUp(Role _preferred)
+	{
+		CameraStream best = null;
+		for (CameraStream stream : streams)
+		{
+			if (stream.isAtBest())
+				continue;
+			if (best == null || rankUp(stream, _preferred) > rankUp(best, _preferred))
+				best = stream;
+		}
+		return best;
+	}
+
+	private static int rankUp(CameraStream _stream, Role _preferred)
+	{
+		return (_stream.getRole() == _preferred ? CameraStream.kLevels.length : 0) + _stream.getLevel();
+	}
+
+	// bytes sent on all network interfaces except loopback, from /proc/net/dev
+	private void updateLinkTx()
+	{
+		long txBytes = 0;
+		try
+		{
+			List<String> lines = Files.readAllLines(kNetDevFile);
+			for (int k = 2; k < lines.size(); k++)		// two header lines
+			{
+				String line = lines.get(k);
+				int colon = line.indexOf(':');
+				if (colon < 0 || line.substring(0, colon).trim().equals("lo"))
+					continue;
+				String[] fields = line.substring(colon + 1).trim().split("\\s+");
+				txBytes += Long.parseLong(fields[8]);		// 8 receive fields, then transmit bytes
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			return;		// not Linux: leave linkTxMbps at 0
+		}
+
+		long now = System.nanoTime();
+		if (prevTxBytes >= 0 && now > prevTxNanos)
+			linkTxMbps = (txBytes - prevTxBytes) * 8 / 1e6 / ((now - prevTxNanos) / 1e9);
+		prevTxBytes = txBytes;
+		prevTxNanos = now;
+	}
+
+	public List<CameraStream> getStreams() { return streams; }
+	public double getStreamMbps() { return streamMbps; }		// estimated, all streams
+	public double getLinkTxMbps() { return linkTxMbps; }		// measured, everything the roboRIO sends
+	public double getBudgetMbps() { return kBudgetMbps; }
+	public boolean isStreaming() { return streaming; }
+	public long getStepsDown() { return stepsDown; }
+	public long getStepsUp() { return stepsUp; }
+}
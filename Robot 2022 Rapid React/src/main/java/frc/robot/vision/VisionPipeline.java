@@ -0,0 +1,221 @@
+package frc.robot.vision;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.opencv.core.Mat;
+
+import edu.wpi.first.cscore.CvSink;
+import edu.wpi.first.cscore.CvSource;
+import frc.robot.lib.util.PeriodicTimer;
+
+/**
+ * Runs camera frames through a list of VisionStages on two low priority threads.
+ *
+ * The capture thread grabs frames from a CvSink into a small pool of preallocated Mats and
+ * hands each one to the processing thread through a single "latest frame" slot.  If the
+ * processing thread hasn't taken the previous frame yet, that frame is dropped: processing
+ * always works on the newest image and never builds a backlog.  The processing thread starts
+ * at most maxFps frames per second, runs every stage, sends the result to the output stream
+ * (if any), and returns the Mat to the pool.  A stage that throws is counted and the
+ * error recorded, and the frame goes on to the next stage, so one bad frame can't stop the thread.
+ *
+ * Timing for each stage and frame counts can be read from any thread.
+ */
+public class VisionPipeline
+{
+	public static int kPoolSize = 3;					// one being captured, one waiting, one being processed
+	public static double kGrabTimeoutSec = 0.5;
+	public static double kErrorRetrySec = 0.1;			// wait this long after a failed grab (e.g. camera unplugged)
+	public static int kTimingWindowFrames = 30;
+
+	private static class Frame
+	{
+		final Mat mat = new Mat();
+		double captureTimestamp;
+	}
+
+	public static class Stage
+	{
+		private final String name;
+		private final VisionStage stage;
+		private final PeriodicTimer timer = new PeriodicTimer(kTimingWindowFrames);
+		private volatile long errors = 0;
+
+		Stage(String _name, VisionStage _stage)
+		{
+			name = _name;
+			stage = _stage;
+		}
+
+		public String getName() { return name; }
+		public double getAvgMs() { return timer.getAvgMs(); }
+		public double getMaxMs() { return timer.getMaxMs(); }
+		public long getErrors() { return errors; }
+	}
+
+	private final String name;
+	private final CvSink sink;
+	private final CvSource output;		// may be null
+	private volatile double maxFps;
+
+	private final List<Stage> stages = new CopyOnWriteArrayList<Stage>();
+	private final ArrayBlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<Frame>(kPoolSize);
+	private final AtomicReference<Frame> latestFrame = new AtomicReference<Frame>(null);
+	private final PeriodicTimer totalTimer = new PeriodicTimer(kTimingWindowFrames);
+
+	private Thread captureThread = null;
+	private Thread processThread = null;
+
+	// statistics
+	private volatile long framesCaptured = 0;
+	private volatile long framesProcessed = 0;
+	private volatile long framesDropped = 0;
+	private volatile long grabErrors = 0;
+	private volatile long stageErrors = 0;
+	private volatile String lastError = "";
+
+	public VisionPipeline(String _name, CvSink _sink, CvSource _output, double _maxFps)
+	{
+		name = _name;
+		sink = _sink;
+		output = _output;
+		maxFps = _maxFps;
+		for (int k = 0; k < kPoolSize; k++)
+			freeFrames.add(new Frame());
+	}
+
+	public Stage addStage(String _name, VisionStage _stage)
+	{
+		Stage stage = new Stage(_name, _stage);
+		stages.add(stage);
+		return stage;
+	}
+
+	public void setMaxFps(double _maxFps) { maxFps = _maxFps; }
+	public double getMaxFps() { return maxFps; }
+
+	public synchronized void start()
+	{
+		if (captureThread != null)
+			return;
+
+		captureThread = new Thread(this::captureLoop, name + " capture");
+		processThread = new Thread(this::processLoop, name + " process");
+		for (Thread thread : new Thread[] {captureThread, processThread})
+		{
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			thread.start();
+		}
+	}
+
+	private void captureLoop()
+	{
+		while (!Thread.interrupted())
+		{
+			Frame frame = freeFrames.poll();		// never empty: at most one frame waiting and one being processed
+			if (frame == null)
+			{
+				LockSupport.parkNanos(1000000);
+				continue;
+			}
+
+			long frameTimeMicros = sink.grabFrame(frame.mat, kGrabTimeoutSec);
+			if (frameTimeMicros == 0)
+			{
+				grabErrors++;
+				lastError = sink.getError();
+				freeFrames.offer(frame);
+				sleep(kErrorRetrySec);		// don't spin when the camera is gone
+				continue;
+			}
+			frame.captureTimestamp = frameTimeMicros / 1e6;		// cscore frame times are FPGA time on the roboRIO
+			framesCaptured++;
+
+			// latest frame wins
+			Frame dropped = latestFrame.getAndSet(frame);
+			if (dropped != null)
+			{
+				framesDropped++;
+				freeFrames.offer(dropped);
+			}
+			LockSupport.unpark(processThread);
+		}
+	}
+
+	private void processLoop()
+	{
+		long nextStartNanos = System.nanoTime();
+		while (!Thread.interrupted())
+		{
+			// frame rate cap: frames arriving before the next start time are dropped by the capture thread
+			long waitNanos = nextStartNanos - System.nanoTime();
+			if (waitNanos > 0)
+			{
+				LockSupport.parkNanos(waitNanos);
+				continue;
+			}
+
+			Frame frame = latestFrame.getAndSet(null);
+			if (frame == null)
+			{
+				LockSupport.parkNanos(5000000);		// woken early by the capture thread
+				continue;
+			}
+
+			long startNanos = System.nanoTime();
+			double fps = maxFps;
+			nextStartNanos = (fps > 0 ? startNanos + (long)(1e9 / fps) : startNanos);
+
+			totalTimer.start();
+			for (Stage stage : stages)
+			{
+				stage.timer.start();
+				try
+				{
+					stage.stage.process(frame.mat, frame.captureTimestamp);
+				}
+				catch (RuntimeException e)
+				{
+					stage.errors++;
+					stageErrors++;
+					lastError = stage.name + ": " + e;
+				}
+				stage.timer.stop();
+			}
+			if (output != null)
+				output.putFrame(frame.mat);
+			totalTimer.stop();
+
+			framesProcessed++;
+			freeFrames.offer(frame);
+		}
+	}
+
+	private static void sleep(double _sec)
+	{
+		try
+		{
+			Thread.sleep((long)(_sec * 1000));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public String getName() { return name; }
+	public List<Stage> getStages() { return stages; }
+	public double getTotalAvgMs() { return totalTimer.getAvgMs(); }
+	public double getTotalMaxMs() { return totalTimer.getMaxMs(); }
+	public long getFramesCaptured() { return framesCaptured; }
+	public long getFramesProcessed() { return framesProcessed; }
+	public long getFramesDropped() { return framesDropped; }
+	public long getGrabErrors() { return grabErrors; }
+	public long getStageErrors() { return stageErrors; }		// all stages
+	public String getLastError() { return lastError; }
+}
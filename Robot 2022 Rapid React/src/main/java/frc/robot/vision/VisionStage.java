@@ -0,0 +1,17 @@
+package frc.robot.vision;
+
+import org.opencv.core.Mat;
+
+/**
+ * One step of a VisionPipeline, run on the pipeline's processing thread for every frame
+ * that isn't dropped.  Stages run in the order they were added, all on the same Mat, so a
+ * stage may draw on the frame for the output stream.
+ */
+public interface VisionStage
+{
+	/**
+	 * @param _frame image from the camera (pooled: don't keep a reference after returning)
+	 * @param _captureTimestamp FPGA time the frame was captured (sec)
+	 */
+	void process(Mat _frame, double _captureTimestamp);
+}
@@ -0,0 +1,134 @@
+package frc.robot.tools;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import edu.wpi.first.cscore.CameraServerCvJNI;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+import frc.robot.vision.CargoDetector;
+
+/**
+ * Measures CargoDetector throughput off-robot, on recorded frames, with no camera or robot
+ * code running.  Every image in a directory is loaded, then the whole set is run through the
+ * detector repeatedly and the time for each frame recorded.  Run it on the same recordings
+ * before and after changing the detector.
+ *
+ * Frames should be recorded at the resolution the robot uses (Vision.kImageWidth x kImageHeight).
+ * Timings on a desktop are much faster than on the roboRIO: compare runs on the same machine.
+ *
+ *   ./gradlew cargoBenchmark --args="<imageDir> [repeat] [red|blue]"
+ *
+ * Needs the OpenCV native library: the one shipped with WPILib if it can be loaded, otherwise
+ * a system install found through -Djava.library.path.
+ */
+public class CargoDetectorBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 1)
+		{
+			System.err.println("usage: CargoDetectorBenchmark <imageDir> [repeat] [red|blue]");
+			System.exit(1);
+		}
+		File dir = new File(args[0]);
+		int repeat = (args.length > 1 ? Integer.parseInt(args[1]) : 20);
+		Alliance color = (args.length > 2 && args[2].equalsIgnoreCase("blue") ? Alliance.Blue : Alliance.Red);
+
+		loadOpenCV();
+
+		List<Mat> frames = loadFrames(dir);
+		if (frames.isEmpty())
+		{
+			System.err.println("no images in " + dir);
+			System.exit(1);
+		}
+		System.out.printf("%d frames (%dx%d), %s cargo, %d repeats%n",
+				frames.size(), frames.get(0).cols(), frames.get(0).rows(), color, repeat);
+
+		CargoDetector detector = new CargoDetector();
+		detector.setAlliance(color);
+
+		// the detector draws on the frame, so each run works on a copy
+		Mat work = new Mat();
+
+		// warm up (JIT, OpenCV buffers), and count detections
+		int framesWithCargo = 0;
+		int totalCargo = 0;
+		for (Mat frame : frames)
+		{
+			frame.copyTo(work);
+			detector.process(work, 0);
+			int count = detector.getLatest().size();
+			totalCargo += count;
+			if (count > 0)
+				framesWithCargo++;
+		}
+		long overrunsBefore = detector.getOverruns();
+
+		long[] nanos = new long[frames.size() * repeat];
+		int n = 0;
+		long totalStart = System.nanoTime();
+		for (int r = 0; r < repeat; r++)
+		{
+			for (Mat frame : frames)
+			{
+				frame.copyTo(work);
+				long start = System.nanoTime();
+				detector.process(work, 0);
+				nanos[n++] = System.nanoTime() - start;
+			}
+		}
+		long totalNanos = System.nanoTime() - totalStart;
+
+		Arrays.sort(nanos);
+		long sum = 0;
+		for (long t : nanos)
+			sum += t;
+
+		System.out.printf("cargo: %d in %d of %d frames%n", totalCargo, framesWithCargo, frames.size());
+		System.out.printf("per frame (ms): avg %.3f  p50 %.3f  p99 %.3f  max %.3f%n",
+				sum / 1e6 / n, nanos[n / 2] / 1e6, nanos[Math.min(n - 1, (int)(n * 0.99))] / 1e6, nanos[n - 1] / 1e6);
+		System.out.printf("throughput: %.1f frames/sec (detector only), %.1f frames/sec (including copy)%n",
+				n / (sum / 1e9), n / (totalNanos / 1e9));
+		System.out.printf("over %.1f ms budget: %d frames%n", CargoDetector.kBudgetMs, detector.getOverruns() - overrunsBefore);
+	}
+
+	private static void loadOpenCV()
+	{
+		try
+		{
+			CameraServerCvJNI.forceLoad();
+		}
+		catch (Throwable e)
+		{
+			System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+		}
+	}
+
+	private static List<Mat> loadFrames(File _dir)
+	{
+		File[] files = _dir.listFiles((d, name) -> {
+			String lower = name.toLowerCase();
+			return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".bmp");
+		});
+		List<Mat> frames = new ArrayList<Mat>();
+		if (files == null)
+			return frames;
+		Arrays.sort(files);
+		for (File file : files)
+		{
+			Mat mat = Imgcodecs.imread(file.getPath());
+			if (mat.empty())
+				System.err.println("can't read " + file);
+			else
+				frames.add(mat);
+		}
+		return frames;
+	}
+}
@@ -0,0 +1,246 @@
+package frc.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.lib.util.AsyncLogWriter;
+import frc.robot.lib.util.DataLogController;
+import frc.robot.lib.util.DataLogger;
+
+/**
+ * Compares the cost of one logging cycle with a few hundred channels:
+ *   - the old DataLogger: boxed values in a synchronized LinkedHashMap, cleared every cycle
+ *   - typed channels: put(slot, value) array stores
+ *   - typed channels + DataLogController encoding each row into the AsyncLogWriter ring
+ *
+ * The ring buffer case is timed in batches of half the ring, and the clock is stopped while
+ * the writer thread drains the ring between batches, so every row is encoded and none are
+ * dropped: a full ring would skip the encode and make the number look better than it is.
+ * If any row is dropped anyway (e.g. it doesn't fit in a ring slot) the benchmark fails.
+ *
+ *     ./gradlew loggerBenchmark --args="[numChannels]"
+ *
+ * With "dashboard", also compares the cost per value of mirroring the channels to
+ * SmartDashboard by string key (SmartDashboard.putNumber...) against the cached entries
+ * DataLogController now uses.  This needs the NetworkTables native library:
+ *     ./gradlew loggerBenchmark --args="300 dashboard"
+ */
+public class DataLoggerBenchmark
+{
+	public static int kWarmupCycles = 20000;
+	public static int kCycles = 100000;
+
+	enum Mode { OFF, ON }
+	static final Mode[] kModes = Mode.values();
+
+	// old style logger, for comparison
+	static class MapLogger
+	{
+		Map<String, Object> logMap = new LinkedHashMap<String, Object>();
+		synchronized void put(String name, double value)	{ logMap.put(name, Double.valueOf(value)); }
+		synchronized void put(String name, int value)		{ logMap.put(name, Integer.valueOf(value)); }
+		synchronized void put(String name, boolean value)	{ logMap.put(name, Boolean.valueOf(value)); }
+		synchronized void put(String name, String value)	{ logMap.put(name, value); }
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		final int numChannels = (args.length > 0 ? Integer.parseInt(args[0]) : 300);
+
+		// channel mix: mostly doubles, like the real loggers
+		final String[] names = new String[numChannels];
+		for (int k = 0; k < numChannels; k++)
+			names[k] = "Benchmark/channel" + k;
+
+		final MapLogger mapLogger = new MapLogger();
+		final int[] cycle = { 0 };
+
+		Runnable mapCycle = () -> {
+			int n = cycle[0]++;
+			for (int k = 0; k < numChannels; k++)
+			{
+				switch (k % 10)
+				{
+					case 0:		mapLogger.put(names[k], n);						break;
+					case 1:		mapLogger.put(names[k], (n & 1) == 0);			break;
+					case 2:		mapLogger.put(names[k], kModes[n & 1].toString());	break;
+					default:	mapLogger.put(names[k], n * 0.001 + k);			break;
+				}
+			}
+			// DataLogController walked the map, then cleared it
+			int count = 0;
+			for (Object value : mapLogger.logMap.values())
+				count += (value.getClass() == Double.class ? 1 : 0);
+			if (count < 0)
+				System.out.println();
+			mapLogger.logMap.clear();
+		};
+
+		final DataLogger typedLogger = new DataLogger()
+		{
+			final int[] slots = new int[numChannels];
+			{
+				for (int k = 0; k < numChannels; k++)
+				{
+					switch (k % 10)
+					{
+						case 0:		slots[k] = addInt(names[k]);		break;
+						case 1:		slots[k] = addBoolean(names[k]);	break;
+						case 2:		slots[k] = addEnum(names[k]);		break;
+						default:	slots[k] = addDouble(names[k]);		break;
+					}
+				}
+			}
+
+			@Override
+			public void log()
+			{
+				int n = cycle[0]++;
+				for (int k = 0; k < numChannels; k++)
+				{
+					switch (k % 10)
+					{
+						case 0:		put(slots[k], n);					break;
+						case 1:		put(slots[k], (n & 1) == 0);		break;
+						case 2:		put(slots[k], kModes[n & 1]);	break;
+						default:	put(slots[k], n * 0.001 + k);		break;
+					}
+				}
+			}
+		};
+
+		File directory = Files.createTempDirectory("DataLoggerBenchmark").toFile();
+		DataLogController.setDirectory(directory);
+		DataLogController controller = new DataLogController();
+		controller.setFileBase("benchmark");
+		controller.setOutputMode(true, false);
+		controller.register(typedLogger);
+
+		System.out.printf("%d channels, %d cycles\n", numChannels, kCycles);
+		System.out.printf("LinkedHashMap<String, Object>:   %8.0f ns/cycle\n", time(mapCycle));
+		System.out.printf("typed channels:                  %8.0f ns/cycle\n", time(typedLogger::log));
+		DataLogController.setMinimumInterval(-1);		// log every cycle
+		double ringNs = timeDrained(controller::log, controller);
+		long dropped = controller.getDroppedRecords();
+		controller.close();
+
+		for (File file : directory.listFiles())
+			file.delete();
+		directory.delete();
+
+		// a dropped row skips most of the work, so the time would mean nothing
+		if (dropped > 0)
+		{
+			System.err.printf("typed channels + ring buffer: FAILED, %d of %d rows dropped (record too large for a ring slot?)\n",
+					dropped, kWarmupCycles + kCycles);
+			System.exit(1);
+		}
+		System.out.printf("typed channels + ring buffer:    %8.0f ns/cycle (no rows dropped)\n", ringNs);
+
+		if (args.length > 1 && args[1].equals("dashboard"))
+			benchmarkDashboard(typedLogger, names);
+	}
+
+	private static void benchmarkDashboard(DataLogger _logger, String[] _names)
+	{
+		final int numChannels = _logger.getNumChannels();
+		final String[] keys = new String[numChannels];
+		for (int k = 0; k < numChannels; k++)
+			keys[k] = "Benchmark/" + _names[k];
+
+		// what DataLogController.putValues() used to do: table lookup by key for every value
+		double byKey = time(() -> {
+			_logger.log();
+			for (int slot = 0; slot < numChannels; slot++)
+			{
+				switch (_logger.getType(slot))
+				{
+					case DOUBLE:	SmartDashboard.putNumber(keys[slot], _logger.getDouble(slot));		break;
+					case INT:		SmartDashboard.putNumber(keys[slot], _logger.getInt(slot));			break;
+					case BOOLEAN:	SmartDashboard.putBoolean(keys[slot], _logger.getBoolean(slot));	break;
+					default:		SmartDashboard.putString(keys[slot], _logger.getString(slot));		break;
+				}
+			}
+		});
+
+		// entries bound once
+		final NetworkTableEntry[] entries = new NetworkTableEntry[numChannels];
+		for (int slot = 0; slot < numChannels; slot++)
+			entries[slot] = SmartDashboard.getEntry(keys[slot]);
+		double cached = time(() -> {
+			_logger.log();
+			for (int slot = 0; slot < numChannels; slot++)
+			{
+				switch (_logger.getType(slot))
+				{
+					case DOUBLE:	entries[slot].setDouble(_logger.getDouble(slot));	break;
+					case INT:		entries[slot].setDouble(_logger.getInt(slot));		break;
+					case BOOLEAN:	entries[slot].setBoolean(_logger.getBoolean(slot));	break;
+					default:		entries[slot].setString(_logger.getString(slot));	break;
+				}
+			}
+		});
+
+		double logOnly = time(_logger::log);
+		System.out.printf("SmartDashboard by key:           %8.0f ns/cycle  %6.0f ns/value\n", byKey, (byKey - logOnly) / numChannels);
+		System.out.printf("SmartDashboard cached entries:   %8.0f ns/cycle  %6.0f ns/value\n", cached, (cached - logOnly) / numChannels);
+	}
+
+	private static double time(Runnable _cycle)
+	{
+		for (int k = 0; k < kWarmupCycles; k++)
+			_cycle.run();
+
+		long start = System.nanoTime();
+		for (int k = 0; k < kCycles; k++)
+			_cycle.run();
+		return (double)(System.nanoTime() - start) / kCycles;
+	}
+
+	// time() for cycles that write to the log: the clock only runs while the ring has room
+	private static double timeDrained(Runnable _cycle, DataLogController _controller)
+	{
+		final int batch = AsyncLogWriter.kRingSize / 2;
+
+		for (int k = 0; k < kWarmupCycles; k++)
+		{
+			_cycle.run();
+			if ((k + 1) % batch == 0)
+				drain(_controller);
+		}
+		drain(_controller);
+
+		long nanos = 0;
+		for (int done = 0; done < kCycles; done += batch)
+		{
+			int n = Math.min(batch, kCycles - done);
+			long start = System.nanoTime();
+			for (int k = 0; k < n; k++)
+				_cycle.run();
+			nanos += System.nanoTime() - start;
+			drain(_controller);
+		}
+		return (double)nanos / kCycles;
+	}
+
+	private static void drain(DataLogController _controller)
+	{
+		while (_controller.getWriterLagRecords() > 0)
+		{
+			try
+			{
+				Thread.sleep(1);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package frc.robot.tools;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Offline least-squares fit of drivetrain feedforward gains from the csv files
+ * written by CharacterizationAction:
+ *
+ *     voltage = kS * sign(velocity) + kV * velocity + kA * acceleration
+ *
+ * Run on a laptop, after copying the csv files off the robot:
+ *     ./gradlew fitFeedforward --args="quasistatic_forward.csv dynamic_forward.csv ..."
+ */
+public class FeedforwardFitter
+{
+	public static double kMinSpeed = 1.0;		// inches/sec.  Ignore samples where the robot hasn't broken free of static friction
+	public static double kNominalVoltage = 12.0;
+
+	public static class Result
+	{
+		public final double kS, kV, kA;		// volts, volts/(in/sec), volts/(in/sec^2)
+		public final double rSquared;
+		public final int numSamples;
+
+		public Result(double _kS, double _kV, double _kA, double _rSquared, int _numSamples)
+		{
+			kS = _kS;
+			kV = _kV;
+			kA = _kA;
+			rSquared = _rSquared;
+			numSamples = _numSamples;
+		}
+
+		public String toString()
+		{
+			return String.format("kS = %.4f V, kV = %.5f V/(in/s), kA = %.5f V/(in/s^2), r^2 = %.4f, %d samples", kS, kV, kA, rSquared, numSamples);
+		}
+	}
+
+	// ordinary least squares on the 3 parameter model, solved with the normal equations
+	public static Result fit(double[] _velocity, double[] _accel, double[] _voltage, int _n)
+	{
+		double[][] ata = new double[3][3];
+		double[] aty = new double[3];
+		double sumY = 0, sumYY = 0;
+		int count = 0;
+
+		for (int k = 0; k < _n; k++)
+		{
+			if (Math.abs(_velocity[k]) < kMinSpeed)
+				continue;
+
+			double[] row = { Math.signum(_velocity[k]), _velocity[k], _accel[k] };
+			for (int i = 0; i < 3; i++)
+			{
+				for (int j = 0; j < 3; j++)
+					ata[i][j] += row[i] * row[j];
+				aty[i] += row[i] * _voltage[k];
+			}
+			sumY += _voltage[k];
+			sumYY += _voltage[k] * _voltage[k];
+			count++;
+		}
+
+		double[] x = solve3x3(ata, aty);
+
+		// r^2 = 1 - SSres/SStot, with SSres = y'y - 2x'A'y + x'A'Ax
+		double ssRes = sumYY;
+		for (int i = 0; i < 3; i++)
+		{
+			ssRes -= 2 * x[i] * aty[i];
+			for (int j = 0; j < 3; j++)
+				ssRes += x[i] * ata[i][j] * x[j];
+		}
+		double ssTot = sumYY - sumY * sumY / Math.max(count, 1);
+		double rSquared = (ssTot > 0) ? 1 - ssRes / ssTot : 0;
+
+		return new Result(x[0], x[1], x[2], rSquared, count);
+	}
+
+	// Gaussian elimination with partial pivoting
+	private static double[] solve3x3(double[][] _a, double[] _b)
+	{
+		int n = 3;
+		double[][] a = new double[n][n+1];
+		for (int i = 0; i < n; i++)
+		{
+			System.arraycopy(_a[i], 0, a[i], 0, n);
+			a[i][n] = _b[i];
+		}
+
+		for (int col = 0; col < n; col++)
+		{
+			int pivot = col;
+			for (int row = col+1; row < n; row++)
+				if (Math.abs(a[row][col]) > Math.abs(a[pivot][col]))
+					pivot = row;
+			double[] tmp = a[col]; a[col] = a[pivot]; a[pivot] = tmp;
+
+			if (Math.abs(a[col][col]) < 1e-12)
+				throw new ArithmeticException("FeedforwardFitter: not enough data to fit (need both quasistatic and dynamic tests)");
+
+			for (int row = col+1; row < n; row++)
+			{
+				double f = a[row][col] / a[col][col];
+				for (int k = col; k <= n; k++)
+					a[row][k] -= f * a[col][k];
+			}
+		}
+
+		double[] x = new double[n];
+		for (int i = n-1; i >= 0; i--)
+		{
+			double sum = a[i][n];
+			for (int j = i+1; j < n; j++)
+				sum -= a[i][j] * x[j];
+			x[i] = sum / a[i][i];
+		}
+		return x;
+	}
+
+
+
+	/*
+	 * Command line fitter
+	 */
+
+	private static List<double[]> samples = new ArrayList<double[]>();	// {velocity, accel, voltage}
+	private static double inchesPerSecPerEncoderUnitsPer100ms = 0;
+
+	// read a CharacterizationAction csv, using the average of left and right sides
+	private static void readFile(String _filename) throws IOException
+	{
+		try (BufferedReader reader = new BufferedReader(new FileReader(_filename)))
+		{
+			String line;
+			int timeCol = -1, voltCol = -1, lSpeedCol = -1, rSpeedCol = -1, lAccelCol = -1, rAccelCol = -1;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.startsWith("#"))
+				{
+					String[] keyValue = line.substring(1).trim().split("=");
+					if (keyValue.length == 2 && keyValue[0].equals("inchesPerSecPerEncoderUnitsPer100ms"))
+						inchesPerSecPerEncoderUnitsPer100ms = Double.parseDouble(keyValue[1]);
+					continue;
+				}
+
+				String[] fields = line.split(",");
+				if (timeCol < 0)
+				{
+					for (int k = 0; k < fields.length; k++)
+					{
+						switch (fields[k].trim())
+						{
+							case "time":    timeCol = k; break;
+							case "voltage": voltCol = k; break;
+							case "lSpeed":  lSpeedCol = k; break;
+							case "rSpeed":  rSpeedCol = k; break;
+							case "lAccel":  lAccelCol = k; break;
+							case "rAccel":  rAccelCol = k; break;
+						}
+					}
+					if (timeCol < 0 || voltCol < 0 || lSpeedCol < 0 || rSpeedCol < 0 || lAccelCol < 0 || rAccelCol < 0)
+						throw new IOException(_filename + ": missing columns");
+					continue;
+				}
+
+				double velocity = (Double.parseDouble(fields[lSpeedCol]) + Double.parseDouble(fields[rSpeedCol])) / 2;
+				double accel    = (Double.parseDouble(fields[lAccelCol]) + Double.parseDouble(fields[rAccelCol])) / 2;
+				double voltage  = Double.parseDouble(fields[voltCol]);
+				samples.add(new double[] {velocity, accel, voltage});
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length == 0)
+		{
+			System.out.println("usage: FeedforwardFitter <characterization csv files>");
+			return;
+		}
+
+		for (String filename : args)
+			readFile(filename);
+
+		int n = samples.size();
+		double[] velocity = new double[n];
+		double[] accel = new double[n];
+		double[] voltage = new double[n];
+		for (int k = 0; k < n; k++)
+		{
+			velocity[k] = samples.get(k)[0];
+			accel[k]    = samples.get(k)[1];
+			voltage[k]  = samples.get(k)[2];
+		}
+
+		Result result = fit(velocity, accel, voltage, n);
+		System.out.println(result);
+
+		if (inchesPerSecPerEncoderUnitsPer100ms > 0)
+		{
+			// Talon kF: 1023 = full output, velocity in encoder units per 100 ms
+			double kF = result.kV * inchesPerSecPerEncoderUnitsPer100ms * 1023.0 / kNominalVoltage;
+			System.out.printf("DriveLoop.kDriveVelocityKf = %.4f\n", kF);
+			System.out.printf("kS = %.4f percent output, kA = %.6f percent output per in/sec^2\n", result.kS / kNominalVoltage, result.kA / kNominalVoltage);
+		}
+	}
+}
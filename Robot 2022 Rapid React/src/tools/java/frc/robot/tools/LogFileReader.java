@@ -0,0 +1,293 @@
+package frc.robot.tools;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import frc.robot.lib.util.AsyncLogWriter;
+
+/**
+ * Streams the rows of a DataLogController log file, one at a time, so memory use doesn't
+ * depend on file size.  Reads the binary format written by AsyncLogWriter and the CSV
+ * format, either of them optionally gzipped by LogArchiver.
+ *
+ * A file may contain more than one header (e.g. after DataLogController.deregister()),
+ * so callers should look up columns again whenever getHeaderVersion() changes.
+ * Empty values (channel not written that cycle) are returned as null.
+ *
+ * seek() works on compressed files too: offsets are in the uncompressed data, so the file is
+ * decompressed up to the offset without decoding any records, which is much faster than reading rows.
+ */
+public class LogFileReader implements AutoCloseable
+{
+	private final File file;
+	private final boolean binary;
+	private final boolean compressed;
+
+	private InputStream in;
+	private final byte[] buffer = new byte[64*1024];
+	private int bufferPos = 0;
+	private int bufferLimit = 0;
+	private long position = 0;					// bytes read from start of (uncompressed) file
+
+	private byte[] record = new byte[AsyncLogWriter.kMaxRecordBytes];
+	private final StringBuilder line = new StringBuilder();
+
+	private String[] columns = new String[0];
+	private int headerVersion = 0;
+	private long headerOffset = -1;
+	private long rowOffset = -1;
+	private long timeMs;
+	private Object[] values = new Object[0];	// binary: decoded values
+	private String[] fields = new String[0];	// CSV: raw fields
+
+	public LogFileReader(File _file) throws IOException
+	{
+		file = _file;
+		String name = _file.getName();
+		compressed = name.endsWith(".gz");
+		binary = name.contains(".bin");
+		open();
+	}
+
+	public File getFile() { return file; }
+	public boolean isBinary() { return binary; }
+
+	public String[] getColumns() { return columns; }
+	public int getHeaderVersion() { return headerVersion; }
+	public long getHeaderOffset() { return headerOffset; }
+	public long getRowOffset() { return rowOffset; }
+	public long getTimeMs() { return timeMs; }
+
+	public int getColumnIndex(String _name)
+	{
+		for (int k = 0; k < columns.length; k++)
+			if (columns[k].equals(_name))
+				return k;
+		return -1;
+	}
+
+	// value of column in current row, or null if not written this row
+	public Object getValue(int _column)
+	{
+		if (binary)
+		{
+			Object value = values[_column];
+			return ("".equals(value) ? null : value);
+		}
+		String field = (_column < fields.length ? fields[_column] : "");
+		return (field.isEmpty() ? null : field);
+	}
+
+	// numeric value of column in current row, or NaN if missing or not a number
+	public double getDouble(int _column)
+	{
+		Object value = getValue(_column);
+		if (value == null)
+			return Double.NaN;
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+		if (value instanceof Boolean)
+			return ((Boolean) value) ? 1 : 0;
+		String s = value.toString();
+		if (s.equals("true"))	return 1;
+		if (s.equals("false"))	return 0;
+		try
+		{
+			return Double.parseDouble(s);
+		}
+		catch (NumberFormatException e)
+		{
+			return Double.NaN;
+		}
+	}
+
+	public String getString(int _column)
+	{
+		Object value = getValue(_column);
+		return (value == null ? null : value.toString());
+	}
+
+
+
+	// advance to the next row.  Returns false at end of file (or at a partly written record)
+	public boolean next() throws IOException
+	{
+		try
+		{
+			while (true)
+			{
+				long recordStart = position;
+				if (binary ? readBinaryRecord() : readCSVLine(recordStart))
+				{
+					rowOffset = recordStart;
+					return true;
+				}
+			}
+		}
+		catch (EOFException e)
+		{
+			return false;
+		}
+	}
+
+	// jump to a row found by a previous pass (see LogIndex), so the next call to next() reads it
+	public void seek(long _headerOffset, long _rowOffset) throws IOException
+	{
+		close();
+		open();
+		skipTo(_headerOffset);
+		if (binary)
+			readBinaryRecord();		// header for the row
+		else
+			readCSVLine(position);
+		skipTo(_rowOffset);
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+
+
+	private void open() throws IOException
+	{
+		in = new FileInputStream(file);
+		if (compressed)
+			in = new GZIPInputStream(in, 64*1024);
+		bufferPos = bufferLimit = 0;
+		position = 0;
+
+		if (binary)
+		{
+			byte[] magic = new byte[AsyncLogWriter.kMagic.length];
+			readFully(magic, magic.length);
+			if (!Arrays.equals(magic, AsyncLogWriter.kMagic))
+				throw new IOException("LogFileReader: " + file.getName() + " is not a binary log file");
+			int version = readByte();
+			if (version != AsyncLogWriter.kVersion)
+				throw new IOException("LogFileReader: " + file.getName() + " has unknown version " + version);
+		}
+	}
+
+	private void skipTo(long _position) throws IOException
+	{
+		long skip = _position - position;
+		int buffered = Math.min(bufferLimit - bufferPos, (int)Math.min(skip, Integer.MAX_VALUE));
+		bufferPos += buffered;
+		position += buffered;
+		skip -= buffered;
+		if (skip > 0)
+			bufferPos = bufferLimit = 0;		// buffer is empty: used below to discard compressed data
+		while (skip > 0)
+		{
+			// GZIPInputStream.skip() decompresses 512 bytes at a time: read through the (empty) buffer instead
+			long n = (compressed ? in.read(buffer, 0, (int)Math.min(skip, buffer.length)) : in.skip(skip));
+			if (n <= 0)
+				throw new EOFException();
+			skip -= n;
+			position += n;
+		}
+	}
+
+	private int readByte() throws IOException
+	{
+		if (bufferPos == bufferLimit)
+		{
+			bufferLimit = in.read(buffer, 0, buffer.length);
+			bufferPos = 0;
+			if (bufferLimit <= 0)
+			{
+				bufferLimit = 0;
+				throw new EOFException();
+			}
+		}
+		position++;
+		return buffer[bufferPos++] & 0xFF;
+	}
+
+	private void readFully(byte[] _dst, int _length) throws IOException
+	{
+		int n = 0;
+		while (n < _length)
+		{
+			if (bufferPos == bufferLimit)
+			{
+				readByte();			// refill
+				bufferPos--;
+				position--;
+			}
+			int count = Math.min(_length - n, bufferLimit - bufferPos);
+			System.arraycopy(buffer, bufferPos, _dst, n, count);
+			bufferPos += count;
+			position += count;
+			n += count;
+		}
+	}
+
+	// returns true if the record was a row
+	private boolean readBinaryRecord() throws IOException
+	{
+		long recordStart = position;
+		int length = (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+		if (length > record.length)
+			record = new byte[length];
+		readFully(record, length);
+
+		ByteBuffer bb = ByteBuffer.wrap(record, 0, length);
+		byte type = bb.get();
+		if (type == AsyncLogWriter.kHeaderRecord)
+		{
+			int count = bb.getShort();
+			columns = new String[count];
+			for (int k = 0; k < count; k++)
+				columns[k] = AsyncLogWriter.getUTF(bb);
+			headerOffset = recordStart;
+			headerVersion++;
+			return false;
+		}
+
+		bb.getLong();		// wall clock time
+		timeMs = bb.getLong();
+		int count = bb.getShort();
+		if (values.length != count)
+			values = new Object[count];
+		for (int k = 0; k < count; k++)
+			values[k] = AsyncLogWriter.getValue(bb);
+		return true;
+	}
+
+	// returns true if the line was a row
+	private boolean readCSVLine(long _lineStart) throws IOException
+	{
+		line.setLength(0);
+		int b;
+		while ((b = readByte()) != '\n')
+		{
+			if (b != '\r')
+				line.append((char) b);
+		}
+
+		String[] allFields = line.toString().split(",", -1);
+		if (allFields.length >= 2 && allFields[0].equals("time") && allFields[1].equals("timeSinceStart"))
+		{
+			columns = Arrays.copyOfRange(allFields, 2, allFields.length);
+			headerOffset = _lineStart;
+			headerVersion++;
+			return false;
+		}
+		if (allFields.length < 2 || columns.length == 0)
+			return false;		// blank line, or data before any header
+
+		timeMs = Long.parseLong(allFields[1]);
+		fields = Arrays.copyOfRange(allFields, 2, allFields.length);
+		return true;
+	}
+}
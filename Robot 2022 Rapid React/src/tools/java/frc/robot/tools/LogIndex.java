@@ -0,0 +1,286 @@
+package frc.robot.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column and time index of one log file, built in a single streaming pass.
+ *
+ * Holds per-column statistics and a checkpoint (time, file offset) every kRowsPerCheckpoint
+ * rows, so a time range query can seek close to its start instead of reading the file from
+ * the beginning.  Size is proportional to the number of columns plus rows/kRowsPerCheckpoint,
+ * so it stays small even for hour-long logs.  The index is saved next to the log
+ * (<log>.idx) and reused as long as the log file hasn't changed.
+ *
+ * Logs gzipped by LogArchiver are indexed the same way.  Their checkpoints hold offsets in
+ * the uncompressed data, and seeking decompresses up to the checkpoint without decoding rows.
+ */
+public class LogIndex
+{
+	public static int kRowsPerCheckpoint = 1000;
+	private static final int kIndexMagic = 0x36383649;	// "686I"
+	private static final int kIndexVersion = 2;			// 2: checkpoints for compressed logs
+
+	public static class ColumnStats
+	{
+		public final String name;
+		public long count = 0;			// rows with a value
+		public long numericCount = 0;
+		public double min = Double.POSITIVE_INFINITY;
+		public double max = Double.NEGATIVE_INFINITY;
+		public double sum = 0;
+
+		ColumnStats(String _name) { name = _name; }
+
+		public double getMean() { return (numericCount > 0 ? sum / numericCount : Double.NaN); }
+
+		public String toString()
+		{
+			if (numericCount == 0)
+				return String.format("%-32s %8d values", name, count);
+			return String.format("%-32s %8d values  min %12.4f  max %12.4f  mean %12.4f", name, count, min, max, getMean());
+		}
+	}
+
+	public long fileLength;
+	public long fileLastModified;
+	public long rows = 0;
+	public long startTimeMs = 0;
+	public long endTimeMs = 0;
+	public final List<ColumnStats> columns = new ArrayList<ColumnStats>();		// all columns in any header
+
+	// checkpoints
+	private int numCheckpoints = 0;
+	private long[] checkpointTimeMs = new long[64];
+	private long[] checkpointHeaderOffset = new long[64];
+	private long[] checkpointRowOffset = new long[64];
+
+
+
+	// load saved index, or build (and save) a new one
+	public static LogIndex get(File _log) throws IOException
+	{
+		File indexFile = getIndexFile(_log);
+		if (indexFile.isFile())
+		{
+			try
+			{
+				LogIndex index = load(indexFile);
+				if (index.fileLength == _log.length() && index.fileLastModified == _log.lastModified())
+					return index;
+			}
+			catch (IOException e)
+			{
+				// rebuild
+			}
+		}
+
+		LogIndex index = build(_log);
+		try
+		{
+			index.save(indexFile);
+		}
+		catch (IOException e)
+		{
+			System.err.println("LogIndex: could not save " + indexFile + ": " + e);
+		}
+		return index;
+	}
+
+	public static File getIndexFile(File _log)
+	{
+		return new File(_log.getPath() + ".idx");
+	}
+
+	public static LogIndex build(File _log) throws IOException
+	{
+		LogIndex index = new LogIndex();
+		index.fileLength = _log.length();
+		index.fileLastModified = _log.lastModified();
+
+		Map<String, Integer> columnLookup = new HashMap<String, Integer>();
+		int[] columnMap = new int[0];		// reader column -> index column
+		int headerVersion = -1;
+
+		try (LogFileReader reader = new LogFileReader(_log))
+		{
+			while (reader.next())
+			{
+				if (reader.getHeaderVersion() != headerVersion)
+				{
+					headerVersion = reader.getHeaderVersion();
+					String[] names = reader.getColumns();
+					columnMap = new int[names.length];
+					for (int k = 0; k < names.length; k++)
+					{
+						Integer c = columnLookup.get(names[k]);
+						if (c == null)
+						{
+							c = index.columns.size();
+							columnLookup.put(names[k], c);
+							index.columns.add(new ColumnStats(names[k]));
+						}
+						columnMap[k] = c;
+					}
+				}
+
+				long t = reader.getTimeMs();
+				if (index.rows == 0)
+					index.startTimeMs = t;
+				index.endTimeMs = Math.max(index.endTimeMs, t);
+				if (index.rows % kRowsPerCheckpoint == 0)
+					index.addCheckpoint(t, reader.getHeaderOffset(), reader.getRowOffset());
+				index.rows++;
+
+				for (int k = 0; k < columnMap.length; k++)
+				{
+					if (reader.getValue(k) == null)
+						continue;
+					ColumnStats stats = index.columns.get(columnMap[k]);
+					stats.count++;
+					double value = reader.getDouble(k);
+					if (!Double.isNaN(value))
+					{
+						stats.numericCount++;
+						stats.min = Math.min(stats.min, value);
+						stats.max = Math.max(stats.max, value);
+						stats.sum += value;
+					}
+				}
+			}
+		}
+		return index;
+	}
+
+	private void addCheckpoint(long _timeMs, long _headerOffset, long _rowOffset)
+	{
+		if (numCheckpoints == checkpointTimeMs.length)
+		{
+			checkpointTimeMs = Arrays.copyOf(checkpointTimeMs, 2 * numCheckpoints);
+			checkpointHeaderOffset = Arrays.copyOf(checkpointHeaderOffset, 2 * numCheckpoints);
+			checkpointRowOffset = Arrays.copyOf(checkpointRowOffset, 2 * numCheckpoints);
+		}
+		checkpointTimeMs[numCheckpoints] = _timeMs;
+		checkpointHeaderOffset[numCheckpoints] = _headerOffset;
+		checkpointRowOffset[numCheckpoints] = _rowOffset;
+		numCheckpoints++;
+	}
+
+	public ColumnStats getColumn(String _name)
+	{
+		for (ColumnStats column : columns)
+			if (column.name.equals(_name))
+				return column;
+		return null;
+	}
+
+	// position _reader at or before the first row at time _timeMs
+	public void seek(LogFileReader _reader, long _timeMs) throws IOException
+	{
+		if (numCheckpoints == 0)
+			return;		// read from start
+
+		// last checkpoint at or before _timeMs
+		int lo = 0, hi = numCheckpoints - 1, k = -1;
+		while (lo <= hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (checkpointTimeMs[mid] <= _timeMs)
+			{
+				k = mid;
+				lo = mid + 1;
+			}
+			else
+			{
+				hi = mid - 1;
+			}
+		}
+		if (k > 0)
+			_reader.seek(checkpointHeaderOffset[k], checkpointRowOffset[k]);
+	}
+
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d rows, %.3f to %.3f sec, %d columns, %d checkpoints\n",
+				rows, startTimeMs / 1000.0, endTimeMs / 1000.0, columns.size(), numCheckpoints));
+		for (ColumnStats column : columns)
+			sb.append(column).append('\n');
+		return sb.toString();
+	}
+
+
+
+	private void save(File _file) throws IOException
+	{
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_file))))
+		{
+			out.writeInt(kIndexMagic);
+			out.writeInt(kIndexVersion);
+			out.writeLong(fileLength);
+			out.writeLong(fileLastModified);
+			out.writeLong(rows);
+			out.writeLong(startTimeMs);
+			out.writeLong(endTimeMs);
+			out.writeInt(columns.size());
+			for (ColumnStats column : columns)
+			{
+				out.writeUTF(column.name);
+				out.writeLong(column.count);
+				out.writeLong(column.numericCount);
+				out.writeDouble(column.min);
+				out.writeDouble(column.max);
+				out.writeDouble(column.sum);
+			}
+			out.writeInt(numCheckpoints);
+			for (int k = 0; k < numCheckpoints; k++)
+			{
+				out.writeLong(checkpointTimeMs[k]);
+				out.writeLong(checkpointHeaderOffset[k]);
+				out.writeLong(checkpointRowOffset[k]);
+			}
+		}
+	}
+
+	private static LogIndex load(File _file) throws IOException
+	{
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file))))
+		{
+			if (in.readInt() != kIndexMagic || in.readInt() != kIndexVersion)
+				throw new IOException("LogIndex: " + _file + " is not an index file");
+
+			LogIndex index = new LogIndex();
+			index.fileLength = in.readLong();
+			index.fileLastModified = in.readLong();
+			index.rows = in.readLong();
+			index.startTimeMs = in.readLong();
+			index.endTimeMs = in.readLong();
+			int numColumns = in.readInt();
+			for (int k = 0; k < numColumns; k++)
+			{
+				ColumnStats column = new ColumnStats(in.readUTF());
+				column.count = in.readLong();
+				column.numericCount = in.readLong();
+				column.min = in.readDouble();
+				column.max = in.readDouble();
+				column.sum = in.readDouble();
+				index.columns.add(column);
+			}
+			int numCheckpoints = in.readInt();
+			for (int k = 0; k < numCheckpoints; k++)
+				index.addCheckpoint(in.readLong(), in.readLong(), in.readLong());
+			return index;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package frc.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line queries on DataLogController log files (.bin or .csv, optionally .gz).
+ * Files are streamed, so memory stays bounded regardless of log length.
+ *
+ *   ./gradlew logQuery --args="info <log>"
+ *       columns, time range and min/max/mean of every column
+ *   ./gradlew logQuery --args="range <log> <column>[,<column>...] [t0 [t1]]"
+ *       CSV of the columns between t0 and t1 (seconds since start of log)
+ *   ./gradlew logQuery --args="stats <log> <column> [by <groupColumn>] [t0 [t1]]"
+ *       count/min/max/mean of a column, optionally per value of another column
+ *       (e.g. "stats log.bin lMotorCurrent_max by driveMode" for the max current per drive mode)
+ */
+public class LogQuery
+{
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			usage();
+			return;
+		}
+
+		File log = new File(args[1]);
+		LogIndex index = LogIndex.get(log);
+
+		switch (args[0])
+		{
+			case "info":
+				System.out.print(index);
+				break;
+
+			case "range":
+				if (args.length < 3) { usage(); return; }
+				range(log, index, args[2].split(","), getTime(args, 3, Double.NEGATIVE_INFINITY), getTime(args, 4, Double.POSITIVE_INFINITY));
+				break;
+
+			case "stats":
+				if (args.length < 3) { usage(); return; }
+				String groupColumn = null;
+				int next = 3;
+				if (args.length > 4 && args[3].equals("by"))
+				{
+					groupColumn = args[4];
+					next = 5;
+				}
+				stats(log, index, args[2], groupColumn, getTime(args, next, Double.NEGATIVE_INFINITY), getTime(args, next+1, Double.POSITIVE_INFINITY));
+				break;
+
+			default:
+				usage();
+		}
+	}
+
+	private static void usage()
+	{
+		System.out.println("usage: LogQuery info <log>");
+		System.out.println("       LogQuery range <log> <column>[,<column>...] [t0 [t1]]");
+		System.out.println("       LogQuery stats <log> <column> [by <groupColumn>] [t0 [t1]]");
+	}
+
+	private static double getTime(String[] _args, int _k, double _default)
+	{
+		return (_args.length > _k ? Double.parseDouble(_args[_k]) : _default);
+	}
+
+	// time in ms since start of log, clamped so it can be compared with long times
+	private static long toMs(double _sec)
+	{
+		if (_sec == Double.NEGATIVE_INFINITY)	return Long.MIN_VALUE;
+		if (_sec == Double.POSITIVE_INFINITY)	return Long.MAX_VALUE;
+		return Math.round(_sec * 1000);
+	}
+
+	private static void range(File _log, LogIndex _index, String[] _columns, double _t0, double _t1) throws IOException
+	{
+		long t0 = toMs(_t0);
+		long t1 = toMs(_t1);
+		for (String name : _columns)
+			if (_index.getColumn(name) == null)
+				throw new IllegalArgumentException("LogQuery: no column " + name + " in " + _log.getName());
+
+		System.out.print("timeSinceStart");
+		for (String name : _columns)
+			System.out.print("," + name);
+		System.out.println();
+
+		try (LogFileReader reader = new LogFileReader(_log))
+		{
+			_index.seek(reader, t0);
+			int[] columnIndex = new int[_columns.length];
+			int headerVersion = -1;
+			while (reader.next())
+			{
+				long t = reader.getTimeMs();
+				if (t < t0)
+					continue;
+				if (t > t1)
+					break;
+
+				if (reader.getHeaderVersion() != headerVersion)
+				{
+					headerVersion = reader.getHeaderVersion();
+					for (int k = 0; k < _columns.length; k++)
+						columnIndex[k] = reader.getColumnIndex(_columns[k]);
+				}
+
+				StringBuilder sb = new StringBuilder();
+				sb.append(t);
+				for (int k = 0; k < _columns.length; k++)
+				{
+					sb.append(',');
+					String value = (columnIndex[k] >= 0 ? reader.getString(columnIndex[k]) : null);
+					if (value != null)
+						sb.append(value);
+				}
+				System.out.println(sb);
+			}
+		}
+	}
+
+	private static void stats(File _log, LogIndex _index, String _column, String _groupColumn, double _t0, double _t1) throws IOException
+	{
+		long t0 = toMs(_t0);
+		long t1 = toMs(_t1);
+		if (_index.getColumn(_column) == null)
+			throw new IllegalArgumentException("LogQuery: no column " + _column + " in " + _log.getName());
+		if (_groupColumn != null && _index.getColumn(_groupColumn) == null)
+			throw new IllegalArgumentException("LogQuery: no column " + _groupColumn + " in " + _log.getName());
+
+		// one entry per distinct group value, so memory is bounded by the number of modes/states
+		Map<String, LogIndex.ColumnStats> groups = new LinkedHashMap<String, LogIndex.ColumnStats>();
+		String group = "all";		// group column is forward filled (it may only be logged on change)
+
+		try (LogFileReader reader = new LogFileReader(_log))
+		{
+			if (_groupColumn == null)
+				_index.seek(reader, t0);		// group value needs to be read from the start
+
+			int columnIndex = -1, groupIndex = -1;
+			int headerVersion = -1;
+			while (reader.next())
+			{
+				if (reader.getHeaderVersion() != headerVersion)
+				{
+					headerVersion = reader.getHeaderVersion();
+					columnIndex = reader.getColumnIndex(_column);
+					groupIndex = (_groupColumn != null ? reader.getColumnIndex(_groupColumn) : -1);
+				}
+
+				if (groupIndex >= 0 && reader.getValue(groupIndex) != null)
+					group = reader.getString(groupIndex);
+
+				long t = reader.getTimeMs();
+				if (t < t0)
+					continue;
+				if (t > t1)
+					break;
+				if (columnIndex < 0)
+					continue;
+
+				double value = reader.getDouble(columnIndex);
+				if (Double.isNaN(value))
+					continue;
+
+				LogIndex.ColumnStats stats = groups.get(group);
+				if (stats == null)
+				{
+					stats = new LogIndex.ColumnStats(_column + (_groupColumn != null ? " [" + _groupColumn + "=" + group + "]" : ""));
+					groups.put(group, stats);
+				}
+				stats.count++;
+				stats.numericCount++;
+				stats.min = Math.min(stats.min, value);
+				stats.max = Math.max(stats.max, value);
+				stats.sum += value;
+			}
+		}
+
+		for (LogIndex.ColumnStats stats : groups.values())
+			System.out.println(stats);
+	}
+}
@@ -0,0 +1,246 @@
+package frc.robot.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+import frc.robot.command_status.RobotState;
+import frc.robot.lib.util.Kinematics.WheelSpeed;
+import frc.robot.lib.util.Path;
+import frc.robot.lib.util.PathFollower;
+import frc.robot.lib.util.PathFollower.PathVisionState;
+import frc.robot.lib.util.Pose;
+import frc.robot.lib.util.Vector2d;
+
+/**
+ * Replays a robot log off-robot, as fast as possible, and compares the results with
+ * what the robot logged.  Use it as a regression test after changing the odometry or path
+ * follower: on an unchanged estimator the odometry errors should be ~0.
+ *
+ * Odometry: each row's DriveState inputs (distances, speeds, gyro heading) are fed through
+ * RobotState.generateOdometryFromSensors(), and the result compared to RobotState/odometry*.
+ * Whenever the robot reset its pose (gyroCorrection changed) the replay is reset to match.
+ *
+ * Path follower: for each PathFollowerAction in the log (PathVision/* columns present),
+ * the pose and time logged for each update are fed through PathFollower.pathVisionDrive()
+ * with the Path the action followed, and the wheel speeds compared to PathVision/lSpeed,rSpeed.
+ * The log doesn't hold the path, so it has to be supplied by the caller.
+ *
+ *   ./gradlew replay --args="<log> [repeat] [pathSupplierClass]"
+ *       pathSupplierClass: a class implementing Supplier<List<Path>> that returns the
+ *       paths followed, in order
+ */
+public class ReplayHarness
+{
+	public static class Result
+	{
+		public final String name;
+		public long ticks = 0;
+		public long resets = 0;
+		public double maxError = 0;
+		public double sumSqrError = 0;
+		public double maxHeadingErrorDeg = 0;
+		public long computeNanos = 0;		// time spent in the code under test
+		public long totalNanos = 0;			// including reading the log
+
+		Result(String _name) { name = _name; }
+
+		void add(double _error, double _headingErrorDeg)
+		{
+			ticks++;
+			maxError = Math.max(maxError, _error);
+			sumSqrError += _error * _error;
+			maxHeadingErrorDeg = Math.max(maxHeadingErrorDeg, Math.abs(_headingErrorDeg));
+		}
+
+		public double getRmsError() { return (ticks > 0 ? Math.sqrt(sumSqrError / ticks) : 0); }
+
+		public String toString()
+		{
+			return String.format("%s: %d ticks, %d resets, error rms %.4f max %.4f, heading error max %.4f deg, %.0f ns/tick compute, %.0f ticks/sec total",
+					name, ticks, resets, getRmsError(), maxError, maxHeadingErrorDeg,
+					(ticks > 0 ? (double) computeNanos / ticks : 0), (totalNanos > 0 ? ticks * 1e9 / totalNanos : 0));
+		}
+	}
+
+	// columns are written with their short name, unless it collides with another logger's
+	private static int findColumn(LogFileReader _reader, String _fullName)
+	{
+		int k = _reader.getColumnIndex(_fullName);
+		if (k < 0)
+			k = _reader.getColumnIndex(_fullName.substring(_fullName.lastIndexOf('/') + 1));
+		return k;
+	}
+
+	private static boolean present(LogFileReader _reader, int... _columns)
+	{
+		for (int k : _columns)
+			if (k < 0 || _reader.getValue(k) == null)
+				return false;
+		return true;
+	}
+
+
+
+	public static Result replayOdometry(File _log) throws IOException
+	{
+		Result result = new Result("odometry (inches)");
+		RobotState robotState = new RobotState();
+		long startNanos = System.nanoTime();
+
+		try (LogFileReader reader = new LogFileReader(_log))
+		{
+			int headerVersion = -1;
+			int lDistance = -1, rDistance = -1, lSpeed = -1, rSpeed = -1, heading = -1, yawRate = -1;
+			int time = -1, x = -1, y = -1, headingOut = -1, gyroCorrection = -1;
+			boolean initialized = false;
+			double prevGyroCorrectionDeg = Double.NaN;
+
+			while (reader.next())
+			{
+				if (reader.getHeaderVersion() != headerVersion)
+				{
+					headerVersion = reader.getHeaderVersion();
+					lDistance = findColumn(reader, "DriveState/lDistance");
+					rDistance = findColumn(reader, "DriveState/rDistance");
+					lSpeed = findColumn(reader, "DriveState/lSpeed");
+					rSpeed = findColumn(reader, "DriveState/rSpeed");
+					heading = findColumn(reader, "DriveState/Heading");
+					yawRate = findColumn(reader, "DriveState/YawRate");	// measured rate, if the gyro has one (older logs don't)
+					time = findColumn(reader, "RobotState/time");
+					x = findColumn(reader, "RobotState/odometryX");
+					y = findColumn(reader, "RobotState/odometryY");
+					headingOut = findColumn(reader, "RobotState/odometryHeadingDeg");
+					gyroCorrection = findColumn(reader, "RobotState/gyroCorrectionDeg");
+				}
+				if (!present(reader, lDistance, rDistance, lSpeed, rSpeed, heading, time, x, y, headingOut))
+					continue;
+
+				double t = reader.getDouble(time);
+				double lDist = reader.getDouble(lDistance);
+				double rDist = reader.getDouble(rDistance);
+				double gyroHeading = Math.toRadians(reader.getDouble(heading));
+				Pose logged = new Pose(reader.getDouble(x), reader.getDouble(y), Math.toRadians(reader.getDouble(headingOut)));
+
+				// robot reset its pose: start over from the logged pose
+				double gyroCorrectionDeg = (gyroCorrection >= 0 && reader.getValue(gyroCorrection) != null ? reader.getDouble(gyroCorrection) : prevGyroCorrectionDeg);
+				boolean reset = !initialized || (gyroCorrectionDeg != prevGyroCorrectionDeg && !Double.isNaN(prevGyroCorrectionDeg));
+				prevGyroCorrectionDeg = gyroCorrectionDeg;
+				if (reset)
+				{
+					robotState.reset(t, lDist, rDist, logged, gyroHeading);
+					initialized = true;
+					result.resets++;
+					continue;
+				}
+
+				long computeStart = System.nanoTime();
+				if (yawRate >= 0 && reader.getValue(yawRate) != null)
+					robotState.generateOdometryFromSensors(t, lDist, rDist, reader.getDouble(lSpeed), reader.getDouble(rSpeed), gyroHeading, Math.toRadians(reader.getDouble(yawRate)));
+				else
+					robotState.generateOdometryFromSensors(t, lDist, rDist, reader.getDouble(lSpeed), reader.getDouble(rSpeed), gyroHeading);
+				Pose replayed = robotState.getLatestFieldToVehicle();
+				result.computeNanos += System.nanoTime() - computeStart;
+
+				double error = replayed.getPosition().distance(logged.getPosition());
+				double headingError = Vector2d.normalizeAngleDeg(replayed.getHeadingDeg() - logged.getHeadingDeg());
+				result.add(error, headingError);
+			}
+		}
+		result.totalNanos = System.nanoTime() - startNanos;
+		return result;
+	}
+
+
+
+	public static Result replayPathFollower(File _log, List<Path> _paths) throws IOException
+	{
+		Result result = new Result("path follower wheel speed (inches/sec)");
+		long startNanos = System.nanoTime();
+
+		try (LogFileReader reader = new LogFileReader(_log))
+		{
+			int headerVersion = -1;
+			int time = -1, x = -1, y = -1, heading = -1, lSpeed = -1, rSpeed = -1;
+			boolean following = false;
+			int pathIndex = -1;
+			PathFollower follower = null;
+			double prevTime = Double.NaN;
+
+			while (reader.next())
+			{
+				if (reader.getHeaderVersion() != headerVersion)
+				{
+					headerVersion = reader.getHeaderVersion();
+					time = findColumn(reader, "PathVision/currentTime");
+					x = findColumn(reader, "PathVision/positionX");
+					y = findColumn(reader, "PathVision/positionY");
+					heading = findColumn(reader, "PathVision/headingDeg");
+					lSpeed = findColumn(reader, "PathVision/lSpeed");
+					rSpeed = findColumn(reader, "PathVision/rSpeed");
+
+					// PathFollowerAction registers its logger when it starts, and removes it when done
+					boolean nowFollowing = (time >= 0);
+					if (nowFollowing && !following)
+					{
+						pathIndex++;
+						if (pathIndex >= _paths.size())
+						{
+							System.out.println("ReplayHarness: log has more paths than were supplied");
+							break;
+						}
+						follower = new PathFollower(new Path(_paths.get(pathIndex)), PathVisionState.PATH_FOLLOWING, new RobotState());
+						follower.start();
+						prevTime = Double.NaN;
+						result.resets++;
+					}
+					following = nowFollowing;
+				}
+				if (!following || !present(reader, time, x, y, heading, lSpeed, rSpeed))
+					continue;
+
+				// only replay rows logged after a new update (log and path follower threads aren't in lock step)
+				double t = reader.getDouble(time);
+				if (t <= 0 || t == prevTime)
+					continue;
+				prevTime = t;
+
+				Pose pose = new Pose(reader.getDouble(x), reader.getDouble(y), Math.toRadians(reader.getDouble(heading)));
+				long computeStart = System.nanoTime();
+				WheelSpeed wheelSpeed = follower.pathVisionDrive(t, pose);
+				result.computeNanos += System.nanoTime() - computeStart;
+
+				double error = Math.max(Math.abs(wheelSpeed.left - reader.getDouble(lSpeed)), Math.abs(wheelSpeed.right - reader.getDouble(rSpeed)));
+				result.add(error, 0);
+			}
+		}
+		result.totalNanos = System.nanoTime() - startNanos;
+		return result;
+	}
+
+
+
+	@SuppressWarnings("unchecked")
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 1)
+		{
+			System.out.println("usage: ReplayHarness <log> [repeat] [pathSupplierClass]");
+			return;
+		}
+		File log = new File(args[0]);
+		int repeat = (args.length > 1 ? Integer.parseInt(args[1]) : 1);
+		List<Path> paths = null;
+		if (args.length > 2)
+			paths = ((Supplier<List<Path>>) Class.forName(args[2]).getDeclaredConstructor().newInstance()).get();
+
+		// repeat to warm up the JIT and get a stable throughput number
+		for (int k = 0; k < repeat; k++)
+		{
+			System.out.println(replayOdometry(log));
+			if (paths != null)
+				System.out.println(replayPathFollower(log, paths));
+		}
+	}
+}